@@ -0,0 +1,232 @@
+package Attendance.OjtAttendanceApplication;
+
+import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
+import Attendance.OjtAttendanceApplication.entity.AttendanceStatus;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import Attendance.OjtAttendanceApplication.service.HoursCalculationEngine;
+import Attendance.OjtAttendanceApplication.service.RecalculationService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * GET /api/admin/recalculation/stats on embedded H2 as attendance_records
+ * grows to the target size: the grouped-count implementation against the
+ * previous one (findAll on both tables, then five passes over the entity
+ * lists). Reports median wall time and the bytes the calling thread
+ * allocated per call (H2 runs queries on that thread, so the database's
+ * share is included).
+ *
+ * mvn -Pbenchmark test-compile exec:exec \
+ *     -Dbenchmark.main=Attendance.OjtAttendanceApplication.RecalculationStatsBenchmark \
+ *     -Djmh.args="1000000 250000"
+ *
+ * Arguments: total records (default 1,000,000, spread over 2,000 students)
+ * and the largest size the entity-loading version is run at (default
+ * 250,000; past that it needs gigabytes of heap). Rows are inserted with
+ * plain JDBC batches in four steps of a quarter each.
+ */
+public class RecalculationStatsBenchmark {
+
+    private static final int STUDENTS = 2_000;
+    private static final int INSERT_BATCH = 10_000;
+    private static final int RUNS = 5;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+
+    public static void main(String[] args) {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int legacyLimit = args.length > 1 ? Integer.parseInt(args[1]) : 250_000;
+        new RecalculationStatsBenchmark().run(records, legacyLimit);
+    }
+
+    private void run(int totalRecords, int legacyLimit) {
+        String[] args = {
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:stats;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                // The repository queries use MySQL functions; H2 runs them in MySQL mode
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--attendance.outbox.poll-interval-ms=3600000",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.tool.schema=ERROR"
+        };
+
+        context = new SpringApplicationBuilder(OjtAttendanceApplication.class).run(args);
+        try {
+            jdbcTemplate = context.getBean(JdbcTemplate.class);
+            RecalculationService recalculationService = context.getBean(RecalculationService.class);
+
+            long[] studentIds = seedStudents();
+
+            System.out.println();
+            System.out.printf("%-10s %10s %12s %14s%n", "version", "records", "median ms", "alloc MB/call");
+
+            int inserted = 0;
+            for (int step = 1; step <= 4; step++) {
+                int target = (int) ((long) totalRecords * step / 4);
+                seedRecords(studentIds, inserted, target);
+                inserted = target;
+
+                measure("grouped", inserted, recalculationService::getRecalculationStats);
+                if (inserted <= legacyLimit) {
+                    measure("findAll", inserted, this::legacyStats);
+                }
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    private void measure(String version, int records, Supplier<Map<String, Object>> stats) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        // One warm-up call, then the median of RUNS
+        touch();
+        stats.get();
+        long[] nanos = new long[RUNS];
+        long allocated = 0;
+        for (int run = 0; run < RUNS; run++) {
+            touch();
+            long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            stats.get();
+            nanos[run] = System.nanoTime() - start;
+            allocated += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        }
+        Arrays.sort(nanos);
+
+        System.out.printf("%-10s %10d %12.1f %14.1f%n",
+                version, records, nanos[RUNS / 2] / 1e6, allocated / (double) RUNS / (1024 * 1024));
+    }
+
+    // H2 reuses a query's result while its tables are unchanged; a write before each call makes it scan again
+    private void touch() {
+        jdbcTemplate.update("UPDATE attendance_records SET total_minutes = total_minutes + 0 WHERE id = 1");
+        jdbcTemplate.update("UPDATE students SET total_accumulated_minutes = total_accumulated_minutes + 0 " +
+                "WHERE id = (SELECT MIN(id) FROM students)");
+    }
+
+    /**
+     * The counts as RecalculationService computed them before the grouped query
+     */
+    private Map<String, Object> legacyStats() {
+        HoursCalculationEngine engine = context.getBean(HoursCalculationEngine.class);
+        List<Student> allStudents = context.getBean(StudentRepository.class).findAll();
+        List<AttendanceRecord> allRecords = context.getBean(AttendanceRecordRepository.class).findAll();
+
+        long completedRecords = allRecords.stream().filter(r -> r.getTimeOut() != null).count();
+        long incompleteRecords = allRecords.stream().filter(r -> r.getTimeOut() == null).count();
+        long studentsWithSchedule = allStudents.stream().filter(Student::hasActiveSchedule).count();
+        long autoTimeouts = allRecords.stream()
+                .filter(r -> r.getStatus() == AttendanceStatus.AUTO_TIMED_OUT).count();
+        long adminCorrected = allRecords.stream()
+                .filter(r -> r.getStatus() == AttendanceStatus.ADMIN_CORRECTED).count();
+        long approvedOverrides = allRecords.stream()
+                .filter(r -> engine.isScheduleOverrideApproved(r.getTasksCompleted())).count();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalStudents", allStudents.size());
+        stats.put("totalRecords", allRecords.size());
+        stats.put("completedRecords", completedRecords);
+        stats.put("incompleteRecords", incompleteRecords);
+        stats.put("studentsWithSchedule", studentsWithSchedule);
+        stats.put("autoTimeouts", autoTimeouts);
+        stats.put("adminCorrected", adminCorrected);
+        stats.put("approvedOverrides", approvedOverrides);
+        return stats;
+    }
+
+    // ==================== SEEDING ====================
+
+    private long[] seedStudents() {
+        jdbcTemplate.batchUpdate("INSERT INTO students (id_badge, full_name, school, status, " +
+                        "total_accumulated_minutes, schedule_version, schedule_active, " +
+                        "scheduled_start_time, scheduled_end_time, grace_period_minutes) " +
+                        "VALUES (?, ?, 'Benchmark University', 'ACTIVE', 0, 0, ?, '08:00:00', '17:00:00', 5)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, String.format("%04d", i));
+                        ps.setString(2, "Benchmark Student " + i);
+                        ps.setBoolean(3, i % 3 != 0);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return STUDENTS;
+                    }
+                });
+
+        return jdbcTemplate.queryForList("SELECT id FROM students ORDER BY id", Long.class).stream()
+                .mapToLong(Long::longValue).toArray();
+    }
+
+    // 1% open, 5% auto time-outs, 2% admin corrections, 3% approved overrides
+    private void seedRecords(long[] studentIds, int from, int to) {
+        String sql = "INSERT INTO attendance_records (id, student_id, attendance_date, work_date, time_in, " +
+                "time_out, status, total_minutes, regular_minutes, overtime_minutes, undertime_minutes, " +
+                "break_deducted, tasks_completed, schedule_override_approved, calculation_inputs) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, 480, 480, 0, 0, TRUE, ?, ?, 0)";
+        LocalDate firstDay = LocalDate.of(2024, 1, 1);
+
+        for (int batchStart = from; batchStart < to; batchStart += INSERT_BATCH) {
+            int start = batchStart;
+            int size = Math.min(INSERT_BATCH, to - batchStart);
+
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    int n = start + i;
+                    LocalDate day = firstDay.plusDays(n / studentIds.length);
+                    LocalDateTime timeIn = day.atTime(8, 0);
+                    int bucket = n % 100;
+
+                    AttendanceStatus status = bucket == 0 ? AttendanceStatus.TIMED_IN
+                            : bucket <= 5 ? AttendanceStatus.AUTO_TIMED_OUT
+                            : bucket <= 7 ? AttendanceStatus.ADMIN_CORRECTED
+                            : AttendanceStatus.TIMED_OUT;
+                    boolean override = bucket >= 8 && bucket <= 10;
+
+                    ps.setLong(1, n + 1);
+                    ps.setLong(2, studentIds[n % studentIds.length]);
+                    ps.setDate(3, Date.valueOf(day));
+                    ps.setDate(4, Date.valueOf(day));
+                    ps.setTimestamp(5, Timestamp.valueOf(timeIn));
+                    ps.setTimestamp(6, status == AttendanceStatus.TIMED_IN ? null : Timestamp.valueOf(timeIn.plusHours(9)));
+                    ps.setString(7, status.name());
+                    ps.setString(8, override ? "Worked\n[ADMIN APPROVED SCHEDULE OVERRIDE]" : "Worked");
+                    ps.setBoolean(9, override);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package Attendance.OjtAttendanceApplication;
+
+import Attendance.OjtAttendanceApplication.dto.AttendanceRecordDto;
+import Attendance.OjtAttendanceApplication.entity.AttendanceStatus;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import Attendance.OjtAttendanceApplication.service.AttendanceService;
+import Attendance.OjtAttendanceApplication.service.ReportService;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * GET /api/reports/csv and /api/reports/excel over growing date ranges of a
+ * 1,000,000 record table: the streamed exports against the previous ones
+ * (entities to DTOs, a findByIdBadge per row, the whole file in a
+ * StringWriter, or an XSSFWorkbook auto-sized and copied into a byte[]).
+ * The file goes to a byte-counting sink. Besides wall time it reports how much heap the
+ * export keeps reachable at its peak (a second run, sampled with full
+ * collections).
+ *
+ * mvn -Pbenchmark test-compile exec:exec \
+ *     -Dbenchmark.main=Attendance.OjtAttendanceApplication.ReportExportBenchmark \
+ *     -Djmh.args="1000000 100000 csv,xlsx"
+ *
+ * Arguments: total records (default 1,000,000, 2,000 students, one record
+ * per student per work day), the largest range the previous exports are
+ * run on (default 100,000 records; they issue one query per row) and the
+ * formats (default csv,xlsx). The data
+ * lives in an H2 file database under target/, with a small page cache and
+ * large results spilled to disk, so the heap holds only what the
+ * application keeps.
+ */
+public class ReportExportBenchmark {
+
+    private static final int STUDENTS = 2_000;
+    private static final int INSERT_BATCH = 10_000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    private static final Path DATABASE_DIR = Path.of("target", "benchmark-report-export");
+    private static final long SAMPLE_MILLIS = 100;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int legacyLimit = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        List<String> formats = List.of((args.length > 2 ? args[2] : "csv,xlsx").split(","));
+        new ReportExportBenchmark().run(records, legacyLimit, formats);
+    }
+
+    private void run(int totalRecords, int legacyLimit, List<String> formats) throws Exception {
+        deleteDatabase();
+        String[] args = {
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:file:./" + DATABASE_DIR + "/db;MODE=MySQL;CACHE_SIZE=8192;MAX_MEMORY_ROWS=10000",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                // The repository queries use MySQL functions; H2 runs them in MySQL mode
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                // H2 rejects MySQL's streaming marker (it buffers large results in temporary files instead)
+                "--attendance.report.fetch-size=1000",
+                "--attendance.outbox.poll-interval-ms=3600000",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.tool.schema=ERROR"
+        };
+
+        context = new SpringApplicationBuilder(OjtAttendanceApplication.class).run(args);
+        try {
+            jdbcTemplate = context.getBean(JdbcTemplate.class);
+            ReportService reportService = context.getBean(ReportService.class);
+
+            long[] studentIds = seedStudents();
+            seedRecords(studentIds, totalRecords);
+            int days = (totalRecords + STUDENTS - 1) / STUDENTS;
+
+            LocalDate lastDay = FIRST_DAY.plusDays(days - 1);
+            verifySameCSV(reportService, lastDay.minusDays(6), lastDay);
+            verifySameExcel(reportService, lastDay.minusDays(6), lastDay);
+
+            System.out.println();
+            System.out.printf("%-16s %8s %10s %10s %10s %14s%n",
+                    "version", "days", "records", "wall ms", "file MB", "live heap MB");
+
+            for (int rangeDays : IntStream.of(7, 30, 90, 365, days).filter(d -> d <= days).distinct().toArray()) {
+                LocalDate start = lastDay.minusDays(rangeDays - 1);
+                boolean legacy = (long) rangeDays * STUDENTS <= legacyLimit;
+
+                if (formats.contains("csv")) {
+                    measure("csv streamed", rangeDays, out -> reportService.writeCSVReport(start, lastDay, out));
+                    if (legacy) {
+                        measure("csv previous", rangeDays, out -> legacyCSV(start, lastDay, out));
+                    }
+                }
+                if (formats.contains("xlsx")) {
+                    measure("xlsx streamed", rangeDays, out -> reportService.writeExcelReport(start, lastDay, out));
+                    if (legacy) {
+                        measure("xlsx previous", rangeDays, out -> legacyExcel(start, lastDay, out));
+                    }
+                }
+            }
+        } finally {
+            context.close();
+            deleteDatabase();
+        }
+    }
+
+    private interface Export {
+        long write(OutputStream out) throws IOException;
+    }
+
+    private void measure(String version, int days, Export export) throws Exception {
+        CountingOutputStream sink = new CountingOutputStream();
+        long start = System.nanoTime();
+        long records = export.write(sink);
+        long wallNanos = System.nanoTime() - start;
+
+        System.out.printf("%-16s %8d %10d %10.1f %10.1f %14.1f%n",
+                version, days, records, wallNanos / 1e6,
+                sink.count / (1024.0 * 1024), peakLiveHeap(export) / (1024.0 * 1024));
+    }
+
+    /**
+     * Runs the export again on another thread, collecting garbage every
+     * SAMPLE_MILLIS meanwhile: the most heap still in use right after a full
+     * collection, over what was in use before the export started
+     */
+    private long peakLiveHeap(Export export) throws Exception {
+        System.gc();
+        long before = usedHeap();
+
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> run = worker.submit(() -> export.write(new CountingOutputStream()));
+            long peak = before;
+            while (!run.isDone()) {
+                Thread.sleep(SAMPLE_MILLIS);
+                System.gc();
+                peak = Math.max(peak, usedHeap());
+            }
+            run.get();
+            return peak - before;
+        } finally {
+            worker.shutdown();
+        }
+    }
+
+    private void verifySameCSV(ReportService reportService, LocalDate start, LocalDate end) throws IOException {
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        ByteArrayOutputStream previous = new ByteArrayOutputStream();
+        reportService.writeCSVReport(start, end, streamed);
+        legacyCSV(start, end, previous);
+
+        if (!Arrays.equals(streamed.toByteArray(), previous.toByteArray())) {
+            throw new IllegalStateException("Streamed CSV differs from the previous export");
+        }
+    }
+
+    // Same cell values on the same sheet; column widths are estimated now, so they are not compared
+    private void verifySameExcel(ReportService reportService, LocalDate start, LocalDate end) throws IOException {
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        ByteArrayOutputStream previous = new ByteArrayOutputStream();
+        reportService.writeExcelReport(start, end, streamed);
+        legacyExcel(start, end, previous);
+
+        DataFormatter formatter = new DataFormatter();
+        try (Workbook streamedBook = new XSSFWorkbook(new ByteArrayInputStream(streamed.toByteArray()));
+             Workbook previousBook = new XSSFWorkbook(new ByteArrayInputStream(previous.toByteArray()))) {
+            Sheet streamedSheet = streamedBook.getSheetAt(0);
+            Sheet previousSheet = previousBook.getSheetAt(0);
+            if (!streamedSheet.getSheetName().equals(previousSheet.getSheetName())
+                    || streamedSheet.getLastRowNum() != previousSheet.getLastRowNum()) {
+                throw new IllegalStateException("Streamed workbook has a different sheet than the previous export");
+            }
+            for (int r = 0; r <= previousSheet.getLastRowNum(); r++) {
+                Row streamedRow = streamedSheet.getRow(r);
+                Row previousRow = previousSheet.getRow(r);
+                for (int c = 0; c < previousRow.getLastCellNum(); c++) {
+                    Cell streamedCell = streamedRow.getCell(c);
+                    Cell previousCell = previousRow.getCell(c);
+                    if (streamedCell.getCellType() != previousCell.getCellType()
+                            || !formatter.formatCellValue(streamedCell).equals(formatter.formatCellValue(previousCell))) {
+                        throw new IllegalStateException("Streamed workbook differs at row " + r + ", column " + c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The export as ReportService.generateCSVReport built it before streaming
+     */
+    private long legacyCSV(LocalDate startDate, LocalDate endDate, OutputStream sink) throws IOException {
+        AttendanceService attendanceService = context.getBean(AttendanceService.class);
+        StudentRepository studentRepository = context.getBean(StudentRepository.class);
+        List<AttendanceRecordDto> records = attendanceService.getAttendanceRecordsByDateRange(startDate, endDate);
+
+        StringWriter out = new StringWriter();
+        CSVFormat format = CSVFormat.DEFAULT.builder()
+                .setHeader("ID Badge", "Student Name", "School", "Date", "Time In", "Time Out",
+                        "Total Hours", "Regular Hours", "Overtime Hours", "Undertime Hours",
+                        "Break Deducted", "Tasks Completed", "Status")
+                .build();
+
+        try (CSVPrinter printer = new CSVPrinter(out, format)) {
+            for (AttendanceRecordDto record : records) {
+                Student student = studentRepository.findByIdBadge(record.getIdBadge()).orElse(null);
+                String school = student != null ? student.getSchool() : "";
+
+                printer.printRecord(
+                        record.getIdBadge(),
+                        record.getStudentName(),
+                        school,
+                        record.getAttendanceDate(),
+                        record.getTimeIn() != null ? record.getTimeIn().format(DateTimeFormatter.ofPattern("HH:mm:ss")) : "",
+                        record.getTimeOut() != null ? record.getTimeOut().format(DateTimeFormatter.ofPattern("HH:mm:ss")) : "",
+                        record.getTotalHours(),
+                        record.getRegularHours(),
+                        record.getOvertimeHours(),
+                        record.getUndertimeHours(),
+                        record.getBreakDeducted() ? "Yes" : "No",
+                        record.getTasksCompleted() != null ? record.getTasksCompleted() : "",
+                        record.getStatus()
+                );
+            }
+        }
+        sink.write(out.toString().getBytes(StandardCharsets.UTF_8));
+        return records.size();
+    }
+
+    /**
+     * The workbook as ReportService.generateExcelReport built it before streaming
+     */
+    private long legacyExcel(LocalDate startDate, LocalDate endDate, OutputStream sink) throws IOException {
+        AttendanceService attendanceService = context.getBean(AttendanceService.class);
+        StudentRepository studentRepository = context.getBean(StudentRepository.class);
+        List<AttendanceRecordDto> records = attendanceService.getAttendanceRecordsByDateRange(startDate, endDate);
+
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("Attendance Report");
+
+            Row headerRow = sheet.createRow(0);
+            String[] headers = {"ID Badge", "Student Name", "School", "Date", "Time In", "Time Out",
+                    "Total Hours", "Regular Hours", "Overtime Hours", "Undertime Hours",
+                    "Break Deducted", "Tasks Completed", "Status"};
+
+            CellStyle headerStyle = workbook.createCellStyle();
+            Font font = workbook.createFont();
+            font.setBold(true);
+            headerStyle.setFont(font);
+
+            for (int i = 0; i < headers.length; i++) {
+                Cell cell = headerRow.createCell(i);
+                cell.setCellValue(headers[i]);
+                cell.setCellStyle(headerStyle);
+            }
+
+            int rowNum = 1;
+            for (AttendanceRecordDto record : records) {
+                Row row = sheet.createRow(rowNum++);
+
+                Student student = studentRepository.findByIdBadge(record.getIdBadge()).orElse(null);
+                String school = student != null ? student.getSchool() : "";
+
+                row.createCell(0).setCellValue(record.getIdBadge());
+                row.createCell(1).setCellValue(record.getStudentName());
+                row.createCell(2).setCellValue(school);
+                row.createCell(3).setCellValue(record.getAttendanceDate().toString());
+                row.createCell(4).setCellValue(record.getTimeIn() != null ?
+                        record.getTimeIn().format(DateTimeFormatter.ofPattern("HH:mm:ss")) : "");
+                row.createCell(5).setCellValue(record.getTimeOut() != null ?
+                        record.getTimeOut().format(DateTimeFormatter.ofPattern("HH:mm:ss")) : "");
+                row.createCell(6).setCellValue(record.getTotalHours());
+                row.createCell(7).setCellValue(record.getRegularHours());
+                row.createCell(8).setCellValue(record.getOvertimeHours());
+                row.createCell(9).setCellValue(record.getUndertimeHours());
+                row.createCell(10).setCellValue(record.getBreakDeducted() ? "Yes" : "No");
+                row.createCell(11).setCellValue(record.getTasksCompleted() != null ? record.getTasksCompleted() : "");
+                row.createCell(12).setCellValue(record.getStatus());
+            }
+
+            for (int i = 0; i < headers.length; i++) {
+                sheet.autoSizeColumn(i);
+                int currentWidth = sheet.getColumnWidth(i);
+                sheet.setColumnWidth(i, (int) (currentWidth * 1.1));
+            }
+
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            workbook.write(outputStream);
+            sink.write(outputStream.toByteArray());
+            return records.size();
+        }
+    }
+
+    // ==================== HEAP ====================
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    // ==================== SEEDING ====================
+
+    private long[] seedStudents() {
+        jdbcTemplate.batchUpdate("INSERT INTO students (id_badge, full_name, school, status, " +
+                        "total_accumulated_minutes, schedule_version) " +
+                        "VALUES (?, ?, ?, 'ACTIVE', 0, 0)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, String.format("%04d", i));
+                        ps.setString(2, "Benchmark Student " + i);
+                        ps.setString(3, "Benchmark University " + (i % 20));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return STUDENTS;
+                    }
+                });
+
+        return jdbcTemplate.queryForList("SELECT id FROM students ORDER BY id", Long.class).stream()
+                .mapToLong(Long::longValue).toArray();
+    }
+
+    private void seedRecords(long[] studentIds, int total) {
+        String sql = "INSERT INTO attendance_records (id, student_id, attendance_date, work_date, time_in, " +
+                "time_out, status, total_minutes, regular_minutes, overtime_minutes, undertime_minutes, " +
+                "break_deducted, tasks_completed, schedule_override_approved, calculation_inputs) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, 480, 480, 0, 0, TRUE, ?, FALSE, 0)";
+
+        for (int batchStart = 0; batchStart < total; batchStart += INSERT_BATCH) {
+            int start = batchStart;
+            int size = Math.min(INSERT_BATCH, total - batchStart);
+
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    int n = start + i;
+                    LocalDate day = FIRST_DAY.plusDays(n / studentIds.length);
+                    LocalDateTime timeIn = day.atTime(8, n % 30);
+
+                    ps.setLong(1, n + 1);
+                    ps.setLong(2, studentIds[n % studentIds.length]);
+                    ps.setDate(3, Date.valueOf(day));
+                    ps.setDate(4, Date.valueOf(day));
+                    ps.setTimestamp(5, Timestamp.valueOf(timeIn));
+                    ps.setTimestamp(6, Timestamp.valueOf(timeIn.plusHours(9)));
+                    ps.setString(7, AttendanceStatus.TIMED_OUT.name());
+                    ps.setString(8, "=== Tasks Completed Today ===\n1. [09:00] Reviewed tickets, \"triage\"\n" +
+                            "2. [13:00] Pairing session on record " + n);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+
+    private static void deleteDatabase() throws IOException {
+        if (!Files.exists(DATABASE_DIR)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(DATABASE_DIR)) {
+            for (Path file : files.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
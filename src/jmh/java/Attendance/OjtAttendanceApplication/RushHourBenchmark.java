@@ -0,0 +1,233 @@
+package Attendance.OjtAttendanceApplication;
+
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import Attendance.OjtAttendanceApplication.service.BadgeDirectory;
+import dev.samstevens.totp.code.CodeGenerator;
+import dev.samstevens.totp.code.DefaultCodeGenerator;
+import dev.samstevens.totp.secret.DefaultSecretGenerator;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+/**
+ * Morning rush: every badge taps in at once against
+ * POST /api/attendance/log-with-totp with a valid TOTP code, on an embedded
+ * H2 database. The app is started once per execution mode (platform threads,
+ * then the virtual-threads profile) and a warm-up rush with separate badges
+ * runs before the measured one. Reports throughput and p50/p99 latency for
+ * both rushes, prints the first failed request of each, and exits with
+ * status 1 if any request failed, warm-up included.
+ *
+ * mvn -Pbenchmark test-compile exec:exec \
+ *     -Dbenchmark.main=Attendance.OjtAttendanceApplication.RushHourBenchmark -Djmh.args="500"
+ *
+ * The argument is the number of badges (default 500). Virtual threads need a
+ * Java 21+ runtime. The project builds for and usually runs on Java 17, where
+ * the virtual-thread mode is skipped (with a note on the output) and only
+ * platform threads are measured; run the benchmark on a 21+ JVM to get the
+ * comparison.
+ */
+public class RushHourBenchmark {
+
+    private static final int WARMUP_BADGES = 100;
+    private static final String[] PLATFORM_MODE = {};
+    private static final String[] VIRTUAL_MODE = {"--spring.profiles.active=virtual-threads"};
+
+    private final CodeGenerator codeGenerator = new DefaultCodeGenerator();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        int badges = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        RushHourBenchmark benchmark = new RushHourBenchmark();
+
+        List<RushResult> results = new ArrayList<>(benchmark.run("platform", PLATFORM_MODE, badges));
+
+        if (Runtime.version().feature() >= 21) {
+            results.addAll(benchmark.run("virtual", VIRTUAL_MODE, badges));
+        } else {
+            System.out.println("Skipping virtual-thread mode: needs Java 21+, running on " + Runtime.version());
+        }
+
+        System.out.println();
+        System.out.printf("%-18s %8s %8s %12s %10s %10s %10s%n",
+                "mode", "badges", "errors", "req/s", "p50 ms", "p99 ms", "max ms");
+        for (RushResult result : results) {
+            System.out.println(result);
+        }
+
+        boolean failed = false;
+        for (RushResult result : results) {
+            if (result.firstFailure != null) {
+                System.out.println("First failure in " + result.mode + ": " + result.firstFailure);
+                failed = true;
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return the warm-up rush and the measured one
+     */
+    private List<RushResult> run(String mode, String[] modeArgs, int badges) throws Exception {
+        String[] args = concat(modeArgs,
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:rush-" + mode + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                // The repository queries use MySQL functions; H2 runs them in MySQL mode
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.tool.schema=ERROR");
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(OjtAttendanceApplication.class).run(args)) {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            String[] secrets = seedStudents(context, WARMUP_BADGES + badges);
+
+            RushResult warmUp = rush(mode + " warm-up", port, secrets, 0, WARMUP_BADGES);
+            return List.of(warmUp, rush(mode, port, secrets, WARMUP_BADGES, badges));
+        }
+    }
+
+    /**
+     * Registers students with TOTP already enabled, straight through the
+     * repository, and refreshes the badge directory
+     */
+    private String[] seedStudents(ConfigurableApplicationContext context, int count) {
+        DefaultSecretGenerator secretGenerator = new DefaultSecretGenerator();
+        String[] secrets = new String[count];
+        List<Student> students = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            secrets[i] = secretGenerator.generate();
+            Student student = new Student(badge(i), "Rush Student " + i, "Benchmark University");
+            student.setTotpSecret(secrets[i]);
+            student.setTotpEnabled(true);
+            students.add(student);
+        }
+
+        context.getBean(StudentRepository.class).saveAll(students);
+        context.getBean(BadgeDirectory.class).load();
+        return secrets;
+    }
+
+    /**
+     * All badges in [from, from + count) tap at the same moment
+     */
+    private RushResult rush(String mode, int port, String[] secrets, int from, int count) throws Exception {
+        URI uri = URI.create("http://localhost:" + port + "/api/attendance/log-with-totp");
+        long period = System.currentTimeMillis() / 1000 / 30;
+
+        ExecutorService clients = Executors.newFixedThreadPool(count);
+        CountDownLatch ready = new CountDownLatch(count);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>(count);
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+        try {
+            for (int i = from; i < from + count; i++) {
+                String body = String.format("{\"idBadge\":\"%s\",\"totpCode\":\"%s\"}",
+                        badge(i), codeGenerator.generate(secrets[i], period));
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                        .header("Content-Type", "application/json")
+                        .timeout(Duration.ofSeconds(60))
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+
+                futures.add(clients.submit(() -> {
+                    ready.countDown();
+                    start.await();
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                        long latency = System.nanoTime() - sent;
+                        if (response.statusCode() == 200) {
+                            return latency;
+                        }
+                        failures.add("HTTP " + response.statusCode() + " " + response.body());
+                        // Failed requests are recorded as negative latencies
+                        return -latency;
+                    } catch (Exception e) {
+                        failures.add(e.toString());
+                        return -(System.nanoTime() - sent);
+                    }
+                }));
+            }
+
+            ready.await();
+            long wallStart = System.nanoTime();
+            start.countDown();
+
+            long[] latencies = new long[count];
+            for (int i = 0; i < count; i++) {
+                latencies[i] = futures.get(i).get(2, TimeUnit.MINUTES);
+            }
+            return new RushResult(mode, latencies, System.nanoTime() - wallStart, failures.peek());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private static String badge(int index) {
+        return String.format("%04d", index + 1);
+    }
+
+    private static String[] concat(String[] first, String... second) {
+        String[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static final class RushResult {
+        private final String mode;
+        private final int requests;
+        private final int errors;
+        private final double throughput;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+        private final String firstFailure;
+
+        RushResult(String mode, long[] latencies, long wallNanos, String firstFailure) {
+            long[] sorted = Arrays.stream(latencies).map(Math::abs).sorted().toArray();
+
+            this.mode = mode;
+            this.requests = latencies.length;
+            this.errors = (int) Arrays.stream(latencies).filter(latency -> latency < 0).count();
+            this.throughput = requests / (wallNanos / 1e9);
+            this.p50Millis = percentile(sorted, 0.50) / 1e6;
+            this.p99Millis = percentile(sorted, 0.99) / 1e6;
+            this.maxMillis = sorted[sorted.length - 1] / 1e6;
+            this.firstFailure = firstFailure;
+        }
+
+        private static long percentile(long[] sorted, double fraction) {
+            int index = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, index)];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-18s %8d %8d %12.1f %10.1f %10.1f %10.1f",
+                    mode, requests, errors, throughput, p50Millis, p99Millis, maxMillis);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package Attendance.OjtAttendanceApplication;
+
+import Attendance.OjtAttendanceApplication.controller.AdminController;
+import Attendance.OjtAttendanceApplication.dto.AddTaskRequest;
+import Attendance.OjtAttendanceApplication.dto.BulkScheduleRequest;
+import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
+import Attendance.OjtAttendanceApplication.entity.AttendanceStatus;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import Attendance.OjtAttendanceApplication.service.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Write-heavy paths on embedded H2: full recalculation, bulk schedule update,
+ * the missing-time-out notification sweep and task logging. For each path it
+ * reports wall time and the number of JDBC statements Hibernate prepared
+ * (a batch of rows is one statement), which is what batching reduces.
+ *
+ * mvn -Pbenchmark test-compile exec:exec \
+ *     -Dbenchmark.main=Attendance.OjtAttendanceApplication.WritePathBenchmark -Djmh.args="200"
+ *
+ * The argument is the number of students (default 200); each gets ten
+ * completed records for the recalculation and one open session for the
+ * sweep and task logging.
+ */
+public class WritePathBenchmark {
+
+    private static final int RECORDS_PER_STUDENT = 10;
+    private static final int TASKS_PER_STUDENT = 3;
+
+    private ConfigurableApplicationContext context;
+    private Statistics statistics;
+    private TransactionTemplate transactionTemplate;
+
+    public static void main(String[] args) throws Exception {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        new WritePathBenchmark().run(students);
+    }
+
+    private void run(int studentCount) throws Exception {
+        String[] args = {
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:writes;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                // The repository queries use MySQL functions; H2 runs them in MySQL mode
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect",
+                "--spring.jpa.properties.hibernate.generate_statistics=true",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--attendance.outbox.poll-interval-ms=3600000",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.tool.schema=ERROR"
+        };
+
+        context = new SpringApplicationBuilder(OjtAttendanceApplication.class).run(args);
+        try {
+            statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+            transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+            List<Student> students = seedStudents(studentCount);
+            seedCompletedRecords(students);
+
+            System.out.println();
+            System.out.printf("%-28s %8s %10s %12s%n", "path", "rows", "wall ms", "statements");
+
+            measure("recalculation job", studentCount * RECORDS_PER_STUDENT,
+                    () -> {
+                        RecalculationJobService jobs = context.getBean(RecalculationJobService.class);
+                        jobs.runJob(jobs.createJob(false).getId());
+                    });
+
+            measure("bulk schedule", studentCount, () -> {
+                BulkScheduleRequest request = new BulkScheduleRequest();
+                request.setStudentIds(students.stream().map(Student::getId).collect(Collectors.toList()));
+                request.setStartTime(LocalTime.of(8, 0));
+                request.setEndTime(LocalTime.of(17, 0));
+                request.setGracePeriodMinutes(10);
+                request.setActive(true);
+                context.getBean(AdminController.class).setBulkStudentSchedules(request);
+            });
+
+            // The new schedule leaves every record stale
+            measure("incremental recalculation", studentCount * RECORDS_PER_STUDENT,
+                    () -> {
+                        RecalculationJobService jobs = context.getBean(RecalculationJobService.class);
+                        jobs.runJob(jobs.createJob(true).getId());
+                    });
+
+            // Every total the jobs moved went through the ledger, so nothing drifts
+            measure("hours audit", studentCount, () -> {
+                Map<String, Object> audit = context.getBean(HoursLedgerAuditor.class).audit(false);
+                if ((int) audit.get("studentsWithDrift") != 0) {
+                    throw new IllegalStateException("Student totals drifted: " + audit.get("drifts"));
+                }
+            });
+
+            List<AttendanceRecord> openRecords = seedOpenSessions(students);
+
+            measure("notification sweep", openRecords.size(), () -> {
+                context.getBean(ScheduledTaskService.class).checkForIncompleteRecords();
+                context.getBean(OutboxDispatcher.class).dispatchPending();
+            });
+
+            measure("task logging", studentCount * TASKS_PER_STUDENT, () -> {
+                TaskService taskService = context.getBean(TaskService.class);
+                for (int t = 0; t < TASKS_PER_STUDENT; t++) {
+                    for (Student student : students) {
+                        AddTaskRequest request = new AddTaskRequest();
+                        request.setIdBadge(student.getIdBadge());
+                        request.setTaskDescription("Benchmark task " + t);
+                        request.setCompletedAt(LocalDateTime.now().minusMinutes(5));
+                        taskService.addTask(request);
+                    }
+                }
+            });
+        } finally {
+            context.close();
+        }
+    }
+
+    private void measure(String path, int rows, Runnable work) {
+        statistics.clear();
+        long start = System.nanoTime();
+        work.run();
+        long wallNanos = System.nanoTime() - start;
+
+        System.out.printf("%-28s %8d %10.1f %12d%n",
+                path, rows, wallNanos / 1e6, statistics.getPrepareStatementCount());
+    }
+
+    private List<Student> seedStudents(int count) {
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            students.add(new Student(String.format("%04d", i + 1), "Write Student " + i, "Benchmark University"));
+        }
+        List<Student> saved = context.getBean(StudentRepository.class).saveAll(students);
+        context.getBean(BadgeDirectory.class).load();
+        return saved;
+    }
+
+    /**
+     * Ten past days of 8:00-17:10 sessions per student, stored with zero
+     * hours so the recalculation rewrites every one of them
+     */
+    private void seedCompletedRecords(List<Student> students) {
+        AttendanceRecordRepository repository = context.getBean(AttendanceRecordRepository.class);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<AttendanceRecord> records = new ArrayList<>();
+            for (Student student : students) {
+                for (int day = 1; day <= RECORDS_PER_STUDENT; day++) {
+                    LocalDate date = LocalDate.now().minusDays(day + 1);
+                    AttendanceRecord record = new AttendanceRecord(student, date.atTime(8, 0));
+                    record.setAttendanceDate(date);
+                    record.setWorkDate(date);
+                    record.setTimeOut(date.atTime(17, 10));
+                    record.setStatus(AttendanceStatus.TIMED_OUT);
+                    record.setTasksCompleted("Seeded work");
+                    record.setTotalMinutes(0);
+                    records.add(record);
+                }
+            }
+            repository.saveAll(records);
+        });
+    }
+
+    /**
+     * One session per student, open for nine hours (past the missing
+     * time-out threshold, below the long-session one)
+     */
+    private List<AttendanceRecord> seedOpenSessions(List<Student> students) {
+        AttendanceRecordRepository repository = context.getBean(AttendanceRecordRepository.class);
+
+        List<AttendanceRecord> records = transactionTemplate.execute(status -> {
+            List<AttendanceRecord> open = new ArrayList<>();
+            for (Student student : students) {
+                LocalDateTime timeIn = LocalDateTime.now().minusHours(9);
+                AttendanceRecord record = new AttendanceRecord(student, timeIn);
+                record.setWorkDate(timeIn.toLocalDate());
+                record.setStatus(AttendanceStatus.TIMED_IN);
+                open.add(record);
+            }
+            return repository.saveAll(open);
+        });
+
+        context.getBean(ActiveSessionRegistry.class).reconcile();
+        return records;
+    }
+}
@@ -0,0 +1,92 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import dev.samstevens.totp.code.CodeGenerator;
+import dev.samstevens.totp.code.CodeVerifier;
+import dev.samstevens.totp.code.DefaultCodeGenerator;
+import dev.samstevens.totp.code.DefaultCodeVerifier;
+import dev.samstevens.totp.secret.DefaultSecretGenerator;
+import dev.samstevens.totp.time.SystemTimeProvider;
+import dev.samstevens.totp.time.TimeProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Current-code verification: the previous TotpService path (regex check +
+ * DefaultCodeVerifier, three HMACs per call) against TotpVerifier.
+ *
+ * A pool of students each present their current code, as at a kiosk during
+ * the morning rush. Run with:
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="TotpVerifierBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TotpVerifierBenchmark {
+
+    @Param({"1", "500"})
+    public int students;
+
+    private final TimeProvider timeProvider = new SystemTimeProvider();
+    private final CodeGenerator codeGenerator = new DefaultCodeGenerator();
+    private final CodeVerifier defaultVerifier = new DefaultCodeVerifier(codeGenerator, timeProvider);
+
+    private TotpVerifier totpVerifier;
+    private String[] secrets;
+    private String[] validCodes;
+    private String[] wrongCodes;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        totpVerifier = new TotpVerifier(timeProvider, new SimpleMeterRegistry());
+        DefaultSecretGenerator secretGenerator = new DefaultSecretGenerator();
+
+        secrets = new String[students];
+        validCodes = new String[students];
+        wrongCodes = new String[students];
+
+        long period = Math.floorDiv(timeProvider.getTime(), TotpVerifier.PERIOD_SECONDS);
+        for (int i = 0; i < students; i++) {
+            secrets[i] = secretGenerator.generate();
+            validCodes[i] = codeGenerator.generate(secrets[i], period);
+            wrongCodes[i] = String.format("%06d", (Integer.parseInt(validCodes[i]) + 1) % 1_000_000);
+        }
+    }
+
+    private int nextStudent() {
+        int i = next;
+        next = (i + 1) % students;
+        return i;
+    }
+
+    @Benchmark
+    public boolean defaultVerifierValidCode() {
+        int i = nextStudent();
+        String code = validCodes[i].trim();
+        return code.matches("\\d{6}") && defaultVerifier.isValidCode(secrets[i], code);
+    }
+
+    @Benchmark
+    public boolean totpVerifierValidCode() {
+        int i = nextStudent();
+        return totpVerifier.verify(secrets[i], validCodes[i]) == TotpVerifier.Result.VALID;
+    }
+
+    @Benchmark
+    public boolean defaultVerifierWrongCode() {
+        int i = nextStudent();
+        String code = wrongCodes[i].trim();
+        return code.matches("\\d{6}") && defaultVerifier.isValidCode(secrets[i], code);
+    }
+
+    @Benchmark
+    public boolean totpVerifierWrongCode() {
+        int i = nextStudent();
+        return totpVerifier.verify(secrets[i], wrongCodes[i]) == TotpVerifier.Result.VALID;
+    }
+}
@@ -0,0 +1,151 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
+import Attendance.OjtAttendanceApplication.entity.AttendanceStatus;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.entity.TaskEntry;
+import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import Attendance.OjtAttendanceApplication.repository.TaskEntryRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * One weekly report PDF: a Monday-Saturday week of 8-hour days with four
+ * tasks each, as an intern would print it. The repositories are stubs
+ * answering from memory, so the time and allocation measured are the
+ * rendering's.
+ *
+ * logo=bundled uses static/images/concentrix-logo.png as shipped (which
+ * iText cannot decode, so the text logo is drawn); logo=png an image logo
+ * of about the same size, to cover the embedded-image path. Run with:
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="WeeklyReportBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WeeklyReportBenchmark {
+
+    private static final String ID_BADGE = "0417";
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 2, 3);
+    private static final LocalDate WEEK_START = FIRST_DAY.plusWeeks(5);
+
+    private static final String[] TASKS = {
+            "Reimaged and enrolled four replacement laptops for the night shift",
+            "Traced intermittent VPN drops on floor 3 to a misconfigured access point",
+            "Updated the asset inventory sheet with this week's hardware returns",
+            "Shadowed the network team during the switch firmware rollout and documented the steps",
+    };
+
+    @Param({"bundled", "png"})
+    public String logo;
+
+    private WeeklyReportService weeklyReportService;
+
+    @Setup
+    public void setUp() throws IOException {
+        Student student = new Student(ID_BADGE, "Maria Clara Santos", "Polytechnic University of the Philippines", 486.0);
+        student.setId(1L);
+
+        // Six weeks so far; the report is for the sixth
+        List<AttendanceRecord> records = new ArrayList<>();
+        for (LocalDate day = FIRST_DAY; !day.isAfter(WEEK_START.plusDays(5)); day = day.plusDays(1)) {
+            if (day.getDayOfWeek().getValue() <= 6) {
+                records.add(record(student, records.size() + 1L, day));
+            }
+        }
+        List<AttendanceRecord> week = records.stream()
+                .filter(record -> !record.getAttendanceDate().isBefore(WEEK_START))
+                .collect(Collectors.toList());
+        Map<AttendanceRecord, List<TaskEntry>> tasks = week.stream()
+                .collect(Collectors.toMap(record -> record, WeeklyReportBenchmark::tasks));
+
+        StudentRepository studentRepository = mock(StudentRepository.class, withSettings().stubOnly());
+        AttendanceRecordRepository attendanceRecordRepository = mock(AttendanceRecordRepository.class, withSettings().stubOnly());
+        TaskEntryRepository taskEntryRepository = mock(TaskEntryRepository.class, withSettings().stubOnly());
+
+        when(studentRepository.findByIdBadge(ID_BADGE)).thenReturn(Optional.of(student));
+        when(attendanceRecordRepository.findByStudentOrderByAttendanceDateDesc(student)).thenReturn(records);
+        // The service sorts the list it gets, so hand out a fresh one each time
+        when(attendanceRecordRepository.findByStudentAndDateRange(eq(student), any(), any()))
+                .thenAnswer(invocation -> new ArrayList<>(week));
+        when(attendanceRecordRepository.sumTotalMinutesByStudentAndDateRange(eq(student), any(), any()))
+                .thenReturn(records.size() * 480L);
+        when(taskEntryRepository.findByAttendanceRecordOrderByCompletedAtAsc(any()))
+                .thenAnswer(invocation -> tasks.getOrDefault(invocation.<AttendanceRecord>getArgument(0), List.of()));
+
+        weeklyReportService = new WeeklyReportService();
+        ReflectionTestUtils.setField(weeklyReportService, "studentRepository", studentRepository);
+        ReflectionTestUtils.setField(weeklyReportService, "attendanceRecordRepository", attendanceRecordRepository);
+        ReflectionTestUtils.setField(weeklyReportService, "taskEntryRepository", taskEntryRepository);
+        if ("png".equals(logo)) {
+            weeklyReportService.prepareTemplate(pngLogo());
+        } else {
+            weeklyReportService.prepareTemplate();
+        }
+    }
+
+    @Benchmark
+    public byte[] renderSixDayWeek() {
+        return weeklyReportService.generateWeeklyReportPDF(ID_BADGE, WEEK_START, WEEK_START.plusDays(6));
+    }
+
+    private static byte[] pngLogo() throws IOException {
+        BufferedImage image = new BufferedImage(600, 120, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        graphics.setColor(new Color(0, 51, 153));
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 80));
+        graphics.drawString("CONCENTRIX", 10, 95);
+        graphics.dispose();
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+
+    private static AttendanceRecord record(Student student, long id, LocalDate day) {
+        AttendanceRecord record = new AttendanceRecord(student, day.atTime(8, 0));
+        record.setId(id);
+        record.setTimeOut(day.atTime(17, 0));
+        record.setStatus(AttendanceStatus.TIMED_OUT);
+        record.setTotalMinutes(480);
+        record.setRegularMinutes(480);
+        record.setBreakDeducted(true);
+        return record;
+    }
+
+    private static List<TaskEntry> tasks(AttendanceRecord record) {
+        List<TaskEntry> tasks = new ArrayList<>();
+        LocalDateTime completedAt = record.getTimeIn().plusHours(1);
+        for (String task : TASKS) {
+            tasks.add(new TaskEntry(record, task, completedAt));
+            completedAt = completedAt.plusHours(2);
+        }
+        return tasks;
+    }
+}
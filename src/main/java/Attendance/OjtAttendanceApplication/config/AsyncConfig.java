@@ -0,0 +1,80 @@
+package Attendance.OjtAttendanceApplication.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Bounded executors for work that shouldn't run on request threads
+ */
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * TOTP enrollment QR rendering (ZXing + PNG encode). Small and bounded so
+     * onboarding a whole batch of interns can't take over the CPU; once the
+     * queue is full new renders are rejected instead of piling up.
+     */
+    @Bean(name = "qrCodeExecutor")
+    public ThreadPoolTaskExecutor qrCodeExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("qr-render-");
+        return executor;
+    }
+
+    /**
+     * Background recalculation jobs. One at a time: RecalculationJobService
+     * refuses to start a job while another is queued or running, and the
+     * small queue only has to hold jobs resumed at startup.
+     */
+    @Bean(name = "recalculationExecutor")
+    public ThreadPoolTaskExecutor recalculationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10);
+        executor.setThreadNamePrefix("recalc-job-");
+        return executor;
+    }
+
+    /**
+     * Report jobs (CSV, Excel, weekly PDF rendered to artifact files). Two
+     * workers, so month-end exports queue here instead of holding request
+     * threads that kiosk punches need; once the queue is full new jobs are
+     * rejected.
+     */
+    @Bean(name = "reportExecutor")
+    public ThreadPoolTaskExecutor reportExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(50);
+        executor.setThreadNamePrefix("report-job-");
+        return executor;
+    }
+
+    /**
+     * Weekly report PDFs of a cohort bundle, rendered side by side. Half the
+     * cores (at most four), so a Monday bundle for the whole cohort leaves
+     * room for kiosk punches.
+     */
+    @Bean(name = "reportRenderPool", destroyMethod = "shutdown")
+    public ForkJoinPool reportRenderPool() {
+        int parallelism = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        ClassLoader classLoader = AsyncConfig.class.getClassLoader();
+        ForkJoinPool.ForkJoinWorkerThreadFactory threads = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("report-render-" + thread.getPoolIndex());
+            // Workers otherwise get the system class loader, which can't see the packaged app's resources
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        };
+        return new ForkJoinPool(parallelism, threads, null, false);
+    }
+}
@@ -0,0 +1,66 @@
+package Attendance.OjtAttendanceApplication.config;
+
+import Attendance.OjtAttendanceApplication.service.HoursCalculationEngine;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Sets schedule_override_approved from the approval notes in tasks_completed
+ * on existing records.
+ *
+ * The stale record queries read the override flag instead of searching the
+ * notes; AttendanceRecord keeps it in step on every save from now on, but
+ * rows written before that still have it unset. Runs once, recorded in
+ * schema_migrations. calculation_inputs itself starts at 0 on existing rows,
+ * so they all count as stale until the first recalculation.
+ */
+@Component
+public class CalculationInputsMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(CalculationInputsMigration.class);
+
+    static final String MIGRATION_NAME = "schedule_override_approved_flag";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Depending on the EntityManagerFactory makes sure Hibernate has created the columns
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void migrate() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                "name VARCHAR(100) NOT NULL PRIMARY KEY, applied_at DATETIME NOT NULL)");
+
+        Integer applied = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM schema_migrations WHERE name = ?", Integer.class, MIGRATION_NAME);
+        if (applied != null && applied > 0) {
+            return;
+        }
+
+        String approved = String.join(" OR ", HoursCalculationEngine.SCHEDULE_OVERRIDE_MARKERS.stream()
+                .map(marker -> "tasks_completed LIKE ?").toList());
+        Object[] patterns = HoursCalculationEngine.SCHEDULE_OVERRIDE_MARKERS.stream()
+                .map(marker -> "%" + marker + "%").toArray();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            int records = jdbcTemplate.update("UPDATE attendance_records SET schedule_override_approved = " +
+                    "CASE WHEN tasks_completed IS NOT NULL AND (" + approved + ") THEN TRUE ELSE FALSE END",
+                    patterns);
+            logger.info("Set the schedule override flag on {} attendance records", records);
+
+            jdbcTemplate.update("INSERT INTO schema_migrations (name, applied_at) VALUES (?, NOW())", MIGRATION_NAME);
+        });
+    }
+}
@@ -0,0 +1,57 @@
+package Attendance.OjtAttendanceApplication.config;
+
+import Attendance.OjtAttendanceApplication.entity.HoursLedgerReason;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Opens the hours ledger with one OPENING_BALANCE entry per student holding
+ * the total accumulated before the ledger existed, so that from then on a
+ * student's entries add up to total_accumulated_minutes. Runs once,
+ * recorded in schema_migrations.
+ */
+@Component
+public class HoursLedgerMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(HoursLedgerMigration.class);
+
+    static final String MIGRATION_NAME = "hours_ledger_opening_balance";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Depending on the EntityManagerFactory makes sure Hibernate has created the table
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void migrate() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                "name VARCHAR(100) NOT NULL PRIMARY KEY, applied_at DATETIME NOT NULL)");
+
+        Integer applied = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM schema_migrations WHERE name = ?", Integer.class, MIGRATION_NAME);
+        if (applied != null && applied > 0) {
+            return;
+        }
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            int students = jdbcTemplate.update("INSERT INTO hours_ledger (student_id, delta_minutes, reason, created_at) " +
+                    "SELECT id, total_accumulated_minutes, ?, NOW() FROM students " +
+                    "WHERE total_accumulated_minutes <> 0", HoursLedgerReason.OPENING_BALANCE.name());
+            logger.info("Opened the hours ledger with the balances of {} students", students);
+
+            jdbcTemplate.update("INSERT INTO schema_migrations (name, applied_at) VALUES (?, NOW())", MIGRATION_NAME);
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package Attendance.OjtAttendanceApplication.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Backfills the whole-minute hour columns from the decimal *_hours columns
+ * they replaced.
+ *
+ * Hibernate adds the new columns as NOT NULL, so MySQL fills existing rows
+ * with 0 and they can't be told apart from real zero-hour sessions. The copy
+ * therefore runs once, recorded in schema_migrations, and only on a database
+ * that still has the old columns. The old columns are left in place
+ * (unmapped, NULL on new rows) and can be dropped once the data is checked.
+ */
+@Component
+public class HoursMinutesMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(HoursMinutesMigration.class);
+
+    static final String MIGRATION_NAME = "hours_to_minutes";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Depending on the EntityManagerFactory makes sure Hibernate has created the columns
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void migrate() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                "name VARCHAR(100) NOT NULL PRIMARY KEY, applied_at DATETIME NOT NULL)");
+
+        Integer applied = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM schema_migrations WHERE name = ?", Integer.class, MIGRATION_NAME);
+        if (applied != null && applied > 0) {
+            return;
+        }
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (hasColumn("attendance_records", "total_hours")) {
+                int records = jdbcTemplate.update("UPDATE attendance_records SET " +
+                        "total_minutes = ROUND(COALESCE(total_hours, 0) * 60), " +
+                        "regular_minutes = ROUND(COALESCE(regular_hours, 0) * 60), " +
+                        "overtime_minutes = ROUND(COALESCE(overtime_hours, 0) * 60), " +
+                        "undertime_minutes = ROUND(COALESCE(undertime_hours, 0) * 60)");
+                logger.info("Converted hours to minutes on {} attendance records", records);
+            }
+
+            if (hasColumn("students", "total_accumulated_hours")) {
+                int students = jdbcTemplate.update("UPDATE students SET " +
+                        "total_accumulated_minutes = ROUND(COALESCE(total_accumulated_hours, 0) * 60)");
+                logger.info("Converted accumulated hours to minutes for {} students", students);
+            }
+
+            jdbcTemplate.update("INSERT INTO schema_migrations (name, applied_at) VALUES (?, NOW())", MIGRATION_NAME);
+        });
+    }
+
+    private boolean hasColumn(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?",
+                Integer.class, table, column);
+        return count != null && count > 0;
+    }
+}
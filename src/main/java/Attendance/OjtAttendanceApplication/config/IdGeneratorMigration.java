@@ -0,0 +1,74 @@
+package Attendance.OjtAttendanceApplication.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Puts AUTO_INCREMENT back on the tables whose entities briefly took pooled
+ * IDs from the id_generators table.
+ *
+ * Fetching a block of table IDs needs a second pooled connection while the
+ * generator's lock is held, so under kiosk rush traffic it could stall the
+ * whole pool; those entities are back on IDENTITY. ddl-auto=update does not
+ * restore AUTO_INCREMENT on an existing column, so a database that ran the
+ * table IDs gets it back here (MySQL continues above the current MAX(id)),
+ * and the table's id_generators row is dropped. Runs once the schema is up
+ * and before any request or scheduled job can insert; it is a no-op when no
+ * such row is left.
+ */
+@Component
+public class IdGeneratorMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorMigration.class);
+
+    /** Entity tables, which were also the generators' sequence_name values */
+    static final List<String> TABLES = List.of(
+            "attendance_records",
+            "task_entries",
+            "admin_notifications",
+            "schedule_override_requests",
+            "outbox_events");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Depending on the EntityManagerFactory makes sure Hibernate has created the tables
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void migrate() {
+        // id_generators itself stays; the recalculation job tables still use it
+        List<String> migrated = jdbcTemplate.queryForList(
+                "SELECT sequence_name FROM id_generators WHERE sequence_name IN (" +
+                        String.join(", ", TABLES.stream().map(table -> "'" + table + "'").toList()) + ")",
+                String.class);
+
+        for (String table : migrated) {
+            // The other tables' foreign keys reference id; the column type itself doesn't change
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET FOREIGN_KEY_CHECKS = 0");
+                    try {
+                        statement.execute("ALTER TABLE " + table + " MODIFY id BIGINT NOT NULL AUTO_INCREMENT");
+                    } finally {
+                        statement.execute("SET FOREIGN_KEY_CHECKS = 1");
+                    }
+                }
+                return null;
+            });
+            jdbcTemplate.update("DELETE FROM id_generators WHERE sequence_name = ?", table);
+
+            logger.info("ID generation for {} moved back to AUTO_INCREMENT", table);
+        }
+    }
+}
@@ -5,8 +5,11 @@ import Attendance.OjtAttendanceApplication.entity.*;
 import Attendance.OjtAttendanceApplication.repository.AdminNotificationRepository;
 import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
 import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import Attendance.OjtAttendanceApplication.service.ActiveSessionRegistry;
 import Attendance.OjtAttendanceApplication.service.AttendanceService;
+import Attendance.OjtAttendanceApplication.service.BadgeDirectory;
 import Attendance.OjtAttendanceApplication.service.NotificationService;
+import Attendance.OjtAttendanceApplication.service.OutboxService;
 import Attendance.OjtAttendanceApplication.service.TaskService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,6 +49,15 @@ public class AdminController {
     @Autowired
     private AdminNotificationRepository adminNotificationRepository;
 
+    @Autowired
+    private BadgeDirectory badgeDirectory;
+
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    @Autowired
+    private OutboxService outboxService;
+
 
 
     @GetMapping("/notifications")
@@ -358,30 +370,24 @@ public class AdminController {
     @PostMapping("/students/bulk-schedule")
     public ResponseEntity<?> setBulkStudentSchedules(@Valid @RequestBody BulkScheduleRequest request) {
         try {
-            List<ScheduleResponse> responses = new ArrayList<>();
-
-            for (Long studentId : request.getStudentIds()) {
-                UpdateScheduleRequest scheduleRequest = new UpdateScheduleRequest(
-                        request.getStartTime(),
-                        request.getEndTime(),
-                        request.getGracePeriodMinutes(),
-                        request.getActive()
-                );
-
-                try {
-                    ScheduleResponse response = attendanceService.updateStudentSchedule(studentId, scheduleRequest);
-                    responses.add(response);
-                } catch (Exception e) {
-                    // Log error but continue with other students
-                    System.err.println("Failed to update schedule for student ID " + studentId + ": " + e.getMessage());
-                }
-            }
+            UpdateScheduleRequest scheduleRequest = new UpdateScheduleRequest(
+                    request.getStartTime(),
+                    request.getEndTime(),
+                    request.getGracePeriodMinutes(),
+                    request.getActive()
+            );
 
+            BulkScheduleResult result =
+                    attendanceService.updateStudentSchedules(request.getStudentIds(), scheduleRequest);
+
+            // skipped: student id -> why its schedule was not updated
             return ResponseEntity.ok(Map.of(
                     "message", "Bulk schedule update completed",
-                    "updatedCount", responses.size(),
+                    "updatedCount", result.getSchedules().size(),
                     "totalRequested", request.getStudentIds().size(),
-                    "schedules", responses
+                    "skippedCount", result.getSkipped().size(),
+                    "skipped", result.getSkipped(),
+                    "schedules", result.getSchedules()
             ));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
@@ -429,9 +435,8 @@ public class AdminController {
             List<LateArrivalDto> lateArrivals = new ArrayList<>();
 
             for (AttendanceRecordDto record : todayRecords) {
-                Optional<Student> studentOpt = studentRepository.findByIdBadge(record.getIdBadge());
-                if (studentOpt.isPresent()) {
-                    Student student = studentOpt.get();
+                BadgeDirectory.BadgeSnapshot student = badgeDirectory.lookup(record.getIdBadge());
+                if (student != null) {
                     if (student.hasActiveSchedule() && record.getTimeIn() != null) {
                         LocalTime arrivalTime = record.getTimeIn().toLocalTime();
                         if (student.isLateArrival(arrivalTime)) {
@@ -474,9 +479,8 @@ public class AdminController {
             List<ScheduleViolationDto> violations = new ArrayList<>();
 
             for (AttendanceRecordDto record : records) {
-                Optional<Student> studentOpt = studentRepository.findByIdBadge(record.getIdBadge());
-                if (studentOpt.isPresent()) {
-                    Student student = studentOpt.get();
+                BadgeDirectory.BadgeSnapshot student = badgeDirectory.lookup(record.getIdBadge());
+                if (student != null) {
                     if (student.hasActiveSchedule()) {
                         ScheduleViolationDto violation = analyzeScheduleViolation(student, record);
                         if (violation != null) {
@@ -493,7 +497,7 @@ public class AdminController {
     }
 
     // HELPER METHODS
-    private ScheduleViolationDto analyzeScheduleViolation(Student student, AttendanceRecordDto record) {
+    private ScheduleViolationDto analyzeScheduleViolation(BadgeDirectory.BadgeSnapshot student, AttendanceRecordDto record) {
         if (record.getTimeIn() == null) return null;
 
         LocalTime arrivalTime = record.getTimeIn().toLocalTime();
@@ -699,9 +703,12 @@ public class AdminController {
     @GetMapping("/attendance/active-sessions")
     public ResponseEntity<?> getActiveSessions() {
         try {
-            List<AttendanceRecord> activeRecords = attendanceRecordRepository.findAllTimedInRecords();
+            List<AttendanceRecord> activeRecords = attendanceRecordRepository
+                    .findAllById(activeSessionRegistry.openRecordIds());
 
             List<AttendanceRecordDto> recordDtos = activeRecords.stream()
+                    .filter(record -> record.getStatus() == AttendanceStatus.TIMED_IN)
+                    .sorted(Comparator.comparing(AttendanceRecord::getTimeIn))
                     .map(this::convertToDto)
                     .collect(Collectors.toList());
 
@@ -711,6 +718,43 @@ public class AdminController {
         }
     }
 
+    /**
+     * Compare the in-memory active session registry with the attendance table and repair drift
+     */
+    @GetMapping("/attendance/active-sessions/consistency")
+    public ResponseEntity<?> checkActiveSessionConsistency() {
+        try {
+            return ResponseEntity.ok(activeSessionRegistry.reconcile());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Background side-effect queue: pending/failed counts and recent failures
+     */
+    @GetMapping("/outbox")
+    public ResponseEntity<?> getOutboxStatus() {
+        try {
+            return ResponseEntity.ok(outboxService.getStatus());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/outbox/{eventId}/retry")
+    public ResponseEntity<?> retryOutboxEvent(@PathVariable Long eventId) {
+        try {
+            outboxService.retry(eventId);
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "message", "Outbox event queued for retry"
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
     private AttendanceRecordDto convertToDto(AttendanceRecord record) {
         AttendanceRecordDto dto = new AttendanceRecordDto();
         dto.setId(record.getId());
@@ -719,10 +763,10 @@ public class AdminController {
         dto.setAttendanceDate(record.getAttendanceDate());
         dto.setTimeIn(record.getTimeIn());
         dto.setTimeOut(record.getTimeOut());
-        dto.setTotalHours(record.getTotalHours());
-        dto.setRegularHours(record.getRegularHours());
-        dto.setOvertimeHours(record.getOvertimeHours());
-        dto.setUndertimeHours(record.getUndertimeHours());
+        dto.setTotalHours(HoursConverter.toHours(record.getTotalMinutes()));
+        dto.setRegularHours(HoursConverter.toHours(record.getRegularMinutes()));
+        dto.setOvertimeHours(HoursConverter.toHours(record.getOvertimeMinutes()));
+        dto.setUndertimeHours(HoursConverter.toHours(record.getUndertimeMinutes()));
         dto.setTasksCompleted(record.getTasksCompleted());
         dto.setStatus(record.getStatus().name());
         dto.setBreakDeducted(record.getBreakDeducted());
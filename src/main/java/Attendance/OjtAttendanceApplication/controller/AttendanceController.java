@@ -4,10 +4,15 @@ import Attendance.OjtAttendanceApplication.dto.AttendanceRequest;
 import Attendance.OjtAttendanceApplication.dto.AttendanceRequestWithTOTP;
 import Attendance.OjtAttendanceApplication.dto.AttendanceResponse;
 import Attendance.OjtAttendanceApplication.dto.AttendanceSessionInfo;
-import Attendance.OjtAttendanceApplication.entity.Student;
-import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import Attendance.OjtAttendanceApplication.dto.KioskPunchContext;
+import Attendance.OjtAttendanceApplication.dto.PunchBatchRequest;
+import Attendance.OjtAttendanceApplication.dto.PunchEventResult;
 import Attendance.OjtAttendanceApplication.service.AttendanceService;
+import Attendance.OjtAttendanceApplication.service.BadgeDirectory;
+import Attendance.OjtAttendanceApplication.service.PunchBatchService;
+import Attendance.OjtAttendanceApplication.service.PunchSerializer;
 import Attendance.OjtAttendanceApplication.service.TotpService;
+import Attendance.OjtAttendanceApplication.service.TotpVerifier;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -18,6 +23,7 @@ import org.springframework.web.ErrorResponse;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -32,7 +38,13 @@ public class AttendanceController {
     private TotpService totpService;
 
     @Autowired
-    private StudentRepository studentRepository;
+    private BadgeDirectory badgeDirectory;
+
+    @Autowired
+    private PunchSerializer punchSerializer;
+
+    @Autowired
+    private PunchBatchService punchBatchService;
 
     /**
      * NEW: Log attendance with TOTP authentication (SECURE)
@@ -40,34 +52,46 @@ public class AttendanceController {
     @PostMapping("/log-with-totp")
     public ResponseEntity<?> logAttendanceWithTotp(@Valid @RequestBody AttendanceRequestWithTOTP request) {
         try {
-            // Find student
-            Student student = studentRepository.findByIdBadge(request.getIdBadge())
-                    .orElseThrow(() -> new RuntimeException("Student not found with ID badge: " + request.getIdBadge()));
+            // Reject unknown badges and missing TOTP setup without touching the database
+            BadgeDirectory.BadgeSnapshot badge = requireKnownBadge(request.getIdBadge());
 
-            // Check if TOTP is set up
-            if (student.getTotpSecret() == null || student.getTotpSecret().isEmpty()) {
+            if (!badge.isTotpConfigured()) {
                 throw new RuntimeException("TOTP not set up. Please complete TOTP setup first.");
             }
 
-            // Verify TOTP code
-            boolean isValidCode = totpService.verifyCode(student.getTotpSecret(), request.getTotpCode());
+            // One punch per badge at a time; a repeated tap with the same code gets the first response
+            AttendanceResponse response = punchSerializer.punch(request.getIdBadge(), request.getTotpCode(), () -> {
+                // Resolve student, TOTP secret and session state in one lookup
+                KioskPunchContext context = attendanceService.resolveKioskContext(request.getIdBadge());
 
-            if (!isValidCode) {
-                throw new RuntimeException("Invalid TOTP code. Please check your Google Authenticator app and try again.");
-            }
+                // Verify TOTP code; each code can be used for one successful punch only
+                TotpVerifier.Verification verification = totpService.verifyAttendanceCode(
+                        request.getIdBadge(), context.getTotpSecret(), request.getTotpCode());
 
-            // If TOTP is valid but not yet enabled, enable it now
-            if (student.getTotpEnabled() == null || !student.getTotpEnabled()) {
-                student.setTotpEnabled(true);
-                studentRepository.save(student);
-            }
+                if (verification.getResult() == TotpVerifier.Result.REPLAYED) {
+                    throw new RuntimeException("This TOTP code has already been used. Please wait for the next code in your authenticator app.");
+                }
+
+                if (verification.getResult() != TotpVerifier.Result.VALID) {
+                    throw new RuntimeException("Invalid TOTP code. Please check your Google Authenticator app and try again.");
+                }
+
+                // If TOTP is valid but not yet enabled, enable it now
+                if (!context.isTotpActive()) {
+                    attendanceService.enableTotp(context);
+                }
 
-            // Process attendance using existing service
-            AttendanceRequest attendanceRequest = new AttendanceRequest();
-            attendanceRequest.setIdBadge(request.getIdBadge());
-            attendanceRequest.setTasksCompleted(request.getTasksCompleted());
+                // Process attendance using existing service
+                AttendanceRequest attendanceRequest = new AttendanceRequest();
+                attendanceRequest.setIdBadge(request.getIdBadge());
+                attendanceRequest.setTasksCompleted(request.getTasksCompleted());
 
-            AttendanceResponse response = attendanceService.processAttendance(attendanceRequest);
+                AttendanceResponse punched = attendanceService.processAttendance(attendanceRequest, context);
+
+                // Only now is the code used up; a rejected punch can be retried with it
+                totpService.acceptAttendanceCode(request.getIdBadge(), verification);
+                return punched;
+            });
             return ResponseEntity.ok(response);
 
         } catch (Exception e) {
@@ -75,6 +99,30 @@ public class AttendanceController {
         }
     }
 
+    /**
+     * Punches a kiosk buffered while offline, flushed in one request. Events
+     * are applied oldest first with the same rules as /log-with-totp, at
+     * their recorded punch time, and each gets its own result. Events from a
+     * kiosk with a signing key must carry its signature; without one, only
+     * recent time-ins are accepted.
+     */
+    @PostMapping("/punches/batch")
+    public ResponseEntity<?> logPunchBatch(@Valid @RequestBody PunchBatchRequest request) {
+        try {
+            List<PunchEventResult> results = punchBatchService.ingest(request);
+            long applied = results.stream().filter(PunchEventResult::isSuccess).count();
+
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "applied", applied,
+                    "rejected", results.size() - applied,
+                    "results", results
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
     /**
      * LEGACY: Log attendance without TOTP (for backward compatibility during migration)
      * TODO: Remove this endpoint after all students have TOTP enabled
@@ -83,14 +131,22 @@ public class AttendanceController {
     public ResponseEntity<?> logAttendance(@Valid @RequestBody AttendanceRequest request) {
         try {
             // Check if student has TOTP enabled
-            Student student = studentRepository.findByIdBadge(request.getIdBadge())
-                    .orElseThrow(() -> new RuntimeException("Student not found with ID badge: " + request.getIdBadge()));
+            BadgeDirectory.BadgeSnapshot badge = requireKnownBadge(request.getIdBadge());
 
-            if (student.getTotpEnabled() != null && student.getTotpEnabled()) {
+            if (badge.isTotpEnabled()) {
                 throw new RuntimeException("TOTP is enabled for this student. Please use /log-with-totp endpoint and provide TOTP code.");
             }
 
-            AttendanceResponse response = attendanceService.processAttendance(request);
+            AttendanceResponse response = punchSerializer.punch(request.getIdBadge(), () -> {
+                // The directory may lag an in-flight TOTP change; the resolved row is authoritative
+                KioskPunchContext context = attendanceService.resolveKioskContext(request.getIdBadge());
+
+                if (context.isTotpActive()) {
+                    throw new RuntimeException("TOTP is enabled for this student. Please use /log-with-totp endpoint and provide TOTP code.");
+                }
+
+                return attendanceService.processAttendance(request, context);
+            });
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
@@ -138,6 +194,20 @@ public class AttendanceController {
         }
     }
 
+    private BadgeDirectory.BadgeSnapshot requireKnownBadge(String idBadge) {
+        BadgeDirectory.BadgeSnapshot badge = badgeDirectory.lookup(idBadge);
+
+        if (badge == null) {
+            throw new RuntimeException("Student not found with ID badge: " + idBadge);
+        }
+
+        if (!badge.isActive()) {
+            throw new RuntimeException("Only active students can log attendance. Current status: " + badge.getStatus());
+        }
+
+        return badge;
+    }
+
     private ErrorResponse createErrorResponse(String message) {
         return new ErrorResponse() {
             @Override
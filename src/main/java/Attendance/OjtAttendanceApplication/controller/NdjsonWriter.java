@@ -0,0 +1,75 @@
+package Attendance.OjtAttendanceApplication.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Writes result lines as newline-delimited JSON (one object per line) into a
+ * fixed-size buffer over the response stream. Lines reach the client when
+ * the buffer fills and whenever a "student" or final line is written, so an
+ * admin page can render results while they are still being computed.
+ */
+final class NdjsonWriter implements Consumer<Map<String, Object>> {
+
+    static final MediaType MEDIA_TYPE = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final ObjectWriter writer;
+    private final OutputStream out;
+
+    private NdjsonWriter(ObjectMapper objectMapper, OutputStream out) {
+        this.writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    /**
+     * A streamed response that runs the producer off the request thread. A
+     * failure after the first line can no longer change the status, so it is
+     * reported as a last "error" line.
+     */
+    static ResponseEntity<StreamingResponseBody> stream(ObjectMapper objectMapper,
+                                                        Consumer<Consumer<Map<String, Object>>> producer) {
+        StreamingResponseBody body = out -> {
+            NdjsonWriter lines = new NdjsonWriter(objectMapper, out);
+            try {
+                producer.accept(lines);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                lines.accept(Map.of("type", "error", "message", String.valueOf(e.getMessage())));
+            }
+            lines.out.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MEDIA_TYPE)
+                .header("X-Accel-Buffering", "no")
+                .body(body);
+    }
+
+    @Override
+    public void accept(Map<String, Object> line) {
+        try {
+            writer.writeValue(out, line);
+            out.write('\n');
+            if (!"record".equals(line.get("type"))) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client went away; stop the producer
+            throw new UncheckedIOException(e);
+        }
+    }
+}
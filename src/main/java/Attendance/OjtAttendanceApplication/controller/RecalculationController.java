@@ -1,6 +1,12 @@
 package Attendance.OjtAttendanceApplication.controller;
 
+import Attendance.OjtAttendanceApplication.entity.RecalculationJob;
+import Attendance.OjtAttendanceApplication.service.BatchRecalculationService;
+import Attendance.OjtAttendanceApplication.service.HoursLedgerAuditor;
+import Attendance.OjtAttendanceApplication.service.HoursLedgerService;
+import Attendance.OjtAttendanceApplication.service.RecalculationJobService;
 import Attendance.OjtAttendanceApplication.service.RecalculationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ProblemDetail;
@@ -8,6 +14,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.ErrorResponse;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.Map;
 
 @RestController
@@ -18,12 +25,33 @@ public class RecalculationController {
     @Autowired
     private RecalculationService recalculationService;
 
+    @Autowired
+    private BatchRecalculationService batchRecalculationService;
+
+    @Autowired
+    private RecalculationJobService recalculationJobService;
+
+    @Autowired
+    private HoursLedgerService hoursLedgerService;
+
+    @Autowired
+    private HoursLedgerAuditor hoursLedgerAuditor;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Recalculate ALL attendance records and student totals
      * WARNING: This is a heavy operation - use with caution
+     * Starts a background job (see /jobs/{jobId}); with batch=true records are instead
+     * recalculated in bulk right away, without per-record change details; the run is listed
+     * with the jobs and, like a job, refused while another is queued or running. With
+     * incremental=true only records whose calculation inputs changed are recalculated
      */
     @PostMapping("/recalculate-all")
-    public ResponseEntity<?> recalculateAll(@RequestParam(required = false) Boolean confirm) {
+    public ResponseEntity<?> recalculateAll(@RequestParam(required = false) Boolean confirm,
+                                            @RequestParam(defaultValue = "false") boolean batch,
+                                            @RequestParam(defaultValue = "false") boolean incremental) {
         try {
             if (!Boolean.TRUE.equals(confirm)) {
                 return ResponseEntity.ok(Map.of(
@@ -33,8 +61,113 @@ public class RecalculationController {
                 ));
             }
 
-            Map<String, Object> result = recalculationService.recalculateAllRecords();
-            return ResponseEntity.ok(result);
+            if (batch) {
+                return ResponseEntity.ok(batchRecalculationService.recalculateAllRecords());
+            }
+
+            RecalculationJob job = recalculationJobService.startJob(incremental);
+            return ResponseEntity.accepted().body(Map.of(
+                    "success", true,
+                    "message", incremental ? "Incremental recalculation job started" : "Recalculation job started",
+                    "jobId", job.getId(),
+                    "status", job.getStatus().name(),
+                    "statusUrl", "/api/admin/recalculation/jobs/" + job.getId()
+            ));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Recent recalculation jobs, newest first
+     */
+    @GetMapping("/jobs")
+    public ResponseEntity<?> getRecentJobs() {
+        try {
+            return ResponseEntity.ok(Map.of("success", true, "jobs", recalculationJobService.getRecentJobs()));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Progress of a recalculation job (records/sec and ETA while it runs)
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getJobProgress(@PathVariable Long jobId) {
+        try {
+            Map<String, Object> progress = new HashMap<>(recalculationJobService.getJobProgress(jobId));
+            progress.put("success", true);
+            return ResponseEntity.ok(progress);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Student totals changed by a recalculation job, page by page
+     */
+    @GetMapping("/jobs/{jobId}/changes")
+    public ResponseEntity<?> getJobChanges(@PathVariable Long jobId,
+                                           @RequestParam(defaultValue = "0") int page,
+                                           @RequestParam(defaultValue = "50") int size) {
+        try {
+            return ResponseEntity.ok(recalculationJobService.getJobChanges(jobId, page, Math.min(size, 500)));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * The same changes as NDJSON, streamed: one line per changed record and
+     * per student, then a line with the job's progress
+     */
+    @GetMapping("/jobs/{jobId}/changes/stream")
+    public ResponseEntity<?> streamJobChanges(@PathVariable Long jobId) {
+        try {
+            recalculationJobService.getJobProgress(jobId);
+            return NdjsonWriter.stream(objectMapper, out -> recalculationJobService.streamJobChanges(jobId, out));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Stop a running job after its current chunk
+     */
+    @PostMapping("/jobs/{jobId}/cancel")
+    public ResponseEntity<?> cancelJob(@PathVariable Long jobId) {
+        try {
+            RecalculationJob job = recalculationJobService.cancelJob(jobId);
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "message", "Cancel requested, the job stops after its current chunk",
+                    "jobId", job.getId()
+            ));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Continue a failed or cancelled job from its checkpoint
+     */
+    @PostMapping("/jobs/{jobId}/resume")
+    public ResponseEntity<?> resumeJob(@PathVariable Long jobId) {
+        try {
+            RecalculationJob job = recalculationJobService.resumeJob(jobId);
+            return ResponseEntity.accepted().body(Map.of(
+                    "success", true,
+                    "message", "Recalculation job resumed",
+                    "jobId", job.getId(),
+                    "statusUrl", "/api/admin/recalculation/jobs/" + job.getId()
+            ));
 
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
@@ -83,6 +216,15 @@ public class RecalculationController {
         }
     }
 
+    /**
+     * Preview as NDJSON, streamed while it runs: one line per record that
+     * would change, one per student, then a summary line
+     */
+    @GetMapping("/preview-recalculation/stream")
+    public ResponseEntity<?> streamPreviewRecalculation() {
+        return NdjsonWriter.stream(objectMapper, recalculationService::streamPreview);
+    }
+
     /**
      * Get recalculation statistics
      */
@@ -97,6 +239,59 @@ public class RecalculationController {
         }
     }
 
+    /**
+     * Result of the last hours audit (student totals against their records
+     * and the hours ledger)
+     */
+    @GetMapping("/ledger/audit")
+    public ResponseEntity<?> getLastLedgerAudit() {
+        try {
+            Map<String, Object> audit = hoursLedgerAuditor.getLastAudit();
+            if (audit == null) {
+                return ResponseEntity.ok(Map.of("success", true, "message", "No audit has run yet"));
+            }
+            Map<String, Object> result = new HashMap<>(audit);
+            result.put("success", true);
+            return ResponseEntity.ok(result);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Run the hours audit now; with repair=true drifting totals are moved onto their records
+     */
+    @PostMapping("/ledger/audit")
+    public ResponseEntity<?> runLedgerAudit(@RequestParam(defaultValue = "false") boolean repair) {
+        try {
+            Map<String, Object> result = new HashMap<>(hoursLedgerAuditor.audit(repair));
+            result.put("success", true);
+            return ResponseEntity.ok(result);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * A student's most recent hours ledger entries, newest first
+     */
+    @GetMapping("/ledger/students/{studentId}")
+    public ResponseEntity<?> getStudentLedger(@PathVariable Long studentId,
+                                              @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "studentId", studentId,
+                    "entries", hoursLedgerService.getRecentEntries(studentId, Math.min(limit, 500))
+            ));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
     private ErrorResponse createErrorResponse(String message) {
         return new ErrorResponse() {
             @Override
@@ -111,19 +306,14 @@ public class RecalculationController {
         };
     }
 
-    /* This is for update task with request approved
-
-    // check if the record has a task with approved text
-    SELECT id, time_in, time_out, total_hours, status, tasks_completed
-    FROM attendance_records
-    WHERE id = 94;
+    /* Approving a schedule override for an existing record: use the review endpoint,
+    POST /api/schedule-override/admin/review/{requestId} with action APPROVE
+    (ScheduleOverrideService.reviewRequest). It appends the approval note through the
+    entity, so AttendanceRecord.beforeWrite sets schedule_override_approved and the
+    record's inputs fingerprint goes stale, and it queues the recalculation.
 
-    // Update the task to ensure for the correct recalculation
-    UPDATE attendance_records
-    SET tasks_completed = CONCAT(
-        tasks_completed,
-        '\n\n[ADMIN APPROVED SCHEDULE OVERRIDE: Early work hours will be counted for this session]'
-    )
-    WHERE id = 94;
+    Don't append the note with a raw UPDATE attendance_records: that skips beforeWrite,
+    schedule_override_approved stays false, and neither the incremental recalculation
+    job nor its preview will ever pick the record up.
      */
-}
\ No newline at end of file
+}
@@ -1,52 +1,87 @@
 package Attendance.OjtAttendanceApplication.controller;
 
+import Attendance.OjtAttendanceApplication.dto.ReportJob;
+import Attendance.OjtAttendanceApplication.dto.ReportJobStatus;
+import Attendance.OjtAttendanceApplication.dto.ReportType;
+import Attendance.OjtAttendanceApplication.service.ReportJobService;
 import Attendance.OjtAttendanceApplication.service.ReportService;
+import Attendance.OjtAttendanceApplication.service.WeeklyReportBundleService;
 import Attendance.OjtAttendanceApplication.service.WeeklyReportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.web.ErrorResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/reports")
 @CrossOrigin(origins = "*")
 public class ReportController {
 
+    // Request attributes of Tomcat's sendfile support (the file is written by the connector, not through the JVM heap)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private ReportService reportService;
 
     @Autowired
     private WeeklyReportService weeklyReportService;
 
+    @Autowired
+    private WeeklyReportBundleService weeklyReportBundleService;
+
+    @Autowired
+    private ReportJobService reportJobService;
+
+    /**
+     * The CSV is written while the records are read (see ReportService.writeCSVReport)
+     */
     @GetMapping("/csv")
     public ResponseEntity<?> generateCSVReport(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
         try {
-            String csvContent = reportService.generateCSVReport(startDate, endDate);
+            StreamingResponseBody body = out -> reportService.writeCSVReport(startDate, endDate, out);
 
             HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType("text/csv"));
+            headers.setContentType(new MediaType("text", "csv", StandardCharsets.UTF_8));
             headers.setContentDispositionFormData("attachment", "attendance-report.csv");
 
             return ResponseEntity.ok()
                     .headers(headers)
-                    .body(csvContent);
+                    .body(body);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
         }
     }
 
+    /**
+     * The workbook is written straight to the response (see ReportService.writeExcelReport)
+     */
     @GetMapping("/excel")
     public ResponseEntity<?> generateExcelReport(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
         try {
-            byte[] excelContent = reportService.generateExcelReport(startDate, endDate);
+            StreamingResponseBody body = out -> reportService.writeExcelReport(startDate, endDate, out);
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
@@ -54,7 +89,7 @@ public class ReportController {
 
             return ResponseEntity.ok()
                     .headers(headers)
-                    .body(excelContent);
+                    .body(body);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
         }
@@ -147,6 +182,160 @@ public class ReportController {
         return generateWeeklyReport(idBadge, startOfWeek, endOfWeek);
     }
 
+    /**
+     * Every active student's weekly report for the week containing weekStart,
+     * as a ZIP of PDFs streamed while they are rendered. Optionally only one
+     * school, or students whose active schedule starts at scheduledStartTime.
+     */
+    @GetMapping("/weekly-pdf/cohort")
+    public ResponseEntity<?> generateCohortWeeklyReports(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate weekStart,
+            @RequestParam(required = false) String school,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime scheduledStartTime) {
+        try {
+            // Queries run here, so a bad week or empty cohort is still a 400
+            WeeklyReportBundleService.CohortWeek week =
+                    weeklyReportBundleService.loadCohortWeek(weekStart, school, scheduledStartTime);
+            StreamingResponseBody body = out -> weeklyReportBundleService.writeBundle(week, out);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType("application/zip"));
+            headers.setContentDispositionFormData("attachment", week.getDownloadName());
+
+            return ResponseEntity.ok()
+                    .headers(headers)
+                    .body(body);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    // ==================== REPORT JOBS ====================
+
+    /**
+     * Queue a report (type csv, excel or weekly-pdf; weekly-pdf needs idBadge).
+     * An identical request for unchanged data gets the existing job.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitReportJob(
+            @RequestParam String type,
+            @RequestParam(required = false) String idBadge,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        try {
+            ReportJob job = reportJobService.submit(ReportType.parse(type), idBadge, startDate, endDate);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("jobId", job.getId());
+            response.put("status", job.getStatus().name());
+            response.put("statusUrl", "/api/reports/jobs/" + job.getId());
+            response.put("downloadUrl", "/api/reports/jobs/" + job.getId() + "/download");
+            return ResponseEntity.accepted().body(response);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Report jobs still held (finished ones until their retention ends), newest first
+     */
+    @GetMapping("/jobs")
+    public ResponseEntity<?> getRecentReportJobs() {
+        try {
+            return ResponseEntity.ok(Map.of("success", true, "jobs", reportJobService.getRecentJobs()));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Status and progress (rows written) of a report job
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getReportJob(@PathVariable Long jobId) {
+        try {
+            Map<String, Object> progress = new HashMap<>(reportJobService.getJobProgress(jobId));
+            progress.put("success", true);
+            return ResponseEntity.ok(progress);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * The finished report. Honours a Range header, so interrupted downloads
+     * can resume. Under Tomcat a whole file or single range is handed to the
+     * connector's sendfile; otherwise Spring streams the file resource.
+     */
+    @GetMapping("/jobs/{jobId}/download")
+    public ResponseEntity<?> downloadReportJob(@PathVariable Long jobId,
+                                               HttpServletRequest request, HttpServletResponse response) {
+        try {
+            ReportJob job = reportJobService.getJob(jobId);
+            if (job.getStatus() != ReportJobStatus.COMPLETED) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(reportJobService.getJobProgress(jobId));
+            }
+            Path artifact = reportJobService.getArtifact(jobId);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType(job.getType().getContentType()));
+            headers.setContentDisposition(ContentDisposition.attachment().filename(job.getDownloadName()).build());
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+            List<HttpRange> ranges = HttpRange.parseRanges(request.getHeader(HttpHeaders.RANGE));
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED)) && ranges.size() <= 1) {
+                sendFile(artifact, ranges, headers, request, response);
+                return null;
+            }
+
+            return ResponseEntity.ok()
+                    .headers(headers)
+                    .body(new FileSystemResource(artifact));
+
+        } catch (IllegalArgumentException e) {
+            // Malformed Range header
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    private static void sendFile(Path artifact, List<HttpRange> ranges, HttpHeaders headers,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = Files.size(artifact);
+        long start = 0;
+        long end = length - 1;
+
+        if (!ranges.isEmpty()) {
+            HttpRange range = ranges.get(0);
+            if (length == 0 || range.getRangeStart(length) >= length) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        } else {
+            response.setStatus(HttpStatus.OK.value());
+        }
+
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        response.setContentLengthLong(end - start + 1);
+
+        if (end >= start) {
+            request.setAttribute(SENDFILE_FILENAME, artifact.toString());
+            request.setAttribute(SENDFILE_START, start);
+            // Exclusive
+            request.setAttribute(SENDFILE_END, end + 1);
+        }
+    }
+
     private ErrorResponse createErrorResponse(String message) {
         return new ErrorResponse() {
             @Override
@@ -2,6 +2,7 @@ package Attendance.OjtAttendanceApplication.controller;
 
 import Attendance.OjtAttendanceApplication.dto.*;
 import Attendance.OjtAttendanceApplication.service.AttendanceService;
+import Attendance.OjtAttendanceApplication.service.BadgeDirectory;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatusCode;
@@ -20,6 +21,9 @@ public class StudentController {
     @Autowired
     private AttendanceService attendanceService;
 
+    @Autowired
+    private BadgeDirectory badgeDirectory;
+
     // EXISTING REGISTRATION ENDPOINT (backward compatibility)
     @PostMapping("/register")
     public ResponseEntity<?> registerStudent(@Valid @RequestBody StudentRegistrationRequest request) {
@@ -101,10 +105,7 @@ public class StudentController {
     @GetMapping("/check-badge/{idBadge}")
     public ResponseEntity<?> checkBadgeAvailability(@PathVariable String idBadge) {
         try {
-            // This will be implemented to check if a badge is available for use
-            boolean isAvailable = attendanceService.getAllStudents().stream()
-                    .noneMatch(student -> idBadge.equals(student.getIdBadge()) &&
-                            "ACTIVE".equals(student.getStatus()));
+            boolean isAvailable = badgeDirectory.isAvailable(idBadge);
 
             BadgeAvailabilityResponse response = new BadgeAvailabilityResponse();
             response.setIdBadge(idBadge);
@@ -5,9 +5,12 @@ import Attendance.OjtAttendanceApplication.entity.NotificationType;
 import Attendance.OjtAttendanceApplication.entity.Student;
 import Attendance.OjtAttendanceApplication.repository.AdminNotificationRepository;
 import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import Attendance.OjtAttendanceApplication.service.BadgeDirectory;
 import Attendance.OjtAttendanceApplication.service.TotpService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.ErrorResponse;
@@ -15,6 +18,9 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 @RestController
 @RequestMapping("/api/totp")
@@ -27,6 +33,9 @@ public class TotpController {
     @Autowired
     private StudentRepository studentRepository;
 
+    @Autowired
+    private BadgeDirectory badgeDirectory;
+
     /**
      * Check TOTP status for a student by ID badge
      * Returns whether TOTP is enabled and if setup is required
@@ -34,16 +43,18 @@ public class TotpController {
     @GetMapping("/status/{idBadge}")
     public ResponseEntity<?> getTotpStatus(@PathVariable String idBadge) {
         try {
-            Student student = studentRepository.findByIdBadge(idBadge)
-                    .orElseThrow(() -> new RuntimeException("Student not found with ID badge: " + idBadge));
+            BadgeDirectory.BadgeSnapshot badge = badgeDirectory.lookup(idBadge);
+            if (badge == null) {
+                throw new RuntimeException("Student not found with ID badge: " + idBadge);
+            }
 
             Map<String, Object> response = new HashMap<>();
-            response.put("idBadge", student.getIdBadge());
-            response.put("studentName", student.getFullName());
-            response.put("totpEnabled", student.getTotpEnabled() != null && student.getTotpEnabled());
-            response.put("requiresSetup", student.getTotpSecret() == null || student.getTotpSecret().isEmpty());
+            response.put("idBadge", badge.getIdBadge());
+            response.put("studentName", badge.getFullName());
+            response.put("totpEnabled", badge.isTotpEnabled());
+            response.put("requiresSetup", !badge.isTotpConfigured());
 
-            if (student.getTotpEnabled() != null && student.getTotpEnabled()) {
+            if (badge.isTotpEnabled()) {
                 response.put("message", "TOTP is enabled. Enter your 6-digit code from Google Authenticator.");
             } else {
                 response.put("message", "First time setup required. Please scan the QR code with Google Authenticator.");
@@ -67,23 +78,21 @@ public class TotpController {
 
             // Generate new secret
             String secret = totpService.generateSecret();
-
-            // Generate QR code
-            String qrCodeDataUrl = totpService.generateQrCodeDataUrl(
-                    secret,
-                    student.getFullName(),
-                    student.getIdBadge()
-            );
+            totpService.forgetQrCode(student.getTotpSecret());
 
             // Save secret but don't enable TOTP yet (will enable after first successful validation)
             student.setTotpSecret(secret);
             student.setTotpEnabled(false);
             studentRepository.save(student);
+            badgeDirectory.put(student);
+
+            // Start rendering the QR code in the background; the client loads it from qrCodeUrl
+            totpService.renderQrCodePng(secret, student.getFullName(), student.getIdBadge());
 
             Map<String, Object> response = new HashMap<>();
             response.put("idBadge", student.getIdBadge());
             response.put("studentName", student.getFullName());
-            response.put("qrCodeDataUrl", qrCodeDataUrl);
+            response.put("qrCodeUrl", "/api/totp/qr/" + student.getIdBadge());
             response.put("secret", secret); // Show secret for manual entry if needed
             response.put("message", "Scan this QR code with Google Authenticator app. Then enter the 6-digit code to complete setup.");
             response.put("totpEnabled", false);
@@ -94,6 +103,39 @@ public class TotpController {
         }
     }
 
+    /**
+     * Enrollment QR code as a PNG image. Only served while setup is pending
+     * (secret generated, TOTP not yet enabled). Rendered off the request thread.
+     */
+    @GetMapping(value = "/qr/{idBadge}", produces = {MediaType.IMAGE_PNG_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public CompletableFuture<ResponseEntity<?>> getSetupQrCode(@PathVariable String idBadge) {
+        try {
+            Student student = studentRepository.findByIdBadge(idBadge)
+                    .orElseThrow(() -> new RuntimeException("Student not found with ID badge: " + idBadge));
+
+            if (student.getTotpSecret() == null || student.getTotpSecret().isEmpty()) {
+                throw new RuntimeException("TOTP not set up. Please start TOTP setup first.");
+            }
+
+            if (Boolean.TRUE.equals(student.getTotpEnabled())) {
+                throw new RuntimeException("TOTP is already enabled for this student.");
+            }
+
+            return totpService.renderQrCodePng(student.getTotpSecret(), student.getFullName(), student.getIdBadge())
+                    .<ResponseEntity<?>>thenApply(png -> ResponseEntity.ok()
+                            .contentType(MediaType.IMAGE_PNG)
+                            .cacheControl(CacheControl.noStore())
+                            .body(png))
+                    .exceptionally(e -> ResponseEntity.badRequest()
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .body(createErrorResponse(rootMessage(e)).getBody()));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(createErrorResponse(e.getMessage()).getBody()));
+        }
+    }
+
     /**
      * Verify TOTP code and enable TOTP for first-time setup
      */
@@ -119,6 +161,8 @@ public class TotpController {
                 // Enable TOTP on first successful verification
                 student.setTotpEnabled(true);
                 studentRepository.save(student);
+                badgeDirectory.put(student);
+                totpService.forgetQrCode(student.getTotpSecret());
 
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
@@ -145,9 +189,11 @@ public class TotpController {
             Student student = studentRepository.findByIdBadge(idBadge)
                     .orElseThrow(() -> new RuntimeException("Student not found with ID badge: " + idBadge));
 
+            totpService.forgetQrCode(student.getTotpSecret());
             student.setTotpSecret(null);
             student.setTotpEnabled(false);
             studentRepository.save(student);
+            badgeDirectory.put(student);
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -158,6 +204,14 @@ public class TotpController {
         }
     }
 
+    private String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && (cause instanceof CompletionException || cause instanceof ExecutionException)) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
     private ErrorResponse createErrorResponse(String message) {
         return new ErrorResponse() {
             @Override
@@ -0,0 +1,22 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of applying one schedule to many students: the updated schedules
+ * and, for each student left unchanged, the reason
+ */
+public class BulkScheduleResult {
+    private final List<ScheduleResponse> schedules;
+    private final Map<Long, String> skipped;
+
+    public BulkScheduleResult(List<ScheduleResponse> schedules, Map<Long, String> skipped) {
+        this.schedules = schedules;
+        this.skipped = new LinkedHashMap<>(skipped);
+    }
+
+    public List<ScheduleResponse> getSchedules() { return schedules; }
+    public Map<Long, String> getSkipped() { return skipped; }
+}
@@ -1,23 +1,26 @@
 package Attendance.OjtAttendanceApplication.dto;
 
 public class HoursCalculation {
-    private Double totalHours;
-    private Double regularHours;
-    private Double overtimeHours;
-    private Double undertimeHours;
+    private int totalMinutes;
+    private int regularMinutes;
+    private int overtimeMinutes;
+    private int undertimeMinutes;
     private boolean breakDeducted;
+    private long inputsFingerprint;
 
     public HoursCalculation() {}
 
     // Getters and Setters
-    public Double getTotalHours() { return totalHours; }
-    public void setTotalHours(Double totalHours) { this.totalHours = totalHours; }
-    public Double getRegularHours() { return regularHours; }
-    public void setRegularHours(Double regularHours) { this.regularHours = regularHours; }
-    public Double getOvertimeHours() { return overtimeHours; }
-    public void setOvertimeHours(Double overtimeHours) { this.overtimeHours = overtimeHours; }
-    public Double getUndertimeHours() { return undertimeHours; }
-    public void setUndertimeHours(Double undertimeHours) { this.undertimeHours = undertimeHours; }
+    public int getTotalMinutes() { return totalMinutes; }
+    public void setTotalMinutes(int totalMinutes) { this.totalMinutes = totalMinutes; }
+    public int getRegularMinutes() { return regularMinutes; }
+    public void setRegularMinutes(int regularMinutes) { this.regularMinutes = regularMinutes; }
+    public int getOvertimeMinutes() { return overtimeMinutes; }
+    public void setOvertimeMinutes(int overtimeMinutes) { this.overtimeMinutes = overtimeMinutes; }
+    public int getUndertimeMinutes() { return undertimeMinutes; }
+    public void setUndertimeMinutes(int undertimeMinutes) { this.undertimeMinutes = undertimeMinutes; }
     public boolean isBreakDeducted() { return breakDeducted; }
     public void setBreakDeducted(boolean breakDeducted) { this.breakDeducted = breakDeducted; }
+    public long getInputsFingerprint() { return inputsFingerprint; }
+    public void setInputsFingerprint(long inputsFingerprint) { this.inputsFingerprint = inputsFingerprint; }
 }
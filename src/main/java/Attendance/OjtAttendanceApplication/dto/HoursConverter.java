@@ -0,0 +1,25 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+/**
+ * Hours are stored and summed as whole minutes; this is the one place they
+ * become the decimal hours shown in responses and reports, and where hours
+ * typed in by an admin become minutes.
+ */
+public final class HoursConverter {
+
+    private HoursConverter() {}
+
+    /**
+     * Decimal hours, to two places
+     */
+    public static double toHours(long minutes) {
+        return Math.round(minutes * 100 / 60.0) / 100.0;
+    }
+
+    /**
+     * Nearest whole minute
+     */
+    public static int toMinutes(double hours) {
+        return Math.toIntExact(Math.round(hours * 60));
+    }
+}
@@ -0,0 +1,38 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+/**
+ * A student whose total_accumulated_minutes disagrees with the minutes of
+ * their completed records or with their hours ledger, as read by
+ * HoursLedgerAuditor in one statement
+ */
+public class HoursDrift {
+    private final long studentId;
+    private final String idBadge;
+    private final String fullName;
+    private final long totalMinutes;
+    private final long recordMinutes;
+    private final long ledgerMinutes;
+
+    public HoursDrift(long studentId, String idBadge, String fullName,
+                      long totalMinutes, long recordMinutes, long ledgerMinutes) {
+        this.studentId = studentId;
+        this.idBadge = idBadge;
+        this.fullName = fullName;
+        this.totalMinutes = totalMinutes;
+        this.recordMinutes = recordMinutes;
+        this.ledgerMinutes = ledgerMinutes;
+    }
+
+    public long getStudentId() { return studentId; }
+    public String getIdBadge() { return idBadge; }
+    public String getFullName() { return fullName; }
+    public long getTotalMinutes() { return totalMinutes; }
+    public long getRecordMinutes() { return recordMinutes; }
+    public long getLedgerMinutes() { return ledgerMinutes; }
+
+    /** What the total has to move by to match the records */
+    public long getRecordDrift() { return recordMinutes - totalMinutes; }
+
+    /** Non-zero when the total was changed without going through the ledger */
+    public long getLedgerDrift() { return ledgerMinutes - totalMinutes; }
+}
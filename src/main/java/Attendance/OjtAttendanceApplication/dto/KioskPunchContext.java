@@ -0,0 +1,105 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+import Attendance.OjtAttendanceApplication.entity.StudentStatus;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Everything a kiosk tap needs to decide between time-in and time-out,
+ * resolved in a single query by StudentRepository.findKioskPunchContext.
+ * openSessionId is filled in from ActiveSessionRegistry.
+ */
+public class KioskPunchContext {
+    private Long studentId;
+    private String idBadge;
+    private String fullName;
+    private StudentStatus status;
+    private LocalTime scheduledStartTime;
+    private LocalTime scheduledEndTime;
+    private Integer gracePeriodMinutes;
+    private Boolean scheduleActive;
+    private String totpSecret;
+    private Boolean totpEnabled;
+    private long totalAccumulatedMinutes;
+    private Long openSessionId;
+    private LocalDateTime lastTimeOut;
+
+    public KioskPunchContext() {}
+
+    public KioskPunchContext(Long studentId, String idBadge, String fullName, StudentStatus status,
+                             LocalTime scheduledStartTime, LocalTime scheduledEndTime,
+                             Integer gracePeriodMinutes, Boolean scheduleActive,
+                             String totpSecret, Boolean totpEnabled, long totalAccumulatedMinutes,
+                             LocalDateTime lastTimeOut) {
+        this.studentId = studentId;
+        this.idBadge = idBadge;
+        this.fullName = fullName;
+        this.status = status;
+        this.scheduledStartTime = scheduledStartTime;
+        this.scheduledEndTime = scheduledEndTime;
+        this.gracePeriodMinutes = gracePeriodMinutes;
+        this.scheduleActive = scheduleActive;
+        this.totpSecret = totpSecret;
+        this.totpEnabled = totpEnabled;
+        this.totalAccumulatedMinutes = totalAccumulatedMinutes;
+        this.lastTimeOut = lastTimeOut;
+    }
+
+    // Same rule as Student.hasActiveSchedule()
+    public boolean hasActiveSchedule() {
+        return Boolean.TRUE.equals(scheduleActive) && scheduledStartTime != null && scheduledEndTime != null;
+    }
+
+    public boolean hasOpenSession() {
+        return openSessionId != null;
+    }
+
+    public boolean isTotpConfigured() {
+        return totpSecret != null && !totpSecret.isEmpty();
+    }
+
+    public boolean isTotpActive() {
+        return Boolean.TRUE.equals(totpEnabled);
+    }
+
+    // Getters and Setters
+    public Long getStudentId() { return studentId; }
+    public void setStudentId(Long studentId) { this.studentId = studentId; }
+
+    public String getIdBadge() { return idBadge; }
+    public void setIdBadge(String idBadge) { this.idBadge = idBadge; }
+
+    public String getFullName() { return fullName; }
+    public void setFullName(String fullName) { this.fullName = fullName; }
+
+    public StudentStatus getStatus() { return status; }
+    public void setStatus(StudentStatus status) { this.status = status; }
+
+    public LocalTime getScheduledStartTime() { return scheduledStartTime; }
+    public void setScheduledStartTime(LocalTime scheduledStartTime) { this.scheduledStartTime = scheduledStartTime; }
+
+    public LocalTime getScheduledEndTime() { return scheduledEndTime; }
+    public void setScheduledEndTime(LocalTime scheduledEndTime) { this.scheduledEndTime = scheduledEndTime; }
+
+    public Integer getGracePeriodMinutes() { return gracePeriodMinutes; }
+    public void setGracePeriodMinutes(Integer gracePeriodMinutes) { this.gracePeriodMinutes = gracePeriodMinutes; }
+
+    public Boolean getScheduleActive() { return scheduleActive; }
+    public void setScheduleActive(Boolean scheduleActive) { this.scheduleActive = scheduleActive; }
+
+    public String getTotpSecret() { return totpSecret; }
+    public void setTotpSecret(String totpSecret) { this.totpSecret = totpSecret; }
+
+    public Boolean getTotpEnabled() { return totpEnabled; }
+    public void setTotpEnabled(Boolean totpEnabled) { this.totpEnabled = totpEnabled; }
+
+    public long getTotalAccumulatedMinutes() { return totalAccumulatedMinutes; }
+    public void setTotalAccumulatedMinutes(long totalAccumulatedMinutes) { this.totalAccumulatedMinutes = totalAccumulatedMinutes; }
+
+    public Long getOpenSessionId() { return openSessionId; }
+    public void setOpenSessionId(Long openSessionId) { this.openSessionId = openSessionId; }
+
+    public LocalDateTime getLastTimeOut() { return lastTimeOut; }
+    public void setLastTimeOut(LocalDateTime lastTimeOut) { this.lastTimeOut = lastTimeOut; }
+}
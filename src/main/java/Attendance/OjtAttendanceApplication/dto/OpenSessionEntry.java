@@ -0,0 +1,34 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One open (TIMED_IN) attendance session as held by ActiveSessionRegistry.
+ * Also used as the projection for AttendanceRecordRepository.findOpenSessionEntries.
+ */
+public class OpenSessionEntry {
+    private final Long recordId;
+    private final Long studentId;
+    private final LocalDateTime timeIn;
+    private final LocalDate workDate;
+
+    public OpenSessionEntry(Long recordId, Long studentId, LocalDateTime timeIn, LocalDate workDate) {
+        this.recordId = recordId;
+        this.studentId = studentId;
+        this.timeIn = timeIn;
+        this.workDate = workDate;
+    }
+
+    // Identity only: timeIn held in memory can carry more precision than the column
+    public boolean sameSessionAs(OpenSessionEntry other) {
+        return other != null
+                && recordId.equals(other.recordId)
+                && studentId.equals(other.studentId);
+    }
+
+    public Long getRecordId() { return recordId; }
+    public Long getStudentId() { return studentId; }
+    public LocalDateTime getTimeIn() { return timeIn; }
+    public LocalDate getWorkDate() { return workDate; }
+}
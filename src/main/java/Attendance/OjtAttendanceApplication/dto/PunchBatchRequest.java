@@ -0,0 +1,24 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class PunchBatchRequest {
+
+    // Kiosk name; selects the key the events are signed with (attendance.punch.kiosk-keys)
+    private String kioskId;
+
+    @NotEmpty(message = "At least one punch event is required")
+    @Size(max = 200, message = "A batch can contain at most 200 punch events")
+    private List<PunchEvent> events;
+
+    public PunchBatchRequest() {}
+
+    public String getKioskId() { return kioskId; }
+    public void setKioskId(String kioskId) { this.kioskId = kioskId; }
+
+    public List<PunchEvent> getEvents() { return events; }
+    public void setEvents(List<PunchEvent> events) { this.events = events; }
+}
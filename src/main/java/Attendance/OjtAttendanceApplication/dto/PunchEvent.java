@@ -0,0 +1,52 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One kiosk tap inside a punch batch. punchedAt is the kiosk's clock at the
+ * moment of the tap; the TOTP code must be valid for that moment, which is
+ * what ties the event to the student. A kiosk with a signing key also sends
+ * signature, its HMAC of the event id, badge and punch time (see
+ * KioskSignatureVerifier), which ties the event to the kiosk and the time,
+ * since the student knows their TOTP secret. Fields are checked per
+ * event by PunchBatchService, so one malformed event doesn't reject the
+ * whole batch.
+ */
+public class PunchEvent {
+
+    // Client-generated id, echoed back in the event's result
+    private String eventId;
+    private String idBadge;
+    private String totpCode;
+    private LocalDateTime punchedAt;
+    private String tasksCompleted;
+    private String signature;
+
+    public PunchEvent() {}
+
+    public PunchEvent(String eventId, String idBadge, String totpCode, LocalDateTime punchedAt, String tasksCompleted) {
+        this.eventId = eventId;
+        this.idBadge = idBadge;
+        this.totpCode = totpCode;
+        this.punchedAt = punchedAt;
+        this.tasksCompleted = tasksCompleted;
+    }
+
+    public String getEventId() { return eventId; }
+    public void setEventId(String eventId) { this.eventId = eventId; }
+
+    public String getIdBadge() { return idBadge; }
+    public void setIdBadge(String idBadge) { this.idBadge = idBadge; }
+
+    public String getTotpCode() { return totpCode; }
+    public void setTotpCode(String totpCode) { this.totpCode = totpCode; }
+
+    public LocalDateTime getPunchedAt() { return punchedAt; }
+    public void setPunchedAt(LocalDateTime punchedAt) { this.punchedAt = punchedAt; }
+
+    public String getTasksCompleted() { return tasksCompleted; }
+    public void setTasksCompleted(String tasksCompleted) { this.tasksCompleted = tasksCompleted; }
+
+    public String getSignature() { return signature; }
+    public void setSignature(String signature) { this.signature = signature; }
+}
@@ -0,0 +1,50 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+/**
+ * Outcome of one event of a punch batch. Either way the outcome is final:
+ * a rejected event will be rejected again if resent, so the kiosk can drop
+ * every event it got a result for.
+ */
+public class PunchEventResult {
+    private String eventId;
+    private String idBadge;
+    private boolean success;
+    private String message;
+    private AttendanceResponse attendance;
+
+    public PunchEventResult() {}
+
+    public static PunchEventResult applied(PunchEvent event, AttendanceResponse attendance) {
+        PunchEventResult result = new PunchEventResult();
+        result.eventId = event.getEventId();
+        result.idBadge = event.getIdBadge();
+        result.success = true;
+        result.message = attendance.getMessage();
+        result.attendance = attendance;
+        return result;
+    }
+
+    public static PunchEventResult rejected(PunchEvent event, String message) {
+        PunchEventResult result = new PunchEventResult();
+        result.eventId = event.getEventId();
+        result.idBadge = event.getIdBadge();
+        result.success = false;
+        result.message = message;
+        return result;
+    }
+
+    public String getEventId() { return eventId; }
+    public void setEventId(String eventId) { this.eventId = eventId; }
+
+    public String getIdBadge() { return idBadge; }
+    public void setIdBadge(String idBadge) { this.idBadge = idBadge; }
+
+    public boolean isSuccess() { return success; }
+    public void setSuccess(boolean success) { this.success = success; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    public AttendanceResponse getAttendance() { return attendance; }
+    public void setAttendance(AttendanceResponse attendance) { this.attendance = attendance; }
+}
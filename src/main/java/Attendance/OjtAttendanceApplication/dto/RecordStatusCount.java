@@ -0,0 +1,27 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+import Attendance.OjtAttendanceApplication.entity.AttendanceStatus;
+
+/**
+ * Number of attendance records with one status and override flag, and how
+ * many of them are completed (time-out set). Projection for
+ * AttendanceRecordRepository.countByStatusAndOverride.
+ */
+public class RecordStatusCount {
+    private final AttendanceStatus status;
+    private final boolean overrideApproved;
+    private final long count;
+    private final long completed;
+
+    public RecordStatusCount(AttendanceStatus status, Boolean overrideApproved, Long count, Long completed) {
+        this.status = status;
+        this.overrideApproved = Boolean.TRUE.equals(overrideApproved);
+        this.count = count;
+        this.completed = completed;
+    }
+
+    public AttendanceStatus getStatus() { return status; }
+    public boolean isOverrideApproved() { return overrideApproved; }
+    public long getCount() { return count; }
+    public long getCompleted() { return completed; }
+}
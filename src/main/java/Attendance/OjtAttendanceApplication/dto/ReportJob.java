@@ -0,0 +1,73 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A report rendered in the background to an artifact file. Jobs live in
+ * memory only (ReportJobService); the fields the worker updates are
+ * volatile so status reads see its progress.
+ *
+ * key identifies the report and the data it was taken from; requests with
+ * the same key share the job and its artifact.
+ */
+public class ReportJob {
+    private final long id;
+    private final String key;
+    private final ReportType type;
+    private final String idBadge;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final long totalRows;
+    private final String artifactName;
+    private final String downloadName;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private volatile ReportJobStatus status = ReportJobStatus.QUEUED;
+    private volatile long processedRows;
+    private volatile long fileSize;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String errorMessage;
+
+    public ReportJob(long id, String key, ReportType type, String idBadge, LocalDate startDate, LocalDate endDate,
+                     long totalRows, String artifactName, String downloadName) {
+        this.id = id;
+        this.key = key;
+        this.type = type;
+        this.idBadge = idBadge;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.totalRows = totalRows;
+        this.artifactName = artifactName;
+        this.downloadName = downloadName;
+    }
+
+    public long getId() { return id; }
+    public String getKey() { return key; }
+    public ReportType getType() { return type; }
+    public String getIdBadge() { return idBadge; }
+    public LocalDate getStartDate() { return startDate; }
+    public LocalDate getEndDate() { return endDate; }
+    public long getTotalRows() { return totalRows; }
+    public String getArtifactName() { return artifactName; }
+    public String getDownloadName() { return downloadName; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public ReportJobStatus getStatus() { return status; }
+    public void setStatus(ReportJobStatus status) { this.status = status; }
+    public long getProcessedRows() { return processedRows; }
+    public void setProcessedRows(long processedRows) { this.processedRows = processedRows; }
+    public long getFileSize() { return fileSize; }
+    public void setFileSize(long fileSize) { this.fileSize = fileSize; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+
+    public boolean isFinished() {
+        return status == ReportJobStatus.COMPLETED || status == ReportJobStatus.FAILED;
+    }
+}
@@ -0,0 +1,8 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+public enum ReportJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
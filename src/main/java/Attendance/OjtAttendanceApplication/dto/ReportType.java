@@ -0,0 +1,30 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+/**
+ * Reports that can be rendered by a background job (see ReportJobService)
+ */
+public enum ReportType {
+    CSV("text/csv;charset=UTF-8", "csv"),
+    EXCEL("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx"),
+    WEEKLY_PDF("application/pdf", "pdf");
+
+    private final String contentType;
+    private final String extension;
+
+    ReportType(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() { return contentType; }
+    public String getExtension() { return extension; }
+
+    /** Accepts the enum name in any case, with '-' for '_' (csv, excel, weekly-pdf) */
+    public static ReportType parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unknown report type: " + value);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+/**
+ * How many records are stale, across how many students, and how many of
+ * them were calculated under other rules. Projection for
+ * AttendanceRecordRepository.countStale.
+ */
+public class StaleRecordCount {
+    private final long records;
+    private final long students;
+    private final long underOtherRules;
+
+    public StaleRecordCount(Long records, Long students, Long underOtherRules) {
+        this.records = records != null ? records : 0;
+        this.students = students != null ? students : 0;
+        this.underOtherRules = underOtherRules != null ? underOtherRules : 0;
+    }
+
+    public long getRecords() { return records; }
+    public long getStudents() { return students; }
+    public long getUnderOtherRules() { return underOtherRules; }
+}
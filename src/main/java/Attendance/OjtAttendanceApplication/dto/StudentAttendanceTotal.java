@@ -0,0 +1,23 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+import java.time.LocalDate;
+
+/**
+ * A student's first attendance date and the minutes recorded from then up to
+ * a cut-off date. Projection for AttendanceRecordRepository.findAttendanceTotalsUpTo.
+ */
+public class StudentAttendanceTotal {
+    private final Long studentId;
+    private final LocalDate firstAttendanceDate;
+    private final long totalMinutes;
+
+    public StudentAttendanceTotal(Long studentId, LocalDate firstAttendanceDate, Long totalMinutes) {
+        this.studentId = studentId;
+        this.firstAttendanceDate = firstAttendanceDate;
+        this.totalMinutes = totalMinutes != null ? totalMinutes : 0;
+    }
+
+    public Long getStudentId() { return studentId; }
+    public LocalDate getFirstAttendanceDate() { return firstAttendanceDate; }
+    public long getTotalMinutes() { return totalMinutes; }
+}
@@ -0,0 +1,60 @@
+package Attendance.OjtAttendanceApplication.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of recalculating one student's records during a full
+ * recalculation, in minutes
+ */
+public class StudentRecalculationResult {
+    private long oldTotalMinutes;
+    private long newTotalMinutes;
+    private int totalRecords;
+    private int incompleteRecords;
+    private int errorRecords;
+    private int regularTimeouts;
+    private int autoTimeouts;
+    private int approvedOverrides;
+    private int adminCorrectedSkipped;
+    private List<Map<String, Object>> recordChanges = new ArrayList<>();
+    private List<String> errors = new ArrayList<>();
+
+    public boolean isTotalChanged() {
+        return oldTotalMinutes != newTotalMinutes;
+    }
+
+    public long getOldTotalMinutes() { return oldTotalMinutes; }
+    public void setOldTotalMinutes(long oldTotalMinutes) { this.oldTotalMinutes = oldTotalMinutes; }
+
+    public long getNewTotalMinutes() { return newTotalMinutes; }
+    public void setNewTotalMinutes(long newTotalMinutes) { this.newTotalMinutes = newTotalMinutes; }
+
+    public int getTotalRecords() { return totalRecords; }
+    public void setTotalRecords(int totalRecords) { this.totalRecords = totalRecords; }
+
+    public int getIncompleteRecords() { return incompleteRecords; }
+    public void setIncompleteRecords(int incompleteRecords) { this.incompleteRecords = incompleteRecords; }
+
+    public int getErrorRecords() { return errorRecords; }
+    public void setErrorRecords(int errorRecords) { this.errorRecords = errorRecords; }
+
+    public int getRegularTimeouts() { return regularTimeouts; }
+    public void setRegularTimeouts(int regularTimeouts) { this.regularTimeouts = regularTimeouts; }
+
+    public int getAutoTimeouts() { return autoTimeouts; }
+    public void setAutoTimeouts(int autoTimeouts) { this.autoTimeouts = autoTimeouts; }
+
+    public int getApprovedOverrides() { return approvedOverrides; }
+    public void setApprovedOverrides(int approvedOverrides) { this.approvedOverrides = approvedOverrides; }
+
+    public int getAdminCorrectedSkipped() { return adminCorrectedSkipped; }
+    public void setAdminCorrectedSkipped(int adminCorrectedSkipped) { this.adminCorrectedSkipped = adminCorrectedSkipped; }
+
+    public List<Map<String, Object>> getRecordChanges() { return recordChanges; }
+    public void setRecordChanges(List<Map<String, Object>> recordChanges) { this.recordChanges = recordChanges; }
+
+    public List<String> getErrors() { return errors; }
+    public void setErrors(List<String> errors) { this.errors = errors; }
+}
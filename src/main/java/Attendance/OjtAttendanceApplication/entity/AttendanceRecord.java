@@ -1,5 +1,6 @@
 package Attendance.OjtAttendanceApplication.entity;
 
+import Attendance.OjtAttendanceApplication.service.HoursCalculationEngine;
 import jakarta.persistence.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -7,7 +8,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "attendance_records")
+@Table(name = "attendance_records", indexes = {
+        @Index(name = "idx_attendance_student_status", columnList = "student_id, status"),
+        // Last time-out per student (time-in eligibility) is a single index dive
+        @Index(name = "idx_attendance_student_time_out", columnList = "student_id, time_out"),
+        // Stale record counts and lookups scan this instead of the table
+        @Index(name = "idx_attendance_calculation_inputs",
+                columnList = "student_id, calculation_inputs, schedule_override_approved, status, time_out"),
+        // Covers the grouped count behind the recalculation stats
+        @Index(name = "idx_attendance_stats", columnList = "status, schedule_override_approved, time_out"),
+        // Date range reports, in the order they are listed (work date newest first)
+        @Index(name = "idx_attendance_work_date", columnList = "work_date DESC, time_in")
+})
 public class AttendanceRecord {
 
     @Id
@@ -27,17 +39,18 @@ public class AttendanceRecord {
     @Column(name = "time_out")
     private LocalDateTime timeOut;
 
-    @Column(name = "total_hours")
-    private Double totalHours = 0.0;
+    // Hours are kept as whole minutes (see HoursMinutesMigration for the old *_hours columns)
+    @Column(name = "total_minutes", nullable = false)
+    private int totalMinutes;
 
-    @Column(name = "regular_hours")
-    private Double regularHours = 0.0;
+    @Column(name = "regular_minutes", nullable = false)
+    private int regularMinutes;
 
-    @Column(name = "overtime_hours")
-    private Double overtimeHours = 0.0;
+    @Column(name = "overtime_minutes", nullable = false)
+    private int overtimeMinutes;
 
-    @Column(name = "undertime_hours")
-    private Double undertimeHours = 0.0;
+    @Column(name = "undertime_minutes", nullable = false)
+    private int undertimeMinutes;
 
     @Column(name = "tasks_completed", columnDefinition = "TEXT")
     private String tasksCompleted;
@@ -55,9 +68,38 @@ public class AttendanceRecord {
     @Column(name = "work_date", nullable = false)
     private LocalDate workDate;
 
+    // Kept in step with the approval notes in tasks_completed, see beforeWrite
     @Column(name = "schedule_override_approved")
     private Boolean scheduleOverrideApproved = false;
 
+    // HoursCalculationEngine.inputsFingerprint of the inputs the hours were calculated from; 0 = never
+    @Column(name = "calculation_inputs", nullable = false)
+    private long calculationInputs;
+
+    // Time of the last write, part of the report data version (see ReportJobService); null on older rows
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void beforeWrite() {
+        scheduleOverrideApproved = tasksCompleted != null && HoursCalculationEngine.SCHEDULE_OVERRIDE_MARKERS.stream()
+                .anyMatch(tasksCompleted::contains);
+        updatedAt = LocalDateTime.now();
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public long getCalculationInputs() {
+        return calculationInputs;
+    }
+
+    public void setCalculationInputs(long calculationInputs) {
+        this.calculationInputs = calculationInputs;
+    }
+
     public Boolean getScheduleOverrideApproved() {
         return scheduleOverrideApproved;
     }
@@ -120,36 +162,36 @@ public class AttendanceRecord {
         this.timeOut = timeOut;
     }
 
-    public Double getTotalHours() {
-        return totalHours;
+    public int getTotalMinutes() {
+        return totalMinutes;
     }
 
-    public void setTotalHours(Double totalHours) {
-        this.totalHours = totalHours;
+    public void setTotalMinutes(int totalMinutes) {
+        this.totalMinutes = totalMinutes;
     }
 
-    public Double getRegularHours() {
-        return regularHours;
+    public int getRegularMinutes() {
+        return regularMinutes;
     }
 
-    public void setRegularHours(Double regularHours) {
-        this.regularHours = regularHours;
+    public void setRegularMinutes(int regularMinutes) {
+        this.regularMinutes = regularMinutes;
     }
 
-    public Double getOvertimeHours() {
-        return overtimeHours;
+    public int getOvertimeMinutes() {
+        return overtimeMinutes;
     }
 
-    public void setOvertimeHours(Double overtimeHours) {
-        this.overtimeHours = overtimeHours;
+    public void setOvertimeMinutes(int overtimeMinutes) {
+        this.overtimeMinutes = overtimeMinutes;
     }
 
-    public Double getUndertimeHours() {
-        return undertimeHours;
+    public int getUndertimeMinutes() {
+        return undertimeMinutes;
     }
 
-    public void setUndertimeHours(Double undertimeHours) {
-        this.undertimeHours = undertimeHours;
+    public void setUndertimeMinutes(int undertimeMinutes) {
+        this.undertimeMinutes = undertimeMinutes;
     }
 
     public String getTasksCompleted() {
@@ -0,0 +1,104 @@
+package Attendance.OjtAttendanceApplication.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One signed change to a student's total_accumulated_minutes. Rows are only
+ * ever inserted, in the same transaction as the total moves (see
+ * HoursLedgerService), so a student's entries add up to the total.
+ *
+ * IDENTITY keys: entries are written one per punch, and in bulk with plain
+ * SQL by BatchRecalculationService and HoursLedgerMigration, never as a
+ * Hibernate batch.
+ */
+@Entity
+@Table(name = "hours_ledger", indexes = {
+        @Index(name = "idx_hours_ledger_student", columnList = "student_id, id")
+})
+public class HoursLedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "student_id", nullable = false)
+    private Long studentId;
+
+    // The record whose hours changed; null for opening balances and repairs
+    @Column(name = "attendance_record_id")
+    private Long attendanceRecordId;
+
+    @Column(name = "delta_minutes", nullable = false)
+    private long deltaMinutes;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reason", nullable = false, length = 32)
+    private HoursLedgerReason reason;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public HoursLedgerEntry() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public HoursLedgerEntry(Long studentId, Long attendanceRecordId, long deltaMinutes, HoursLedgerReason reason) {
+        this();
+        this.studentId = studentId;
+        this.attendanceRecordId = attendanceRecordId;
+        this.deltaMinutes = deltaMinutes;
+        this.reason = reason;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(Long studentId) {
+        this.studentId = studentId;
+    }
+
+    public Long getAttendanceRecordId() {
+        return attendanceRecordId;
+    }
+
+    public void setAttendanceRecordId(Long attendanceRecordId) {
+        this.attendanceRecordId = attendanceRecordId;
+    }
+
+    public long getDeltaMinutes() {
+        return deltaMinutes;
+    }
+
+    public void setDeltaMinutes(long deltaMinutes) {
+        this.deltaMinutes = deltaMinutes;
+    }
+
+    public HoursLedgerReason getReason() {
+        return reason;
+    }
+
+    public void setReason(HoursLedgerReason reason) {
+        this.reason = reason;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
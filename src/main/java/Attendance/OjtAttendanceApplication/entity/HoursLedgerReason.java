@@ -0,0 +1,11 @@
+package Attendance.OjtAttendanceApplication.entity;
+
+public enum HoursLedgerReason {
+    OPENING_BALANCE,
+    TIME_OUT,
+    AUTO_TIME_OUT,
+    MANUAL_ENTRY,
+    ADMIN_CORRECTION,
+    RECALCULATION,
+    DRIFT_REPAIR
+}
@@ -0,0 +1,7 @@
+package Attendance.OjtAttendanceApplication.entity;
+
+public enum OutboxEventStatus {
+    PENDING,
+    DONE,
+    FAILED
+}
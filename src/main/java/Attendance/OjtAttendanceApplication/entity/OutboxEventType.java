@@ -0,0 +1,10 @@
+package Attendance.OjtAttendanceApplication.entity;
+
+public enum OutboxEventType {
+    MISSING_TIME_OUT,
+    LONG_WORK_SESSION,
+    AUTO_TIME_OUT_OCCURRED,
+    COMPLETION_READY,
+    SCHEDULE_OVERRIDE_SUBMITTED,
+    SCHEDULE_OVERRIDE_REVIEWED
+}
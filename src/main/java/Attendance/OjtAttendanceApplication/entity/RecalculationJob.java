@@ -0,0 +1,317 @@
+package Attendance.OjtAttendanceApplication.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.time.LocalDateTime;
+
+/**
+ * A background run of the full recalculation, committed a chunk of students
+ * at a time. lastStudentId is the checkpoint a resumed run continues from;
+ * the per-student changes go to RecalculationJobChange. Batch runs are
+ * recorded as jobs too, so only one run of either kind is active at a time.
+ *
+ * Updates only write the columns that changed, so the runner saving its
+ * progress never overwrites a cancel request made in the meantime.
+ */
+@Entity
+@DynamicUpdate
+@Table(name = "recalculation_jobs")
+public class RecalculationJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "recalculation_jobs_id")
+    @TableGenerator(name = "recalculation_jobs_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "recalculation_jobs", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private RecalculationJobStatus status = RecalculationJobStatus.QUEUED;
+
+    // Set by the cancel endpoint and only read by the runner; see @DynamicUpdate
+    @Column(name = "cancel_requested", nullable = false)
+    private boolean cancelRequested;
+
+    // Only students with stale records, and only those records (see RecalculationService.recalculateStaleRecords)
+    @Column(name = "incremental", nullable = false)
+    private boolean incremental;
+
+    // A BatchRecalculationService run: recorded here so it holds the same single active slot as
+    // background jobs, but it runs on the request thread and can't be resumed or cancelled
+    @Column(name = "batch", nullable = false)
+    private boolean batch;
+
+    // Checkpoint: every student up to this id has been recalculated and committed
+    @Column(name = "last_student_id")
+    private Long lastStudentId;
+
+    @Column(name = "total_students", nullable = false)
+    private long totalStudents;
+
+    @Column(name = "total_records", nullable = false)
+    private long totalRecords;
+
+    @Column(name = "processed_students", nullable = false)
+    private long processedStudents;
+
+    @Column(name = "processed_records", nullable = false)
+    private long processedRecords;
+
+    @Column(name = "updated_students", nullable = false)
+    private long updatedStudents;
+
+    @Column(name = "updated_records", nullable = false)
+    private long updatedRecords;
+
+    @Column(name = "incomplete_records", nullable = false)
+    private long incompleteRecords;
+
+    @Column(name = "error_records", nullable = false)
+    private long errorRecords;
+
+    // Batch runs only: records written by someone else after the run's snapshot, left as they were
+    @Column(name = "concurrently_updated_records", nullable = false)
+    private long concurrentlyUpdatedRecords;
+
+    @Column(name = "regular_timeouts", nullable = false)
+    private long regularTimeouts;
+
+    @Column(name = "auto_timeouts", nullable = false)
+    private long autoTimeouts;
+
+    @Column(name = "approved_overrides", nullable = false)
+    private long approvedOverrides;
+
+    @Column(name = "admin_corrected_skipped", nullable = false)
+    private long adminCorrectedSkipped;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    // Start of the current run and the records done before it, for the processing rate
+    @Column(name = "resumed_at")
+    private LocalDateTime resumedAt;
+
+    @Column(name = "records_at_resume", nullable = false)
+    private long recordsAtResume;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    // Constructors
+    public RecalculationJob() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public boolean isActive() {
+        return status == RecalculationJobStatus.QUEUED || status == RecalculationJobStatus.RUNNING;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public RecalculationJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(RecalculationJobStatus status) {
+        this.status = status;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    public void setCancelRequested(boolean cancelRequested) {
+        this.cancelRequested = cancelRequested;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public void setBatch(boolean batch) {
+        this.batch = batch;
+    }
+
+    public Long getLastStudentId() {
+        return lastStudentId;
+    }
+
+    public void setLastStudentId(Long lastStudentId) {
+        this.lastStudentId = lastStudentId;
+    }
+
+    public long getTotalStudents() {
+        return totalStudents;
+    }
+
+    public void setTotalStudents(long totalStudents) {
+        this.totalStudents = totalStudents;
+    }
+
+    public long getTotalRecords() {
+        return totalRecords;
+    }
+
+    public void setTotalRecords(long totalRecords) {
+        this.totalRecords = totalRecords;
+    }
+
+    public long getProcessedStudents() {
+        return processedStudents;
+    }
+
+    public void setProcessedStudents(long processedStudents) {
+        this.processedStudents = processedStudents;
+    }
+
+    public long getProcessedRecords() {
+        return processedRecords;
+    }
+
+    public void setProcessedRecords(long processedRecords) {
+        this.processedRecords = processedRecords;
+    }
+
+    public long getUpdatedStudents() {
+        return updatedStudents;
+    }
+
+    public void setUpdatedStudents(long updatedStudents) {
+        this.updatedStudents = updatedStudents;
+    }
+
+    public long getUpdatedRecords() {
+        return updatedRecords;
+    }
+
+    public void setUpdatedRecords(long updatedRecords) {
+        this.updatedRecords = updatedRecords;
+    }
+
+    public long getIncompleteRecords() {
+        return incompleteRecords;
+    }
+
+    public void setIncompleteRecords(long incompleteRecords) {
+        this.incompleteRecords = incompleteRecords;
+    }
+
+    public long getErrorRecords() {
+        return errorRecords;
+    }
+
+    public void setErrorRecords(long errorRecords) {
+        this.errorRecords = errorRecords;
+    }
+
+    public long getConcurrentlyUpdatedRecords() {
+        return concurrentlyUpdatedRecords;
+    }
+
+    public void setConcurrentlyUpdatedRecords(long concurrentlyUpdatedRecords) {
+        this.concurrentlyUpdatedRecords = concurrentlyUpdatedRecords;
+    }
+
+    public long getRegularTimeouts() {
+        return regularTimeouts;
+    }
+
+    public void setRegularTimeouts(long regularTimeouts) {
+        this.regularTimeouts = regularTimeouts;
+    }
+
+    public long getAutoTimeouts() {
+        return autoTimeouts;
+    }
+
+    public void setAutoTimeouts(long autoTimeouts) {
+        this.autoTimeouts = autoTimeouts;
+    }
+
+    public long getApprovedOverrides() {
+        return approvedOverrides;
+    }
+
+    public void setApprovedOverrides(long approvedOverrides) {
+        this.approvedOverrides = approvedOverrides;
+    }
+
+    public long getAdminCorrectedSkipped() {
+        return adminCorrectedSkipped;
+    }
+
+    public void setAdminCorrectedSkipped(long adminCorrectedSkipped) {
+        this.adminCorrectedSkipped = adminCorrectedSkipped;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getResumedAt() {
+        return resumedAt;
+    }
+
+    public void setResumedAt(LocalDateTime resumedAt) {
+        this.resumedAt = resumedAt;
+    }
+
+    public long getRecordsAtResume() {
+        return recordsAtResume;
+    }
+
+    public void setRecordsAtResume(long recordsAtResume) {
+        this.recordsAtResume = recordsAtResume;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+}
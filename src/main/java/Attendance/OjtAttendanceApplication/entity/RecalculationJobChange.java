@@ -0,0 +1,147 @@
+package Attendance.OjtAttendanceApplication.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One student whose total changed (or who had errors) in a recalculation
+ * job, written in the same transaction as the student's chunk
+ */
+@Entity
+@Table(name = "recalculation_job_changes", indexes = {
+        @Index(name = "idx_recalc_change_job_id", columnList = "job_id, id")
+})
+public class RecalculationJobChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "recalculation_job_changes_id")
+    @TableGenerator(name = "recalculation_job_changes_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "recalculation_job_changes", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(name = "student_id", nullable = false)
+    private Long studentId;
+
+    @Column(name = "student_name")
+    private String studentName;
+
+    @Column(name = "id_badge")
+    private String idBadge;
+
+    @Column(name = "old_total_minutes", nullable = false)
+    private long oldTotalMinutes;
+
+    @Column(name = "new_total_minutes", nullable = false)
+    private long newTotalMinutes;
+
+    @Column(name = "records_updated", nullable = false)
+    private int recordsUpdated;
+
+    // JSON array of the changed records, as the synchronous recalculation reported them
+    @Column(name = "record_changes", columnDefinition = "LONGTEXT")
+    private String recordChanges;
+
+    @Column(name = "errors", columnDefinition = "TEXT")
+    private String errors;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public RecalculationJobChange() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(Long studentId) {
+        this.studentId = studentId;
+    }
+
+    public String getStudentName() {
+        return studentName;
+    }
+
+    public void setStudentName(String studentName) {
+        this.studentName = studentName;
+    }
+
+    public String getIdBadge() {
+        return idBadge;
+    }
+
+    public void setIdBadge(String idBadge) {
+        this.idBadge = idBadge;
+    }
+
+    public long getOldTotalMinutes() {
+        return oldTotalMinutes;
+    }
+
+    public void setOldTotalMinutes(long oldTotalMinutes) {
+        this.oldTotalMinutes = oldTotalMinutes;
+    }
+
+    public long getNewTotalMinutes() {
+        return newTotalMinutes;
+    }
+
+    public void setNewTotalMinutes(long newTotalMinutes) {
+        this.newTotalMinutes = newTotalMinutes;
+    }
+
+    public int getRecordsUpdated() {
+        return recordsUpdated;
+    }
+
+    public void setRecordsUpdated(int recordsUpdated) {
+        this.recordsUpdated = recordsUpdated;
+    }
+
+    public String getRecordChanges() {
+        return recordChanges;
+    }
+
+    public void setRecordChanges(String recordChanges) {
+        this.recordChanges = recordChanges;
+    }
+
+    public String getErrors() {
+        return errors;
+    }
+
+    public void setErrors(String errors) {
+        this.errors = errors;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
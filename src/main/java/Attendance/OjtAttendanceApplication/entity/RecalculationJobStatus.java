@@ -0,0 +1,9 @@
+package Attendance.OjtAttendanceApplication.entity;
+
+public enum RecalculationJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    CANCELLED,
+    FAILED
+}
@@ -34,8 +34,10 @@ public class Student {
     @Column(name = "ojt_start_date")
     private LocalDate ojtStartDate;
 
-    @Column(name = "total_accumulated_hours")
-    private Double totalAccumulatedHours = 0.0;
+    // Whole minutes (see HoursMinutesMigration for the old total_accumulated_hours column).
+    // Saving the entity never writes it: changes go through HoursLedgerService as atomic increments
+    @Column(name = "total_accumulated_minutes", nullable = false, updatable = false)
+    private long totalAccumulatedMinutes;
 
     @Enumerated(EnumType.STRING)
     @Column(name = "status")
@@ -60,6 +62,10 @@ public class Student {
     @Column(name = "schedule_active")
     private Boolean scheduleActive = false; // Default false, admin must activate
 
+    // Bumped on every schedule change; part of each record's calculation inputs
+    @Column(name = "schedule_version", nullable = false)
+    private int scheduleVersion;
+
     @OneToMany(mappedBy = "student", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<AttendanceRecord> attendanceRecords;
 
@@ -149,12 +155,12 @@ public class Student {
     // EXISTING BUSINESS LOGIC METHODS
     public Double getCompletionPercentage() {
         if (requiredHours == null || requiredHours == 0) return null;
-        return Math.min((totalAccumulatedHours / requiredHours) * 100, 100.0);
+        return Math.min((totalAccumulatedMinutes / (requiredHours * 60)) * 100, 100.0);
     }
 
     public Double getHoursRemaining() {
         if (requiredHours == null) return null;
-        return Math.max(requiredHours - totalAccumulatedHours, 0.0);
+        return Math.max(requiredHours - totalAccumulatedMinutes / 60.0, 0.0);
     }
 
     public boolean isActive() {
@@ -167,7 +173,7 @@ public class Student {
 
     public boolean hasReachedRequiredHours() {
         if (requiredHours == null) return false;
-        return totalAccumulatedHours >= requiredHours;
+        return totalAccumulatedMinutes >= requiredHours * 60;
     }
 
     public LocalDate getEffectiveStartDate() {
@@ -224,12 +230,12 @@ public class Student {
         this.registrationDate = registrationDate;
     }
 
-    public Double getTotalAccumulatedHours() {
-        return totalAccumulatedHours;
+    public long getTotalAccumulatedMinutes() {
+        return totalAccumulatedMinutes;
     }
 
-    public void setTotalAccumulatedHours(Double totalAccumulatedHours) {
-        this.totalAccumulatedHours = totalAccumulatedHours;
+    public void setTotalAccumulatedMinutes(long totalAccumulatedMinutes) {
+        this.totalAccumulatedMinutes = totalAccumulatedMinutes;
     }
 
     public StudentStatus getStatus() {
@@ -281,6 +287,14 @@ public class Student {
         this.gracePeriodMinutes = gracePeriodMinutes;
     }
 
+    public int getScheduleVersion() {
+        return scheduleVersion;
+    }
+
+    public void setScheduleVersion(int scheduleVersion) {
+        this.scheduleVersion = scheduleVersion;
+    }
+
     public Boolean getScheduleActive() {
         return scheduleActive;
     }
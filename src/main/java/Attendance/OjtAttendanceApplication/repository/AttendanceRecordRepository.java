@@ -1,8 +1,13 @@
 package Attendance.OjtAttendanceApplication.repository;
 
+import Attendance.OjtAttendanceApplication.dto.OpenSessionEntry;
+import Attendance.OjtAttendanceApplication.dto.RecordStatusCount;
+import Attendance.OjtAttendanceApplication.dto.StaleRecordCount;
+import Attendance.OjtAttendanceApplication.dto.StudentAttendanceTotal;
 import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
 import Attendance.OjtAttendanceApplication.entity.AttendanceStatus;
 import Attendance.OjtAttendanceApplication.entity.Student;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -10,12 +15,19 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AttendanceRecordRepository extends JpaRepository<AttendanceRecord, Long> {
 
+    // Completed, recalculable records whose stored calculation inputs no longer match
+    // HoursCalculationEngine.inputsFingerprint for the student's schedule version and the override flag
+    String STALE_RECORD = "ar.timeOut IS NOT NULL AND ar.status <> 'ADMIN_CORRECTED' " +
+            "AND ar.calculationInputs - :rulesBase <> ar.student.scheduleVersion * 2 " +
+            "+ CASE WHEN ar.scheduleOverrideApproved = true THEN 1 ELSE 0 END";
+
     Optional<AttendanceRecord> findByStudentAndAttendanceDateAndStatus(
             Student student, LocalDate date, AttendanceStatus status);
 
@@ -30,6 +42,28 @@ public interface AttendanceRecordRepository extends JpaRepository<AttendanceReco
     @Query("SELECT ar FROM AttendanceRecord ar WHERE ar.student = :student AND ar.attendanceDate BETWEEN :startDate AND :endDate ORDER BY ar.attendanceDate DESC")
     List<AttendanceRecord> findByStudentAndDateRange(@Param("student") Student student, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 
+    @Query("SELECT COALESCE(SUM(ar.totalMinutes), 0) FROM AttendanceRecord ar WHERE ar.student = :student AND ar.attendanceDate BETWEEN :startDate AND :endDate")
+    long sumTotalMinutesByStudentAndDateRange(@Param("student") Student student, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    // ==================== COHORT WEEKLY REPORTS ====================
+
+    // One week of records for many students (WeeklyReportBundleService)
+    @Query("SELECT ar FROM AttendanceRecord ar WHERE ar.student.id IN :studentIds " +
+            "AND ar.attendanceDate BETWEEN :startDate AND :endDate")
+    List<AttendanceRecord> findByStudentIdsAndDateRange(@Param("studentIds") Collection<Long> studentIds,
+                                                        @Param("startDate") LocalDate startDate,
+                                                        @Param("endDate") LocalDate endDate);
+
+    // First attendance date and cumulative minutes up to endDate, one row per student with records
+    // by then. Same figures as getFirstAttendanceDate and sumTotalMinutesByStudentAndDateRange
+    // from the first Monday, for a whole cohort in one query.
+    @Query("SELECT new Attendance.OjtAttendanceApplication.dto.StudentAttendanceTotal(" +
+            "ar.student.id, MIN(ar.attendanceDate), SUM(ar.totalMinutes)) " +
+            "FROM AttendanceRecord ar WHERE ar.student.id IN :studentIds AND ar.attendanceDate <= :endDate " +
+            "GROUP BY ar.student.id")
+    List<StudentAttendanceTotal> findAttendanceTotalsUpTo(@Param("studentIds") Collection<Long> studentIds,
+                                                          @Param("endDate") LocalDate endDate);
+
     // New methods for notification system
     @Query("SELECT ar FROM AttendanceRecord ar WHERE ar.status = 'TIMED_IN' AND ar.timeIn < :cutoffTime")
     List<AttendanceRecord> findIncompleteRecordsOlderThan(@Param("cutoffTime") LocalDateTime cutoffTime);
@@ -58,6 +92,22 @@ public interface AttendanceRecordRepository extends JpaRepository<AttendanceReco
             "AND ar.status = 'TIMED_IN' ORDER BY ar.timeIn DESC")
     Optional<AttendanceRecord> findActiveSessionByStudent(@Param("student") Student student);
 
+    // Open record together with its student in one query (kiosk time-out)
+    @Query("SELECT ar FROM AttendanceRecord ar JOIN FETCH ar.student " +
+            "WHERE ar.id = :id AND ar.status = 'TIMED_IN'")
+    Optional<AttendanceRecord> findOpenRecordWithStudent(@Param("id") Long id);
+
+    // Open records together with their students (hourly incomplete-record sweep)
+    @Query("SELECT ar FROM AttendanceRecord ar JOIN FETCH ar.student " +
+            "WHERE ar.id IN :ids AND ar.status = 'TIMED_IN'")
+    List<AttendanceRecord> findOpenRecordsWithStudent(@Param("ids") Collection<Long> ids);
+
+    // Open sessions without loading records or students (ActiveSessionRegistry rebuild/reconcile)
+    @Query("SELECT new Attendance.OjtAttendanceApplication.dto.OpenSessionEntry(" +
+            "ar.id, ar.student.id, ar.timeIn, ar.workDate) " +
+            "FROM AttendanceRecord ar WHERE ar.status = 'TIMED_IN' ORDER BY ar.timeIn ASC")
+    List<OpenSessionEntry> findOpenSessionEntries();
+
     @Query("SELECT ar FROM AttendanceRecord ar WHERE ar.workDate = :workDate " +
             "ORDER BY ar.timeIn ASC")
     List<AttendanceRecord> findByWorkDateOrderByTimeInAsc(@Param("workDate") LocalDate workDate);
@@ -70,4 +120,30 @@ public interface AttendanceRecordRepository extends JpaRepository<AttendanceReco
     @Query("SELECT ar FROM AttendanceRecord ar WHERE ar.attendanceDate = :date " +
             "ORDER BY ar.timeIn ASC")
     List<AttendanceRecord> findByAttendanceDateOrderByTimeInAsc(@Param("date") LocalDate date);
+
+    // Record counts for the recalculation stats: a handful of groups read off idx_attendance_stats
+    @Query("SELECT new Attendance.OjtAttendanceApplication.dto.RecordStatusCount(" +
+            "ar.status, ar.scheduleOverrideApproved, COUNT(ar), COUNT(ar.timeOut)) " +
+            "FROM AttendanceRecord ar GROUP BY ar.status, ar.scheduleOverrideApproved")
+    List<RecordStatusCount> countByStatusAndOverride();
+
+    // ==================== INCREMENTAL RECALCULATION ====================
+
+    @Query("SELECT ar FROM AttendanceRecord ar WHERE ar.student = :student AND " + STALE_RECORD +
+            " ORDER BY ar.attendanceDate DESC")
+    List<AttendanceRecord> findStaleByStudent(@Param("student") Student student, @Param("rulesBase") long rulesBase);
+
+    // One pass over the stale records; those calculated under other rules are always among them
+    @Query("SELECT new Attendance.OjtAttendanceApplication.dto.StaleRecordCount(" +
+            "COUNT(ar), COUNT(DISTINCT ar.student.id), " +
+            "SUM(CASE WHEN ar.calculationInputs < :rulesBase OR ar.calculationInputs >= :nextRulesBase " +
+            "THEN 1 ELSE 0 END)) " +
+            "FROM AttendanceRecord ar WHERE " + STALE_RECORD)
+    StaleRecordCount countStale(@Param("rulesBase") long rulesBase, @Param("nextRulesBase") long nextRulesBase);
+
+    // Keyset page of students with stale records (incremental recalculation job)
+    @Query("SELECT DISTINCT ar.student.id FROM AttendanceRecord ar WHERE ar.student.id > :afterId AND " +
+            STALE_RECORD + " ORDER BY ar.student.id")
+    List<Long> findStudentIdsWithStaleAfter(@Param("afterId") long afterId, @Param("rulesBase") long rulesBase,
+                                            Pageable pageable);
 }
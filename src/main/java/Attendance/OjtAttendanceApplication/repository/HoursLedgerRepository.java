@@ -0,0 +1,15 @@
+package Attendance.OjtAttendanceApplication.repository;
+
+import Attendance.OjtAttendanceApplication.entity.HoursLedgerEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface HoursLedgerRepository extends JpaRepository<HoursLedgerEntry, Long> {
+
+    // A student's most recent entries, newest first
+    List<HoursLedgerEntry> findByStudentIdOrderByIdDesc(Long studentId, Pageable pageable);
+}
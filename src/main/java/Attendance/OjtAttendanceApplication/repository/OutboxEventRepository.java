@@ -0,0 +1,33 @@
+package Attendance.OjtAttendanceApplication.repository;
+
+import Attendance.OjtAttendanceApplication.entity.OutboxEvent;
+import Attendance.OjtAttendanceApplication.entity.OutboxEventStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Due pending events, oldest first. An event is left out while an earlier pending event of its student
+    // is still backing off, so per-student order holds even when that event isn't in the page
+    @Query("SELECT oe FROM OutboxEvent oe WHERE oe.status = 'PENDING' AND oe.nextAttemptAt <= :now " +
+            "AND NOT EXISTS (SELECT 1 FROM OutboxEvent earlier WHERE earlier.studentId = oe.studentId " +
+            "AND earlier.status = 'PENDING' AND earlier.id < oe.id AND earlier.nextAttemptAt > :now) " +
+            "ORDER BY oe.id ASC")
+    List<OutboxEvent> findDeliverable(@Param("now") LocalDateTime now, Pageable pageable);
+
+    long countByStatus(OutboxEventStatus status);
+
+    List<OutboxEvent> findByStatusOrderByIdDesc(OutboxEventStatus status, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent oe WHERE oe.status = 'DONE' AND oe.processedAt < :cutoff")
+    int deleteDeliveredBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,18 @@
+package Attendance.OjtAttendanceApplication.repository;
+
+import Attendance.OjtAttendanceApplication.entity.RecalculationJobChange;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RecalculationJobChangeRepository extends JpaRepository<RecalculationJobChange, Long> {
+
+    Page<RecalculationJobChange> findByJobIdOrderByIdAsc(Long jobId, Pageable pageable);
+
+    // Keyset page for streaming a job's changes
+    List<RecalculationJobChange> findByJobIdAndIdGreaterThanOrderByIdAsc(Long jobId, Long afterId, Pageable pageable);
+}
@@ -0,0 +1,20 @@
+package Attendance.OjtAttendanceApplication.repository;
+
+import Attendance.OjtAttendanceApplication.entity.RecalculationJob;
+import Attendance.OjtAttendanceApplication.entity.RecalculationJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RecalculationJobRepository extends JpaRepository<RecalculationJob, Long> {
+
+    List<RecalculationJob> findByStatusInOrderByIdAsc(Collection<RecalculationJobStatus> statuses);
+
+    Optional<RecalculationJob> findFirstByStatusIn(Collection<RecalculationJobStatus> statuses);
+
+    List<RecalculationJob> findTop20ByOrderByIdDesc();
+}
@@ -1,12 +1,17 @@
 package Attendance.OjtAttendanceApplication.repository;
 
+import Attendance.OjtAttendanceApplication.dto.KioskPunchContext;
 import Attendance.OjtAttendanceApplication.entity.Student;
 import Attendance.OjtAttendanceApplication.entity.StudentStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,16 +33,66 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
 
     // Find students near completion (90% or more of required hours)
     @Query("SELECT s FROM Student s WHERE s.status = 'ACTIVE' AND s.requiredHours IS NOT NULL " +
-            "AND (s.totalAccumulatedHours / s.requiredHours) >= 0.9")
+            "AND s.totalAccumulatedMinutes >= s.requiredHours * 60 * 0.9")
     List<Student> findActiveStudentsNearCompletion();
 
     // Find students who have reached or exceeded required hours but are still active
     @Query("SELECT s FROM Student s WHERE s.status = 'ACTIVE' AND s.requiredHours IS NOT NULL " +
-            "AND s.totalAccumulatedHours >= s.requiredHours")
+            "AND s.totalAccumulatedMinutes >= s.requiredHours * 60")
     List<Student> findActiveStudentsReadyForCompletion();
 
     // Find active students with required hours set
     @Query("SELECT s FROM Student s WHERE s.status = 'ACTIVE' AND s.requiredHours IS NOT NULL " +
             "ORDER BY s.fullName ASC")
     List<Student> findActiveStudentsWithRequiredHours();
+
+    // Active students in a cohort weekly-report bundle; a null filter matches everyone.
+    // A shift start only matches students whose schedule is active.
+    @Query("SELECT s FROM Student s WHERE s.status = 'ACTIVE' AND s.idBadge IS NOT NULL " +
+            "AND (:school IS NULL OR s.school = :school) " +
+            "AND (:scheduledStartTime IS NULL OR (s.scheduleActive = true " +
+            "AND s.scheduledStartTime = :scheduledStartTime)) " +
+            "ORDER BY s.fullName ASC")
+    List<Student> findActiveForWeeklyReports(@Param("school") String school,
+                                             @Param("scheduledStartTime") LocalTime scheduledStartTime);
+
+    // Kiosk tap resolution: student, schedule, TOTP and last time-out in one round trip.
+    // The open session comes from ActiveSessionRegistry. MAX(timeOut) for one student is
+    // answered from idx_attendance_student_time_out without reading the student's history.
+    @Query("SELECT new Attendance.OjtAttendanceApplication.dto.KioskPunchContext(" +
+            "s.id, s.idBadge, s.fullName, s.status, " +
+            "s.scheduledStartTime, s.scheduledEndTime, s.gracePeriodMinutes, s.scheduleActive, " +
+            "s.totpSecret, s.totpEnabled, s.totalAccumulatedMinutes, " +
+            "(SELECT MAX(prev.timeOut) FROM AttendanceRecord prev WHERE prev.student = s)) " +
+            "FROM Student s WHERE s.idBadge = :idBadge")
+    Optional<KioskPunchContext> findKioskPunchContext(@Param("idBadge") String idBadge);
+
+    // Same projection for every badge in a batch of kiosk punches
+    @Query("SELECT new Attendance.OjtAttendanceApplication.dto.KioskPunchContext(" +
+            "s.id, s.idBadge, s.fullName, s.status, " +
+            "s.scheduledStartTime, s.scheduledEndTime, s.gracePeriodMinutes, s.scheduleActive, " +
+            "s.totpSecret, s.totpEnabled, s.totalAccumulatedMinutes, " +
+            "(SELECT MAX(prev.timeOut) FROM AttendanceRecord prev WHERE prev.student = s)) " +
+            "FROM Student s WHERE s.idBadge IN :idBadges")
+    List<KioskPunchContext> findKioskPunchContexts(@Param("idBadges") Collection<String> idBadges);
+
+    @Modifying
+    @Query("UPDATE Student s SET s.totpEnabled = true WHERE s.id = :studentId")
+    int enableTotp(@Param("studentId") Long studentId);
+
+    // Keyset paging for RecalculationJobService's chunks
+    @Query("SELECT s.id FROM Student s WHERE s.id > :afterId ORDER BY s.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Same test as Student.hasActiveSchedule
+    @Query("SELECT COUNT(s) FROM Student s WHERE s.scheduleActive = true " +
+            "AND s.scheduledStartTime IS NOT NULL AND s.scheduledEndTime IS NOT NULL")
+    long countWithActiveSchedule();
+
+    // The only write to total_accumulated_minutes (the column is not updatable through the entity);
+    // see HoursLedgerService
+    @Modifying
+    @Query("UPDATE Student s SET s.totalAccumulatedMinutes = s.totalAccumulatedMinutes + :deltaMinutes " +
+            "WHERE s.id = :studentId")
+    int addToTotalAccumulatedMinutes(@Param("studentId") Long studentId, @Param("deltaMinutes") long deltaMinutes);
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,6 +16,9 @@ public interface TaskEntryRepository extends JpaRepository<TaskEntry, Long> {
 
     List<TaskEntry> findByAttendanceRecordOrderByCompletedAtAsc(AttendanceRecord attendanceRecord);
 
+    // Tasks of many records in one query (cohort weekly reports)
+    List<TaskEntry> findByAttendanceRecordInOrderByCompletedAtAsc(Collection<AttendanceRecord> attendanceRecords);
+
     @Query("SELECT te FROM TaskEntry te WHERE te.attendanceRecord.student.idBadge = :idBadge " +
             "AND DATE(te.attendanceRecord.attendanceDate) = :date ORDER BY te.completedAt ASC")
     List<TaskEntry> findByStudentIdBadgeAndDate(@Param("idBadge") String idBadge, @Param("date") LocalDate date);
@@ -29,4 +33,6 @@ public interface TaskEntryRepository extends JpaRepository<TaskEntry, Long> {
     Boolean existsTasksForStudentToday(@Param("idBadge") String idBadge);
 
     long countByAttendanceRecord(AttendanceRecord attendanceRecord);
+
+    boolean existsByAttendanceRecordId(Long attendanceRecordId);
 }
@@ -0,0 +1,224 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.OpenSessionEntry;
+import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
+import Attendance.OjtAttendanceApplication.entity.AttendanceStatus;
+import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Resident view of open (TIMED_IN) attendance sessions.
+ *
+ * Keyed by student id rather than badge so a badge change can't orphan an
+ * entry; badge lookups go through BadgeDirectory. Rebuilt from the table at
+ * startup, updated after commit by every path that opens or closes a session,
+ * and periodically reconciled against the table.
+ */
+@Component
+public class ActiveSessionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActiveSessionRegistry.class);
+
+    private final ConcurrentHashMap<Long, OpenSessionEntry> sessions = new ConcurrentHashMap<>();
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+
+    @Autowired
+    private BadgeDirectory badgeDirectory;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Map<Long, OpenSessionEntry> loaded = index(attendanceRecordRepository.findOpenSessionEntries());
+
+        sessions.clear();
+        sessions.putAll(loaded);
+
+        logger.info("Active session registry loaded: {} open sessions", loaded.size());
+    }
+
+    // ==================== READS ====================
+
+    public OpenSessionEntry get(Long studentId) {
+        return studentId != null ? sessions.get(studentId) : null;
+    }
+
+    /**
+     * Open session for a badge, or null if the badge is unknown or not timed in
+     */
+    public OpenSessionEntry findByBadge(String idBadge) {
+        BadgeDirectory.BadgeSnapshot badge = badgeDirectory.lookup(idBadge);
+        return badge != null ? get(badge.getStudentId()) : null;
+    }
+
+    public boolean hasOpenSession(Long studentId) {
+        return get(studentId) != null;
+    }
+
+    public List<Long> openRecordIds() {
+        List<Long> ids = new ArrayList<>(sessions.size());
+        for (OpenSessionEntry entry : sessions.values()) {
+            ids.add(entry.getRecordId());
+        }
+        return ids;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    // ==================== WRITES ====================
+
+    /**
+     * Register a record that was just saved as TIMED_IN
+     */
+    public void open(AttendanceRecord record) {
+        OpenSessionEntry entry = entryOf(record);
+        afterCommit(() -> sessions.put(entry.getStudentId(), entry));
+    }
+
+    /**
+     * Drop a record that is no longer TIMED_IN (time-out, auto time-out, correction)
+     */
+    public void close(AttendanceRecord record) {
+        Long studentId = record.getStudent().getId();
+        Long recordId = record.getId();
+        afterCommit(() -> removeIfRecord(studentId, recordId));
+    }
+
+    /**
+     * Immediately drop an entry a caller found to be stale in the database
+     */
+    public void evict(Long studentId, Long recordId) {
+        removeIfRecord(studentId, recordId);
+    }
+
+    private void removeIfRecord(Long studentId, Long recordId) {
+        // Only remove if the registry still points at this record
+        sessions.computeIfPresent(studentId, (id, current) ->
+                current.getRecordId().equals(recordId) ? null : current);
+    }
+
+    // ==================== CONSISTENCY CHECK ====================
+
+    @Scheduled(fixedRate = 600000, initialDelay = 600000) // Every 10 minutes
+    public void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            logger.error("Error reconciling active session registry: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compare the registry with the TIMED_IN rows in attendance_records and
+     * repair any drift. Each difference is re-read before it is repaired so a
+     * session opened or closed while the check runs is not undone.
+     */
+    public Map<String, Object> reconcile() {
+        // A lock rather than synchronized: this holds JDBC calls, which would pin a virtual thread
+        reconcileLock.lock();
+        try {
+            List<OpenSessionEntry> rows = attendanceRecordRepository.findOpenSessionEntries();
+            Map<Long, OpenSessionEntry> expected = index(rows);
+
+            List<Long> added = new ArrayList<>();
+            List<Long> removed = new ArrayList<>();
+
+            for (OpenSessionEntry entry : expected.values()) {
+                OpenSessionEntry current = sessions.get(entry.getStudentId());
+                if (!entry.sameSessionAs(current) && isStillOpen(entry.getRecordId())) {
+                    sessions.put(entry.getStudentId(), entry);
+                    added.add(entry.getRecordId());
+                }
+            }
+
+            for (OpenSessionEntry current : sessions.values()) {
+                OpenSessionEntry row = expected.get(current.getStudentId());
+                if (!current.sameSessionAs(row) && !isStillOpen(current.getRecordId())) {
+                    if (sessions.remove(current.getStudentId(), current)) {
+                        removed.add(current.getRecordId());
+                    }
+                }
+            }
+
+            int duplicates = rows.size() - expected.size();
+
+            if (!added.isEmpty() || !removed.isEmpty() || duplicates > 0) {
+                logger.warn("Active session registry drift repaired - added: {}, removed: {}, " +
+                        "students with more than one TIMED_IN record: {}", added, removed, duplicates);
+            } else {
+                logger.debug("Active session registry consistent: {} open sessions", sessions.size());
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("openSessionsInTable", rows.size());
+            result.put("openSessionsInRegistry", sessions.size());
+            result.put("addedRecordIds", added);
+            result.put("removedRecordIds", removed);
+            result.put("duplicateOpenRecords", duplicates);
+            result.put("consistent", added.isEmpty() && removed.isEmpty() && duplicates == 0);
+            result.put("checkedAt", LocalDateTime.now());
+            return result;
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    private boolean isStillOpen(Long recordId) {
+        return attendanceRecordRepository.findById(recordId)
+                .map(record -> record.getStatus() == AttendanceStatus.TIMED_IN)
+                .orElse(false);
+    }
+
+    // ==================== HELPERS ====================
+
+    /**
+     * One entry per student. Rows arrive ordered by time-in, so if a student
+     * somehow has several TIMED_IN records the latest one wins - the same
+     * record findActiveSessionByStudent would have returned first.
+     */
+    private Map<Long, OpenSessionEntry> index(List<OpenSessionEntry> rows) {
+        Map<Long, OpenSessionEntry> byStudent = new HashMap<>();
+        for (OpenSessionEntry row : rows) {
+            byStudent.put(row.getStudentId(), row);
+        }
+        return byStudent;
+    }
+
+    private static OpenSessionEntry entryOf(AttendanceRecord record) {
+        return new OpenSessionEntry(
+                record.getId(),
+                record.getStudent().getId(),
+                record.getTimeIn(),
+                record.getWorkDate()
+        );
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
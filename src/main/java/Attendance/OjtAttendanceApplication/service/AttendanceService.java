@@ -7,6 +7,8 @@ import Attendance.OjtAttendanceApplication.service.ScheduleOverrideService;
 import Attendance.OjtAttendanceApplication.repository.StudentRepository;
 import Attendance.OjtAttendanceApplication.repository.TaskEntryRepository;
 import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -22,12 +24,14 @@ import java.util.stream.Collectors;
 @Transactional
 public class AttendanceService {
 
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceService.class);
+
     // Constants for business rules
     private static final int BREAK_DEDUCTION_THRESHOLD_HOURS = 5;
     private static final int BREAK_DEDUCTION_HOURS = 1;
-    private static final int ROUNDING_THRESHOLD_MINUTES = 55;
-    private static final int REGULAR_HOURS_CAP = 8;
+    private static final int REGULAR_MINUTES_CAP = HoursCalculationEngine.REGULAR_HOURS_CAP * 60;
     private static final int MINIMUM_HOURS_BETWEEN_SESSIONS = 4;
+    private static final String APPROVAL_MARKER = "[ADMIN APPROVED SCHEDULE OVERRIDE";
 
     @Autowired
     private StudentRepository studentRepository;
@@ -47,6 +51,18 @@ public class AttendanceService {
     @Autowired
     private ScheduleOverrideService scheduleOverrideService;
 
+    @Autowired
+    private BadgeDirectory badgeDirectory;
+
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    @Autowired
+    private HoursCalculationEngine hoursCalculationEngine;
+
+    @Autowired
+    private HoursLedgerService hoursLedgerService;
+
     // ==================== STUDENT REGISTRATION ====================
 
     public StudentRegistrationResponse registerStudent(StudentRegistrationRequest request) {
@@ -60,6 +76,7 @@ public class AttendanceService {
 
         Student student = new Student(request.getIdBadge(), request.getFullName(), request.getSchool());
         Student savedStudent = studentRepository.save(student);
+        badgeDirectory.put(savedStudent);
 
         return new StudentRegistrationResponse(
                 savedStudent.getId(),
@@ -83,6 +100,7 @@ public class AttendanceService {
         Student student = new Student(request.getIdBadge(), request.getFullName(),
                 request.getSchool(), request.getRequiredHours());
         Student savedStudent = studentRepository.save(student);
+        badgeDirectory.put(savedStudent);
 
         return new StudentRegistrationResponse(
                 savedStudent.getId(),
@@ -98,27 +116,84 @@ public class AttendanceService {
 
     @Transactional
     public AttendanceResponse processAttendance(AttendanceRequest request) {
-        Student student = studentRepository.findByIdBadge(request.getIdBadge())
-                .orElseThrow(() -> new RuntimeException("Student not found with ID badge: " + request.getIdBadge()));
+        return processAttendance(request, resolveKioskContext(request.getIdBadge()));
+    }
 
-        if (student.getStatus() != StudentStatus.ACTIVE) {
-            throw new RuntimeException("Only active students can log attendance. Current status: " + student.getStatus());
+    /**
+     * Process a kiosk tap using an already resolved context, so callers that
+     * needed the student first (e.g. for TOTP) don't trigger a second lookup.
+     */
+    @Transactional
+    public AttendanceResponse processAttendance(AttendanceRequest request, KioskPunchContext context) {
+        return processAttendance(request, context, LocalDateTime.now());
+    }
+
+    /**
+     * Process a tap that happened at punchedAt rather than now (punches a
+     * kiosk buffered while offline). The same rules apply, evaluated at the
+     * punch time.
+     */
+    @Transactional
+    public AttendanceResponse processAttendance(AttendanceRequest request, KioskPunchContext context,
+                                                LocalDateTime punchedAt) {
+        if (context.getStatus() != StudentStatus.ACTIVE) {
+            throw new RuntimeException("Only active students can log attendance. Current status: " + context.getStatus());
         }
 
         // Check if there's an active session (already timed in)
-        Optional<AttendanceRecord> activeSession = attendanceRecordRepository
-                .findActiveSessionByStudent(student);
+        if (context.hasOpenSession()) {
+            Optional<AttendanceRecord> activeSession = attendanceRecordRepository.findOpenRecordWithStudent(context.getOpenSessionId());
 
-        if (activeSession.isPresent()) {
-            // Student is timed in - process time-out
-            return processTimeOut(activeSession.get(), request.getTasksCompleted());
+            if (activeSession.isPresent()) {
+                // Student is timed in - process time-out
+                return processTimeOut(activeSession.get(), request.getTasksCompleted(), punchedAt);
+            }
+
+            // Registry entry was stale - drop it and treat this tap as a time-in
+            activeSessionRegistry.evict(context.getStudentId(), context.getOpenSessionId());
+            context.setOpenSessionId(null);
         }
 
         // No active session - validate if student can time in
-        validateTimeInEligibility(student);
+        validateTimeInEligibility(context, punchedAt);
 
         // All checks passed - allow time-in
-        return processTimeIn(student);
+        return processTimeIn(context, punchedAt);
+    }
+
+    /**
+     * Single-query lookup of everything a kiosk tap needs; the open session
+     * comes from the registry
+     */
+    public KioskPunchContext resolveKioskContext(String idBadge) {
+        KioskPunchContext context = studentRepository.findKioskPunchContext(idBadge)
+                .orElseThrow(() -> new RuntimeException("Student not found with ID badge: " + idBadge));
+
+        OpenSessionEntry openSession = activeSessionRegistry.get(context.getStudentId());
+        context.setOpenSessionId(openSession != null ? openSession.getRecordId() : null);
+        return context;
+    }
+
+    /**
+     * resolveKioskContext for every badge of a punch batch in one query;
+     * unknown badges are missing from the map
+     */
+    public Map<String, KioskPunchContext> resolveKioskContexts(Collection<String> idBadges) {
+        Map<String, KioskPunchContext> contexts = new HashMap<>();
+
+        for (KioskPunchContext context : studentRepository.findKioskPunchContexts(idBadges)) {
+            OpenSessionEntry openSession = activeSessionRegistry.get(context.getStudentId());
+            context.setOpenSessionId(openSession != null ? openSession.getRecordId() : null);
+            contexts.put(context.getIdBadge(), context);
+        }
+        return contexts;
+    }
+
+    @Transactional
+    public void enableTotp(KioskPunchContext context) {
+        studentRepository.enableTotp(context.getStudentId());
+        context.setTotpEnabled(true);
+        badgeDirectory.markTotpEnabled(context.getIdBadge());
     }
 
     /**
@@ -131,15 +206,14 @@ public class AttendanceService {
      *    - Allow time-in if last time-out was at least 4 hours ago
      * 3. Always reject if currently timed in
      */
-    private void validateTimeInEligibility(Student student) {
-        LocalDateTime now = LocalDateTime.now();
+    private void validateTimeInEligibility(KioskPunchContext context, LocalDateTime now) {
         LocalTime currentTime = now.toLocalTime();
 
         // Check if student has active schedule
-        if (student.hasActiveSchedule()) {
-            LocalTime scheduleStart = student.getScheduledStartTime();
-            LocalTime scheduleEnd = student.getScheduledEndTime();
-            int gracePeriod = student.getGracePeriodMinutes() != null ? student.getGracePeriodMinutes() : 5;
+        if (context.hasActiveSchedule()) {
+            LocalTime scheduleStart = context.getScheduledStartTime();
+            LocalTime scheduleEnd = context.getScheduledEndTime();
+            int gracePeriod = context.getGracePeriodMinutes() != null ? context.getGracePeriodMinutes() : 5;
 
             // Allow time-in from (start - grace) to (start + grace)
             // Example: Schedule 10:00, Grace 5 min → Allow 9:55 to 10:05
@@ -160,26 +234,22 @@ public class AttendanceService {
         }
 
         // No schedule OR outside schedule window - check minimum hours between sessions
-        List<AttendanceRecord> recentRecords = attendanceRecordRepository
-                .findByStudentOrderByAttendanceDateDesc(student);
+        LocalDateTime lastTimeOut = context.getLastTimeOut();
 
-        if (!recentRecords.isEmpty()) {
-            Optional<AttendanceRecord> lastCompleted = recentRecords.stream()
-                    .filter(record -> record.getTimeOut() != null)
-                    .findFirst();
-
-            if (lastCompleted.isPresent()) {
-                LocalDateTime lastTimeOut = lastCompleted.get().getTimeOut();
-                Duration timeSinceLastTimeOut = Duration.between(lastTimeOut, now);
-
-                if (timeSinceLastTimeOut.toHours() < MINIMUM_HOURS_BETWEEN_SESSIONS) {
-                    long hoursRemaining = MINIMUM_HOURS_BETWEEN_SESSIONS - timeSinceLastTimeOut.toHours();
-                    throw new RuntimeException(
-                            String.format("You must wait at least %d hours between sessions. " +
-                                            "Please wait %d more hour(s) before timing in again.",
-                                    MINIMUM_HOURS_BETWEEN_SESSIONS, hoursRemaining)
-                    );
-                }
+        if (lastTimeOut != null && now.isBefore(lastTimeOut)) {
+            throw new RuntimeException("Time in cannot be earlier than the previous time out");
+        }
+
+        if (lastTimeOut != null) {
+            Duration timeSinceLastTimeOut = Duration.between(lastTimeOut, now);
+
+            if (timeSinceLastTimeOut.toHours() < MINIMUM_HOURS_BETWEEN_SESSIONS) {
+                long hoursRemaining = MINIMUM_HOURS_BETWEEN_SESSIONS - timeSinceLastTimeOut.toHours();
+                throw new RuntimeException(
+                        String.format("You must wait at least %d hours between sessions. " +
+                                        "Please wait %d more hour(s) before timing in again.",
+                                MINIMUM_HOURS_BETWEEN_SESSIONS, hoursRemaining)
+                );
             }
         }
     }
@@ -200,22 +270,25 @@ public class AttendanceService {
     // ==================== TIME IN PROCESSING ====================
 
     @Transactional
-    private AttendanceResponse processTimeIn(Student student) {
-        LocalDateTime now = LocalDateTime.now();
+    private AttendanceResponse processTimeIn(KioskPunchContext context, LocalDateTime now) {
         LocalTime arrivalTime = now.toLocalTime();
 
+        // Reference only - the context already carries every field the response needs
+        Student student = studentRepository.getReferenceById(context.getStudentId());
+
         AttendanceRecord record = new AttendanceRecord(student, now);
         record.setStatus(AttendanceStatus.TIMED_IN);
         record.setWorkDate(calculateWorkDate(now));
 
         attendanceRecordRepository.save(record);
+        activeSessionRegistry.open(record);
 
         return new AttendanceResponse(
                 "TIME_IN",
-                buildTimeInMessage(student, arrivalTime),
+                buildTimeInMessage(context, arrivalTime),
                 true,
-                student.getFullName(),
-                student.getIdBadge(),
+                context.getFullName(),
+                context.getIdBadge(),
                 now,
                 null,
                 roundToNearestHour(now),
@@ -224,19 +297,19 @@ public class AttendanceService {
                 0.0,
                 0.0,
                 0.0,
-                student.getTotalAccumulatedHours(),
+                HoursConverter.toHours(context.getTotalAccumulatedMinutes()),
                 null,
                 false
         );
     }
 
-    private String buildTimeInMessage(Student student, LocalTime arrivalTime) {
+    private String buildTimeInMessage(KioskPunchContext context, LocalTime arrivalTime) {
         StringBuilder message = new StringBuilder("Time in recorded successfully");
 
-        if (student.hasActiveSchedule()) {
-            LocalTime scheduleStart = student.getScheduledStartTime();
-            LocalTime scheduleEnd = student.getScheduledEndTime();
-            int gracePeriod = student.getGracePeriodMinutes();
+        if (context.hasActiveSchedule()) {
+            LocalTime scheduleStart = context.getScheduledStartTime();
+            LocalTime scheduleEnd = context.getScheduledEndTime();
+            int gracePeriod = context.getGracePeriodMinutes();
 
             // Determine arrival status
             boolean isEarly = arrivalTime.isBefore(scheduleStart);
@@ -274,116 +347,69 @@ public class AttendanceService {
 
     // ==================== TIME OUT PROCESSING ====================
 
+    /**
+     * Time-out in one pass: the record arrives with its student already
+     * loaded, the session's tasks are read once and decide both whether
+     * time-out tasks are required and what the consolidated summary is,
+     * and each entity is saved once.
+     */
     @Transactional
-    private AttendanceResponse processTimeOut(AttendanceRecord record, String tasksCompleted) {
-        // Check if tasks were logged during the session
-        boolean hasLoggedTasks = taskService.hasTasksForRecord(record.getId());
-
-        if (hasLoggedTasks) {
-            return processTimeOutWithExistingTasks(record, tasksCompleted);
-        } else {
-            return processTraditionalTimeOut(record, tasksCompleted);
-        }
-    }
+    private AttendanceResponse processTimeOut(AttendanceRecord record, String tasksCompleted, LocalDateTime now) {
+        List<TaskEntry> loggedTasks = taskEntryRepository.findByAttendanceRecordOrderByCompletedAtAsc(record);
+        boolean hasAdditionalTasks = tasksCompleted != null && !tasksCompleted.trim().isEmpty();
 
-    @Transactional
-    private AttendanceResponse processTraditionalTimeOut(AttendanceRecord record, String tasksCompleted) {
-        if (tasksCompleted == null || tasksCompleted.trim().isEmpty()) {
+        if (loggedTasks.isEmpty() && !hasAdditionalTasks) {
             throw new RuntimeException("Tasks completed is required for time out");
         }
 
-        LocalDateTime now = LocalDateTime.now();
-
-        record.setTimeOut(now);
+        if (now.isBefore(record.getTimeIn())) {
+            throw new RuntimeException("Time out cannot be earlier than the session's time in");
+        }
 
-        // ✅ PRESERVE APPROVAL MESSAGE
-        String existingTasks = record.getTasksCompleted();
-        String approvalMessage = null;
+        // Preserve the admin approval message (if any) before the tasks are overwritten
+        String approvalMessage = extractApprovalMessage(record.getTasksCompleted());
 
-        if (existingTasks != null && existingTasks.contains("[ADMIN APPROVED SCHEDULE OVERRIDE")) {
-            int approvalIndex = existingTasks.indexOf("[ADMIN APPROVED SCHEDULE OVERRIDE");
-            approvalMessage = existingTasks.substring(approvalIndex);
-            System.out.println("✅ Found approval message in traditional timeout, will preserve it");
+        String finalTasks;
+        if (loggedTasks.isEmpty()) {
+            finalTasks = tasksCompleted;
+        } else {
+            finalTasks = taskService.consolidateTasks(loggedTasks);
+            if (hasAdditionalTasks) {
+                finalTasks += "\n\n=== Additional Tasks (Added during time-out) ===\n" + tasksCompleted;
+            }
         }
 
-        // Set new tasks
-        String finalTasks = tasksCompleted;
-
-        // ✅ APPEND APPROVAL MESSAGE BACK
         if (approvalMessage != null) {
-            finalTasks = tasksCompleted + "\n\n" + approvalMessage;
-            System.out.println("✅ Approval message preserved during traditional time-out");
+            finalTasks = finalTasks + "\n\n" + approvalMessage;
         }
 
+        record.setTimeOut(now);
         record.setTasksCompleted(finalTasks);
         record.setStatus(AttendanceStatus.TIMED_OUT);
 
         // Calculate hours and update record
-        HoursCalculation calculation = calculateScheduleAwareHours(record);
+        HoursCalculation calculation = hoursCalculationEngine.calculate(record);
         updateRecordHours(record, calculation);
 
-        // Update student's total accumulated hours
         Student student = record.getStudent();
-        student.setTotalAccumulatedHours(student.getTotalAccumulatedHours() + calculation.getTotalHours());
 
         attendanceRecordRepository.save(record);
-        studentRepository.save(student);
+        hoursLedgerService.record(student, record, calculation.getTotalMinutes(), HoursLedgerReason.TIME_OUT);
+        activeSessionRegistry.close(record);
 
         return buildTimeOutResponse(student, record, calculation, now);
     }
 
-    @Transactional
-    private AttendanceResponse processTimeOutWithExistingTasks(AttendanceRecord record, String additionalTasks) {
-        LocalDateTime now = LocalDateTime.now();
-
-        record.setTimeOut(now);
-        record.setStatus(AttendanceStatus.TIMED_OUT);
-
-        // ✅ PRESERVE APPROVAL MESSAGE - Check if it exists BEFORE overwriting
-        String existingTasks = record.getTasksCompleted();
-        String approvalMessage = null;
-
-        if (existingTasks != null) {
-            // Extract approval message if it exists
-            if (existingTasks.contains("[ADMIN APPROVED SCHEDULE OVERRIDE")) {
-                int approvalIndex = existingTasks.indexOf("[ADMIN APPROVED SCHEDULE OVERRIDE");
-                approvalMessage = existingTasks.substring(approvalIndex);
-                System.out.println("✅ Found approval message, will preserve it: " + approvalMessage);
-            }
-        }
-
-        // Get consolidated tasks from TaskService
-        String consolidatedTasks = taskService.getConsolidatedTasksForTimeOut(record);
-
-        // Add any additional tasks provided during time-out
-        if (additionalTasks != null && !additionalTasks.trim().isEmpty()) {
-            if (consolidatedTasks != null && !consolidatedTasks.isEmpty()) {
-                consolidatedTasks += "\n\n=== Additional Tasks (Added during time-out) ===\n" + additionalTasks;
-            } else {
-                consolidatedTasks = "=== Tasks Added During Time-out ===\n" + additionalTasks;
-            }
-        }
-
-        // ✅ APPEND APPROVAL MESSAGE BACK if it existed
-        if (approvalMessage != null) {
-            consolidatedTasks = (consolidatedTasks != null ? consolidatedTasks : "") + "\n\n" + approvalMessage;
-            System.out.println("✅ Approval message preserved during time-out");
+    /**
+     * The approval note admin adds to a session runs to the end of the tasks
+     * text; returns it from the marker on, or null if there is none
+     */
+    private String extractApprovalMessage(String tasks) {
+        if (tasks == null) {
+            return null;
         }
-
-        record.setTasksCompleted(consolidatedTasks);
-
-        // Calculate hours and update record
-        HoursCalculation calculation = calculateScheduleAwareHours(record);
-        updateRecordHours(record, calculation);
-
-        // Update student's total accumulated hours
-        Student student = record.getStudent();
-        student.setTotalAccumulatedHours(student.getTotalAccumulatedHours() + calculation.getTotalHours());
-
-        attendanceRecordRepository.save(record);
-        studentRepository.save(student);
-
-        return buildTimeOutResponse(student, record, calculation, now);
+        int approvalIndex = tasks.indexOf(APPROVAL_MARKER);
+        return approvalIndex >= 0 ? tasks.substring(approvalIndex) : null;
     }
 
     private String buildTimeOutMessage(Student student, AttendanceRecord record) {
@@ -434,262 +460,6 @@ public class AttendanceService {
 
     // ==================== HOURS CALCULATION ====================
 
-    private HoursCalculation calculateScheduleAwareHours(AttendanceRecord record) {
-        Student student = record.getStudent();
-        LocalDateTime timeIn = record.getTimeIn();
-        LocalDateTime timeOut = record.getTimeOut();
-
-        // Check if schedule override was APPROVED (not just requested)
-        boolean scheduleOverrideApproved = isScheduleOverrideApproved(record);
-
-        // If schedule override approved, count ALL actual hours worked
-        if (scheduleOverrideApproved) {
-            return calculateOriginalHours(timeIn, timeOut);
-        }
-
-        // If no active schedule, use original calculation
-        if (!student.hasActiveSchedule()) {
-            return calculateOriginalHours(timeIn, timeOut);
-        }
-
-        // === STRICT SCHEDULE ENFORCEMENT ===
-        // Early arrivals are NOT counted unless approved
-        return calculateStrictScheduleHours(student, timeIn, timeOut);
-    }
-
-    private boolean isScheduleOverrideApproved(AttendanceRecord record) {
-        if (record.getTasksCompleted() == null) {
-            return false;
-        }
-
-        String tasks = record.getTasksCompleted();
-
-        // Check for explicit approval markers (exact phrases admin adds)
-        return tasks.contains("[ADMIN APPROVED SCHEDULE OVERRIDE]") ||
-                tasks.contains("[ADMIN APPROVED: Early work hours counted") ||
-                tasks.contains("Early work hours will be counted for this session");
-    }
-
-    private HoursCalculation calculateStrictScheduleHours(Student student, LocalDateTime timeIn, LocalDateTime timeOut) {
-        LocalTime actualTimeIn = timeIn.toLocalTime();
-        LocalTime actualTimeOut = timeOut.toLocalTime();
-        LocalTime scheduledStart = student.getScheduledStartTime();
-        LocalTime scheduledEnd = student.getScheduledEndTime();
-        int gracePeriod = student.getGracePeriodMinutes() != null ? student.getGracePeriodMinutes() : 5;
-
-        // === STEP 1: Determine EFFECTIVE start time ===
-        LocalTime effectiveStartTime;
-        boolean wasEarly = false;
-        boolean wasLate = false;
-
-        if (actualTimeIn.isBefore(scheduledStart)) {
-            // EARLY ARRIVAL: Use scheduled start, NOT actual arrival
-            effectiveStartTime = scheduledStart;
-            wasEarly = true;
-            System.out.println("🔵 Early arrival: Actual=" + actualTimeIn + ", Using scheduled=" + scheduledStart);
-        } else if (actualTimeIn.isAfter(scheduledStart.plusMinutes(gracePeriod))) {
-            // LATE ARRIVAL: Use actual arrival
-            effectiveStartTime = actualTimeIn;
-            wasLate = true;
-            System.out.println("🔴 Late arrival: Using actual=" + actualTimeIn);
-        } else {
-            // ON TIME: Use scheduled start
-            effectiveStartTime = scheduledStart;
-            System.out.println("🟢 On-time arrival: Using scheduled=" + scheduledStart);
-        }
-
-        // === STEP 2: Calculate required end time ===
-        LocalTime requiredEndTime;
-        if (wasLate) {
-            // If late, must work extra to make up scheduled hours
-            long lateMinutes = Duration.between(
-                    scheduledStart.plusMinutes(gracePeriod),
-                    actualTimeIn
-            ).toMinutes();
-            requiredEndTime = scheduledEnd.plusMinutes(lateMinutes);
-            System.out.println("⏰ Late by " + lateMinutes + " min, required end: " + requiredEndTime);
-        } else {
-            // On-time or early: required end is scheduled end
-            requiredEndTime = scheduledEnd;
-            System.out.println("⏰ Required end: " + requiredEndTime);
-        }
-
-        // === STEP 3: Build effective start DateTime ===
-        LocalDateTime effectiveStartDateTime = LocalDateTime.of(timeIn.toLocalDate(), effectiveStartTime);
-
-        // FIX: Check if this is truly a night shift by comparing actual DateTimes, not just times
-        // A night shift means time-out is on a DIFFERENT date than time-in
-        boolean isNightShift = !timeIn.toLocalDate().equals(timeOut.toLocalDate());
-
-        if (isNightShift) {
-            // True night shift: time-out is on next day
-            System.out.println("🌙 Night shift detected (time-out on next day)");
-
-            // If effective start time is "after" time-out time (e.g., 22:00 start, 06:00 end next day)
-            // the effective start is on the SAME day as time-in, not previous
-            if (effectiveStartTime.isAfter(actualTimeOut)) {
-                // This is expected for night shifts - no adjustment needed
-                System.out.println("✓ Night shift: Start=" + effectiveStartTime + " on " + timeIn.toLocalDate() +
-                        ", End=" + actualTimeOut + " on " + timeOut.toLocalDate());
-            }
-        } else {
-            // Same-day session: Both time-in and time-out are on the same date
-            System.out.println("☀️ Same-day session detected");
-        }
-
-        // === STEP 4: Calculate actual work duration from EFFECTIVE start ===
-        Duration workDuration = Duration.between(effectiveStartDateTime, timeOut);
-        long workMinutes = Math.max(0, workDuration.toMinutes());
-
-        System.out.println("📊 Work duration: " + workMinutes + " minutes (" + (workMinutes / 60.0) + " hours)");
-
-        // === STEP 5: Determine scenario and calculate ===
-        HoursCalculation calculation = new HoursCalculation();
-
-        // Build required end DateTime for comparison
-        LocalDateTime requiredEndDateTime;
-        if (isNightShift && requiredEndTime.isBefore(effectiveStartTime)) {
-            // Night shift: required end is next day
-            requiredEndDateTime = LocalDateTime.of(timeOut.toLocalDate(), requiredEndTime);
-        } else if (!isNightShift && requiredEndTime.isBefore(effectiveStartTime)) {
-            // Same day but schedule crosses midnight (e.g., 22:00-02:00 but they worked same day)
-            requiredEndDateTime = LocalDateTime.of(timeIn.toLocalDate().plusDays(1), requiredEndTime);
-        } else {
-            // Normal case: required end is on the date where we're measuring
-            requiredEndDateTime = LocalDateTime.of(
-                    isNightShift ? timeOut.toLocalDate() : timeIn.toLocalDate(),
-                    requiredEndTime
-            );
-        }
-
-        if (timeOut.isBefore(requiredEndDateTime)) {
-            // ========================================
-            // SCENARIO A: UNDERTIME (Left early)
-            // ========================================
-            System.out.println("⚠️ UNDERTIME: Left at " + timeOut + " (required: " + requiredEndDateTime + ")");
-
-            Duration undertimeDuration = Duration.between(timeOut, requiredEndDateTime);
-            long undertimeMinutes = undertimeDuration.toMinutes();
-
-            // Deduct break if worked >= 5 hours
-            if (workMinutes >= 300) {
-                workMinutes -= 60;
-                calculation.setBreakDeducted(true);
-            } else {
-                calculation.setBreakDeducted(false);
-            }
-
-            workMinutes = Math.max(0, workMinutes);
-
-            double totalHours = convertMinutesToHoursWithRounding(workMinutes);
-            double undertimeHours = convertMinutesToHoursWithRounding(undertimeMinutes);
-
-            calculation.setTotalHours(totalHours);
-            calculation.setRegularHours(totalHours);
-            calculation.setOvertimeHours(0.0);
-            calculation.setUndertimeHours(undertimeHours);
-
-        } else if (timeOut.isAfter(requiredEndDateTime)) {
-            // ========================================
-            // SCENARIO B: OVERTIME (Stayed late)
-            // ========================================
-            System.out.println("✅ OVERTIME: Left at " + timeOut + " (required: " + requiredEndDateTime + ")");
-
-            // Calculate scheduled hours (from effective start to required end)
-            Duration scheduledDuration = Duration.between(effectiveStartDateTime, requiredEndDateTime);
-            long scheduledMinutes = scheduledDuration.toMinutes();
-
-            // Deduct break from scheduled hours if >= 5 hours
-            if (scheduledMinutes >= 300) {
-                scheduledMinutes -= 60;
-                calculation.setBreakDeducted(true);
-            } else {
-                calculation.setBreakDeducted(false);
-            }
-
-            scheduledMinutes = Math.max(0, scheduledMinutes);
-            double regularHours = Math.min(Math.floor(scheduledMinutes / 60.0), REGULAR_HOURS_CAP);
-
-            // Calculate overtime (from required end to actual end)
-            Duration overtimeDuration = Duration.between(requiredEndDateTime, timeOut);
-            long overtimeMinutes = Math.max(0, overtimeDuration.toMinutes());
-            double overtimeHours = convertMinutesToHoursWithRounding(overtimeMinutes);
-
-            calculation.setTotalHours(regularHours + overtimeHours);
-            calculation.setRegularHours(regularHours);
-            calculation.setOvertimeHours(overtimeHours);
-            calculation.setUndertimeHours(0.0);
-
-        } else {
-            // ========================================
-            // SCENARIO C: EXACTLY ON TIME
-            // ========================================
-            System.out.println("✅ EXACTLY ON TIME");
-
-            // Deduct break if worked >= 5 hours
-            if (workMinutes >= 300) {
-                workMinutes -= 60;
-                calculation.setBreakDeducted(true);
-            } else {
-                calculation.setBreakDeducted(false);
-            }
-
-            workMinutes = Math.max(0, workMinutes);
-            double regularHours = Math.min(Math.floor(workMinutes / 60.0), REGULAR_HOURS_CAP);
-
-            calculation.setTotalHours(regularHours);
-            calculation.setRegularHours(regularHours);
-            calculation.setOvertimeHours(0.0);
-            calculation.setUndertimeHours(0.0);
-        }
-
-        System.out.println("📈 Final: Total=" + calculation.getTotalHours() +
-                ", Regular=" + calculation.getRegularHours() +
-                ", OT=" + calculation.getOvertimeHours() +
-                ", UT=" + calculation.getUndertimeHours());
-
-        return calculation;
-    }
-
-    private HoursCalculation calculateOriginalHours(LocalDateTime timeIn, LocalDateTime timeOut) {
-        Duration duration = Duration.between(timeIn, timeOut);
-        long totalMinutes = duration.toMinutes();
-
-        HoursCalculation calculation = new HoursCalculation();
-        calculation.setBreakDeducted(false);
-
-        if (totalMinutes >= 300) {
-            totalMinutes -= 60;
-            calculation.setBreakDeducted(true);
-        }
-
-        double totalHours = convertMinutesToHoursWithRounding(totalMinutes);
-        calculation.setTotalHours(totalHours);
-
-        if (totalHours >= REGULAR_HOURS_CAP) {
-            calculation.setRegularHours((double) REGULAR_HOURS_CAP);
-            calculation.setOvertimeHours(totalHours - REGULAR_HOURS_CAP);
-            calculation.setUndertimeHours(0.0);
-        } else {
-            calculation.setRegularHours(totalHours);
-            calculation.setOvertimeHours(0.0);
-            calculation.setUndertimeHours(REGULAR_HOURS_CAP - totalHours);
-        }
-
-        return calculation;
-    }
-
-    private double convertMinutesToHoursWithRounding(long totalMinutes) {
-        long wholeHours = totalMinutes / 60;
-        long remainingMinutes = totalMinutes % 60;
-
-        if (remainingMinutes >= ROUNDING_THRESHOLD_MINUTES) {
-            wholeHours += 1;
-        }
-
-        return (double) wholeHours;
-    }
-
     /**
      * Apply 55-minute rounding rule
      * - 55+ minutes rounds up to next hour
@@ -727,11 +497,12 @@ public class AttendanceService {
     // ==================== HELPER METHODS ====================
 
     private void updateRecordHours(AttendanceRecord record, HoursCalculation calculation) {
-        record.setTotalHours(calculation.getTotalHours());
-        record.setRegularHours(calculation.getRegularHours());
-        record.setOvertimeHours(calculation.getOvertimeHours());
-        record.setUndertimeHours(calculation.getUndertimeHours());
+        record.setTotalMinutes(calculation.getTotalMinutes());
+        record.setRegularMinutes(calculation.getRegularMinutes());
+        record.setOvertimeMinutes(calculation.getOvertimeMinutes());
+        record.setUndertimeMinutes(calculation.getUndertimeMinutes());
         record.setBreakDeducted(calculation.isBreakDeducted());
+        record.setCalculationInputs(calculation.getInputsFingerprint());
     }
 
     private AttendanceResponse buildTimeOutResponse(Student student, AttendanceRecord record,
@@ -746,11 +517,11 @@ public class AttendanceService {
                 timeOut,
                 roundToNearestHour(record.getTimeIn()),
                 roundToNearestHour(timeOut),
-                calculation.getTotalHours(),
-                calculation.getRegularHours(),
-                calculation.getOvertimeHours(),
-                calculation.getUndertimeHours(),
-                student.getTotalAccumulatedHours(),
+                HoursConverter.toHours(calculation.getTotalMinutes()),
+                HoursConverter.toHours(calculation.getRegularMinutes()),
+                HoursConverter.toHours(calculation.getOvertimeMinutes()),
+                HoursConverter.toHours(calculation.getUndertimeMinutes()),
+                HoursConverter.toHours(student.getTotalAccumulatedMinutes()),
                 record.getTasksCompleted(),
                 calculation.isBreakDeducted()
         );
@@ -763,18 +534,19 @@ public class AttendanceService {
         AttendanceRecord record = attendanceRecordRepository.findById(request.getAttendanceRecordId())
                 .orElseThrow(() -> new RuntimeException("Attendance record not found"));
 
-        Double originalTotalHours = record.getTotalHours() != null ? record.getTotalHours() : 0.0;
+        int originalTotalMinutes = record.getTotalMinutes();
+        int correctedMinutes = HoursConverter.toMinutes(request.getCorrectedHours());
 
-        record.setTotalHours(request.getCorrectedHours());
+        record.setTotalMinutes(correctedMinutes);
 
-        if (request.getCorrectedHours() >= REGULAR_HOURS_CAP) {
-            record.setRegularHours((double) REGULAR_HOURS_CAP);
-            record.setOvertimeHours(request.getCorrectedHours() - REGULAR_HOURS_CAP);
-            record.setUndertimeHours(0.0);
+        if (correctedMinutes >= REGULAR_MINUTES_CAP) {
+            record.setRegularMinutes(REGULAR_MINUTES_CAP);
+            record.setOvertimeMinutes(correctedMinutes - REGULAR_MINUTES_CAP);
+            record.setUndertimeMinutes(0);
         } else {
-            record.setRegularHours(request.getCorrectedHours());
-            record.setOvertimeHours(0.0);
-            record.setUndertimeHours(REGULAR_HOURS_CAP - request.getCorrectedHours());
+            record.setRegularMinutes(correctedMinutes);
+            record.setOvertimeMinutes(0);
+            record.setUndertimeMinutes(REGULAR_MINUTES_CAP - correctedMinutes);
         }
 
         record.setStatus(AttendanceStatus.ADMIN_CORRECTED);
@@ -790,11 +562,11 @@ public class AttendanceService {
         }
 
         Student student = record.getStudent();
-        Double hoursDifference = request.getCorrectedHours() - originalTotalHours;
-        student.setTotalAccumulatedHours(student.getTotalAccumulatedHours() + hoursDifference);
 
         attendanceRecordRepository.save(record);
-        studentRepository.save(student);
+        hoursLedgerService.record(student, record, correctedMinutes - originalTotalMinutes,
+                HoursLedgerReason.ADMIN_CORRECTION);
+        activeSessionRegistry.close(record);
 
         // AUTO-DELETE related notifications after correction
         notificationService.deleteNotificationsForRecord(record);
@@ -809,11 +581,11 @@ public class AttendanceService {
                 record.getTimeOut(),
                 roundToNearestHour(record.getTimeIn()),
                 record.getTimeOut() != null ? roundToNearestHour(record.getTimeOut()) : null,
-                record.getTotalHours(),
-                record.getRegularHours(),
-                record.getOvertimeHours(),
-                record.getUndertimeHours(),
-                student.getTotalAccumulatedHours(),
+                HoursConverter.toHours(record.getTotalMinutes()),
+                HoursConverter.toHours(record.getRegularMinutes()),
+                HoursConverter.toHours(record.getOvertimeMinutes()),
+                HoursConverter.toHours(record.getUndertimeMinutes()),
+                HoursConverter.toHours(student.getTotalAccumulatedMinutes()),
                 record.getTasksCompleted(),
                 record.getBreakDeducted()
         );
@@ -865,7 +637,7 @@ public class AttendanceService {
             record.setStatus(AttendanceStatus.ADMIN_CORRECTED);
 
             // Calculate hours
-            HoursCalculation calculation = calculateScheduleAwareHours(record);
+            HoursCalculation calculation = hoursCalculationEngine.calculate(record);
             updateRecordHours(record, calculation);
 
             // Set tasks with admin note
@@ -873,11 +645,8 @@ public class AttendanceService {
                     "\n\n[ADMIN MANUAL ENTRY: " + request.getAdminReason() + "]";
             record.setTasksCompleted(tasksWithNote);
 
-            // Update student's total hours
-            student.setTotalAccumulatedHours(student.getTotalAccumulatedHours() + calculation.getTotalHours());
-
             attendanceRecordRepository.save(record);
-            studentRepository.save(student);
+            hoursLedgerService.record(student, record, calculation.getTotalMinutes(), HoursLedgerReason.MANUAL_ENTRY);
 
             return new AttendanceResponse(
                     "MANUAL_ENTRY_COMPLETE",
@@ -889,11 +658,11 @@ public class AttendanceService {
                     request.getTimeOut(),
                     roundToNearestHour(request.getTimeIn()),
                     roundToNearestHour(request.getTimeOut()),
-                    calculation.getTotalHours(),
-                    calculation.getRegularHours(),
-                    calculation.getOvertimeHours(),
-                    calculation.getUndertimeHours(),
-                    student.getTotalAccumulatedHours(),
+                    HoursConverter.toHours(calculation.getTotalMinutes()),
+                    HoursConverter.toHours(calculation.getRegularMinutes()),
+                    HoursConverter.toHours(calculation.getOvertimeMinutes()),
+                    HoursConverter.toHours(calculation.getUndertimeMinutes()),
+                    HoursConverter.toHours(student.getTotalAccumulatedMinutes()),
                     record.getTasksCompleted(),
                     calculation.isBreakDeducted()
             );
@@ -903,6 +672,7 @@ public class AttendanceService {
             record.setTasksCompleted("[ADMIN MANUAL ENTRY: " + request.getAdminReason() + "]");
 
             attendanceRecordRepository.save(record);
+            activeSessionRegistry.open(record);
 
             return new AttendanceResponse(
                     "MANUAL_ENTRY_TIME_IN",
@@ -918,7 +688,7 @@ public class AttendanceService {
                     0.0,
                     0.0,
                     0.0,
-                    student.getTotalAccumulatedHours(),
+                    HoursConverter.toHours(student.getTotalAccumulatedMinutes()),
                     record.getTasksCompleted(),
                     false
             );
@@ -928,35 +698,34 @@ public class AttendanceService {
     // ==================== SESSION INFO ====================
 
     public AttendanceSessionInfo getCurrentSessionInfo(String idBadge) {
-        Student student = studentRepository.findByIdBadge(idBadge)
-                .orElseThrow(() -> new RuntimeException("Student not found with ID badge: " + idBadge));
+        BadgeDirectory.BadgeSnapshot student = badgeDirectory.lookup(idBadge);
+        if (student == null) {
+            throw new RuntimeException("Student not found with ID badge: " + idBadge);
+        }
 
-        AttendanceRecord activeRecord = attendanceRecordRepository
-                .findActiveSessionByStudent(student)
-                .orElseThrow(() -> new RuntimeException("No active attendance session found"));
+        OpenSessionEntry activeSession = activeSessionRegistry.get(student.getStudentId());
+        if (activeSession == null) {
+            throw new RuntimeException("No active attendance session found");
+        }
 
-        List<TaskEntry> sessionTasks = taskEntryRepository.findByAttendanceRecordOrderByCompletedAtAsc(activeRecord);
+        long sessionTaskCount = taskEntryRepository.countByAttendanceRecord(
+                attendanceRecordRepository.getReferenceById(activeSession.getRecordId()));
 
-        Duration sessionDuration = Duration.between(activeRecord.getTimeIn(), LocalDateTime.now());
+        Duration sessionDuration = Duration.between(activeSession.getTimeIn(), LocalDateTime.now());
         double currentHours = sessionDuration.toMinutes() / 60.0;
 
         return new AttendanceSessionInfo(
-                activeRecord.getId(),
+                activeSession.getRecordId(),
                 student.getFullName(),
                 student.getIdBadge(),
-                activeRecord.getTimeIn(),
-                sessionTasks.size(),
+                activeSession.getTimeIn(),
+                (int) sessionTaskCount,
                 Math.round(currentHours * 100.0) / 100.0
         );
     }
 
     public boolean canLogTasks(String idBadge) {
-        try {
-            getCurrentSessionInfo(idBadge);
-            return true;
-        } catch (RuntimeException e) {
-            return false;
-        }
+        return activeSessionRegistry.findByBadge(idBadge) != null;
     }
 
     // ==================== SCHEDULE MANAGEMENT ====================
@@ -971,30 +740,73 @@ public class AttendanceService {
         }
 
         // Check if student is currently timed in
-        Optional<AttendanceRecord> activeSession = attendanceRecordRepository
-                .findActiveSessionByStudent(student);
-
-        if (activeSession.isPresent()) {
+        if (activeSessionRegistry.hasOpenSession(student.getId())) {
             throw new RuntimeException("Cannot update schedule while student is currently timed in");
         }
 
+        applySchedule(student, request);
+
+        Student updatedStudent = studentRepository.save(student);
+        badgeDirectory.put(updatedStudent);
+
+        return toScheduleResponse(updatedStudent);
+    }
+
+    /**
+     * Applies one schedule to many students in a single transaction, so the
+     * updates are flushed together as JDBC batches at commit. Students that
+     * don't exist or are currently timed in are skipped, with the reason.
+     */
+    @Transactional
+    public BulkScheduleResult updateStudentSchedules(List<Long> studentIds, UpdateScheduleRequest request) {
+        if (request.getStartTime().isAfter(request.getEndTime())) {
+            throw new RuntimeException("Start time must be before end time");
+        }
+
+        Map<Long, Student> students = studentRepository.findAllById(studentIds).stream()
+                .collect(Collectors.toMap(Student::getId, student -> student));
+        List<ScheduleResponse> responses = new ArrayList<>();
+        Map<Long, String> skipped = new LinkedHashMap<>();
+
+        for (Long studentId : studentIds) {
+            Student student = students.get(studentId);
+            String reason = student == null ? "Student not found"
+                    : activeSessionRegistry.hasOpenSession(studentId)
+                    ? "Cannot update schedule while student is currently timed in" : null;
+            if (reason != null) {
+                logger.warn("⚠️ Failed to update schedule for student ID {}: {}", studentId, reason);
+                skipped.put(studentId, reason);
+                continue;
+            }
+
+            applySchedule(student, request);
+
+            badgeDirectory.put(student);
+            responses.add(toScheduleResponse(student));
+        }
+
+        return new BulkScheduleResult(responses, skipped);
+    }
+
+    /**
+     * Sets the student's schedule and bumps its version when anything that
+     * feeds the hours calculation actually changed, which marks the student's
+     * records as stale for incremental recalculation.
+     */
+    private void applySchedule(Student student, UpdateScheduleRequest request) {
+        boolean changed = !Objects.equals(student.getScheduledStartTime(), request.getStartTime())
+                || !Objects.equals(student.getScheduledEndTime(), request.getEndTime())
+                || !Objects.equals(student.getGracePeriodMinutes(), request.getGracePeriodMinutes())
+                || !Objects.equals(student.getScheduleActive(), request.getActive());
+
         student.setScheduledStartTime(request.getStartTime());
         student.setScheduledEndTime(request.getEndTime());
         student.setGracePeriodMinutes(request.getGracePeriodMinutes());
         student.setScheduleActive(request.getActive());
 
-        Student updatedStudent = studentRepository.save(student);
-
-        return new ScheduleResponse(
-                updatedStudent.getId(),
-                updatedStudent.getFullName(),
-                updatedStudent.getIdBadge(),
-                updatedStudent.getScheduledStartTime(),
-                updatedStudent.getScheduledEndTime(),
-                updatedStudent.getGracePeriodMinutes(),
-                updatedStudent.getScheduleActive(),
-                updatedStudent.getScheduledHoursPerDay()
-        );
+        if (changed) {
+            student.setScheduleVersion(student.getScheduleVersion() + 1);
+        }
     }
 
     public ScheduleResponse getStudentSchedule(Long studentId) {
@@ -1032,8 +844,10 @@ public class AttendanceService {
             throw new RuntimeException("Cannot change badge of completed student");
         }
 
+        String previousBadge = student.getIdBadge();
         student.setIdBadge(request.getNewIdBadge());
         Student updatedStudent = studentRepository.save(student);
+        badgeDirectory.put(updatedStudent, previousBadge);
 
         return convertToStudentDto(updatedStudent);
     }
@@ -1054,15 +868,13 @@ public class AttendanceService {
             throw new RuntimeException("Cannot reactivate a completed student");
         }
 
-        Optional<AttendanceRecord> activeSession = attendanceRecordRepository
-                .findActiveSessionByStudent(student);
-
-        if (activeSession.isPresent() && newStatus != StudentStatus.ACTIVE) {
+        if (activeSessionRegistry.hasOpenSession(student.getId()) && newStatus != StudentStatus.ACTIVE) {
             throw new RuntimeException("Cannot change status while student is currently timed in");
         }
 
         student.setStatus(newStatus);
         Student updatedStudent = studentRepository.save(student);
+        badgeDirectory.put(updatedStudent);
 
         return convertToStudentDto(updatedStudent);
     }
@@ -1086,18 +898,14 @@ public class AttendanceService {
         }
 
         // Check if student is currently timed in
-        Optional<AttendanceRecord> activeSession = attendanceRecordRepository
-                .findActiveSessionByStudent(student);
-
-        if (activeSession.isPresent()) {
+        if (activeSessionRegistry.hasOpenSession(student.getId())) {
             throw new RuntimeException("Cannot complete student while they are currently timed in. Please time them out first.");
         }
 
         // Optional: Verify they've reached required hours (if you want to enforce this)
-        if (student.getRequiredHours() != null &&
-             student.getTotalAccumulatedHours() < student.getRequiredHours()) {
+        if (student.getRequiredHours() != null && !student.hasReachedRequiredHours()) {
              throw new RuntimeException("Student has not yet reached required hours. " +
-                 "Current: " + student.getTotalAccumulatedHours() + " / Required: " + student.getRequiredHours());
+                 "Current: " + HoursConverter.toHours(student.getTotalAccumulatedMinutes()) + " / Required: " + student.getRequiredHours());
         }
 
         student.setStatus(StudentStatus.COMPLETED);
@@ -1105,6 +913,7 @@ public class AttendanceService {
         // Keep the badge for historical records
 
         Student updatedStudent = studentRepository.save(student);
+        badgeDirectory.put(updatedStudent);
 
         return convertToStudentDto(updatedStudent);
     }
@@ -1204,8 +1013,10 @@ public class AttendanceService {
                 .orElseThrow(() -> new RuntimeException("Student not found with ID badge: " + idBadge));
 
         // Get active session first (if any)
-        Optional<AttendanceRecord> activeSessionOpt = attendanceRecordRepository
-                .findActiveSessionByStudent(student);
+        OpenSessionEntry openSession = activeSessionRegistry.get(student.getId());
+        Optional<AttendanceRecord> activeSessionOpt = openSession != null
+                ? attendanceRecordRepository.findById(openSession.getRecordId())
+                : Optional.empty();
 
         AttendanceRecord todayRecord = null;
         List<TaskEntry> todayTasks = new ArrayList<>();
@@ -1248,7 +1059,7 @@ public class AttendanceService {
 
         // Determine current status
         String currentStatus = activeSessionOpt.isPresent() ? "TIMED_IN" : "TIMED_OUT";
-        Double todayHours = todayRecord != null ? (todayRecord.getTotalHours() != null ? todayRecord.getTotalHours() : 0.0) : 0.0;
+        Double todayHours = todayRecord != null ? HoursConverter.toHours(todayRecord.getTotalMinutes()) : 0.0;
         Integer todayTasksCount = todayTasks.size();
         Boolean canLogTasks = activeSessionOpt.isPresent();
         Long activeSessionId = activeSessionOpt.map(AttendanceRecord::getId).orElse(null);
@@ -1258,7 +1069,7 @@ public class AttendanceService {
                 student.getFullName(),
                 currentStatus,
                 todayHours,
-                student.getTotalAccumulatedHours(),
+                HoursConverter.toHours(student.getTotalAccumulatedMinutes()),
                 recordDtos,
                 todayTasksCount,
                 canLogTasks,
@@ -1336,10 +1147,10 @@ public class AttendanceService {
         dto.setAttendanceDate(record.getAttendanceDate());
         dto.setTimeIn(record.getTimeIn());
         dto.setTimeOut(record.getTimeOut());
-        dto.setTotalHours(record.getTotalHours());
-        dto.setRegularHours(record.getRegularHours());
-        dto.setOvertimeHours(record.getOvertimeHours());
-        dto.setUndertimeHours(record.getUndertimeHours());
+        dto.setTotalHours(HoursConverter.toHours(record.getTotalMinutes()));
+        dto.setRegularHours(HoursConverter.toHours(record.getRegularMinutes()));
+        dto.setOvertimeHours(HoursConverter.toHours(record.getOvertimeMinutes()));
+        dto.setUndertimeHours(HoursConverter.toHours(record.getUndertimeMinutes()));
         dto.setTasksCompleted(record.getTasksCompleted());
         dto.setStatus(record.getStatus().name());
         dto.setBreakDeducted(record.getBreakDeducted());
@@ -1353,7 +1164,7 @@ public class AttendanceService {
         dto.setFullName(student.getFullName());
         dto.setSchool(student.getSchool());
         dto.setRegistrationDate(student.getRegistrationDate());
-        dto.setTotalAccumulatedHours(student.getTotalAccumulatedHours());
+        dto.setTotalAccumulatedHours(HoursConverter.toHours(student.getTotalAccumulatedMinutes()));
         dto.setStatus(student.getStatus().name());
         dto.setCompletionDate(student.getCompletionDate());
         dto.setRequiredHours(student.getRequiredHours());
@@ -1387,10 +1198,7 @@ public class AttendanceService {
                 .orElseThrow(() -> new RuntimeException("Student not found"));
 
         // Check if student is currently timed in
-        Optional<AttendanceRecord> activeSession = attendanceRecordRepository
-                .findActiveSessionByStudent(student);
-
-        if (activeSession.isPresent()) {
+        if (activeSessionRegistry.hasOpenSession(student.getId())) {
             throw new RuntimeException("Cannot delete student while they are currently timed in. " +
                     "Please time them out first.");
         }
@@ -1425,6 +1233,7 @@ public class AttendanceService {
 
         // 5. Finally delete the student
         studentRepository.delete(student);
+        badgeDirectory.remove(student.getIdBadge(), student.getId());
 
         return deletedStudentDto;
     }
@@ -1435,10 +1244,7 @@ public class AttendanceService {
                 .orElseThrow(() -> new RuntimeException("Student not found"));
 
         // Check if student is currently timed in
-        Optional<AttendanceRecord> activeSession = attendanceRecordRepository
-                .findActiveSessionByStudent(student);
-
-        if (activeSession.isPresent()) {
+        if (activeSessionRegistry.hasOpenSession(student.getId())) {
             throw new RuntimeException("Cannot deactivate student while they are currently timed in. " +
                     "Please time them out first.");
         }
@@ -1447,15 +1253,29 @@ public class AttendanceService {
         student.setStatus(StudentStatus.INACTIVE);
 
         // Optionally release the ID badge
+        String previousBadge = student.getIdBadge();
         if (request.getRemoveIdBadge() != null && request.getRemoveIdBadge()) {
-            String oldBadge = student.getIdBadge();
             student.setIdBadge(null); // Release badge for reuse
         }
 
         // Save deactivation reason in a note (you might want to add a notes field to Student entity)
         // For now, we'll just save the student
         Student updatedStudent = studentRepository.save(student);
+        badgeDirectory.put(updatedStudent, previousBadge);
 
         return convertToStudentDto(updatedStudent);
     }
-}
\ No newline at end of file
+
+    private ScheduleResponse toScheduleResponse(Student student) {
+        return new ScheduleResponse(
+                student.getId(),
+                student.getFullName(),
+                student.getIdBadge(),
+                student.getScheduledStartTime(),
+                student.getScheduledEndTime(),
+                student.getGracePeriodMinutes(),
+                student.getScheduleActive(),
+                student.getScheduledHoursPerDay()
+        );
+    }
+}
@@ -0,0 +1,237 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.entity.StudentStatus;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Resident badge -> student lookup.
+ *
+ * Badges are exactly 4 digits, so every possible badge maps to a slot in a
+ * fixed 10,000 entry array. The directory is loaded once at startup and kept
+ * current by the services that change a student's badge, status, schedule or
+ * TOTP state. Writes made inside a transaction are applied after commit.
+ */
+@Component
+public class BadgeDirectory {
+
+    private static final Logger logger = LoggerFactory.getLogger(BadgeDirectory.class);
+
+    static final int BADGE_SLOTS = 10_000;
+
+    private final AtomicReferenceArray<BadgeSnapshot> slots = new AtomicReferenceArray<>(BADGE_SLOTS);
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<Student> students = studentRepository.findAll();
+        int loaded = 0;
+
+        for (int i = 0; i < BADGE_SLOTS; i++) {
+            slots.set(i, null);
+        }
+
+        for (Student student : students) {
+            int slot = slotOf(student.getIdBadge());
+            if (slot >= 0) {
+                slots.set(slot, BadgeSnapshot.of(student));
+                loaded++;
+            }
+        }
+
+        logger.info("Badge directory loaded: {} badges assigned", loaded);
+    }
+
+    /**
+     * Snapshot for a badge, or null if the badge is malformed or unassigned
+     */
+    public BadgeSnapshot lookup(String idBadge) {
+        int slot = slotOf(idBadge);
+        return slot >= 0 ? slots.get(slot) : null;
+    }
+
+    /**
+     * Same rule as StudentRepository.countActiveStudentsByIdBadge == 0
+     */
+    public boolean isAvailable(String idBadge) {
+        BadgeSnapshot snapshot = lookup(idBadge);
+        return snapshot == null || snapshot.getStatus() != StudentStatus.ACTIVE;
+    }
+
+    /**
+     * Record the current state of a student. If the student's badge changed,
+     * pass the previous badge so its slot is released.
+     */
+    public void put(Student student, String previousBadge) {
+        BadgeSnapshot snapshot = BadgeSnapshot.of(student);
+        String currentBadge = student.getIdBadge();
+
+        afterCommit(() -> {
+            if (previousBadge != null && !previousBadge.equals(currentBadge)) {
+                clearSlot(previousBadge, snapshot.getStudentId());
+            }
+            int slot = slotOf(currentBadge);
+            if (slot >= 0) {
+                slots.set(slot, snapshot);
+            }
+        });
+    }
+
+    public void put(Student student) {
+        put(student, null);
+    }
+
+    public void remove(String idBadge, Long studentId) {
+        afterCommit(() -> clearSlot(idBadge, studentId));
+    }
+
+    public void markTotpEnabled(String idBadge) {
+        afterCommit(() -> {
+            int slot = slotOf(idBadge);
+            if (slot >= 0) {
+                slots.updateAndGet(slot, current -> current != null ? current.withTotpEnabled() : null);
+            }
+        });
+    }
+
+    private void clearSlot(String idBadge, Long studentId) {
+        int slot = slotOf(idBadge);
+        if (slot >= 0) {
+            // Only release the slot if it still belongs to this student
+            slots.updateAndGet(slot, current ->
+                    current != null && current.getStudentId().equals(studentId) ? null : current);
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    static int slotOf(String idBadge) {
+        if (idBadge == null || idBadge.length() != 4) {
+            return -1;
+        }
+
+        int slot = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = idBadge.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            slot = slot * 10 + (c - '0');
+        }
+        return slot;
+    }
+
+    /**
+     * Immutable per-badge view of the student fields needed before any
+     * database access: identity, status, schedule window and TOTP state.
+     */
+    public static final class BadgeSnapshot {
+        private final Long studentId;
+        private final String idBadge;
+        private final String fullName;
+        private final StudentStatus status;
+        private final LocalTime scheduledStartTime;
+        private final LocalTime scheduledEndTime;
+        private final int gracePeriodMinutes;
+        private final boolean scheduleActive;
+        private final boolean totpConfigured;
+        private final boolean totpEnabled;
+
+        private BadgeSnapshot(Long studentId, String idBadge, String fullName, StudentStatus status,
+                              LocalTime scheduledStartTime, LocalTime scheduledEndTime, int gracePeriodMinutes,
+                              boolean scheduleActive, boolean totpConfigured, boolean totpEnabled) {
+            this.studentId = studentId;
+            this.idBadge = idBadge;
+            this.fullName = fullName;
+            this.status = status;
+            this.scheduledStartTime = scheduledStartTime;
+            this.scheduledEndTime = scheduledEndTime;
+            this.gracePeriodMinutes = gracePeriodMinutes;
+            this.scheduleActive = scheduleActive;
+            this.totpConfigured = totpConfigured;
+            this.totpEnabled = totpEnabled;
+        }
+
+        static BadgeSnapshot of(Student student) {
+            return new BadgeSnapshot(
+                    student.getId(),
+                    student.getIdBadge(),
+                    student.getFullName(),
+                    student.getStatus(),
+                    student.getScheduledStartTime(),
+                    student.getScheduledEndTime(),
+                    student.getGracePeriodMinutes() != null ? student.getGracePeriodMinutes() : 5,
+                    Boolean.TRUE.equals(student.getScheduleActive()),
+                    student.getTotpSecret() != null && !student.getTotpSecret().isEmpty(),
+                    Boolean.TRUE.equals(student.getTotpEnabled())
+            );
+        }
+
+        BadgeSnapshot withTotpEnabled() {
+            return new BadgeSnapshot(studentId, idBadge, fullName, status, scheduledStartTime, scheduledEndTime,
+                    gracePeriodMinutes, scheduleActive, totpConfigured, true);
+        }
+
+        // Same rules as the matching Student methods
+        public boolean hasActiveSchedule() {
+            return scheduleActive && scheduledStartTime != null && scheduledEndTime != null;
+        }
+
+        public boolean isActive() {
+            return status == StudentStatus.ACTIVE;
+        }
+
+        public boolean isLateArrival(LocalTime arrivalTime) {
+            if (!hasActiveSchedule()) return false;
+
+            return arrivalTime.isAfter(scheduledStartTime.plusMinutes(gracePeriodMinutes));
+        }
+
+        public LocalTime calculateExpectedEndTime(LocalTime actualStartTime) {
+            if (!hasActiveSchedule()) return null;
+
+            if (isLateArrival(actualStartTime)) {
+                long lateMinutes = Duration.between(scheduledStartTime, actualStartTime).toMinutes();
+                return scheduledEndTime.plusMinutes(lateMinutes);
+            }
+            return scheduledEndTime;
+        }
+
+        public Long getStudentId() { return studentId; }
+        public String getIdBadge() { return idBadge; }
+        public String getFullName() { return fullName; }
+        public StudentStatus getStatus() { return status; }
+        public LocalTime getScheduledStartTime() { return scheduledStartTime; }
+        public LocalTime getScheduledEndTime() { return scheduledEndTime; }
+        public int getGracePeriodMinutes() { return gracePeriodMinutes; }
+        public boolean isScheduleActive() { return scheduleActive; }
+        public boolean isTotpConfigured() { return totpConfigured; }
+        public boolean isTotpEnabled() { return totpEnabled; }
+    }
+}
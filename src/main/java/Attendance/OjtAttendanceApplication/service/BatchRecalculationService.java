@@ -0,0 +1,647 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.entity.AttendanceStatus;
+import Attendance.OjtAttendanceApplication.entity.HoursLedgerReason;
+import Attendance.OjtAttendanceApplication.entity.RecalculationJob;
+import Attendance.OjtAttendanceApplication.entity.RecalculationJobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Recalculates every attendance record without loading entities.
+ *
+ * The students' schedules and the records' session times are read once, in
+ * one consistent snapshot, as a narrow projection (no tasks_completed text;
+ * the override check runs in SQL) into primitive columns. Hours are then
+ * computed with HoursCalculationEngine's primitive API in parallel slices,
+ * and only the rows whose stored values differ are written back with
+ * batched UPDATEs. Each chunk transaction holds whole students: their
+ * changed records together with the move of their totals, so a failure
+ * never leaves records rewritten but totals unmoved. Recalculated rows also
+ * get their calculation inputs fingerprint, so a batch run leaves nothing
+ * stale.
+ *
+ * Follows the same rules as RecalculationService.recalculateStudentHours:
+ * admin-corrected records keep their values, approved overrides count all
+ * hours, incomplete sessions are left out of the totals. Student totals are
+ * moved by the difference found, so time-outs that land while the batch runs
+ * are not lost, and each move is appended to hours_ledger. Moving by a
+ * difference is only right once per snapshot, so a run is recorded as a
+ * recalculation job (RecalculationJobService.beginBatchRun) and can't start
+ * while a job, another batch run or a drift repair is under way. Time-outs,
+ * admin corrections and override approvals still write records meanwhile,
+ * moving record and total together; a record's UPDATE therefore only applies
+ * if its updated_at is still the snapshot's. A record changed since is left
+ * as its writer made it, and its share is taken out of the student's move.
+ */
+@Service
+public class BatchRecalculationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchRecalculationService.class);
+
+    static final int WRITE_CHUNK_SIZE = 1_000;
+
+    /** Records per parallel task, so each task reuses one Result for a while */
+    private static final int COMPUTE_SLICE_SIZE = 4_096;
+
+    private static final String STUDENT_SQL =
+            "SELECT id, COALESCE(schedule_active, FALSE) AS schedule_active, " +
+                    "HOUR(scheduled_start_time) * 60 + MINUTE(scheduled_start_time) AS start_minute, " +
+                    "HOUR(scheduled_end_time) * 60 + MINUTE(scheduled_end_time) AS end_minute, " +
+                    "grace_period_minutes, total_accumulated_minutes, schedule_version " +
+                    "FROM students ORDER BY id";
+
+    // Epoch seconds of the local date-time, as HoursCalculationEngine.toEpochSecond gives them
+    private static final String RECORD_SQL =
+            "SELECT id, student_id, " +
+                    "TIMESTAMPDIFF(SECOND, '1970-01-01 00:00:00', time_in) AS time_in, " +
+                    "TIMESTAMPDIFF(SECOND, '1970-01-01 00:00:00', time_out) AS time_out, " +
+                    "status, " +
+                    "(" + String.join(" OR ", HoursCalculationEngine.SCHEDULE_OVERRIDE_MARKERS.stream()
+                            .map(marker -> "tasks_completed LIKE ?").toList()) + ") AS override_approved, " +
+                    "total_minutes, regular_minutes, overtime_minutes, undertime_minutes, break_deducted, " +
+                    "calculation_inputs, updated_at " +
+                    "FROM attendance_records";
+
+    private static final String UPDATE_RECORD_SQL =
+            "UPDATE attendance_records SET total_minutes = ?, regular_minutes = ?, overtime_minutes = ?, " +
+                    "undertime_minutes = ?, break_deducted = ?, calculation_inputs = ?, updated_at = ? " +
+                    "WHERE id = ? AND updated_at <=> ?";
+
+    private static final String UPDATE_STUDENT_SQL =
+            "UPDATE students SET total_accumulated_minutes = total_accumulated_minutes + ? WHERE id = ?";
+
+    // Same delta as UPDATE_STUDENT_SQL, appended to the ledger (see HoursLedgerService)
+    private static final String INSERT_LEDGER_SQL =
+            "INSERT INTO hours_ledger (delta_minutes, student_id, reason, created_at) " +
+                    "VALUES (?, ?, '" + HoursLedgerReason.RECALCULATION.name() + "', NOW())";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private HoursCalculationEngine hoursCalculationEngine;
+
+    @Autowired
+    private RecalculationJobService recalculationJobService;
+
+    public Map<String, Object> recalculateAllRecords() {
+        RecalculationJob job = recalculationJobService.beginBatchRun();
+        logger.info("🔄 Starting batch recalculation of all attendance records (run {})...", job.getId());
+
+        try {
+            return recalculateAllRecords(job.getId());
+        } catch (RuntimeException e) {
+            logger.error("💥 Batch recalculation run {} failed: {}", job.getId(), e.getMessage(), e);
+            recalculationJobService.finishBatchRun(job.getId(), RecalculationJobStatus.FAILED, e.getMessage(),
+                    counts -> { });
+            throw e;
+        }
+    }
+
+    private Map<String, Object> recalculateAllRecords(Long jobId) {
+        long startTime = System.currentTimeMillis();
+
+        StudentColumns students = new StudentColumns();
+        RecordColumns records = new RecordColumns();
+
+        TransactionTemplate snapshot = new TransactionTemplate(transactionManager);
+        snapshot.setReadOnly(true);
+        snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshot.executeWithoutResult(status -> {
+            loadStudents(students);
+            loadRecords(students, records);
+        });
+        long loadedAt = System.currentTimeMillis();
+
+        records.compute(hoursCalculationEngine, students);
+        long[] studentDeltas = records.studentDeltas(students);
+        long computedAt = System.currentTimeMillis();
+
+        int[] changedRecords = records.changedRecords();
+        WriteResult written = write(students, records, changedRecords, studentDeltas);
+        int updatedStudents = written.movedStudents;
+        int updatedRecords = changedRecords.length - written.skippedRecords;
+        long duration = System.currentTimeMillis() - startTime;
+
+        Map<String, Integer> breakdown = records.breakdown();
+        recalculationJobService.finishBatchRun(jobId, RecalculationJobStatus.COMPLETED, null, job -> {
+            job.setProcessedStudents(students.size);
+            job.setUpdatedStudents(updatedStudents);
+            job.setProcessedRecords(records.size);
+            job.setUpdatedRecords(updatedRecords);
+            job.setConcurrentlyUpdatedRecords(written.skippedRecords);
+            job.setRegularTimeouts(breakdown.get("regularTimeouts"));
+            job.setAutoTimeouts(breakdown.get("autoTimeouts"));
+            job.setApprovedOverrides(breakdown.get("approvedOverrides"));
+            job.setAdminCorrectedSkipped(breakdown.get("adminCorrectedSkipped"));
+            job.setIncompleteRecords(breakdown.get("incompleteRecords"));
+        });
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("message", "Batch recalculation finished successfully");
+        result.put("mode", "batch");
+        result.put("jobId", jobId);
+
+        result.put("summary", Map.of(
+                "totalStudents", students.size,
+                "updatedStudents", updatedStudents,
+                "unchangedStudents", students.size - updatedStudents,
+                "totalRecords", records.size,
+                "updatedRecords", updatedRecords,
+                "concurrentlyUpdatedRecords", written.skippedRecords,
+                "durationMs", duration,
+                "durationSeconds", duration / 1000.0
+        ));
+
+        result.put("recordBreakdown", breakdown);
+
+        result.put("timings", Map.of(
+                "loadMs", loadedAt - startTime,
+                "computeMs", computedAt - loadedAt,
+                "writeMs", System.currentTimeMillis() - computedAt
+        ));
+        result.put("hasErrors", false);
+
+        logger.info("✅ Batch recalculation finished: {} students, {} records processed, {} updated " +
+                        "({} changed meanwhile and left alone) in {}ms (load {}ms, compute {}ms, write {}ms)",
+                students.size, records.size, updatedRecords, written.skippedRecords, duration,
+                loadedAt - startTime, computedAt - loadedAt, System.currentTimeMillis() - computedAt);
+
+        return result;
+    }
+
+    // ==================== LOAD ====================
+
+    private void loadStudents(StudentColumns students) {
+        jdbcTemplate.query(STUDENT_SQL, (ResultSet rs) -> {
+            int start = rs.getInt("start_minute");
+            boolean hasStart = !rs.wasNull();
+            int end = rs.getInt("end_minute");
+            boolean hasEnd = !rs.wasNull();
+            int grace = rs.getInt("grace_period_minutes");
+            if (rs.wasNull()) {
+                grace = HoursCalculationEngine.DEFAULT_GRACE_PERIOD_MINUTES;
+            }
+
+            // Same test as Student.hasActiveSchedule
+            boolean scheduled = rs.getBoolean("schedule_active") && hasStart && hasEnd;
+
+            students.add(rs.getLong("id"),
+                    scheduled ? start : HoursCalculationEngine.NO_SCHEDULE,
+                    scheduled ? end : HoursCalculationEngine.NO_SCHEDULE,
+                    grace,
+                    rs.getLong("total_accumulated_minutes"),
+                    rs.getInt("schedule_version"));
+        });
+    }
+
+    private void loadRecords(StudentColumns students, RecordColumns records) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(RECORD_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Let MySQL stream the rows instead of buffering the whole result
+            statement.setFetchSize(Integer.MIN_VALUE);
+            int index = 1;
+            for (String marker : HoursCalculationEngine.SCHEDULE_OVERRIDE_MARKERS) {
+                statement.setString(index++, "%" + marker + "%");
+            }
+            return statement;
+        }, (ResultSet rs) -> {
+            int student = students.indexOf(rs.getLong("student_id"));
+            if (student < 0) {
+                return;
+            }
+
+            long timeIn = rs.getLong("time_in");
+            boolean hasTimeIn = !rs.wasNull();
+            long timeOut = rs.getLong("time_out");
+            boolean complete = hasTimeIn && !rs.wasNull();
+            String status = rs.getString("status");
+
+            records.add(rs.getLong("id"), student,
+                    complete ? timeIn : 0,
+                    complete ? timeOut : RecordColumns.NO_TIME_OUT,
+                    status != null ? AttendanceStatus.valueOf(status) : AttendanceStatus.TIMED_IN,
+                    rs.getBoolean("override_approved"),
+                    rs.getInt("total_minutes"),
+                    rs.getInt("regular_minutes"),
+                    rs.getInt("overtime_minutes"),
+                    rs.getInt("undertime_minutes"),
+                    rs.getBoolean("break_deducted"),
+                    rs.getLong("calculation_inputs"),
+                    RecordColumns.toEpochMicros(rs.getObject("updated_at", LocalDateTime.class)));
+        });
+    }
+
+    // ==================== WRITE ====================
+
+    /**
+     * Writes the changed records and moves the totals, a chunk of whole
+     * students per transaction (about WRITE_CHUNK_SIZE records or students).
+     * A record whose UPDATE finds it changed since the snapshot is skipped,
+     * and its share comes out of deltas before the chunk's totals move.
+     */
+    WriteResult write(StudentColumns students, RecordColumns records, int[] changed, long[] deltas) {
+        int[] starts = new int[students.size + 1];
+        int[] byStudent = records.groupByStudent(changed, starts);
+        TransactionTemplate chunkTransaction = new TransactionTemplate(transactionManager);
+        WriteResult result = new WriteResult();
+
+        int firstStudent = 0;
+        while (firstStudent < students.size) {
+            int endStudent = firstStudent;
+            int movedInChunk = 0;
+            while (endStudent < students.size && movedInChunk < WRITE_CHUNK_SIZE
+                    && starts[endStudent] - starts[firstStudent] < WRITE_CHUNK_SIZE) {
+                if (deltas[endStudent] != 0) {
+                    movedInChunk++;
+                }
+                endStudent++;
+            }
+
+            int[] chunkRecords = Arrays.copyOfRange(byStudent, starts[firstStudent], starts[endStudent]);
+            int chunkStart = firstStudent;
+            int chunkEnd = endStudent;
+            chunkTransaction.executeWithoutResult(status -> {
+                int[] updateCounts = writeRecords(records, chunkRecords);
+                for (int i = 0; i < chunkRecords.length; i++) {
+                    // 0 means updated_at moved on; a rewritten batch may also report SUCCESS_NO_INFO
+                    if (updateCounts[i] == 0) {
+                        int record = chunkRecords[i];
+                        deltas[records.students[record]] -= records.newTotalMinutes[record] - records.totalMinutes[record];
+                        result.skippedRecords++;
+                        logger.info("↪️ Record {} changed after the snapshot, left as it is", records.ids[record]);
+                    }
+                }
+
+                int[] chunkStudents = IntStream.range(chunkStart, chunkEnd).filter(s -> deltas[s] != 0).toArray();
+                writeStudents(students, chunkStudents, deltas);
+                result.movedStudents += chunkStudents.length;
+            });
+
+            firstStudent = endStudent;
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the update count of each record's UPDATE, 0 where it changed since the snapshot
+     */
+    private int[] writeRecords(RecordColumns records, int[] chunk) {
+        if (chunk.length == 0) {
+            return chunk;
+        }
+        LocalDateTime updatedAt = LocalDateTime.now();
+
+        return jdbcTemplate.batchUpdate(UPDATE_RECORD_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                int record = chunk[i];
+                ps.setInt(1, records.newTotalMinutes[record]);
+                ps.setInt(2, records.newRegularMinutes[record]);
+                ps.setInt(3, records.newOvertimeMinutes[record]);
+                ps.setInt(4, records.newUndertimeMinutes[record]);
+                ps.setBoolean(5, records.newBreakDeducted[record]);
+                ps.setLong(6, records.newCalculationInputs[record]);
+                ps.setObject(7, updatedAt);
+                ps.setLong(8, records.ids[record]);
+                LocalDateTime snapshotUpdatedAt = RecordColumns.fromEpochMicros(records.updatedAts[record]);
+                if (snapshotUpdatedAt != null) {
+                    ps.setObject(9, snapshotUpdatedAt);
+                } else {
+                    ps.setNull(9, Types.TIMESTAMP);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunk.length;
+            }
+        });
+    }
+
+    private void writeStudents(StudentColumns students, int[] chunk, long[] deltas) {
+        if (chunk.length == 0) {
+            return;
+        }
+
+        // (delta, student id) for both statements
+        BatchPreparedStatementSetter moves = new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                int student = chunk[i];
+                ps.setLong(1, deltas[student]);
+                ps.setLong(2, students.ids[student]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunk.length;
+            }
+        };
+
+        jdbcTemplate.batchUpdate(INSERT_LEDGER_SQL, moves);
+        jdbcTemplate.batchUpdate(UPDATE_STUDENT_SQL, moves);
+    }
+
+    static final class WriteResult {
+        int movedStudents;
+        int skippedRecords;
+    }
+
+    // ==================== COLUMNS ====================
+
+    /**
+     * Students' schedules by index, ordered by id. A student without an
+     * active schedule has NO_SCHEDULE as start and end.
+     */
+    static final class StudentColumns {
+        int size;
+        long[] ids = new long[64];
+        int[] startMinutes = new int[64];
+        int[] endMinutes = new int[64];
+        int[] gracePeriods = new int[64];
+        long[] totalMinutes = new long[64];
+        int[] scheduleVersions = new int[64];
+
+        void add(long id, int startMinute, int endMinute, int gracePeriod, long total, int scheduleVersion) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                startMinutes = Arrays.copyOf(startMinutes, capacity);
+                endMinutes = Arrays.copyOf(endMinutes, capacity);
+                gracePeriods = Arrays.copyOf(gracePeriods, capacity);
+                totalMinutes = Arrays.copyOf(totalMinutes, capacity);
+                scheduleVersions = Arrays.copyOf(scheduleVersions, capacity);
+            }
+            ids[size] = id;
+            startMinutes[size] = startMinute;
+            endMinutes[size] = endMinute;
+            gracePeriods[size] = gracePeriod;
+            totalMinutes[size] = total;
+            scheduleVersions[size] = scheduleVersion;
+            size++;
+        }
+
+        /** Index of the student with this id (ids are added in order), or -1 */
+        int indexOf(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            return index >= 0 ? index : -1;
+        }
+    }
+
+    /**
+     * Records' session times and stored hours by index, and the hours
+     * computed for them
+     */
+    static final class RecordColumns {
+        static final long NO_TIME_OUT = Long.MIN_VALUE;
+        static final long NO_UPDATED_AT = Long.MIN_VALUE;
+
+        int size;
+        long[] ids = new long[1024];
+        int[] students = new int[1024];
+        long[] timeIns = new long[1024];
+        long[] timeOuts = new long[1024];
+        byte[] statuses = new byte[1024];
+        boolean[] overrides = new boolean[1024];
+        int[] totalMinutes = new int[1024];
+        int[] regularMinutes = new int[1024];
+        int[] overtimeMinutes = new int[1024];
+        int[] undertimeMinutes = new int[1024];
+        boolean[] breakDeducted = new boolean[1024];
+        long[] calculationInputs = new long[1024];
+        // Microseconds since the epoch, for the UPDATE's updated_at check
+        long[] updatedAts = new long[1024];
+
+        int[] newTotalMinutes;
+        int[] newRegularMinutes;
+        int[] newOvertimeMinutes;
+        int[] newUndertimeMinutes;
+        boolean[] newBreakDeducted;
+        long[] newCalculationInputs;
+
+        private static final AttendanceStatus[] STATUSES = AttendanceStatus.values();
+
+        void add(long id, int student, long timeIn, long timeOut, AttendanceStatus status, boolean override,
+                 int total, int regular, int overtime, int undertime, boolean breakWasDeducted, long inputs,
+                 long updatedAt) {
+            if (size == ids.length) {
+                grow(size * 2);
+            }
+            ids[size] = id;
+            students[size] = student;
+            timeIns[size] = timeIn;
+            timeOuts[size] = timeOut;
+            statuses[size] = (byte) status.ordinal();
+            overrides[size] = override;
+            totalMinutes[size] = total;
+            regularMinutes[size] = regular;
+            overtimeMinutes[size] = overtime;
+            undertimeMinutes[size] = undertime;
+            breakDeducted[size] = breakWasDeducted;
+            calculationInputs[size] = inputs;
+            updatedAts[size] = updatedAt;
+            size++;
+        }
+
+        private void grow(int capacity) {
+            ids = Arrays.copyOf(ids, capacity);
+            students = Arrays.copyOf(students, capacity);
+            timeIns = Arrays.copyOf(timeIns, capacity);
+            timeOuts = Arrays.copyOf(timeOuts, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+            overrides = Arrays.copyOf(overrides, capacity);
+            totalMinutes = Arrays.copyOf(totalMinutes, capacity);
+            regularMinutes = Arrays.copyOf(regularMinutes, capacity);
+            overtimeMinutes = Arrays.copyOf(overtimeMinutes, capacity);
+            undertimeMinutes = Arrays.copyOf(undertimeMinutes, capacity);
+            breakDeducted = Arrays.copyOf(breakDeducted, capacity);
+            calculationInputs = Arrays.copyOf(calculationInputs, capacity);
+            updatedAts = Arrays.copyOf(updatedAts, capacity);
+        }
+
+        static long toEpochMicros(LocalDateTime dateTime) {
+            if (dateTime == null) {
+                return NO_UPDATED_AT;
+            }
+            return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1_000;
+        }
+
+        static LocalDateTime fromEpochMicros(long micros) {
+            if (micros == NO_UPDATED_AT) {
+                return null;
+            }
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                    (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+        }
+
+        AttendanceStatus status(int record) {
+            return STATUSES[statuses[record]];
+        }
+
+        boolean isComplete(int record) {
+            return timeOuts[record] != NO_TIME_OUT;
+        }
+
+        /** Admin corrections are kept as entered */
+        boolean isKept(int record) {
+            return status(record) == AttendanceStatus.ADMIN_CORRECTED;
+        }
+
+        /**
+         * Fills the new* columns. Incomplete and admin-corrected records keep
+         * their stored values.
+         */
+        void compute(HoursCalculationEngine engine, StudentColumns schedules) {
+            newTotalMinutes = new int[size];
+            newRegularMinutes = new int[size];
+            newOvertimeMinutes = new int[size];
+            newUndertimeMinutes = new int[size];
+            newBreakDeducted = new boolean[size];
+            newCalculationInputs = new long[size];
+
+            int slices = (size + COMPUTE_SLICE_SIZE - 1) / COMPUTE_SLICE_SIZE;
+            IntStream.range(0, slices).parallel().forEach(slice -> {
+                HoursCalculationEngine.Result result = new HoursCalculationEngine.Result();
+                int end = Math.min(size, (slice + 1) * COMPUTE_SLICE_SIZE);
+
+                for (int i = slice * COMPUTE_SLICE_SIZE; i < end; i++) {
+                    if (!isComplete(i) || isKept(i)) {
+                        newTotalMinutes[i] = totalMinutes[i];
+                        newRegularMinutes[i] = regularMinutes[i];
+                        newOvertimeMinutes[i] = overtimeMinutes[i];
+                        newUndertimeMinutes[i] = undertimeMinutes[i];
+                        newBreakDeducted[i] = breakDeducted[i];
+                        newCalculationInputs[i] = calculationInputs[i];
+                        continue;
+                    }
+
+                    int student = students[i];
+                    boolean strict = !overrides[i] && schedules.startMinutes[student] != HoursCalculationEngine.NO_SCHEDULE;
+                    engine.calculate(timeIns[i], timeOuts[i],
+                            strict ? schedules.startMinutes[student] : HoursCalculationEngine.NO_SCHEDULE,
+                            strict ? schedules.endMinutes[student] : HoursCalculationEngine.NO_SCHEDULE,
+                            schedules.gracePeriods[student],
+                            result);
+
+                    newTotalMinutes[i] = result.getTotalMinutes();
+                    newRegularMinutes[i] = result.getRegularMinutes();
+                    newOvertimeMinutes[i] = result.getOvertimeMinutes();
+                    newUndertimeMinutes[i] = result.getUndertimeMinutes();
+                    newBreakDeducted[i] = result.isBreakDeducted();
+                    newCalculationInputs[i] = HoursCalculationEngine.inputsFingerprint(
+                            schedules.scheduleVersions[student], overrides[i]);
+                }
+            });
+        }
+
+        boolean isChanged(int record) {
+            return newTotalMinutes[record] != totalMinutes[record]
+                    || newRegularMinutes[record] != regularMinutes[record]
+                    || newOvertimeMinutes[record] != overtimeMinutes[record]
+                    || newUndertimeMinutes[record] != undertimeMinutes[record]
+                    || newBreakDeducted[record] != breakDeducted[record]
+                    || newCalculationInputs[record] != calculationInputs[record];
+        }
+
+        int[] changedRecords() {
+            return IntStream.range(0, size).filter(this::isChanged).toArray();
+        }
+
+        /**
+         * The given records reordered by student. Fills starts (one longer
+         * than the number of students) so that student s's records are at
+         * starts[s] up to starts[s + 1].
+         */
+        int[] groupByStudent(int[] records, int[] starts) {
+            for (int record : records) {
+                starts[students[record] + 1]++;
+            }
+            for (int student = 1; student < starts.length; student++) {
+                starts[student] += starts[student - 1];
+            }
+
+            int[] next = Arrays.copyOf(starts, starts.length - 1);
+            int[] grouped = new int[records.length];
+            for (int record : records) {
+                grouped[next[students[record]]++] = record;
+            }
+            return grouped;
+        }
+
+        /**
+         * How far each student's stored total is from the sum of their
+         * completed records' new hours
+         */
+        long[] studentDeltas(StudentColumns schedules) {
+            long[] sums = new long[schedules.size];
+            for (int i = 0; i < size; i++) {
+                if (isComplete(i)) {
+                    sums[students[i]] += newTotalMinutes[i];
+                }
+            }
+
+            for (int student = 0; student < schedules.size; student++) {
+                sums[student] -= schedules.totalMinutes[student];
+            }
+            return sums;
+        }
+
+        Map<String, Integer> breakdown() {
+            int regular = 0;
+            int auto = 0;
+            int overridden = 0;
+            int kept = 0;
+            int incomplete = 0;
+
+            for (int i = 0; i < size; i++) {
+                if (!isComplete(i)) {
+                    incomplete++;
+                } else if (isKept(i)) {
+                    kept++;
+                } else if (overrides[i]) {
+                    overridden++;
+                } else if (status(i) == AttendanceStatus.AUTO_TIMED_OUT) {
+                    auto++;
+                } else {
+                    regular++;
+                }
+            }
+
+            return Map.of(
+                    "regularTimeouts", regular,
+                    "autoTimeouts", auto,
+                    "approvedOverrides", overridden,
+                    "adminCorrectedSkipped", kept,
+                    "adminCorrectedRecalculated", 0,
+                    "incompleteRecords", incomplete,
+                    "errorRecords", 0
+            );
+        }
+    }
+}
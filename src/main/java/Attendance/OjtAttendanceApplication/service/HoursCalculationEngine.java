@@ -0,0 +1,307 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.HoursCalculation;
+import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * The hours rules for a completed session, shared by time-out, admin
+ * corrections, auto time-out and recalculation.
+ *
+ * Without an active schedule (or with an approved schedule override) every
+ * minute between time-in and time-out counts. With a schedule, an early
+ * arrival counts from the scheduled start, a late one (past the grace period)
+ * has to stay that much longer, and the session is split into regular,
+ * overtime and undertime hours against that required end. In both cases one
+ * hour of break is deducted from sessions of five hours or more and
+ * remainders of 55 minutes or more round up to the next hour.
+ *
+ * The core works on primitives: session times as epoch seconds of the local
+ * date-time and the schedule as minutes of the day, so a loop over many
+ * records allocates nothing but the Result it reuses. Durations are truncated
+ * to whole minutes like Duration.toMinutes, and schedule times wrap around
+ * midnight like LocalTime.plusMinutes.
+ */
+@Component
+public class HoursCalculationEngine {
+
+    public static final int BREAK_DEDUCTION_THRESHOLD_MINUTES = 300; // 5 hours
+    public static final int BREAK_DEDUCTION_MINUTES = 60;
+    public static final int ROUNDING_THRESHOLD_MINUTES = 55;
+    public static final int REGULAR_HOURS_CAP = 8;
+    public static final int DEFAULT_GRACE_PERIOD_MINUTES = 5;
+
+    /** Pass as the scheduled start to count all hours */
+    public static final int NO_SCHEDULE = -1;
+
+    /**
+     * Version of the rules below. Bump it whenever a change to them alters
+     * results: every record calculated under an older version becomes stale
+     * and is picked up by the next incremental recalculation.
+     */
+    public static final int RULES_VERSION = 1;
+
+    /**
+     * Admin approval notes in tasks_completed that make a session count all
+     * hours regardless of schedule. A pending request doesn't.
+     */
+    public static final List<String> SCHEDULE_OVERRIDE_MARKERS = List.of(
+            "[ADMIN APPROVED SCHEDULE OVERRIDE]",
+            "[ADMIN APPROVED: Early work hours counted",
+            "Early work hours will be counted for this session");
+
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final int MINUTES_PER_DAY = 1_440;
+
+    /**
+     * Hours for a completed record of the given student, with the
+     * fingerprint of the inputs they were calculated from
+     */
+    public HoursCalculation calculate(AttendanceRecord record, Student student) {
+        Result result = new Result();
+        calculate(record, student, result);
+
+        HoursCalculation calculation = result.toHoursCalculation();
+        calculation.setInputsFingerprint(inputsFingerprint(student.getScheduleVersion(),
+                isScheduleOverrideApproved(record.getTasksCompleted())));
+        return calculation;
+    }
+
+    /**
+     * Hours for a completed record of its own student
+     */
+    public HoursCalculation calculate(AttendanceRecord record) {
+        return calculate(record, record.getStudent());
+    }
+
+    public void calculate(AttendanceRecord record, Student student, Result into) {
+        boolean strict = student.hasActiveSchedule() && !isScheduleOverrideApproved(record.getTasksCompleted());
+
+        calculate(toEpochSecond(record.getTimeIn()),
+                toEpochSecond(record.getTimeOut()),
+                strict ? toMinuteOfDay(student.getScheduledStartTime()) : NO_SCHEDULE,
+                strict ? toMinuteOfDay(student.getScheduledEndTime()) : NO_SCHEDULE,
+                student.getGracePeriodMinutes() != null ? student.getGracePeriodMinutes() : DEFAULT_GRACE_PERIOD_MINUTES,
+                into);
+    }
+
+    /**
+     * Hours for a session from timeIn to timeOut (epoch seconds of the local
+     * date-time). With scheduledStartMinute NO_SCHEDULE all hours count;
+     * otherwise the schedule (minutes of the day) is enforced.
+     */
+    public void calculate(long timeIn, long timeOut,
+                          int scheduledStartMinute, int scheduledEndMinute, int gracePeriodMinutes,
+                          Result into) {
+        if (scheduledStartMinute == NO_SCHEDULE) {
+            calculateAllHours(timeIn, timeOut, into);
+        } else {
+            calculateScheduledHours(timeIn, timeOut, scheduledStartMinute * 60, scheduledEndMinute * 60,
+                    gracePeriodMinutes, into);
+        }
+    }
+
+    public boolean isScheduleOverrideApproved(String tasksCompleted) {
+        if (tasksCompleted == null) {
+            return false;
+        }
+
+        for (String marker : SCHEDULE_OVERRIDE_MARKERS) {
+            if (tasksCompleted.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Identifies what a record's hours were calculated from: the rules
+     * version, the student's schedule version and whether an override was
+     * approved. Stored as AttendanceRecord.calculationInputs; the stale
+     * record queries rebuild the expected value in JPQL from
+     * rulesFingerprintBase() the same way.
+     */
+    public static long inputsFingerprint(int scheduleVersion, boolean scheduleOverrideApproved) {
+        return rulesFingerprintBase() + scheduleVersion * 2L + (scheduleOverrideApproved ? 1 : 0);
+    }
+
+    public static long rulesFingerprintBase() {
+        return rulesFingerprintBase(RULES_VERSION);
+    }
+
+    public static long rulesFingerprintBase(int rulesVersion) {
+        return (long) rulesVersion << 32;
+    }
+
+    /** First fingerprint of the next rules version; current fingerprints are below it */
+    public static long nextRulesFingerprintBase() {
+        return rulesFingerprintBase(RULES_VERSION + 1);
+    }
+
+    public static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static int toMinuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    // ==================== RULES ====================
+
+    private void calculateAllHours(long timeIn, long timeOut, Result into) {
+        long totalMinutes = (timeOut - timeIn) / 60;
+
+        into.breakDeducted = totalMinutes >= BREAK_DEDUCTION_THRESHOLD_MINUTES;
+        if (into.breakDeducted) {
+            totalMinutes -= BREAK_DEDUCTION_MINUTES;
+        }
+
+        int totalHours = roundToHours(totalMinutes);
+        into.totalMinutes = totalHours * 60;
+
+        if (totalHours >= REGULAR_HOURS_CAP) {
+            into.regularMinutes = REGULAR_HOURS_CAP * 60;
+            into.overtimeMinutes = (totalHours - REGULAR_HOURS_CAP) * 60;
+            into.undertimeMinutes = 0;
+        } else {
+            into.regularMinutes = totalHours * 60;
+            into.overtimeMinutes = 0;
+            into.undertimeMinutes = (REGULAR_HOURS_CAP - totalHours) * 60;
+        }
+    }
+
+    /**
+     * Schedule times are seconds of the day here so that a time-in a few
+     * seconds past the grace period is late, as it always has been
+     */
+    private void calculateScheduledHours(long timeIn, long timeOut, int scheduledStart, int scheduledEnd,
+                                         int gracePeriodMinutes, Result into) {
+        long timeInDay = Math.floorDiv(timeIn, SECONDS_PER_DAY);
+        long timeOutDay = Math.floorDiv(timeOut, SECONDS_PER_DAY);
+        int timeInOfDay = (int) Math.floorMod(timeIn, SECONDS_PER_DAY);
+
+        // Early arrivals count from the scheduled start; late ones (past grace) from their arrival
+        int graceEnd = (scheduledStart + Math.floorMod(gracePeriodMinutes, MINUTES_PER_DAY) * 60) % SECONDS_PER_DAY;
+        int effectiveStart;
+        int requiredEnd;
+
+        if (timeInOfDay < scheduledStart) {
+            effectiveStart = scheduledStart;
+            requiredEnd = scheduledEnd;
+        } else if (timeInOfDay > graceEnd) {
+            // Late: the required end moves by the whole minutes past the grace period
+            long lateMinutes = (timeInOfDay - graceEnd) / 60;
+            effectiveStart = timeInOfDay;
+            requiredEnd = (int) ((scheduledEnd + (lateMinutes % MINUTES_PER_DAY) * 60) % SECONDS_PER_DAY);
+        } else {
+            effectiveStart = scheduledStart;
+            requiredEnd = scheduledEnd;
+        }
+
+        // A session is a night shift when it ends on a later date than it started
+        boolean nightShift = timeInDay != timeOutDay;
+        long effectiveStartAt = timeInDay * SECONDS_PER_DAY + effectiveStart;
+
+        long requiredEndDay;
+        if (requiredEnd < effectiveStart) {
+            requiredEndDay = nightShift ? timeOutDay : timeInDay + 1;
+        } else {
+            requiredEndDay = nightShift ? timeOutDay : timeInDay;
+        }
+        long requiredEndAt = requiredEndDay * SECONDS_PER_DAY + requiredEnd;
+
+        long workMinutes = Math.max(0, (timeOut - effectiveStartAt) / 60);
+
+        if (timeOut < requiredEndAt) {
+            // Undertime: left before the required end
+            long undertimeMinutes = (requiredEndAt - timeOut) / 60;
+
+            into.breakDeducted = workMinutes >= BREAK_DEDUCTION_THRESHOLD_MINUTES;
+            if (into.breakDeducted) {
+                workMinutes -= BREAK_DEDUCTION_MINUTES;
+            }
+
+            int totalHours = roundToHours(workMinutes);
+            into.totalMinutes = totalHours * 60;
+            into.regularMinutes = totalHours * 60;
+            into.overtimeMinutes = 0;
+            into.undertimeMinutes = roundToHours(undertimeMinutes) * 60;
+
+        } else if (timeOut > requiredEndAt) {
+            // Overtime: scheduled hours are regular, the time past the required end is overtime
+            long scheduledMinutes = (requiredEndAt - effectiveStartAt) / 60;
+
+            into.breakDeducted = scheduledMinutes >= BREAK_DEDUCTION_THRESHOLD_MINUTES;
+            if (into.breakDeducted) {
+                scheduledMinutes -= BREAK_DEDUCTION_MINUTES;
+            }
+
+            int regularHours = (int) Math.min(Math.max(0, scheduledMinutes) / 60, REGULAR_HOURS_CAP);
+            int overtimeHours = roundToHours(Math.max(0, (timeOut - requiredEndAt) / 60));
+
+            into.totalMinutes = (regularHours + overtimeHours) * 60;
+            into.regularMinutes = regularHours * 60;
+            into.overtimeMinutes = overtimeHours * 60;
+            into.undertimeMinutes = 0;
+
+        } else {
+            // Left exactly at the required end
+            into.breakDeducted = workMinutes >= BREAK_DEDUCTION_THRESHOLD_MINUTES;
+            if (into.breakDeducted) {
+                workMinutes -= BREAK_DEDUCTION_MINUTES;
+            }
+
+            int regularHours = (int) Math.min(workMinutes / 60, REGULAR_HOURS_CAP);
+            into.totalMinutes = regularHours * 60;
+            into.regularMinutes = regularHours * 60;
+            into.overtimeMinutes = 0;
+            into.undertimeMinutes = 0;
+        }
+    }
+
+    /**
+     * Whole hours, with a remainder of ROUNDING_THRESHOLD_MINUTES or more
+     * rounding up
+     */
+    private static int roundToHours(long minutes) {
+        long hours = minutes / 60;
+        if (minutes % 60 >= ROUNDING_THRESHOLD_MINUTES) {
+            hours += 1;
+        }
+        return (int) hours;
+    }
+
+    /**
+     * Reusable holder for one calculation, in minutes (every rule produces
+     * whole hours)
+     */
+    public static final class Result {
+        private int totalMinutes;
+        private int regularMinutes;
+        private int overtimeMinutes;
+        private int undertimeMinutes;
+        private boolean breakDeducted;
+
+        public int getTotalMinutes() { return totalMinutes; }
+        public int getRegularMinutes() { return regularMinutes; }
+        public int getOvertimeMinutes() { return overtimeMinutes; }
+        public int getUndertimeMinutes() { return undertimeMinutes; }
+        public boolean isBreakDeducted() { return breakDeducted; }
+
+        public HoursCalculation toHoursCalculation() {
+            HoursCalculation calculation = new HoursCalculation();
+            calculation.setTotalMinutes(totalMinutes);
+            calculation.setRegularMinutes(regularMinutes);
+            calculation.setOvertimeMinutes(overtimeMinutes);
+            calculation.setUndertimeMinutes(undertimeMinutes);
+            calculation.setBreakDeducted(breakDeducted);
+            return calculation;
+        }
+    }
+}
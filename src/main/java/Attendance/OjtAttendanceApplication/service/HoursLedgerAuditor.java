@@ -0,0 +1,208 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.HoursConverter;
+import Attendance.OjtAttendanceApplication.dto.HoursDrift;
+import Attendance.OjtAttendanceApplication.entity.HoursLedgerReason;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Checks student totals against their completed records in the background,
+ * so they can be trusted without a full recalculation.
+ *
+ * One grouped statement reads every student's total, the minutes of their
+ * completed records and the sum of their ledger entries from the same
+ * snapshot. A total that differs from its records is logged and, with
+ * attendance.ledger.audit.repair=true, moved onto them by a DRIFT_REPAIR
+ * ledger entry. The repair is an increment by the difference seen in the
+ * snapshot, so a time-out committing in between (which moves record and
+ * total together) does not disturb it. Repairs wait while a recalculation
+ * job or batch run is active, as it is about to move the same totals, and
+ * hold the slot those start under so that none starts meanwhile. A total that
+ * differs from its ledger was written around HoursLedgerService; that is
+ * only reported.
+ */
+@Component
+public class HoursLedgerAuditor {
+
+    private static final Logger logger = LoggerFactory.getLogger(HoursLedgerAuditor.class);
+
+    /** Drifting students listed in the audit result; all of them are logged and repaired */
+    private static final int REPORTED_DRIFTS = 100;
+
+    private static final String DRIFT_SQL =
+            "SELECT s.id, s.id_badge, s.full_name, s.total_accumulated_minutes, " +
+                    "COALESCE(r.minutes, 0) AS record_minutes, COALESCE(l.minutes, 0) AS ledger_minutes " +
+                    "FROM students s " +
+                    "LEFT JOIN (SELECT student_id, SUM(total_minutes) AS minutes FROM attendance_records " +
+                    "WHERE time_out IS NOT NULL GROUP BY student_id) r ON r.student_id = s.id " +
+                    "LEFT JOIN (SELECT student_id, SUM(delta_minutes) AS minutes FROM hours_ledger " +
+                    "GROUP BY student_id) l ON l.student_id = s.id " +
+                    "WHERE s.total_accumulated_minutes <> COALESCE(r.minutes, 0) " +
+                    "OR s.total_accumulated_minutes <> COALESCE(l.minutes, 0) " +
+                    "ORDER BY s.id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private HoursLedgerService hoursLedgerService;
+
+    @Autowired
+    private RecalculationJobService recalculationJobService;
+
+    @Value("${attendance.ledger.audit.repair:false}")
+    private boolean repairByDefault;
+
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantLock auditLock = new ReentrantLock();
+
+    private volatile Map<String, Object> lastAudit;
+
+    @Autowired
+    public HoursLedgerAuditor(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${attendance.ledger.audit.cron:0 15 * * * *}")
+    public void scheduledAudit() {
+        try {
+            audit(repairByDefault);
+        } catch (Exception e) {
+            logger.error("Error in scheduledAudit: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param repair move drifting totals onto their records
+     */
+    public Map<String, Object> audit(boolean repair) {
+        auditLock.lock();
+        try {
+            long startTime = System.currentTimeMillis();
+            List<HoursDrift> drifts = findDrifts();
+
+            int recordDrifts = 0;
+            int ledgerDrifts = 0;
+            List<HoursDrift> toRepair = new ArrayList<>();
+            List<Map<String, Object>> reported = new ArrayList<>();
+
+            for (HoursDrift drift : drifts) {
+                if (drift.getLedgerDrift() != 0) {
+                    ledgerDrifts++;
+                    logger.warn("⚠️ Student {} ({}): total {} minutes but ledger sums to {} - " +
+                                    "the total was changed outside the ledger",
+                            drift.getFullName(), drift.getIdBadge(), drift.getTotalMinutes(), drift.getLedgerMinutes());
+                }
+
+                if (drift.getRecordDrift() != 0) {
+                    recordDrifts++;
+                    logger.warn("⚠️ Student {} ({}): total {} minutes but completed records sum to {} (drift {})",
+                            drift.getFullName(), drift.getIdBadge(), drift.getTotalMinutes(),
+                            drift.getRecordMinutes(), drift.getRecordDrift());
+                    toRepair.add(drift);
+                }
+
+                if (reported.size() < REPORTED_DRIFTS) {
+                    reported.add(toMap(drift));
+                }
+            }
+
+            int repaired = 0;
+            long minutesRepaired = 0;
+            boolean jobActive = false;
+            if (repair && !toRepair.isEmpty()) {
+                List<HoursDrift> done = recalculationJobService.runUnlessJobActive(
+                        () -> toRepair.stream().filter(this::repair).toList(), () -> null);
+                jobActive = done == null;
+                if (done != null) {
+                    repaired = done.size();
+                    minutesRepaired = done.stream().mapToLong(HoursDrift::getRecordDrift).sum();
+                }
+            }
+
+            long duration = System.currentTimeMillis() - startTime;
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("auditedAt", LocalDateTime.now().toString());
+            result.put("studentsWithDrift", drifts.size());
+            result.put("recordDrifts", recordDrifts);
+            result.put("ledgerDrifts", ledgerDrifts);
+            result.put("repair", repair);
+            result.put("repairPostponed", jobActive);
+            result.put("repairedStudents", repaired);
+            result.put("hoursRepaired", HoursConverter.toHours(minutesRepaired));
+            result.put("drifts", reported);
+            result.put("durationMs", duration);
+            lastAudit = result;
+
+            if (drifts.isEmpty()) {
+                logger.info("✅ Hours audit: every student total matches its records and ledger ({}ms)", duration);
+            } else {
+                logger.warn("⚠️ Hours audit: {} totals differ from their records, {} from their ledger, " +
+                        "{} repaired{} ({}ms)", recordDrifts, ledgerDrifts, repaired,
+                        jobActive ? " (repairs postponed: recalculation job active)" : "", duration);
+            }
+            return result;
+        } finally {
+            auditLock.unlock();
+        }
+    }
+
+    /**
+     * The last audit's result, or null before the first one
+     */
+    public Map<String, Object> getLastAudit() {
+        return lastAudit;
+    }
+
+    List<HoursDrift> findDrifts() {
+        return jdbcTemplate.query(DRIFT_SQL, (rs, rowNum) -> new HoursDrift(
+                rs.getLong("id"),
+                rs.getString("id_badge"),
+                rs.getString("full_name"),
+                rs.getLong("total_accumulated_minutes"),
+                rs.getLong("record_minutes"),
+                rs.getLong("ledger_minutes")));
+    }
+
+    private boolean repair(HoursDrift drift) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> hoursLedgerService.record(
+                    drift.getStudentId(), null, drift.getRecordDrift(), HoursLedgerReason.DRIFT_REPAIR));
+            logger.info("🔧 Repaired total of student {} ({}) by {} minutes",
+                    drift.getFullName(), drift.getIdBadge(), drift.getRecordDrift());
+            return true;
+        } catch (Exception e) {
+            logger.error("Could not repair total of student {}: {}", drift.getStudentId(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private static Map<String, Object> toMap(HoursDrift drift) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("studentId", drift.getStudentId());
+        map.put("idBadge", drift.getIdBadge());
+        map.put("studentName", drift.getFullName());
+        map.put("totalHours", HoursConverter.toHours(drift.getTotalMinutes()));
+        map.put("recordHours", HoursConverter.toHours(drift.getRecordMinutes()));
+        map.put("ledgerHours", HoursConverter.toHours(drift.getLedgerMinutes()));
+        map.put("recordDriftHours", HoursConverter.toHours(drift.getRecordDrift()));
+        map.put("ledgerDriftHours", HoursConverter.toHours(drift.getLedgerDrift()));
+        return map;
+    }
+}
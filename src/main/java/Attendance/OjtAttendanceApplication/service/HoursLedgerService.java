@@ -0,0 +1,57 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
+import Attendance.OjtAttendanceApplication.entity.HoursLedgerEntry;
+import Attendance.OjtAttendanceApplication.entity.HoursLedgerReason;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.repository.HoursLedgerRepository;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Moves student totals. Every change is appended to hours_ledger as a signed
+ * delta and applied to total_accumulated_minutes as an increment in the
+ * database, in the caller's transaction, so two time-outs of the same
+ * student committing at once both count. Student.totalAccumulatedMinutes is
+ * only a copy for the response being built.
+ */
+@Service
+public class HoursLedgerService {
+
+    @Autowired
+    private HoursLedgerRepository hoursLedgerRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    /**
+     * Adds the delta to the student's total; a zero delta writes nothing
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Student student, AttendanceRecord record, long deltaMinutes, HoursLedgerReason reason) {
+        record(student.getId(), record != null ? record.getId() : null, deltaMinutes, reason);
+        student.setTotalAccumulatedMinutes(student.getTotalAccumulatedMinutes() + deltaMinutes);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long studentId, Long attendanceRecordId, long deltaMinutes, HoursLedgerReason reason) {
+        if (deltaMinutes == 0) {
+            return;
+        }
+
+        hoursLedgerRepository.save(new HoursLedgerEntry(studentId, attendanceRecordId, deltaMinutes, reason));
+        if (studentRepository.addToTotalAccumulatedMinutes(studentId, deltaMinutes) != 1) {
+            throw new RuntimeException("Student not found: " + studentId);
+        }
+    }
+
+    public List<HoursLedgerEntry> getRecentEntries(Long studentId, int limit) {
+        return hoursLedgerRepository.findByStudentIdOrderByIdDesc(studentId, PageRequest.of(0, limit));
+    }
+}
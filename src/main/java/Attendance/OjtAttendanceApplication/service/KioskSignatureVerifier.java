@@ -0,0 +1,100 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.PunchEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Checks that a buffered punch was recorded by a provisioned kiosk.
+ *
+ * Each kiosk holds a shared secret (attendance.punch.kiosk-keys, as
+ * kioskId:base64Key pairs) and signs every event it buffers with
+ * HMAC-SHA256 over "eventId|idBadge|punchedAt", punchedAt written as
+ * yyyy-MM-dd'T'HH:mm:ss. The signature is sent Base64 encoded. Students
+ * only ever see their TOTP secret, so they can compute a code for an
+ * earlier time but can't sign a punch for it.
+ */
+@Component
+public class KioskSignatureVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(KioskSignatureVerifier.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final DateTimeFormatter PUNCHED_AT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final Map<String, SecretKeySpec> keys = new HashMap<>();
+
+    @Autowired
+    public KioskSignatureVerifier(@Value("${attendance.punch.kiosk-keys:}") String kioskKeys) {
+        for (String entry : kioskKeys.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("attendance.punch.kiosk-keys entries must be kioskId:base64Key");
+            }
+            String kioskId = entry.substring(0, separator).trim();
+            byte[] key = Base64.getDecoder().decode(entry.substring(separator + 1).trim());
+            keys.put(kioskId, new SecretKeySpec(key, ALGORITHM));
+        }
+        logger.info("🔑 Punch signing keys configured for {} kiosk(s)", keys.size());
+    }
+
+    /**
+     * @return whether the kiosk was provisioned with a key, so its events must be signed
+     */
+    public boolean hasKey(String kioskId) {
+        return kioskId != null && keys.containsKey(kioskId);
+    }
+
+    /**
+     * @return whether the event carries the kiosk's signature of its id, badge and punch time
+     */
+    public boolean verify(String kioskId, PunchEvent event) {
+        SecretKeySpec key = kioskId != null ? keys.get(kioskId) : null;
+        if (key == null || event.getSignature() == null) {
+            return false;
+        }
+
+        byte[] presented;
+        try {
+            presented = Base64.getDecoder().decode(event.getSignature());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(key, event), presented);
+    }
+
+    /**
+     * The text a kiosk signs for an event
+     */
+    static String payload(String eventId, String idBadge, LocalDateTime punchedAt) {
+        return eventId + "|" + idBadge + "|" + PUNCHED_AT_FORMAT.format(punchedAt);
+    }
+
+    static byte[] sign(SecretKeySpec key, PunchEvent event) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload(event.getEventId(), event.getIdBadge(), event.getPunchedAt())
+                    .getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
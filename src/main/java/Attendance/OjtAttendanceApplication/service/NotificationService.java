@@ -1,12 +1,19 @@
 package Attendance.OjtAttendanceApplication.service;
 
 import Attendance.OjtAttendanceApplication.dto.AdminNotificationDto;
+import Attendance.OjtAttendanceApplication.dto.HoursConverter;
 import Attendance.OjtAttendanceApplication.entity.AdminNotification;
 import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
 import Attendance.OjtAttendanceApplication.entity.NotificationType;
+import Attendance.OjtAttendanceApplication.entity.OutboxEvent;
+import Attendance.OjtAttendanceApplication.entity.OutboxEventType;
 import Attendance.OjtAttendanceApplication.entity.Student;
 import Attendance.OjtAttendanceApplication.repository.AdminNotificationRepository;
+import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
 import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -19,9 +26,56 @@ import java.util.stream.Collectors;
 @Service
 public class NotificationService {
 
+    private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
+
     @Autowired
     private AdminNotificationRepository adminNotificationRepository;
 
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+
+    /**
+     * Outbox consumer: create the admin notification an event stands for.
+     * Events whose student or record has since been deleted are dropped.
+     */
+    @Transactional
+    public void handleOutboxEvent(OutboxEvent event) {
+        Student student = studentRepository.findById(event.getStudentId()).orElse(null);
+        if (student == null) {
+            logger.info("Skipping {} notification - student {} no longer exists", event.getEventType(), event.getStudentId());
+            return;
+        }
+
+        if (event.getEventType() == OutboxEventType.COMPLETION_READY) {
+            createCompletionReadyNotification(student);
+            return;
+        }
+
+        AttendanceRecord attendanceRecord = attendanceRecordRepository.findById(event.getAttendanceRecordId()).orElse(null);
+        if (attendanceRecord == null) {
+            logger.info("Skipping {} notification - attendance record {} no longer exists",
+                    event.getEventType(), event.getAttendanceRecordId());
+            return;
+        }
+
+        switch (event.getEventType()) {
+            case MISSING_TIME_OUT:
+                createMissingTimeOutNotification(student, attendanceRecord);
+                break;
+            case LONG_WORK_SESSION:
+                createLongWorkSessionNotification(student, attendanceRecord);
+                break;
+            case AUTO_TIME_OUT_OCCURRED:
+                createAutoTimeOutNotification(student, attendanceRecord);
+                break;
+            default:
+                throw new RuntimeException("Not a notification event: " + event.getEventType());
+        }
+    }
+
     public void createMissingTimeOutNotification(Student student, AttendanceRecord attendanceRecord) {
         // Check if notification already exists for this record
         Optional<AdminNotification> existingNotification = adminNotificationRepository
@@ -76,7 +130,7 @@ public class NotificationService {
             String message = String.format("Student %s (ID: %s) has completed their required hours (%s/%s hours). Ready for completion.",
                     student.getFullName(),
                     student.getIdBadge() != null ? student.getIdBadge() : "COMPLETED",
-                    student.getTotalAccumulatedHours(),
+                    HoursConverter.toHours(student.getTotalAccumulatedMinutes()),
                     student.getRequiredHours());
 
             // We can reuse LONG_WORK_SESSION or create a new notification type
@@ -0,0 +1,176 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.entity.OutboxEvent;
+import Attendance.OjtAttendanceApplication.entity.OutboxEventStatus;
+import Attendance.OjtAttendanceApplication.repository.OutboxEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Drains the outbox in the background.
+ *
+ * Each event is delivered in its own transaction together with marking it
+ * done, so a consumer's writes and the event's completion commit together.
+ * Events of one student are delivered strictly in the order they were
+ * recorded: once an event of a student fails (or is waiting to be retried)
+ * the student's later events wait behind it. A failing event is retried with
+ * exponential backoff and dead-lettered (FAILED) after max-attempts, which
+ * releases the events queued behind it. Each run only fetches events that
+ * are due, so a backlog of events backing off doesn't crowd newer ones out
+ * of the page.
+ */
+@Component
+public class OutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private static final int BATCH_SIZE = 200;
+    private static final long MAX_BACKOFF_SECONDS = 600;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private ScheduleOverrideService scheduleOverrideService;
+
+    @Value("${attendance.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${attendance.outbox.retention-days:7}")
+    private int retentionDays;
+
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+
+    @Autowired
+    public OutboxDispatcher(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @return number of events delivered in this run
+     */
+    @Scheduled(fixedDelayString = "${attendance.outbox.poll-interval-ms:2000}")
+    public int dispatchPending() {
+        // One run at a time; a lock rather than synchronized so a virtual thread isn't pinned during JDBC
+        dispatchLock.lock();
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> pending = outboxEventRepository.findDeliverable(now, PageRequest.of(0, BATCH_SIZE));
+
+            // Students whose event failed in this run; their later events wait for the retry
+            Set<Long> blockedStudents = new HashSet<>();
+            int delivered = 0;
+
+            for (OutboxEvent event : pending) {
+                if (blockedStudents.contains(event.getStudentId())) {
+                    continue;
+                }
+
+                if (!deliver(event)) {
+                    blockedStudents.add(event.getStudentId());
+                    continue;
+                }
+                delivered++;
+            }
+
+            if (delivered > 0) {
+                logger.debug("Outbox: delivered {} of {} pending events", delivered, pending.size());
+            }
+            return delivered;
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    @Scheduled(cron = "0 30 0 * * *") // Daily at 00:30
+    public void purgeDeliveredEvents() {
+        try {
+            Integer deleted = transactionTemplate.execute(status ->
+                    outboxEventRepository.deleteDeliveredBefore(LocalDateTime.now().minusDays(retentionDays)));
+            logger.info("Outbox cleanup completed: {} delivered events deleted", deleted);
+        } catch (Exception e) {
+            logger.error("Error in purgeDeliveredEvents: {}", e.getMessage(), e);
+        }
+    }
+
+    private boolean deliver(OutboxEvent event) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                route(event);
+
+                event.setStatus(OutboxEventStatus.DONE);
+                event.setProcessedAt(LocalDateTime.now());
+                outboxEventRepository.save(event);
+            });
+            return true;
+        } catch (Exception e) {
+            recordFailure(event, e);
+            return false;
+        }
+    }
+
+    private void route(OutboxEvent event) {
+        switch (event.getEventType()) {
+            case MISSING_TIME_OUT:
+            case LONG_WORK_SESSION:
+            case AUTO_TIME_OUT_OCCURRED:
+            case COMPLETION_READY:
+                notificationService.handleOutboxEvent(event);
+                break;
+            case SCHEDULE_OVERRIDE_SUBMITTED:
+            case SCHEDULE_OVERRIDE_REVIEWED:
+                scheduleOverrideService.handleOutboxEvent(event);
+                break;
+            default:
+                throw new RuntimeException("No consumer for outbox event type " + event.getEventType());
+        }
+    }
+
+    private void recordFailure(OutboxEvent event, Exception failure) {
+        int attempts = event.getAttempts() + 1;
+
+        event.setStatus(attempts >= maxAttempts ? OutboxEventStatus.FAILED : OutboxEventStatus.PENDING);
+        event.setProcessedAt(null);
+        event.setAttempts(attempts);
+        event.setLastError(failure.getMessage());
+        event.setNextAttemptAt(LocalDateTime.now().plusSeconds(backoffSeconds(attempts)));
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> outboxEventRepository.save(event));
+        } catch (Exception e) {
+            // Stays PENDING with its old attempt count and is picked up again next run
+            logger.error("Could not record failure of outbox event {}: {}", event.getId(), e.getMessage(), e);
+            return;
+        }
+
+        if (event.getStatus() == OutboxEventStatus.FAILED) {
+            logger.error("Outbox event {} ({}) for student {} failed {} times, giving up: {}",
+                    event.getId(), event.getEventType(), event.getStudentId(), attempts, failure.getMessage(), failure);
+        } else {
+            logger.warn("Outbox event {} ({}) for student {} failed (attempt {}), retrying in {}s: {}",
+                    event.getId(), event.getEventType(), event.getStudentId(), attempts,
+                    backoffSeconds(attempts), failure.getMessage());
+        }
+    }
+
+    private static long backoffSeconds(int attempts) {
+        return Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(attempts, 20));
+    }
+}
@@ -0,0 +1,120 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.entity.OutboxEvent;
+import Attendance.OjtAttendanceApplication.entity.OutboxEventStatus;
+import Attendance.OjtAttendanceApplication.entity.OutboxEventType;
+import Attendance.OjtAttendanceApplication.repository.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Records side effects (admin notifications, override bookkeeping,
+ * recalculation) in the caller's transaction instead of running them inline.
+ * The event commits or rolls back with the write that caused it, and
+ * OutboxDispatcher carries it out afterwards.
+ */
+@Service
+public class OutboxService {
+
+    private static final String INSERT_EVENT_SQL =
+            "INSERT INTO outbox_events (event_type, student_id, attendance_record_id, reference_id, " +
+                    "status, attempts, next_attempt_at, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(OutboxEventType eventType, Long studentId, Long attendanceRecordId) {
+        enqueue(eventType, studentId, attendanceRecordId, null);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(OutboxEventType eventType, Long studentId, Long attendanceRecordId, Long referenceId) {
+        outboxEventRepository.save(new OutboxEvent(eventType, studentId, attendanceRecordId, referenceId));
+    }
+
+    /**
+     * Enqueues many events with one JDBC batch, for the scheduled sweeps.
+     * The events are new, unsaved OutboxEvents; their ids are left unset.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_EVENT_SQL, events, events.size(), (ps, event) -> {
+            ps.setString(1, event.getEventType().name());
+            ps.setLong(2, event.getStudentId());
+            ps.setObject(3, event.getAttendanceRecordId(), Types.BIGINT);
+            ps.setObject(4, event.getReferenceId(), Types.BIGINT);
+            ps.setString(5, event.getStatus().name());
+            ps.setInt(6, event.getAttempts());
+            ps.setObject(7, event.getNextAttemptAt());
+            ps.setObject(8, event.getCreatedAt());
+        });
+    }
+
+    /**
+     * Backlog and dead letters, for the admin dashboard
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getStatus() {
+        List<Map<String, Object>> recentFailures = outboxEventRepository
+                .findByStatusOrderByIdDesc(OutboxEventStatus.FAILED, PageRequest.of(0, 20))
+                .stream()
+                .map(this::describe)
+                .collect(Collectors.toList());
+
+        Map<String, Object> status = new HashMap<>();
+        status.put("pending", outboxEventRepository.countByStatus(OutboxEventStatus.PENDING));
+        status.put("failed", outboxEventRepository.countByStatus(OutboxEventStatus.FAILED));
+        status.put("delivered", outboxEventRepository.countByStatus(OutboxEventStatus.DONE));
+        status.put("recentFailures", recentFailures);
+        return status;
+    }
+
+    /**
+     * Put a dead-lettered event back in the queue
+     */
+    @Transactional
+    public void retry(Long eventId) {
+        OutboxEvent event = outboxEventRepository.findById(eventId)
+                .orElseThrow(() -> new RuntimeException("Outbox event not found"));
+
+        if (event.getStatus() != OutboxEventStatus.FAILED) {
+            throw new RuntimeException("Only failed outbox events can be retried");
+        }
+
+        event.setStatus(OutboxEventStatus.PENDING);
+        event.setAttempts(0);
+        event.setNextAttemptAt(LocalDateTime.now());
+        outboxEventRepository.save(event);
+    }
+
+    private Map<String, Object> describe(OutboxEvent event) {
+        Map<String, Object> description = new HashMap<>();
+        description.put("id", event.getId());
+        description.put("eventType", event.getEventType().name());
+        description.put("studentId", event.getStudentId());
+        description.put("attendanceRecordId", event.getAttendanceRecordId());
+        description.put("attempts", event.getAttempts());
+        description.put("lastError", event.getLastError());
+        description.put("createdAt", event.getCreatedAt());
+        return description;
+    }
+}
@@ -0,0 +1,210 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Applies a batch of punches a kiosk buffered while it couldn't reach the
+ * server.
+ *
+ * Every event is checked up front (format, age, kiosk signature, badge
+ * directory) and the students behind the remaining events are resolved with
+ * one query. The events are then applied oldest first, each through the same
+ * per-badge serialization, TOTP check and processAttendance rules as a live
+ * tap, but evaluated at the event's own punch time. Events are independent:
+ * each runs in its own transaction and gets its own result.
+ *
+ * The TOTP code alone doesn't prove when a punch happened, since students
+ * hold their secret. Events from a kiosk with a signing key must therefore
+ * carry its signature (KioskSignatureVerifier). A kiosk without one can only
+ * buffer time-ins for a few minutes; an older time-in has to be corrected
+ * by an admin instead.
+ */
+@Service
+public class PunchBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PunchBatchService.class);
+
+    @Autowired
+    private AttendanceService attendanceService;
+
+    @Autowired
+    private TotpService totpService;
+
+    @Autowired
+    private BadgeDirectory badgeDirectory;
+
+    @Autowired
+    private PunchSerializer punchSerializer;
+
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    @Autowired
+    private KioskSignatureVerifier kioskSignatureVerifier;
+
+    @Value("${attendance.punch.batch.max-event-age-minutes:60}")
+    private long maxEventAgeMinutes = 60;
+
+    @Value("${attendance.punch.batch.max-clock-skew-seconds:120}")
+    private long maxClockSkewSeconds = 120;
+
+    @Value("${attendance.punch.batch.unsigned-time-in-max-age-minutes:5}")
+    private long unsignedTimeInMaxAgeMinutes = 5;
+
+    @Value("${attendance.punch.batch.require-signature:false}")
+    private boolean requireSignature;
+
+    /**
+     * @return one result per event, in the order the events were sent
+     */
+    public List<PunchEventResult> ingest(PunchBatchRequest request) {
+        List<PunchEvent> events = request.getEvents();
+        LocalDateTime now = LocalDateTime.now();
+
+        boolean signed = kioskSignatureVerifier.hasKey(request.getKioskId());
+        if (!signed && requireSignature) {
+            throw new RuntimeException("Kiosk " + request.getKioskId() + " has no signing key. Buffered punches can't be accepted.");
+        }
+
+        PunchEventResult[] results = new PunchEventResult[events.size()];
+        List<Integer> pending = new ArrayList<>();
+        Set<String> badges = new HashSet<>();
+
+        for (int i = 0; i < events.size(); i++) {
+            PunchEvent event = events.get(i);
+            String problem = validate(event, now, signed ? request.getKioskId() : null);
+
+            if (problem != null) {
+                results[i] = PunchEventResult.rejected(event, problem);
+            } else {
+                pending.add(i);
+                badges.add(event.getIdBadge());
+            }
+        }
+
+        Map<String, KioskPunchContext> contexts = badges.isEmpty()
+                ? Map.of()
+                : attendanceService.resolveKioskContexts(badges);
+
+        // Oldest first; List.sort is stable, so equal timestamps keep the kiosk's order
+        pending.sort(Comparator.comparing(index -> events.get(index).getPunchedAt()));
+
+        int applied = 0;
+        for (int index : pending) {
+            PunchEvent event = events.get(index);
+            try {
+                KioskPunchContext context = contexts.get(event.getIdBadge());
+                if (context == null) {
+                    throw new RuntimeException("Student not found with ID badge: " + event.getIdBadge());
+                }
+
+                AttendanceResponse response = punchSerializer.punch(event.getIdBadge(), event.getTotpCode(),
+                        () -> apply(event, context, signed, now));
+                results[index] = PunchEventResult.applied(event, response);
+                applied++;
+            } catch (Exception e) {
+                results[index] = PunchEventResult.rejected(event, e.getMessage());
+            }
+        }
+
+        logger.info("Punch batch from {} kiosk {}: {} events, {} applied, {} rejected", signed ? "signed" : "unsigned",
+                request.getKioskId(), events.size(), applied, events.size() - applied);
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Checks that need neither the database nor the badge lock
+     *
+     * @param signingKioskId the kiosk whose signature the event must carry, or null for an unsigned batch
+     * @return why the event can't be applied, or null if it can be tried
+     */
+    private String validate(PunchEvent event, LocalDateTime now, String signingKioskId) {
+        if (event.getEventId() == null || event.getEventId().isBlank()) {
+            return "Event id is required";
+        }
+        if (event.getIdBadge() == null || !event.getIdBadge().matches("\\d{4}")) {
+            return "ID badge must be exactly 4 digits";
+        }
+        if (event.getTotpCode() == null || !event.getTotpCode().matches("\\d{6}")) {
+            return "TOTP code must be exactly 6 digits";
+        }
+        if (event.getPunchedAt() == null) {
+            return "Punch time is required";
+        }
+        if (event.getPunchedAt().isAfter(now.plusSeconds(maxClockSkewSeconds))) {
+            return "Punch time is in the future. Please check the kiosk clock.";
+        }
+        if (event.getPunchedAt().isBefore(now.minusMinutes(maxEventAgeMinutes))) {
+            return String.format("Punch is older than %d minutes and can no longer be accepted. Please contact the admin.",
+                    maxEventAgeMinutes);
+        }
+        if (signingKioskId != null && !kioskSignatureVerifier.verify(signingKioskId, event)) {
+            return "Punch signature is missing or doesn't match. The event was not recorded by this kiosk.";
+        }
+
+        BadgeDirectory.BadgeSnapshot badge = badgeDirectory.lookup(event.getIdBadge());
+        if (badge == null) {
+            return "Student not found with ID badge: " + event.getIdBadge();
+        }
+        if (!badge.isActive()) {
+            return "Only active students can log attendance. Current status: " + badge.getStatus();
+        }
+        if (!badge.isTotpConfigured()) {
+            return "TOTP not set up. Please complete TOTP setup first.";
+        }
+        return null;
+    }
+
+    /**
+     * Runs under the badge's lock, like a live tap
+     */
+    private AttendanceResponse apply(PunchEvent event, KioskPunchContext context, boolean signed, LocalDateTime receivedAt) {
+        // Earlier events of this batch (or another kiosk) may have opened or closed a session since the batch was resolved
+        OpenSessionEntry openSession = activeSessionRegistry.get(context.getStudentId());
+        context.setOpenSessionId(openSession != null ? openSession.getRecordId() : null);
+
+        // Checked before the code is verified, so a rejected event doesn't cost a TOTP check
+        if (!signed && openSession == null
+                && event.getPunchedAt().isBefore(receivedAt.minusMinutes(unsignedTimeInMaxAgeMinutes))) {
+            throw new RuntimeException(String.format("Time-in is older than %d minutes and this kiosk can't sign punches. " +
+                    "Please contact the admin.", unsignedTimeInMaxAgeMinutes));
+        }
+
+        TotpVerifier.Verification verification = totpService.verifyAttendanceCodeAt(
+                event.getIdBadge(), context.getTotpSecret(), event.getTotpCode(), event.getPunchedAt());
+
+        if (verification.getResult() == TotpVerifier.Result.REPLAYED) {
+            throw new RuntimeException("This TOTP code has already been used, or a later punch was already recorded for this badge.");
+        }
+
+        if (verification.getResult() != TotpVerifier.Result.VALID) {
+            throw new RuntimeException("Invalid TOTP code for the recorded punch time.");
+        }
+
+        if (!context.isTotpActive()) {
+            attendanceService.enableTotp(context);
+        }
+
+        AttendanceRequest attendanceRequest = new AttendanceRequest(event.getIdBadge(), event.getTasksCompleted());
+        AttendanceResponse response = attendanceService.processAttendance(attendanceRequest, context, event.getPunchedAt());
+
+        // The code is used up only once the punch went through
+        totpService.acceptAttendanceCode(event.getIdBadge(), verification);
+
+        // Keep the context current for later events of the same badge
+        if ("TIME_OUT".equals(response.getAction())) {
+            context.setLastTimeOut(event.getPunchedAt());
+            context.setTotalAccumulatedMinutes(HoursConverter.toMinutes(response.getTotalAccumulatedHours()));
+        }
+        return response;
+    }
+}
@@ -0,0 +1,98 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.AttendanceResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes kiosk punches per badge.
+ *
+ * Every possible 4-digit badge has its own lock, so two taps of the same
+ * badge run one after the other (including their commit) while different
+ * badges never wait on each other. A tap that repeats the previous
+ * successful punch of the same badge within the idempotency window gets
+ * that punch's response back instead of being processed again.
+ */
+@Component
+public class PunchSerializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PunchSerializer.class);
+
+    private final ReentrantLock[] locks = new ReentrantLock[BadgeDirectory.BADGE_SLOTS];
+
+    // Only read or written while holding the matching lock
+    private final RecentPunch[] recentPunches = new RecentPunch[BadgeDirectory.BADGE_SLOTS];
+
+    @Value("${attendance.punch.idempotency-window-seconds:5}")
+    private long idempotencyWindowSeconds = 5;
+
+    public PunchSerializer() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Run a punch for a badge while holding that badge's lock.
+     *
+     * @param fingerprint extra request data that must match for a tap to count
+     *                    as a duplicate (e.g. the TOTP code), or null
+     */
+    public AttendanceResponse punch(String idBadge, String fingerprint, Supplier<AttendanceResponse> action) {
+        int slot = BadgeDirectory.slotOf(idBadge);
+        if (slot < 0) {
+            // Malformed badge - nothing to serialize, let the action reject it
+            return action.get();
+        }
+
+        ReentrantLock lock = locks[slot];
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+
+            RecentPunch recent = recentPunches[slot];
+            if (recent != null && recent.isDuplicate(fingerprint, now, windowNanos())) {
+                logger.info("Duplicate tap for badge {} within {}s - returning previous {} response",
+                        idBadge, idempotencyWindowSeconds, recent.response.getAction());
+                return recent.response;
+            }
+
+            AttendanceResponse response = action.get();
+            recentPunches[slot] = new RecentPunch(fingerprint, System.nanoTime(), response);
+            return response;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public AttendanceResponse punch(String idBadge, Supplier<AttendanceResponse> action) {
+        return punch(idBadge, null, action);
+    }
+
+    private long windowNanos() {
+        return TimeUnit.SECONDS.toNanos(idempotencyWindowSeconds);
+    }
+
+    private static final class RecentPunch {
+        private final String fingerprint;
+        private final long completedAtNanos;
+        private final AttendanceResponse response;
+
+        private RecentPunch(String fingerprint, long completedAtNanos, AttendanceResponse response) {
+            this.fingerprint = fingerprint;
+            this.completedAtNanos = completedAtNanos;
+            this.response = response;
+        }
+
+        private boolean isDuplicate(String otherFingerprint, long nowNanos, long windowNanos) {
+            return nowNanos - completedAtNanos < windowNanos && Objects.equals(fingerprint, otherFingerprint);
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.HoursConverter;
+import Attendance.OjtAttendanceApplication.dto.StaleRecordCount;
+import Attendance.OjtAttendanceApplication.dto.StudentRecalculationResult;
+import Attendance.OjtAttendanceApplication.entity.RecalculationJob;
+import Attendance.OjtAttendanceApplication.entity.RecalculationJobChange;
+import Attendance.OjtAttendanceApplication.entity.RecalculationJobStatus;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
+import Attendance.OjtAttendanceApplication.repository.RecalculationJobChangeRepository;
+import Attendance.OjtAttendanceApplication.repository.RecalculationJobRepository;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the full recalculation as a background job.
+ *
+ * Students are processed in id order, CHUNK_SIZE per transaction; each chunk
+ * commits the students' records and totals together with their change rows
+ * and the job's checkpoint (the last student id). A job that was running when
+ * the application stopped is picked up again at startup and, like a failed
+ * job that is resumed, continues after its checkpoint. Cancellation is
+ * checked between chunks. An incremental job only visits students with stale
+ * records and only recalculates those records.
+ */
+@Service
+public class RecalculationJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecalculationJobService.class);
+
+    static final int CHUNK_SIZE = 25;
+
+    private static final int STREAM_PAGE_SIZE = 100;
+
+    static final List<RecalculationJobStatus> ACTIVE_STATUSES =
+            List.of(RecalculationJobStatus.QUEUED, RecalculationJobStatus.RUNNING);
+
+    @Autowired
+    private RecalculationJobRepository recalculationJobRepository;
+
+    @Autowired
+    private RecalculationJobChangeRepository recalculationJobChangeRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+
+    @Autowired
+    private RecalculationService recalculationService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("recalculationExecutor")
+    private ThreadPoolTaskExecutor recalculationExecutor;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Start, resume and batch runs check for an active job and then create one; a lock keeps two requests
+    // from both passing. Drift repairs hold it too, so no job starts under them
+    private final ReentrantLock submitLock = new ReentrantLock();
+
+    @Autowired
+    public RecalculationJobService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // ==================== CONTROL ====================
+
+    public RecalculationJob startJob(boolean incremental) {
+        submitLock.lock();
+        try {
+            RecalculationJob job = createJob(incremental);
+            submit(job.getId());
+            return job;
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    /**
+     * Records a new queued job without running it. An incremental job is
+     * sized from the stale counts rather than the whole tables.
+     */
+    public RecalculationJob createJob(boolean incremental) {
+        return transactionTemplate.execute(status -> {
+            checkNoActiveJob();
+
+            RecalculationJob job = new RecalculationJob();
+            job.setIncremental(incremental);
+            if (incremental) {
+                StaleRecordCount stale = attendanceRecordRepository.countStale(
+                        HoursCalculationEngine.rulesFingerprintBase(), HoursCalculationEngine.nextRulesFingerprintBase());
+                job.setTotalStudents(stale.getStudents());
+                job.setTotalRecords(stale.getRecords());
+            } else {
+                job.setTotalStudents(studentRepository.count());
+                job.setTotalRecords(attendanceRecordRepository.count());
+            }
+            return recalculationJobRepository.save(job);
+        });
+    }
+
+    /**
+     * Records a batch run (BatchRecalculationService) as a running job. It
+     * moves totals by the differences it saw in its snapshot, so it must not
+     * overlap a job, another batch run or a drift repair; like startJob, this
+     * fails while a job is queued or running.
+     */
+    public RecalculationJob beginBatchRun() {
+        submitLock.lock();
+        try {
+            return transactionTemplate.execute(status -> {
+                checkNoActiveJob();
+
+                LocalDateTime now = LocalDateTime.now();
+                RecalculationJob job = new RecalculationJob();
+                job.setBatch(true);
+                job.setStatus(RecalculationJobStatus.RUNNING);
+                job.setStartedAt(now);
+                job.setResumedAt(now);
+                job.setTotalStudents(studentRepository.count());
+                job.setTotalRecords(attendanceRecordRepository.count());
+                return recalculationJobRepository.save(job);
+            });
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    /**
+     * Ends a batch run, with counts filled in by the runner
+     */
+    public void finishBatchRun(Long jobId, RecalculationJobStatus finalStatus, String errorMessage,
+                               Consumer<RecalculationJob> counts) {
+        transactionTemplate.executeWithoutResult(status -> {
+            RecalculationJob job = findJob(jobId);
+            counts.accept(job);
+            finishInTransaction(job, finalStatus, errorMessage);
+        });
+    }
+
+    /**
+     * Runs action unless a job or batch run is queued or running, holding the
+     * lock jobs are started under so that none starts meanwhile
+     *
+     * @return the action's result, or ifActive's when a job is active
+     */
+    public <T> T runUnlessJobActive(Supplier<T> action, Supplier<T> ifActive) {
+        submitLock.lock();
+        try {
+            if (recalculationJobRepository.findFirstByStatusIn(ACTIVE_STATUSES).isPresent()) {
+                return ifActive.get();
+            }
+            return action.get();
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    private void checkNoActiveJob() {
+        recalculationJobRepository.findFirstByStatusIn(ACTIVE_STATUSES).ifPresent(active -> {
+            throw new RuntimeException("Recalculation " + (active.isBatch() ? "batch run " : "job ") +
+                    active.getId() + " is already " + active.getStatus().name().toLowerCase());
+        });
+    }
+
+    public RecalculationJob cancelJob(Long jobId) {
+        return transactionTemplate.execute(status -> {
+            RecalculationJob job = findJob(jobId);
+            if (job.isBatch()) {
+                throw new RuntimeException("Batch recalculation runs can't be cancelled");
+            }
+            if (!job.isActive()) {
+                throw new RuntimeException("Recalculation job " + jobId + " is already " +
+                        job.getStatus().name().toLowerCase());
+            }
+
+            job.setCancelRequested(true);
+            logger.info("🛑 Cancel requested for recalculation job {}", jobId);
+            return recalculationJobRepository.save(job);
+        });
+    }
+
+    /**
+     * Continues a failed or cancelled job after its checkpoint
+     */
+    public RecalculationJob resumeJob(Long jobId) {
+        submitLock.lock();
+        try {
+            RecalculationJob job = transactionTemplate.execute(status -> {
+                RecalculationJob existing = findJob(jobId);
+                if (existing.isBatch()) {
+                    throw new RuntimeException("Batch recalculation runs can't be resumed; start a new one");
+                }
+                if (existing.getStatus() != RecalculationJobStatus.FAILED
+                        && existing.getStatus() != RecalculationJobStatus.CANCELLED) {
+                    throw new RuntimeException("Only failed or cancelled jobs can be resumed");
+                }
+                checkNoActiveJob();
+
+                existing.setStatus(RecalculationJobStatus.QUEUED);
+                existing.setCancelRequested(false);
+                existing.setErrorMessage(null);
+                existing.setFinishedAt(null);
+                return recalculationJobRepository.save(existing);
+            });
+
+            submit(jobId);
+            return job;
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    /**
+     * Jobs that were queued or running when the application stopped carry on
+     * from their checkpoint. A batch run has none; it is marked failed (the
+     * chunks it committed are consistent, and a new run finishes the rest).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        for (RecalculationJob job : recalculationJobRepository.findByStatusInOrderByIdAsc(ACTIVE_STATUSES)) {
+            if (job.isBatch()) {
+                logger.warn("⚠️ Batch recalculation run {} was interrupted by a restart", job.getId());
+                finish(job.getId(), RecalculationJobStatus.FAILED,
+                        "Interrupted by a restart; start a new batch run to finish it");
+                continue;
+            }
+            logger.info("🔁 Resuming recalculation job {} after student {}", job.getId(), job.getLastStudentId());
+            submit(job.getId());
+        }
+    }
+
+    private void submit(Long jobId) {
+        recalculationExecutor.execute(() -> runJob(jobId));
+    }
+
+    // ==================== RUN ====================
+
+    /**
+     * Processes the job's remaining students on the calling thread
+     */
+    public void runJob(Long jobId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            RecalculationJob job = findJob(jobId);
+            LocalDateTime now = LocalDateTime.now();
+            job.setStatus(RecalculationJobStatus.RUNNING);
+            if (job.getStartedAt() == null) {
+                job.setStartedAt(now);
+            }
+            job.setResumedAt(now);
+            job.setRecordsAtResume(job.getProcessedRecords());
+            recalculationJobRepository.save(job);
+        });
+
+        logger.info("🔄 Recalculation job {} running", jobId);
+
+        try {
+            boolean more = true;
+            while (more) {
+                more = Boolean.TRUE.equals(transactionTemplate.execute(status -> processNextChunk(jobId)));
+            }
+        } catch (Exception e) {
+            logger.error("💥 Recalculation job {} failed: {}", jobId, e.getMessage(), e);
+            finish(jobId, RecalculationJobStatus.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * @return whether there may be more students to process
+     */
+    private boolean processNextChunk(Long jobId) {
+        RecalculationJob job = findJob(jobId);
+
+        if (job.isCancelRequested()) {
+            finishInTransaction(job, RecalculationJobStatus.CANCELLED, null);
+            return false;
+        }
+
+        long afterId = job.getLastStudentId() != null ? job.getLastStudentId() : 0L;
+        // Recalculated students stop being stale, so keyset paging past the checkpoint still holds
+        List<Long> studentIds = job.isIncremental()
+                ? attendanceRecordRepository.findStudentIdsWithStaleAfter(afterId,
+                        HoursCalculationEngine.rulesFingerprintBase(), PageRequest.of(0, CHUNK_SIZE))
+                : studentRepository.findIdsAfter(afterId, PageRequest.of(0, CHUNK_SIZE));
+        if (studentIds.isEmpty()) {
+            finishInTransaction(job, RecalculationJobStatus.COMPLETED, null);
+            return false;
+        }
+
+        for (Long studentId : studentIds) {
+            Student student = studentRepository.findById(studentId).orElse(null);
+            if (student != null) {
+                record(job, student, job.isIncremental()
+                        ? recalculationService.recalculateStaleRecords(student)
+                        : recalculationService.recalculateStudentHours(student));
+            }
+            job.setLastStudentId(studentId);
+        }
+
+        recalculationJobRepository.save(job);
+        return true;
+    }
+
+    private void record(RecalculationJob job, Student student, StudentRecalculationResult result) {
+        job.setProcessedStudents(job.getProcessedStudents() + 1);
+        job.setProcessedRecords(job.getProcessedRecords() + result.getTotalRecords());
+        job.setUpdatedRecords(job.getUpdatedRecords() + result.getRecordChanges().size());
+        job.setIncompleteRecords(job.getIncompleteRecords() + result.getIncompleteRecords());
+        job.setErrorRecords(job.getErrorRecords() + result.getErrorRecords());
+        job.setRegularTimeouts(job.getRegularTimeouts() + result.getRegularTimeouts());
+        job.setAutoTimeouts(job.getAutoTimeouts() + result.getAutoTimeouts());
+        job.setApprovedOverrides(job.getApprovedOverrides() + result.getApprovedOverrides());
+        job.setAdminCorrectedSkipped(job.getAdminCorrectedSkipped() + result.getAdminCorrectedSkipped());
+
+        if (result.isTotalChanged()) {
+            job.setUpdatedStudents(job.getUpdatedStudents() + 1);
+        }
+
+        if (!result.isTotalChanged() && result.getErrors().isEmpty()) {
+            return;
+        }
+
+        RecalculationJobChange change = new RecalculationJobChange();
+        change.setJobId(job.getId());
+        change.setStudentId(student.getId());
+        change.setStudentName(student.getFullName());
+        change.setIdBadge(student.getIdBadge());
+        change.setOldTotalMinutes(result.getOldTotalMinutes());
+        change.setNewTotalMinutes(result.getNewTotalMinutes());
+        change.setRecordsUpdated(result.getRecordChanges().size());
+        change.setRecordChanges(toJson(result.getRecordChanges()));
+        change.setErrors(result.getErrors().isEmpty() ? null : String.join("\n", result.getErrors()));
+        recalculationJobChangeRepository.save(change);
+    }
+
+    private void finish(Long jobId, RecalculationJobStatus finalStatus, String errorMessage) {
+        transactionTemplate.executeWithoutResult(status ->
+                finishInTransaction(findJob(jobId), finalStatus, errorMessage));
+    }
+
+    private void finishInTransaction(RecalculationJob job, RecalculationJobStatus finalStatus, String errorMessage) {
+        job.setStatus(finalStatus);
+        job.setFinishedAt(LocalDateTime.now());
+        job.setErrorMessage(errorMessage);
+        recalculationJobRepository.save(job);
+
+        logger.info("✅ Recalculation job {} {}: {} students, {} records processed, {} updated",
+                job.getId(), finalStatus.name().toLowerCase(), job.getProcessedStudents(),
+                job.getProcessedRecords(), job.getUpdatedRecords());
+    }
+
+    // ==================== READS ====================
+
+    public Map<String, Object> getJobProgress(Long jobId) {
+        return toProgress(findJob(jobId));
+    }
+
+    public List<Map<String, Object>> getRecentJobs() {
+        return recalculationJobRepository.findTop20ByOrderByIdDesc().stream()
+                .map(this::toProgress)
+                .toList();
+    }
+
+    public Map<String, Object> getJobChanges(Long jobId, int page, int size) {
+        findJob(jobId);
+        Page<RecalculationJobChange> changes = recalculationJobChangeRepository
+                .findByJobIdOrderByIdAsc(jobId, PageRequest.of(page, size));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("jobId", jobId);
+        result.put("page", changes.getNumber());
+        result.put("size", changes.getSize());
+        result.put("totalChanges", changes.getTotalElements());
+        result.put("totalPages", changes.getTotalPages());
+        result.put("studentChanges", changes.getContent().stream().map(this::toChange).toList());
+        return result;
+    }
+
+    /**
+     * Hands the job's changes to the consumer one line at a time: a "record"
+     * line per changed record, then a "student" line per student, and a final
+     * "job" line with the job's progress. Change rows are read a page at a
+     * time, so a large job never has all of them in memory.
+     */
+    public void streamJobChanges(Long jobId, Consumer<Map<String, Object>> out) {
+        findJob(jobId);
+
+        long afterId = 0;
+        List<RecalculationJobChange> changes;
+        while (!(changes = recalculationJobChangeRepository.findByJobIdAndIdGreaterThanOrderByIdAsc(
+                jobId, afterId, PageRequest.of(0, STREAM_PAGE_SIZE))).isEmpty()) {
+            for (RecalculationJobChange change : changes) {
+                for (Map<String, Object> recordChange : readRecordChanges(change.getRecordChanges())) {
+                    Map<String, Object> line = new LinkedHashMap<>();
+                    line.put("type", "record");
+                    line.put("idBadge", change.getIdBadge());
+                    line.putAll(recordChange);
+                    out.accept(line);
+                }
+
+                Map<String, Object> line = toChange(change);
+                line.remove("changes");
+                line.put("type", "student");
+                out.accept(line);
+            }
+            afterId = changes.get(changes.size() - 1).getId();
+        }
+
+        Map<String, Object> line = toProgress(findJob(jobId));
+        line.put("type", "job");
+        out.accept(line);
+    }
+
+    Map<String, Object> toProgress(RecalculationJob job) {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("jobId", job.getId());
+        progress.put("status", job.getStatus().name());
+        progress.put("incremental", job.isIncremental());
+        progress.put("batch", job.isBatch());
+        progress.put("cancelRequested", job.isCancelRequested());
+        progress.put("lastStudentId", job.getLastStudentId());
+        progress.put("totalStudents", job.getTotalStudents());
+        progress.put("processedStudents", job.getProcessedStudents());
+        progress.put("updatedStudents", job.getUpdatedStudents());
+        progress.put("totalRecords", job.getTotalRecords());
+        progress.put("processedRecords", job.getProcessedRecords());
+        progress.put("updatedRecords", job.getUpdatedRecords());
+        progress.put("concurrentlyUpdatedRecords", job.getConcurrentlyUpdatedRecords());
+        progress.put("percentComplete", job.getTotalStudents() > 0
+                ? Math.round(job.getProcessedStudents() * 1000.0 / job.getTotalStudents()) / 10.0
+                : 100.0);
+        progress.put("createdAt", job.getCreatedAt());
+        progress.put("startedAt", job.getStartedAt());
+        progress.put("finishedAt", job.getFinishedAt());
+        progress.put("errorMessage", job.getErrorMessage());
+
+        progress.put("recordBreakdown", Map.of(
+                "regularTimeouts", job.getRegularTimeouts(),
+                "autoTimeouts", job.getAutoTimeouts(),
+                "approvedOverrides", job.getApprovedOverrides(),
+                "adminCorrectedSkipped", job.getAdminCorrectedSkipped(),
+                "incompleteRecords", job.getIncompleteRecords(),
+                "errorRecords", job.getErrorRecords()
+        ));
+
+        // Rate over the current (or last) run, so time spent stopped doesn't count
+        double recordsPerSecond = 0;
+        if (job.getResumedAt() != null) {
+            LocalDateTime until = job.getFinishedAt() != null ? job.getFinishedAt() : LocalDateTime.now();
+            long elapsedMillis = Math.max(1, Duration.between(job.getResumedAt(), until).toMillis());
+            recordsPerSecond = (job.getProcessedRecords() - job.getRecordsAtResume()) * 1000.0 / elapsedMillis;
+        }
+        progress.put("recordsPerSecond", Math.round(recordsPerSecond * 10.0) / 10.0);
+
+        Long etaSeconds = null;
+        if (job.isActive() && recordsPerSecond > 0) {
+            long remaining = Math.max(0, job.getTotalRecords() - job.getProcessedRecords());
+            etaSeconds = Math.round(remaining / recordsPerSecond);
+        }
+        progress.put("etaSeconds", etaSeconds);
+
+        return progress;
+    }
+
+    private Map<String, Object> toChange(RecalculationJobChange change) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("studentId", change.getStudentId());
+        result.put("studentName", change.getStudentName());
+        result.put("idBadge", change.getIdBadge());
+        result.put("oldTotal", HoursConverter.toHours(change.getOldTotalMinutes()));
+        result.put("newTotal", HoursConverter.toHours(change.getNewTotalMinutes()));
+        result.put("difference", HoursConverter.toHours(change.getNewTotalMinutes() - change.getOldTotalMinutes()));
+        result.put("recordsUpdated", change.getRecordsUpdated());
+        result.put("changes", fromJson(change.getRecordChanges()));
+        result.put("errors", change.getErrors());
+        return result;
+    }
+
+    private RecalculationJob findJob(Long jobId) {
+        return recalculationJobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Recalculation job not found: " + jobId));
+    }
+
+    private String toJson(List<Map<String, Object>> recordChanges) {
+        try {
+            return objectMapper.writeValueAsString(recordChanges);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize record changes: " + e.getMessage(), e);
+        }
+    }
+
+    private List<Map<String, Object>> readRecordChanges(String recordChanges) {
+        if (recordChanges == null) {
+            return List.of();
+        }
+        try {
+            return objectMapper.readValue(recordChanges, new TypeReference<>() {});
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not read record changes: " + e.getMessage(), e);
+        }
+    }
+
+    private Object fromJson(String recordChanges) {
+        if (recordChanges == null) {
+            return List.of();
+        }
+        try {
+            return objectMapper.readTree(recordChanges);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not read record changes: " + e.getMessage(), e);
+        }
+    }
+}
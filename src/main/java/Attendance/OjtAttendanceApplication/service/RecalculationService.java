@@ -1,29 +1,28 @@
 package Attendance.OjtAttendanceApplication.service;
 
 import Attendance.OjtAttendanceApplication.dto.HoursCalculation;
+import Attendance.OjtAttendanceApplication.dto.HoursConverter;
+import Attendance.OjtAttendanceApplication.dto.RecordStatusCount;
+import Attendance.OjtAttendanceApplication.dto.StaleRecordCount;
+import Attendance.OjtAttendanceApplication.dto.StudentRecalculationResult;
 import Attendance.OjtAttendanceApplication.entity.*;
 import Attendance.OjtAttendanceApplication.repository.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Duration;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 public class RecalculationService {
 
     private static final Logger logger = LoggerFactory.getLogger(RecalculationService.class);
 
-    // Business rule constants
-    private static final int BREAK_DEDUCTION_THRESHOLD_MINUTES = 300; // 5 hours
-    private static final int BREAK_DEDUCTION_MINUTES = 60;
-    private static final int ROUNDING_THRESHOLD_MINUTES = 55;
-    private static final int REGULAR_HOURS_CAP = 8;
+    private static final int PREVIEW_PAGE_SIZE = 200;
 
     @Autowired
     private StudentRepository studentRepository;
@@ -31,222 +30,174 @@ public class RecalculationService {
     @Autowired
     private AttendanceRecordRepository attendanceRecordRepository;
 
+    @Autowired
+    private HoursCalculationEngine hoursCalculationEngine;
+
+    @Autowired
+    private HoursLedgerService hoursLedgerService;
+
     /**
-     * COMPLETE: Recalculate ALL attendance records
-     * Handles: Regular, Auto Time-outs, Admin Corrected, and Approved Overrides
+     * Recalculates one student's completed records and total, saving the
+     * records and the student that changed. Handles: Regular, Auto
+     * Time-outs, Admin Corrected and Approved Overrides. Runs in the
+     * caller's transaction (RecalculationJobService commits a chunk of
+     * students at a time).
      */
-    @Transactional
-    public Map<String, Object> recalculateAllRecords() {
-        logger.info("🔄 Starting COMPLETE recalculation of all attendance records...");
+    public StudentRecalculationResult recalculateStudentHours(Student student) {
+        logger.debug("👤 Processing student: {} ({})", student.getFullName(), student.getIdBadge());
 
-        long startTime = System.currentTimeMillis();
+        StudentRecalculationResult result = new StudentRecalculationResult();
 
-        // Detailed counters
-        int totalRecords = 0;
-        int regularTimeouts = 0;
-        int autoTimeouts = 0;
-        int adminCorrectedSkipped = 0;
-        int adminCorrectedRecalculated = 0;
-        int approvedOverrides = 0;
-        int incompleteRecords = 0;
-        int updatedRecords = 0;
-        int errorRecords = 0;
+        List<AttendanceRecord> studentRecords = attendanceRecordRepository
+                .findByStudentOrderByAttendanceDateDesc(student);
 
-        int totalStudents = 0;
-        int updatedStudents = 0;
+        long oldTotal = student.getTotalAccumulatedMinutes();
+        long newTotal = 0;
 
-        List<String> errors = new ArrayList<>();
-        Map<String, Map<String, Object>> studentChanges = new HashMap<>();
+        for (AttendanceRecord record : studentRecords) {
+            result.setTotalRecords(result.getTotalRecords() + 1);
 
-        try {
-            List<Student> allStudents = studentRepository.findAll();
-            totalStudents = allStudents.size();
-
-            logger.info("📊 Processing {} students...", totalStudents);
-
-            for (Student student : allStudents) {
-                try {
-                    logger.info("👤 Processing student: {} ({})", student.getFullName(), student.getIdBadge());
-
-                    List<AttendanceRecord> studentRecords = attendanceRecordRepository
-                            .findByStudentOrderByAttendanceDateDesc(student);
-
-                    double oldTotal = student.getTotalAccumulatedHours() != null ?
-                            student.getTotalAccumulatedHours() : 0.0;
-                    double newTotal = 0.0;
-
-                    List<Map<String, Object>> recordChanges = new ArrayList<>();
-
-                    for (AttendanceRecord record : studentRecords) {
-                        totalRecords++;
-
-                        // SKIP incomplete records (still timed in)
-                        if (record.getTimeOut() == null) {
-                            incompleteRecords++;
-                            logger.trace("⏭️ Skipping incomplete record {} (TIMED_IN)", record.getId());
-                            continue;
-                        }
-
-                        try {
-                            double oldHours = record.getTotalHours() != null ? record.getTotalHours() : 0.0;
-
-                            // Determine record type and handle accordingly
-                            RecordTypeInfo typeInfo = analyzeRecordType(record);
-
-                            // Update counters
-                            switch (typeInfo.type) {
-                                case REGULAR_TIMEOUT:
-                                    regularTimeouts++;
-                                    break;
-                                case AUTO_TIMEOUT:
-                                    autoTimeouts++;
-                                    break;
-                                case ADMIN_CORRECTED_SKIP:
-                                    adminCorrectedSkipped++;
-                                    break;
-                                case ADMIN_CORRECTED_RECALC:
-                                    adminCorrectedRecalculated++;
-                                    break;
-                                case APPROVED_OVERRIDE:
-                                    approvedOverrides++;
-                                    break;
-                            }
-
-                            HoursCalculation newCalculation;
-
-                            // Handle based on type
-                            if (typeInfo.shouldSkip) {
-                                logger.debug("⏭️ Skipping {} - {}", typeInfo.type, typeInfo.reason);
-                                // Keep existing values
-                                newCalculation = new HoursCalculation();
-                                newCalculation.setTotalHours(oldHours);
-                                newCalculation.setRegularHours(record.getRegularHours());
-                                newCalculation.setOvertimeHours(record.getOvertimeHours());
-                                newCalculation.setUndertimeHours(record.getUndertimeHours());
-                                newCalculation.setBreakDeducted(record.getBreakDeducted());
-                            } else {
-                                // Recalculate using the same logic as AttendanceService
-                                newCalculation = calculateScheduleAwareHours(record, student);
-                                logger.debug("♻️ Recalculating {} - {}", typeInfo.type, typeInfo.reason);
-                            }
-
-                            // Check if hours changed
-                            if (Math.abs(oldHours - newCalculation.getTotalHours()) > 0.01) {
-                                // Update record
-                                record.setTotalHours(newCalculation.getTotalHours());
-                                record.setRegularHours(newCalculation.getRegularHours());
-                                record.setOvertimeHours(newCalculation.getOvertimeHours());
-                                record.setUndertimeHours(newCalculation.getUndertimeHours());
-                                record.setBreakDeducted(newCalculation.isBreakDeducted());
-
-                                attendanceRecordRepository.save(record);
-                                updatedRecords++;
-
-                                // Track the change
-                                recordChanges.add(Map.of(
-                                        "recordId", record.getId(),
-                                        "date", record.getAttendanceDate().toString(),
-                                        "status", record.getStatus().name(),
-                                        "recordType", typeInfo.type.toString(),
-                                        "oldHours", oldHours,
-                                        "newHours", newCalculation.getTotalHours(),
-                                        "difference", newCalculation.getTotalHours() - oldHours,
-                                        "reason", typeInfo.reason
-                                ));
-
-                                logger.debug("✏️ Updated record {}: {} -> {} hours ({})",
-                                        record.getId(), oldHours, newCalculation.getTotalHours(), typeInfo.type);
-                            }
-
-                            // Add to new total
-                            newTotal += newCalculation.getTotalHours();
-
-                        } catch (Exception e) {
-                            errorRecords++;
-                            String error = String.format("Record %d (%s): %s",
-                                    record.getId(), student.getFullName(), e.getMessage());
-                            errors.add(error);
-                            logger.error("❌ Error processing record {}: {}", record.getId(), e.getMessage());
-
-                            // Use old hours to continue
-                            newTotal += (record.getTotalHours() != null ? record.getTotalHours() : 0.0);
-                        }
-                    }
+            // SKIP incomplete records (still timed in)
+            if (record.getTimeOut() == null) {
+                result.setIncompleteRecords(result.getIncompleteRecords() + 1);
+                logger.trace("⏭️ Skipping incomplete record {} (TIMED_IN)", record.getId());
+                continue;
+            }
 
-                    // Update student's total if changed
-                    if (Math.abs(oldTotal - newTotal) > 0.01) {
-                        student.setTotalAccumulatedHours(newTotal);
-                        studentRepository.save(student);
-                        updatedStudents++;
-
-                        studentChanges.put(student.getFullName() + " (" + student.getIdBadge() + ")",
-                                Map.of(
-                                        "oldTotal", oldTotal,
-                                        "newTotal", newTotal,
-                                        "difference", newTotal - oldTotal,
-                                        "recordsUpdated", recordChanges.size(),
-                                        "changes", recordChanges
-                                ));
-
-                        logger.info("✅ Updated student {}: {} -> {} hours (diff: {}, {} records changed)",
-                                student.getFullName(), oldTotal, newTotal,
-                                newTotal - oldTotal, recordChanges.size());
-                    } else {
-                        logger.info("✓ Student {} unchanged: {} hours", student.getFullName(), oldTotal);
-                    }
+            newTotal += recalculateRecord(record, student, result);
+        }
 
-                } catch (Exception e) {
-                    String error = String.format("Student %s: %s", student.getFullName(), e.getMessage());
-                    errors.add(error);
-                    logger.error("❌ Error processing student {}: {}", student.getFullName(), e.getMessage(), e);
-                }
+        result.setOldTotalMinutes(oldTotal);
+        result.setNewTotalMinutes(newTotal);
+
+        // Update student's total if changed
+        if (oldTotal != newTotal) {
+            hoursLedgerService.record(student, null, newTotal - oldTotal, HoursLedgerReason.RECALCULATION);
+
+            logger.info("✅ Updated student {}: {} -> {} minutes (diff: {}, {} records changed)",
+                    student.getFullName(), oldTotal, newTotal,
+                    newTotal - oldTotal, result.getRecordChanges().size());
+        } else {
+            logger.debug("✓ Student {} unchanged: {} minutes", student.getFullName(), oldTotal);
+        }
+
+        return result;
+    }
+
+    /**
+     * Recalculates only the student's stale records (see
+     * AttendanceRecordRepository.STALE_RECORD) and moves the student's total
+     * by their difference. Runs in the caller's transaction.
+     */
+    public StudentRecalculationResult recalculateStaleRecords(Student student) {
+        logger.debug("👤 Processing stale records of student: {} ({})", student.getFullName(), student.getIdBadge());
+
+        StudentRecalculationResult result = new StudentRecalculationResult();
+
+        List<AttendanceRecord> staleRecords = attendanceRecordRepository
+                .findStaleByStudent(student, HoursCalculationEngine.rulesFingerprintBase());
+
+        long oldTotal = student.getTotalAccumulatedMinutes();
+        long difference = 0;
+
+        for (AttendanceRecord record : staleRecords) {
+            result.setTotalRecords(result.getTotalRecords() + 1);
+            int oldMinutes = record.getTotalMinutes();
+            difference += recalculateRecord(record, student, result) - oldMinutes;
+        }
+
+        result.setOldTotalMinutes(oldTotal);
+        result.setNewTotalMinutes(oldTotal + difference);
+
+        if (difference != 0) {
+            hoursLedgerService.record(student, null, difference, HoursLedgerReason.RECALCULATION);
+
+            logger.info("✅ Updated student {}: {} -> {} minutes (diff: {}, {} stale records)",
+                    student.getFullName(), oldTotal, oldTotal + difference, difference, staleRecords.size());
+        }
+
+        return result;
+    }
+
+    /**
+     * Recalculates one completed record, saving it when its hours or its
+     * calculation inputs changed, and counts it in the result
+     *
+     * @return the record's minutes after recalculation (its old minutes if it failed)
+     */
+    private int recalculateRecord(AttendanceRecord record, Student student, StudentRecalculationResult result) {
+        try {
+            int oldMinutes = record.getTotalMinutes();
+
+            // Determine record type and handle accordingly
+            RecordTypeInfo typeInfo = analyzeRecordType(record);
+
+            // Update counters
+            switch (typeInfo.type) {
+                case REGULAR_TIMEOUT:
+                    result.setRegularTimeouts(result.getRegularTimeouts() + 1);
+                    break;
+                case AUTO_TIMEOUT:
+                    result.setAutoTimeouts(result.getAutoTimeouts() + 1);
+                    break;
+                case ADMIN_CORRECTED_SKIP:
+                    result.setAdminCorrectedSkipped(result.getAdminCorrectedSkipped() + 1);
+                    break;
+                case APPROVED_OVERRIDE:
+                    result.setApprovedOverrides(result.getApprovedOverrides() + 1);
+                    break;
+                default:
+                    break;
             }
 
-            long duration = System.currentTimeMillis() - startTime;
-
-            Map<String, Object> result = new HashMap<>();
-            result.put("success", true);
-            result.put("message", "Complete recalculation finished successfully");
-
-            result.put("summary", Map.of(
-                    "totalStudents", totalStudents,
-                    "updatedStudents", updatedStudents,
-                    "unchangedStudents", totalStudents - updatedStudents,
-                    "totalRecords", totalRecords,
-                    "updatedRecords", updatedRecords,
-                    "durationMs", duration,
-                    "durationSeconds", duration / 1000.0
-            ));
-
-            result.put("recordBreakdown", Map.of(
-                    "regularTimeouts", regularTimeouts,
-                    "autoTimeouts", autoTimeouts,
-                    "approvedOverrides", approvedOverrides,
-                    "adminCorrectedSkipped", adminCorrectedSkipped,
-                    "adminCorrectedRecalculated", adminCorrectedRecalculated,
-                    "incompleteRecords", incompleteRecords,
-                    "errorRecords", errorRecords
-            ));
-
-            result.put("studentChanges", studentChanges);
-
-            if (!errors.isEmpty()) {
-                result.put("errors", errors);
-                result.put("hasErrors", true);
+            HoursCalculation newCalculation;
+
+            // Handle based on type
+            if (typeInfo.shouldSkip) {
+                logger.debug("⏭️ Skipping {} - {}", typeInfo.type, typeInfo.reason);
+                // Keep existing values
+                newCalculation = keepRecordedHours(record);
             } else {
-                result.put("hasErrors", false);
+                // Recalculate with the same rules as time-out
+                newCalculation = hoursCalculationEngine.calculate(record, student);
+                logger.debug("♻️ Recalculating {} - {}", typeInfo.type, typeInfo.reason);
             }
 
-            logger.info("✅ COMPLETE Recalculation finished: {} students, {} records processed, {} updated in {}ms",
-                    totalStudents, totalRecords, updatedRecords, duration);
-            logger.info("📊 Record Types: Regular={}, Auto={}, Approved={}, AdminSkip={}, AdminRecalc={}",
-                    regularTimeouts, autoTimeouts, approvedOverrides, adminCorrectedSkipped, adminCorrectedRecalculated);
+            boolean hoursChanged = oldMinutes != newCalculation.getTotalMinutes();
+
+            // Save when hours changed, or to bring the record's inputs up to date
+            if (hoursChanged || record.getCalculationInputs() != newCalculation.getInputsFingerprint()) {
+                applyCalculation(record, newCalculation);
+                attendanceRecordRepository.save(record);
+            }
+
+            if (hoursChanged) {
+                // Track the change
+                result.getRecordChanges().add(Map.of(
+                        "recordId", record.getId(),
+                        "date", record.getAttendanceDate().toString(),
+                        "status", record.getStatus().name(),
+                        "recordType", typeInfo.type.toString(),
+                        "oldHours", HoursConverter.toHours(oldMinutes),
+                        "newHours", HoursConverter.toHours(newCalculation.getTotalMinutes()),
+                        "difference", HoursConverter.toHours(newCalculation.getTotalMinutes() - oldMinutes),
+                        "reason", typeInfo.reason
+                ));
+
+                logger.debug("✏️ Updated record {}: {} -> {} minutes ({})",
+                        record.getId(), oldMinutes, newCalculation.getTotalMinutes(), typeInfo.type);
+            }
 
-            return result;
+            return newCalculation.getTotalMinutes();
 
         } catch (Exception e) {
-            logger.error("💥 Fatal error during recalculation: {}", e.getMessage(), e);
-            throw new RuntimeException("Recalculation failed: " + e.getMessage(), e);
+            result.setErrorRecords(result.getErrorRecords() + 1);
+            result.getErrors().add(String.format("Record %d (%s): %s",
+                    record.getId(), student.getFullName(), e.getMessage()));
+            logger.error("❌ Error processing record {}: {}", record.getId(), e.getMessage());
+
+            // Use old hours to continue
+            return record.getTotalMinutes();
         }
     }
 
@@ -302,15 +253,30 @@ public class RecalculationService {
      * Check if schedule override was approved
      */
     private boolean isScheduleOverrideApproved(AttendanceRecord record) {
-        if (record.getTasksCompleted() == null) {
-            return false;
-        }
+        return hoursCalculationEngine.isScheduleOverrideApproved(record.getTasksCompleted());
+    }
 
-        String tasks = record.getTasksCompleted();
+    /**
+     * The hours already on a record, for records that are not recalculated
+     */
+    private HoursCalculation keepRecordedHours(AttendanceRecord record) {
+        HoursCalculation calculation = new HoursCalculation();
+        calculation.setTotalMinutes(record.getTotalMinutes());
+        calculation.setRegularMinutes(record.getRegularMinutes());
+        calculation.setOvertimeMinutes(record.getOvertimeMinutes());
+        calculation.setUndertimeMinutes(record.getUndertimeMinutes());
+        calculation.setBreakDeducted(record.getBreakDeducted());
+        calculation.setInputsFingerprint(record.getCalculationInputs());
+        return calculation;
+    }
 
-        return tasks.contains("[ADMIN APPROVED SCHEDULE OVERRIDE]") ||
-                tasks.contains("[ADMIN APPROVED: Early work hours counted") ||
-                tasks.contains("Early work hours will be counted for this session");
+    private void applyCalculation(AttendanceRecord record, HoursCalculation calculation) {
+        record.setTotalMinutes(calculation.getTotalMinutes());
+        record.setRegularMinutes(calculation.getRegularMinutes());
+        record.setOvertimeMinutes(calculation.getOvertimeMinutes());
+        record.setUndertimeMinutes(calculation.getUndertimeMinutes());
+        record.setBreakDeducted(calculation.isBreakDeducted());
+        record.setCalculationInputs(calculation.getInputsFingerprint());
     }
 
     /**
@@ -326,9 +292,8 @@ public class RecalculationService {
         List<AttendanceRecord> records = attendanceRecordRepository
                 .findByStudentOrderByAttendanceDateDesc(student);
 
-        double oldTotal = student.getTotalAccumulatedHours() != null ?
-                student.getTotalAccumulatedHours() : 0.0;
-        double newTotal = 0.0;
+        long oldTotal = student.getTotalAccumulatedMinutes();
+        long newTotal = 0;
         int updatedCount = 0;
         int skippedCount = 0;
 
@@ -336,34 +301,25 @@ public class RecalculationService {
 
         for (AttendanceRecord record : records) {
             if (record.getTimeOut() != null) {
-                double oldHours = record.getTotalHours() != null ? record.getTotalHours() : 0.0;
+                int oldMinutes = record.getTotalMinutes();
 
                 RecordTypeInfo typeInfo = analyzeRecordType(record);
                 HoursCalculation newCalculation;
 
                 if (typeInfo.shouldSkip) {
-                    newCalculation = new HoursCalculation();
-                    newCalculation.setTotalHours(oldHours);
-                    newCalculation.setRegularHours(record.getRegularHours());
-                    newCalculation.setOvertimeHours(record.getOvertimeHours());
-                    newCalculation.setUndertimeHours(record.getUndertimeHours());
-                    newCalculation.setBreakDeducted(record.getBreakDeducted());
+                    newCalculation = keepRecordedHours(record);
                 } else {
-                    newCalculation = calculateScheduleAwareHours(record, student);
+                    newCalculation = hoursCalculationEngine.calculate(record, student);
                 }
 
                 // Update record
-                record.setTotalHours(newCalculation.getTotalHours());
-                record.setRegularHours(newCalculation.getRegularHours());
-                record.setOvertimeHours(newCalculation.getOvertimeHours());
-                record.setUndertimeHours(newCalculation.getUndertimeHours());
-                record.setBreakDeducted(newCalculation.isBreakDeducted());
+                applyCalculation(record, newCalculation);
 
                 attendanceRecordRepository.save(record);
 
-                newTotal += newCalculation.getTotalHours();
+                newTotal += newCalculation.getTotalMinutes();
 
-                if (Math.abs(oldHours - newCalculation.getTotalHours()) > 0.01) {
+                if (oldMinutes != newCalculation.getTotalMinutes()) {
                     updatedCount++;
                     recordChanges.add(Map.ofEntries(
                             Map.entry("recordId", record.getId()),
@@ -372,9 +328,9 @@ public class RecalculationService {
                             Map.entry("recordType", typeInfo.type.toString()),
                             Map.entry("timeIn", record.getTimeIn().toString()),
                             Map.entry("timeOut", record.getTimeOut().toString()),
-                            Map.entry("oldHours", oldHours),
-                            Map.entry("newHours", newCalculation.getTotalHours()),
-                            Map.entry("difference", newCalculation.getTotalHours() - oldHours),
+                            Map.entry("oldHours", HoursConverter.toHours(oldMinutes)),
+                            Map.entry("newHours", HoursConverter.toHours(newCalculation.getTotalMinutes())),
+                            Map.entry("difference", HoursConverter.toHours(newCalculation.getTotalMinutes() - oldMinutes)),
                             Map.entry("breakDeducted", newCalculation.isBreakDeducted()),
                             Map.entry("reason", typeInfo.reason)
                     ));
@@ -385,22 +341,21 @@ public class RecalculationService {
         }
 
         // Update student total
-        student.setTotalAccumulatedHours(newTotal);
-        studentRepository.save(student);
+        hoursLedgerService.record(student, null, newTotal - oldTotal, HoursLedgerReason.RECALCULATION);
 
         Map<String, Object> result = new HashMap<>();
         result.put("success", true);
         result.put("studentName", student.getFullName());
         result.put("idBadge", student.getIdBadge());
-        result.put("oldTotal", oldTotal);
-        result.put("newTotal", newTotal);
-        result.put("difference", newTotal - oldTotal);
+        result.put("oldTotal", HoursConverter.toHours(oldTotal));
+        result.put("newTotal", HoursConverter.toHours(newTotal));
+        result.put("difference", HoursConverter.toHours(newTotal - oldTotal));
         result.put("totalRecords", records.size());
         result.put("updatedRecords", updatedCount);
         result.put("skippedRecords", skippedCount);
         result.put("recordChanges", recordChanges);
 
-        logger.info("✅ Student recalculation completed: {} -> {} hours ({} records updated)",
+        logger.info("✅ Student recalculation completed: {} -> {} minutes ({} records updated)",
                 oldTotal, newTotal, updatedCount);
 
         return result;
@@ -420,27 +375,18 @@ public class RecalculationService {
 
         Student student = record.getStudent();
 
-        double oldTotal = record.getTotalHours() != null ? record.getTotalHours() : 0.0;
+        int oldTotal = record.getTotalMinutes();
         RecordTypeInfo typeInfo = analyzeRecordType(record);
 
         HoursCalculation newCalculation;
         if (typeInfo.shouldSkip) {
-            newCalculation = new HoursCalculation();
-            newCalculation.setTotalHours(oldTotal);
-            newCalculation.setRegularHours(record.getRegularHours());
-            newCalculation.setOvertimeHours(record.getOvertimeHours());
-            newCalculation.setUndertimeHours(record.getUndertimeHours());
-            newCalculation.setBreakDeducted(record.getBreakDeducted());
+            newCalculation = keepRecordedHours(record);
         } else {
-            newCalculation = calculateScheduleAwareHours(record, student);
+            newCalculation = hoursCalculationEngine.calculate(record, student);
         }
 
         // Update record
-        record.setTotalHours(newCalculation.getTotalHours());
-        record.setRegularHours(newCalculation.getRegularHours());
-        record.setOvertimeHours(newCalculation.getOvertimeHours());
-        record.setUndertimeHours(newCalculation.getUndertimeHours());
-        record.setBreakDeducted(newCalculation.isBreakDeducted());
+        applyCalculation(record, newCalculation);
 
         attendanceRecordRepository.save(record);
 
@@ -456,9 +402,9 @@ public class RecalculationService {
         result.put("recordType", typeInfo.type.toString());
         result.put("wasSkipped", typeInfo.shouldSkip);
         result.put("reason", typeInfo.reason);
-        result.put("oldHours", oldTotal);
-        result.put("newHours", newCalculation.getTotalHours());
-        result.put("difference", newCalculation.getTotalHours() - oldTotal);
+        result.put("oldHours", HoursConverter.toHours(oldTotal));
+        result.put("newHours", HoursConverter.toHours(newCalculation.getTotalMinutes()));
+        result.put("difference", HoursConverter.toHours(newCalculation.getTotalMinutes() - oldTotal));
         result.put("breakDeducted", newCalculation.isBreakDeducted());
         result.put("studentTotalUpdated", studentRecalc.get("newTotal"));
 
@@ -466,82 +412,33 @@ public class RecalculationService {
     }
 
     /**
-     * Preview recalculation
+     * Preview recalculation of the stale records only: students are found
+     * through the calculation-inputs index and only their stale records are
+     * recalculated (nothing is saved)
      */
     public Map<String, Object> previewRecalculation() {
-        logger.info("🔍 Running COMPLETE recalculation preview...");
-
-        List<Student> allStudents = studentRepository.findAll();
         List<Map<String, Object>> preview = new ArrayList<>();
-
-        int totalChanges = 0;
-        double totalHoursDifference = 0.0;
-        int totalRecordsAffected = 0;
-
-        Map<String, Integer> recordTypeCount = new HashMap<>();
-
-        for (Student student : allStudents) {
-            List<AttendanceRecord> records = attendanceRecordRepository
-                    .findByStudentOrderByAttendanceDateDesc(student);
-
-            double currentTotal = student.getTotalAccumulatedHours() != null ?
-                    student.getTotalAccumulatedHours() : 0.0;
-            double calculatedTotal = 0.0;
-            int recordsWithChanges = 0;
-
-            List<Map<String, Object>> recordChanges = new ArrayList<>();
-
-            for (AttendanceRecord record : records) {
-                if (record.getTimeOut() != null) {
-                    double oldHours = record.getTotalHours() != null ? record.getTotalHours() : 0.0;
-
-                    RecordTypeInfo typeInfo = analyzeRecordType(record);
-                    recordTypeCount.merge(typeInfo.type.toString(), 1, Integer::sum);
-
-                    HoursCalculation calc;
-                    if (typeInfo.shouldSkip) {
-                        calc = new HoursCalculation();
-                        calc.setTotalHours(oldHours);
-                    } else {
-                        calc = calculateScheduleAwareHours(record, student);
-                    }
-
-                    calculatedTotal += calc.getTotalHours();
-
-                    if (Math.abs(oldHours - calc.getTotalHours()) > 0.01) {
-                        recordsWithChanges++;
-                        recordChanges.add(Map.of(
-                                "date", record.getAttendanceDate().toString(),
-                                "status", record.getStatus().name(),
-                                "recordType", typeInfo.type.toString(),
-                                "oldHours", oldHours,
-                                "newHours", calc.getTotalHours(),
-                                "difference", calc.getTotalHours() - oldHours,
-                                "reason", typeInfo.reason
-                        ));
+        List<Map<String, Object>> studentRecordChanges = new ArrayList<>();
+        Map<String, Object> summary = new HashMap<>();
+
+        streamPreview(line -> {
+            switch ((String) line.get("type")) {
+                case "record" -> studentRecordChanges.add(line);
+                case "student" -> {
+                    if ((Double) line.get("difference") != 0) {
+                        Map<String, Object> entry = new HashMap<>(line);
+                        entry.remove("type");
+                        entry.put("recordChanges", studentRecordChanges.size() > 5
+                                ? new ArrayList<>(studentRecordChanges.subList(0, 5))
+                                : new ArrayList<>(studentRecordChanges));
+                        entry.put("hasMoreChanges", studentRecordChanges.size() > 5);
+                        preview.add(entry);
                     }
+                    studentRecordChanges.clear();
                 }
+                default -> summary.putAll(line);
             }
-
-            if (Math.abs(currentTotal - calculatedTotal) > 0.01) {
-                totalChanges++;
-                double difference = calculatedTotal - currentTotal;
-                totalHoursDifference += Math.abs(difference);
-                totalRecordsAffected += recordsWithChanges;
-
-                preview.add(Map.of(
-                        "studentName", student.getFullName(),
-                        "idBadge", student.getIdBadge(),
-                        "currentTotal", currentTotal,
-                        "calculatedTotal", calculatedTotal,
-                        "difference", difference,
-                        "percentageChange", currentTotal > 0 ? (difference / currentTotal) * 100 : 0,
-                        "recordsAffected", recordsWithChanges,
-                        "recordChanges", recordChanges.size() > 5 ? recordChanges.subList(0, 5) : recordChanges,
-                        "hasMoreChanges", recordChanges.size() > 5
-                ));
-            }
-        }
+        });
 
         // Sort by absolute difference
         preview.sort((a, b) -> {
@@ -552,15 +449,10 @@ public class RecalculationService {
 
         Map<String, Object> result = new HashMap<>();
         result.put("success", true);
-        result.put("message", "Complete preview finished (no changes saved)");
-        result.put("summary", Map.of(
-                "totalStudents", allStudents.size(),
-                "studentsWithChanges", totalChanges,
-                "studentsUnchanged", allStudents.size() - totalChanges,
-                "totalHoursDifference", Math.round(totalHoursDifference * 100.0) / 100.0,
-                "totalRecordsAffected", totalRecordsAffected
-        ));
-        result.put("recordTypeBreakdown", recordTypeCount);
+        result.put("message", "Stale-record preview finished (no changes saved)");
+        result.put("recordTypeBreakdown", summary.remove("recordTypeBreakdown"));
+        summary.remove("type");
+        result.put("summary", summary);
         result.put("preview", preview);
         result.put("note", "This is a preview only. No changes saved.");
 
@@ -568,290 +460,148 @@ public class RecalculationService {
     }
 
     /**
-     * Get statistics
+     * Runs the stale-record preview and hands each result line to the
+     * consumer as soon as it is known: a "record" line per record whose
+     * hours would change, then a "student" line per student with such
+     * records, and a final "summary" line. Only one student's records are
+     * held at a time, so callers can stream the lines out (NDJSON) without
+     * the whole preview in memory. Nothing is saved.
      */
-    public Map<String, Object> getRecalculationStats() {
-        List<Student> allStudents = studentRepository.findAll();
-        List<AttendanceRecord> allRecords = attendanceRecordRepository.findAll();
-
-        long completedRecords = allRecords.stream()
-                .filter(r -> r.getTimeOut() != null)
-                .count();
-
-        long incompleteRecords = allRecords.stream()
-                .filter(r -> r.getTimeOut() == null)
-                .count();
-
-        long studentsWithSchedule = allStudents.stream()
-                .filter(Student::hasActiveSchedule)
-                .count();
-
-        long autoTimeouts = allRecords.stream()
-                .filter(r -> r.getStatus() == AttendanceStatus.AUTO_TIMED_OUT)
-                .count();
-
-        long adminCorrected = allRecords.stream()
-                .filter(r -> r.getStatus() == AttendanceStatus.ADMIN_CORRECTED)
-                .count();
-
-        long approvedOverrides = allRecords.stream()
-                .filter(this::isScheduleOverrideApproved)
-                .count();
+    public void streamPreview(Consumer<Map<String, Object>> out) {
+        logger.info("🔍 Running stale-record recalculation preview...");
 
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalStudents", allStudents.size());
-        stats.put("totalRecords", allRecords.size());
-        stats.put("completedRecords", completedRecords);
-        stats.put("incompleteRecords", incompleteRecords);
-        stats.put("studentsWithSchedule", studentsWithSchedule);
-        stats.put("studentsWithoutSchedule", allStudents.size() - studentsWithSchedule);
-        stats.put("autoTimeouts", autoTimeouts);
-        stats.put("adminCorrected", adminCorrected);
-        stats.put("approvedOverrides", approvedOverrides);
-        stats.put("regularTimeouts", completedRecords - autoTimeouts - adminCorrected);
-
-        return stats;
-    }
-
-    // ==================== CALCULATION METHODS ====================
+        long rulesBase = HoursCalculationEngine.rulesFingerprintBase();
+        StaleRecordCount stale = attendanceRecordRepository.countStale(
+                rulesBase, HoursCalculationEngine.nextRulesFingerprintBase());
+        long totalStudents = studentRepository.count();
 
-    private HoursCalculation calculateScheduleAwareHours(AttendanceRecord record, Student student) {
-        LocalDateTime timeIn = record.getTimeIn();
-        LocalDateTime timeOut = record.getTimeOut();
+        int totalChanges = 0;
+        long totalMinutesDifference = 0;
+        int totalRecordsAffected = 0;
 
-        // Check for approved override
-        if (isScheduleOverrideApproved(record)) {
-            logger.debug("✅ Approved override - counting all hours for record {}", record.getId());
-            return calculateOriginalHours(timeIn, timeOut);
-        }
+        Map<String, Integer> recordTypeCount = new HashMap<>();
 
-        // No schedule = standard calculation
-        if (!student.hasActiveSchedule()) {
-            return calculateOriginalHours(timeIn, timeOut);
-        }
+        long afterId = 0;
+        List<Long> studentIds;
+        while (!(studentIds = attendanceRecordRepository.findStudentIdsWithStaleAfter(
+                afterId, rulesBase, PageRequest.of(0, PREVIEW_PAGE_SIZE))).isEmpty()) {
+            afterId = studentIds.get(studentIds.size() - 1);
 
-        // Strict schedule enforcement
-        return calculateStrictScheduleHours(student, timeIn, timeOut);
-    }
+            for (Student student : studentRepository.findAllById(studentIds)) {
+                long currentTotal = student.getTotalAccumulatedMinutes();
+                long difference = 0;
+                int recordsWithChanges = 0;
 
-    private HoursCalculation calculateStrictScheduleHours(Student student, LocalDateTime timeIn, LocalDateTime timeOut) {
-        LocalTime actualTimeIn = timeIn.toLocalTime();
-        LocalTime actualTimeOut = timeOut.toLocalTime();
-        LocalTime scheduledStart = student.getScheduledStartTime();
-        LocalTime scheduledEnd = student.getScheduledEndTime();
-        int gracePeriod = student.getGracePeriodMinutes() != null ? student.getGracePeriodMinutes() : 5;
-
-        // === STEP 1: Determine EFFECTIVE start time ===
-        LocalTime effectiveStartTime;
-        boolean wasEarly = false;
-        boolean wasLate = false;
-
-        if (actualTimeIn.isBefore(scheduledStart)) {
-            // EARLY ARRIVAL: Use scheduled start, NOT actual arrival
-            effectiveStartTime = scheduledStart;
-            wasEarly = true;
-            System.out.println("🔵 Early arrival: Actual=" + actualTimeIn + ", Using scheduled=" + scheduledStart);
-        } else if (actualTimeIn.isAfter(scheduledStart.plusMinutes(gracePeriod))) {
-            // LATE ARRIVAL: Use actual arrival
-            effectiveStartTime = actualTimeIn;
-            wasLate = true;
-            System.out.println("🔴 Late arrival: Using actual=" + actualTimeIn);
-        } else {
-            // ON TIME: Use scheduled start
-            effectiveStartTime = scheduledStart;
-            System.out.println("🟢 On-time arrival: Using scheduled=" + scheduledStart);
-        }
+                for (AttendanceRecord record : attendanceRecordRepository.findStaleByStudent(student, rulesBase)) {
+                    int oldMinutes = record.getTotalMinutes();
 
-        // === STEP 2: Calculate required end time ===
-        LocalTime requiredEndTime;
-        if (wasLate) {
-            // If late, must work extra to make up scheduled hours
-            long lateMinutes = Duration.between(
-                    scheduledStart.plusMinutes(gracePeriod),
-                    actualTimeIn
-            ).toMinutes();
-            requiredEndTime = scheduledEnd.plusMinutes(lateMinutes);
-            System.out.println("⏰ Late by " + lateMinutes + " min, required end: " + requiredEndTime);
-        } else {
-            // On-time or early: required end is scheduled end
-            requiredEndTime = scheduledEnd;
-            System.out.println("⏰ Required end: " + requiredEndTime);
-        }
+                    RecordTypeInfo typeInfo = analyzeRecordType(record);
+                    recordTypeCount.merge(typeInfo.type.toString(), 1, Integer::sum);
 
-        // === STEP 3: Build effective start DateTime ===
-        LocalDateTime effectiveStartDateTime = LocalDateTime.of(timeIn.toLocalDate(), effectiveStartTime);
+                    HoursCalculation calc = hoursCalculationEngine.calculate(record, student);
+                    difference += calc.getTotalMinutes() - oldMinutes;
 
-        // FIX: Check if this is truly a night shift by comparing actual DateTimes, not just times
-        // A night shift means time-out is on a DIFFERENT date than time-in
-        boolean isNightShift = !timeIn.toLocalDate().equals(timeOut.toLocalDate());
+                    if (oldMinutes != calc.getTotalMinutes()) {
+                        recordsWithChanges++;
+                        out.accept(Map.of(
+                                "type", "record",
+                                "idBadge", student.getIdBadge(),
+                                "recordId", record.getId(),
+                                "date", record.getAttendanceDate().toString(),
+                                "status", record.getStatus().name(),
+                                "recordType", typeInfo.type.toString(),
+                                "oldHours", HoursConverter.toHours(oldMinutes),
+                                "newHours", HoursConverter.toHours(calc.getTotalMinutes()),
+                                "difference", HoursConverter.toHours(calc.getTotalMinutes() - oldMinutes),
+                                "reason", typeInfo.reason
+                        ));
+                    }
+                }
 
-        if (isNightShift) {
-            // True night shift: time-out is on next day
-            System.out.println("🌙 Night shift detected (time-out on next day)");
+                if (difference != 0) {
+                    totalChanges++;
+                    totalMinutesDifference += Math.abs(difference);
+                    totalRecordsAffected += recordsWithChanges;
+                }
 
-            // If effective start time is "after" time-out time (e.g., 22:00 start, 06:00 end next day)
-            // the effective start is on the SAME day as time-in, not previous
-            if (effectiveStartTime.isAfter(actualTimeOut)) {
-                // This is expected for night shifts - no adjustment needed
-                System.out.println("✓ Night shift: Start=" + effectiveStartTime + " on " + timeIn.toLocalDate() +
-                        ", End=" + actualTimeOut + " on " + timeOut.toLocalDate());
+                if (recordsWithChanges > 0) {
+                    out.accept(Map.of(
+                            "type", "student",
+                            "studentName", student.getFullName(),
+                            "idBadge", student.getIdBadge(),
+                            "currentTotal", HoursConverter.toHours(currentTotal),
+                            "calculatedTotal", HoursConverter.toHours(currentTotal + difference),
+                            "difference", HoursConverter.toHours(difference),
+                            "percentageChange", currentTotal > 0 ? ((double) difference / currentTotal) * 100 : 0,
+                            "recordsAffected", recordsWithChanges
+                    ));
+                }
             }
-        } else {
-            // Same-day session: Both time-in and time-out are on the same date
-            System.out.println("☀️ Same-day session detected");
         }
 
-        // === STEP 4: Calculate actual work duration from EFFECTIVE start ===
-        Duration workDuration = Duration.between(effectiveStartDateTime, timeOut);
-        long workMinutes = Math.max(0, workDuration.toMinutes());
-
-        System.out.println("📊 Work duration: " + workMinutes + " minutes (" + (workMinutes / 60.0) + " hours)");
-
-        // === STEP 5: Determine scenario and calculate ===
-        HoursCalculation calculation = new HoursCalculation();
-
-        // Build required end DateTime for comparison
-        LocalDateTime requiredEndDateTime;
-        if (isNightShift && requiredEndTime.isBefore(effectiveStartTime)) {
-            // Night shift: required end is next day
-            requiredEndDateTime = LocalDateTime.of(timeOut.toLocalDate(), requiredEndTime);
-        } else if (!isNightShift && requiredEndTime.isBefore(effectiveStartTime)) {
-            // Same day but schedule crosses midnight (e.g., 22:00-02:00 but they worked same day)
-            requiredEndDateTime = LocalDateTime.of(timeIn.toLocalDate().plusDays(1), requiredEndTime);
-        } else {
-            // Normal case: required end is on the date where we're measuring
-            requiredEndDateTime = LocalDateTime.of(
-                    isNightShift ? timeOut.toLocalDate() : timeIn.toLocalDate(),
-                    requiredEndTime
-            );
-        }
-
-        if (timeOut.isBefore(requiredEndDateTime)) {
-            // ========================================
-            // SCENARIO A: UNDERTIME (Left early)
-            // ========================================
-            System.out.println("⚠️ UNDERTIME: Left at " + timeOut + " (required: " + requiredEndDateTime + ")");
-
-            Duration undertimeDuration = Duration.between(timeOut, requiredEndDateTime);
-            long undertimeMinutes = undertimeDuration.toMinutes();
+        out.accept(Map.of(
+                "type", "summary",
+                "totalStudents", totalStudents,
+                "staleStudents", stale.getStudents(),
+                "staleRecords", stale.getRecords(),
+                "studentsWithChanges", totalChanges,
+                "studentsUnchanged", totalStudents - totalChanges,
+                "totalHoursDifference", HoursConverter.toHours(totalMinutesDifference),
+                "totalRecordsAffected", totalRecordsAffected,
+                "recordTypeBreakdown", recordTypeCount
+        ));
+    }
 
-            // Deduct break if worked >= 5 hours
-            if (workMinutes >= 300) {
-                workMinutes -= 60;
-                calculation.setBreakDeducted(true);
-            } else {
-                calculation.setBreakDeducted(false);
+    /**
+     * Get statistics. Record counts come from one grouped query (a few rows
+     * per status) and student counts from two counts, so neither time nor
+     * memory depends on loading the tables.
+     */
+    public Map<String, Object> getRecalculationStats() {
+        long totalStudents = studentRepository.count();
+        long studentsWithSchedule = studentRepository.countWithActiveSchedule();
+
+        long totalRecords = 0;
+        long completedRecords = 0;
+        long autoTimeouts = 0;
+        long adminCorrected = 0;
+        long approvedOverrides = 0;
+
+        for (RecordStatusCount group : attendanceRecordRepository.countByStatusAndOverride()) {
+            totalRecords += group.getCount();
+            completedRecords += group.getCompleted();
+            if (group.getStatus() == AttendanceStatus.AUTO_TIMED_OUT) {
+                autoTimeouts += group.getCount();
             }
-
-            workMinutes = Math.max(0, workMinutes);
-
-            double totalHours = convertMinutesToHoursWithRounding(workMinutes);
-            double undertimeHours = convertMinutesToHoursWithRounding(undertimeMinutes);
-
-            calculation.setTotalHours(totalHours);
-            calculation.setRegularHours(totalHours);
-            calculation.setOvertimeHours(0.0);
-            calculation.setUndertimeHours(undertimeHours);
-
-        } else if (timeOut.isAfter(requiredEndDateTime)) {
-            // ========================================
-            // SCENARIO B: OVERTIME (Stayed late)
-            // ========================================
-            System.out.println("✅ OVERTIME: Left at " + timeOut + " (required: " + requiredEndDateTime + ")");
-
-            // Calculate scheduled hours (from effective start to required end)
-            Duration scheduledDuration = Duration.between(effectiveStartDateTime, requiredEndDateTime);
-            long scheduledMinutes = scheduledDuration.toMinutes();
-
-            // Deduct break from scheduled hours if >= 5 hours
-            if (scheduledMinutes >= 300) {
-                scheduledMinutes -= 60;
-                calculation.setBreakDeducted(true);
-            } else {
-                calculation.setBreakDeducted(false);
+            if (group.getStatus() == AttendanceStatus.ADMIN_CORRECTED) {
+                adminCorrected += group.getCount();
             }
-
-            scheduledMinutes = Math.max(0, scheduledMinutes);
-            double regularHours = Math.min(Math.floor(scheduledMinutes / 60.0), REGULAR_HOURS_CAP);
-
-            // Calculate overtime (from required end to actual end)
-            Duration overtimeDuration = Duration.between(requiredEndDateTime, timeOut);
-            long overtimeMinutes = Math.max(0, overtimeDuration.toMinutes());
-            double overtimeHours = convertMinutesToHoursWithRounding(overtimeMinutes);
-
-            calculation.setTotalHours(regularHours + overtimeHours);
-            calculation.setRegularHours(regularHours);
-            calculation.setOvertimeHours(overtimeHours);
-            calculation.setUndertimeHours(0.0);
-
-        } else {
-            // ========================================
-            // SCENARIO C: EXACTLY ON TIME
-            // ========================================
-            System.out.println("✅ EXACTLY ON TIME");
-
-            // Deduct break if worked >= 5 hours
-            if (workMinutes >= 300) {
-                workMinutes -= 60;
-                calculation.setBreakDeducted(true);
-            } else {
-                calculation.setBreakDeducted(false);
+            if (group.isOverrideApproved()) {
+                approvedOverrides += group.getCount();
             }
-
-            workMinutes = Math.max(0, workMinutes);
-            double regularHours = Math.min(Math.floor(workMinutes / 60.0), REGULAR_HOURS_CAP);
-
-            calculation.setTotalHours(regularHours);
-            calculation.setRegularHours(regularHours);
-            calculation.setOvertimeHours(0.0);
-            calculation.setUndertimeHours(0.0);
         }
 
-        System.out.println("📈 Final: Total=" + calculation.getTotalHours() +
-                ", Regular=" + calculation.getRegularHours() +
-                ", OT=" + calculation.getOvertimeHours() +
-                ", UT=" + calculation.getUndertimeHours());
-
-        return calculation;
-    }
-
-    private HoursCalculation calculateOriginalHours(LocalDateTime timeIn, LocalDateTime timeOut) {
-        Duration duration = Duration.between(timeIn, timeOut);
-        long totalMinutes = duration.toMinutes();
-
-        HoursCalculation calculation = new HoursCalculation();
-        calculation.setBreakDeducted(false);
-
-        if (totalMinutes >= BREAK_DEDUCTION_THRESHOLD_MINUTES) {
-            totalMinutes -= BREAK_DEDUCTION_MINUTES;
-            calculation.setBreakDeducted(true);
-        }
-
-        double roundedHours = convertMinutesToHoursWithRounding(totalMinutes);
-        calculation.setTotalHours(roundedHours);
-
-        if (roundedHours >= REGULAR_HOURS_CAP) {
-            calculation.setRegularHours((double) REGULAR_HOURS_CAP);
-            calculation.setOvertimeHours(roundedHours - REGULAR_HOURS_CAP);
-            calculation.setUndertimeHours(0.0);
-        } else {
-            calculation.setRegularHours(roundedHours);
-            calculation.setOvertimeHours(0.0);
-            calculation.setUndertimeHours(REGULAR_HOURS_CAP - roundedHours);
-        }
-
-        return calculation;
-    }
-
-    private double convertMinutesToHoursWithRounding(long totalMinutes) {
-        long wholeHours = totalMinutes / 60;
-        long remainingMinutes = totalMinutes % 60;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalStudents", totalStudents);
+        stats.put("totalRecords", totalRecords);
+        stats.put("completedRecords", completedRecords);
+        stats.put("incompleteRecords", totalRecords - completedRecords);
+        stats.put("studentsWithSchedule", studentsWithSchedule);
+        stats.put("studentsWithoutSchedule", totalStudents - studentsWithSchedule);
+        stats.put("autoTimeouts", autoTimeouts);
+        stats.put("adminCorrected", adminCorrected);
+        stats.put("approvedOverrides", approvedOverrides);
+        stats.put("regularTimeouts", completedRecords - autoTimeouts - adminCorrected);
 
-        if (remainingMinutes >= ROUNDING_THRESHOLD_MINUTES) {
-            wholeHours += 1;
-        }
+        // Staleness from the calculation-inputs index
+        StaleRecordCount stale = attendanceRecordRepository.countStale(
+                HoursCalculationEngine.rulesFingerprintBase(), HoursCalculationEngine.nextRulesFingerprintBase());
+        stats.put("rulesVersion", HoursCalculationEngine.RULES_VERSION);
+        stats.put("staleRecords", stale.getRecords());
+        stats.put("staleStudents", stale.getStudents());
+        stats.put("recordsUnderOtherRules", stale.getUnderOtherRules());
 
-        return (double) wholeHours;
+        return stats;
     }
 
     // ==================== ENUMS AND HELPER CLASSES ====================
@@ -0,0 +1,400 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.ReportJob;
+import Attendance.OjtAttendanceApplication.dto.ReportJobStatus;
+import Attendance.OjtAttendanceApplication.dto.ReportType;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Renders reports in the background and keeps the results as files.
+ *
+ * A submitted report is identified by its type, parameters and a data
+ * version: a few aggregate queries over what the report reads (record
+ * count, last write and id sum, plus the student fields it shows). A
+ * request identical to a queued, running or completed job joins that job
+ * instead of rendering again; once the data changes the version does too.
+ * Otherwise the report is queued on the reportExecutor, written to a .part
+ * file in the artifact directory and renamed when complete, so a download
+ * never sees half a file. Finished jobs and their artifacts are dropped
+ * after the retention period.
+ *
+ * Jobs are only kept in memory, so artifacts left by a previous run are
+ * deleted at startup.
+ */
+@Service
+public class ReportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportJobService.class);
+
+    private static final String RANGE_VERSION_SQL =
+            "SELECT COUNT(*) AS records, MAX(updated_at) AS last_update, COALESCE(SUM(id), 0) AS id_sum " +
+                    "FROM attendance_records WHERE work_date BETWEEN ? AND ?";
+
+    private static final String STUDENTS_VERSION_SQL =
+            "SELECT id, id_badge, full_name, school FROM students ORDER BY id";
+
+    private static final String STUDENT_SQL =
+            "SELECT id, id_badge, full_name, required_hours FROM students WHERE id_badge = ?";
+
+    // The weekly report also reads the student's first attendance and cumulative hours, so all their records count
+    private static final String STUDENT_RECORDS_VERSION_SQL =
+            "SELECT COUNT(*) AS records, MAX(updated_at) AS last_update, COALESCE(SUM(id), 0) AS id_sum " +
+                    "FROM attendance_records WHERE student_id = ?";
+
+    private static final String STUDENT_TASKS_VERSION_SQL =
+            "SELECT COUNT(*) AS tasks, COALESCE(MAX(te.id), 0) AS last_task FROM task_entries te " +
+                    "JOIN attendance_records ar ON ar.id = te.attendance_record_id WHERE ar.student_id = ?";
+
+    private static final String ARTIFACT_PREFIX = "report-";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int RECENT_JOBS = 20;
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private WeeklyReportService weeklyReportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("reportExecutor")
+    private ThreadPoolTaskExecutor reportExecutor;
+
+    @Value("${attendance.report.jobs.artifact-dir:${java.io.tmpdir}/ojt-report-artifacts}")
+    private String artifactDirectory;
+
+    @Value("${attendance.report.jobs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private final AtomicLong nextJobId = new AtomicLong(1);
+    private final Map<Long, ReportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ReportJob> jobsByKey = new ConcurrentHashMap<>();
+
+    // Submit looks for an identical job and then queues one; a lock keeps two requests from both queuing
+    private final ReentrantLock submitLock = new ReentrantLock();
+
+    private Path artifactDir;
+
+    @PostConstruct
+    public void prepareArtifactDirectory() throws IOException {
+        artifactDir = Paths.get(artifactDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(artifactDir);
+
+        int removed = 0;
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(artifactDir, ARTIFACT_PREFIX + "*")) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+                removed++;
+            }
+        }
+        logger.info("📁 Report artifacts in {} ({} left from the previous run removed)", artifactDir, removed);
+    }
+
+    // ==================== CONTROL ====================
+
+    /**
+     * Queues the report, or returns the job already rendering or holding
+     * the same report of the same data
+     *
+     * @param idBadge only used by WEEKLY_PDF
+     */
+    public ReportJob submit(ReportType type, String idBadge, LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new RuntimeException("End date must not be before start date");
+        }
+        String badge = null;
+        if (type == ReportType.WEEKLY_PDF) {
+            if (idBadge == null || idBadge.isBlank()) {
+                throw new RuntimeException("idBadge is required for weekly reports");
+            }
+            badge = idBadge.trim();
+        }
+
+        DataVersion version = type == ReportType.WEEKLY_PDF
+                ? readStudentVersion(badge)
+                : readRangeVersion(startDate, endDate);
+        String key = type + "|" + badge + "|" + startDate + "|" + endDate + "|" + version.fingerprint;
+
+        submitLock.lock();
+        try {
+            ReportJob existing = jobsByKey.get(key);
+            if (existing != null && existing.getStatus() != ReportJobStatus.FAILED) {
+                logger.info("♻️ Identical {} report requested, sharing job {}", type, existing.getId());
+                return existing;
+            }
+
+            ReportJob job = new ReportJob(nextJobId.getAndIncrement(), key, type, badge, startDate, endDate,
+                    version.rows, ARTIFACT_PREFIX + sha256(key) + "." + type.getExtension(),
+                    downloadName(type, badge, startDate, endDate));
+            try {
+                reportExecutor.execute(() -> render(job));
+            } catch (TaskRejectedException e) {
+                throw new RuntimeException("Too many reports are being generated, please try again later");
+            }
+
+            jobs.put(job.getId(), job);
+            jobsByKey.put(key, job);
+            logger.info("📝 Report job {} queued: {} {} to {}{}", job.getId(), type, startDate, endDate,
+                    badge != null ? " for " + badge : "");
+            return job;
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    /**
+     * The artifact of a completed job
+     */
+    public Path getArtifact(Long jobId) {
+        ReportJob job = findJob(jobId);
+        if (job.getStatus() != ReportJobStatus.COMPLETED) {
+            throw new RuntimeException("Report job " + jobId + " is " + job.getStatus().name().toLowerCase());
+        }
+
+        Path artifact = artifactDir.resolve(job.getArtifactName());
+        if (!Files.isRegularFile(artifact)) {
+            throw new RuntimeException("Report job " + jobId + " has expired");
+        }
+        return artifact;
+    }
+
+    /**
+     * Drops finished jobs older than the retention period together with their artifacts
+     */
+    @Scheduled(fixedDelayString = "${attendance.report.jobs.cleanup-interval-ms:300000}")
+    public void removeExpiredJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        int removed = 0;
+
+        for (ReportJob job : jobs.values()) {
+            if (!job.isFinished() || job.getFinishedAt().isAfter(cutoff)) {
+                continue;
+            }
+
+            submitLock.lock();
+            try {
+                jobs.remove(job.getId());
+                // A failed job may have been replaced by a new attempt at the same report, which owns the file now
+                if (jobsByKey.remove(job.getKey(), job)) {
+                    Files.deleteIfExists(artifactDir.resolve(job.getArtifactName()));
+                }
+                removed++;
+            } catch (IOException e) {
+                logger.error("Could not delete artifact of report job {}: {}", job.getId(), e.getMessage());
+            } finally {
+                submitLock.unlock();
+            }
+        }
+
+        if (removed > 0) {
+            logger.info("🧹 Removed {} expired report jobs", removed);
+        }
+    }
+
+    // ==================== RUN ====================
+
+    void render(ReportJob job) {
+        job.setStartedAt(LocalDateTime.now());
+        job.setStatus(ReportJobStatus.RUNNING);
+
+        Path artifact = artifactDir.resolve(job.getArtifactName());
+        Path part = artifactDir.resolve(job.getArtifactName() + ".part");
+
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(part), WRITE_BUFFER_SIZE)) {
+                switch (job.getType()) {
+                    case CSV -> reportService.writeCSVReport(
+                            job.getStartDate(), job.getEndDate(), out, job::setProcessedRows);
+                    case EXCEL -> reportService.writeExcelReport(
+                            job.getStartDate(), job.getEndDate(), out, job::setProcessedRows);
+                    case WEEKLY_PDF -> {
+                        out.write(weeklyReportService.generateWeeklyReportPDF(
+                                job.getIdBadge(), job.getStartDate(), job.getEndDate()));
+                        job.setProcessedRows(1);
+                    }
+                }
+            }
+            Files.move(part, artifact, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            job.setFileSize(Files.size(artifact));
+            job.setFinishedAt(LocalDateTime.now());
+            job.setStatus(ReportJobStatus.COMPLETED);
+            logger.info("✅ Report job {} completed: {} rows, {} bytes", job.getId(),
+                    job.getProcessedRows(), job.getFileSize());
+
+        } catch (Exception e) {
+            logger.error("💥 Report job {} failed: {}", job.getId(), e.getMessage(), e);
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException ignored) {
+                // Removed with the other leftovers at the next startup
+            }
+            job.setErrorMessage(e.getMessage());
+            job.setFinishedAt(LocalDateTime.now());
+            job.setStatus(ReportJobStatus.FAILED);
+        }
+    }
+
+    // ==================== READS ====================
+
+    public ReportJob getJob(Long jobId) {
+        return findJob(jobId);
+    }
+
+    public Map<String, Object> getJobProgress(Long jobId) {
+        return toProgress(findJob(jobId));
+    }
+
+    public List<Map<String, Object>> getRecentJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparingLong(ReportJob::getId).reversed())
+                .limit(RECENT_JOBS)
+                .map(this::toProgress)
+                .toList();
+    }
+
+    Map<String, Object> toProgress(ReportJob job) {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("jobId", job.getId());
+        progress.put("type", job.getType().name());
+        progress.put("status", job.getStatus().name());
+        progress.put("idBadge", job.getIdBadge());
+        progress.put("startDate", job.getStartDate());
+        progress.put("endDate", job.getEndDate());
+        progress.put("totalRows", job.getTotalRows());
+        progress.put("processedRows", job.getProcessedRows());
+        progress.put("percentComplete", percentComplete(job));
+        progress.put("fileSize", job.getFileSize());
+        progress.put("fileName", job.getDownloadName());
+        progress.put("createdAt", job.getCreatedAt());
+        progress.put("startedAt", job.getStartedAt());
+        progress.put("finishedAt", job.getFinishedAt());
+        progress.put("errorMessage", job.getErrorMessage());
+        progress.put("downloadUrl", job.getStatus() == ReportJobStatus.COMPLETED
+                ? "/api/reports/jobs/" + job.getId() + "/download" : null);
+        return progress;
+    }
+
+    // A job's rows are all written before its file is finished, so only a completed job shows 100
+    private static double percentComplete(ReportJob job) {
+        if (job.getStatus() == ReportJobStatus.COMPLETED) {
+            return 100.0;
+        }
+        if (job.getTotalRows() == 0) {
+            return 0.0;
+        }
+        return Math.min(99.9, Math.round(job.getProcessedRows() * 1000.0 / job.getTotalRows()) / 10.0);
+    }
+
+    private ReportJob findJob(Long jobId) {
+        ReportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Report job not found: " + jobId);
+        }
+        return job;
+    }
+
+    // ==================== DATA VERSION ====================
+
+    /** Rows the report will have (for progress) and a fingerprint of the data it reads */
+    static final class DataVersion {
+        final long rows;
+        final String fingerprint;
+
+        DataVersion(long rows, String fingerprint) {
+            this.rows = rows;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Records of the range plus every student's badge, name and school
+     */
+    DataVersion readRangeVersion(LocalDate startDate, LocalDate endDate) {
+        DataVersion records = jdbcTemplate.queryForObject(RANGE_VERSION_SQL, (rs, rowNum) -> new DataVersion(
+                rs.getLong("records"),
+                rs.getLong("records") + ":" + rs.getString("last_update") + ":" + rs.getLong("id_sum")),
+                startDate, endDate);
+
+        long[] students = {0, 0};
+        jdbcTemplate.query(STUDENTS_VERSION_SQL, rs -> {
+            students[0]++;
+            students[1] = students[1] * 31 + Objects.hash(rs.getLong("id"), rs.getString("id_badge"),
+                    rs.getString("full_name"), rs.getString("school"));
+        });
+
+        return new DataVersion(records.rows, records.fingerprint + ":" + students[0] + ":" + students[1]);
+    }
+
+    /**
+     * The student's details shown on the report, all of their records and their tasks
+     */
+    DataVersion readStudentVersion(String idBadge) {
+        List<Map.Entry<Long, Integer>> student = jdbcTemplate.query(STUDENT_SQL, (rs, rowNum) -> Map.entry(
+                rs.getLong("id"),
+                Objects.hash(rs.getString("id_badge"), rs.getString("full_name"), rs.getObject("required_hours"))),
+                idBadge);
+        if (student.isEmpty()) {
+            throw new RuntimeException("Student not found");
+        }
+        long studentId = student.get(0).getKey();
+
+        String records = jdbcTemplate.queryForObject(STUDENT_RECORDS_VERSION_SQL, (rs, rowNum) ->
+                rs.getLong("records") + ":" + rs.getString("last_update") + ":" + rs.getLong("id_sum"), studentId);
+        String tasks = jdbcTemplate.queryForObject(STUDENT_TASKS_VERSION_SQL, (rs, rowNum) ->
+                rs.getLong("tasks") + ":" + rs.getLong("last_task"), studentId);
+
+        return new DataVersion(1, studentId + ":" + student.get(0).getValue() + ":" + records + ":" + tasks);
+    }
+
+    private static String downloadName(ReportType type, String idBadge, LocalDate startDate, LocalDate endDate) {
+        return switch (type) {
+            case CSV, EXCEL -> String.format("attendance-report-%s-%s.%s", startDate, endDate, type.getExtension());
+            case WEEKLY_PDF -> String.format("weekly-report-%s-%s.pdf", idBadge, startDate);
+        };
+    }
+
+    private static String sha256(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,132 +1,261 @@
 package Attendance.OjtAttendanceApplication.service;
 
 import Attendance.OjtAttendanceApplication.dto.AttendanceRecordDto;
+import Attendance.OjtAttendanceApplication.dto.HoursConverter;
 import Attendance.OjtAttendanceApplication.entity.Student;
 import Attendance.OjtAttendanceApplication.repository.StudentRepository;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.StringWriter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.LongConsumer;
 
 @Service
 public class ReportService {
 
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static final String[] REPORT_HEADERS = {"ID Badge", "Student Name", "School", "Date", "Time In",
+            "Time Out", "Total Hours", "Regular Hours", "Overtime Hours", "Undertime Hours",
+            "Break Deducted", "Tasks Completed", "Status"};
+
+    // Same rows and order as AttendanceRecordRepository.findByWorkDateRange. idx_attendance_work_date
+    // hands them over in that order, so MySQL can stream the range without sorting it first.
+    private static final String REPORT_ROWS_SQL =
+            "SELECT s.id_badge, s.full_name, s.school, ar.attendance_date, ar.time_in, ar.time_out, " +
+                    "ar.total_minutes, ar.regular_minutes, ar.overtime_minutes, ar.undertime_minutes, " +
+                    "ar.break_deducted, ar.tasks_completed, ar.status " +
+                    "FROM attendance_records ar JOIN students s ON s.id = ar.student_id " +
+                    "WHERE ar.work_date BETWEEN ? AND ? " +
+                    "ORDER BY ar.work_date DESC, ar.time_in ASC";
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    // Excel rows kept in memory; older ones are flushed to a temporary file
+    private static final int EXCEL_ROW_WINDOW = 200;
+    // Column widths are estimated from the header and this many rows
+    private static final int WIDTH_SAMPLE_ROWS = 500;
+    private static final int MAX_COLUMN_CHARS = 100;
+    private static final int LAST_EXCEL_ROW = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+
     @Autowired
     private AttendanceService attendanceService;
 
     @Autowired
     private StudentRepository studentRepository;
 
-    public String generateCSVReport(LocalDate startDate, LocalDate endDate) throws IOException {
-        List<AttendanceRecordDto> records = attendanceService.getAttendanceRecordsByDateRange(startDate, endDate);
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
-        StringWriter out = new StringWriter();
-        CSVFormat format = CSVFormat.DEFAULT.builder()
-                .setHeader("ID Badge", "Student Name", "School", "Date", "Time In", "Time Out",
-                        "Total Hours", "Regular Hours", "Overtime Hours", "Undertime Hours",
-                        "Break Deducted", "Tasks Completed", "Status")
-                .build();
+    // Integer.MIN_VALUE makes MySQL Connector/J hand over rows one at a time as they arrive
+    @Value("${attendance.report.fetch-size:-2147483648}")
+    private int fetchSize;
 
-        try (CSVPrinter printer = new CSVPrinter(out, format)) {
-            for (AttendanceRecordDto record : records) {
-                // Get student to access school information
-                Student student = studentRepository.findByIdBadge(record.getIdBadge()).orElse(null);
-                String school = student != null ? student.getSchool() : "";
+    /**
+     * Writes the attendance CSV for the range to out as the rows are read.
+     * One forward-only query joins each record's student up front; rows go
+     * straight from the result set to the writer, so memory use does not
+     * grow with the range. With the default fetch size MySQL streams the
+     * result instead of buffering all of it in the driver. Flushes but does
+     * not close out.
+     *
+     * @return number of records written
+     */
+    public long writeCSVReport(LocalDate startDate, LocalDate endDate, OutputStream out) throws IOException {
+        return writeCSVReport(startDate, endDate, out, rows -> {});
+    }
 
-                printer.printRecord(
-                        record.getIdBadge(),
-                        record.getStudentName(),
-                        school,
-                        record.getAttendanceDate(),
-                        record.getTimeIn() != null ? record.getTimeIn().format(DateTimeFormatter.ofPattern("HH:mm:ss")) : "",
-                        record.getTimeOut() != null ? record.getTimeOut().format(DateTimeFormatter.ofPattern("HH:mm:ss")) : "",
-                        record.getTotalHours(),
-                        record.getRegularHours(),
-                        record.getOvertimeHours(),
-                        record.getUndertimeHours(),
-                        record.getBreakDeducted() ? "Yes" : "No",
-                        record.getTasksCompleted() != null ? record.getTasksCompleted() : "",
-                        record.getStatus()
-                );
-            }
+    /**
+     * As above, handing the number of rows written so far to progress after each row
+     */
+    public long writeCSVReport(LocalDate startDate, LocalDate endDate, OutputStream out,
+                               LongConsumer progress) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT.builder().setHeader(REPORT_HEADERS).build());
+        long[] rows = {0};
+
+        try {
+            queryReportRows(startDate, endDate, rs -> {
+                try {
+                    printCSVRow(printer, rs);
+                } catch (IOException e) {
+                    // Client went away; stop reading
+                    throw new UncheckedIOException(e);
+                }
+                progress.accept(++rows[0]);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
 
-        return out.toString();
+        printer.flush();
+        return rows[0];
     }
 
-    public byte[] generateExcelReport(LocalDate startDate, LocalDate endDate) throws IOException {
-        List<AttendanceRecordDto> records = attendanceService.getAttendanceRecordsByDateRange(startDate, endDate);
+    private static void printCSVRow(CSVPrinter printer, ResultSet rs) throws SQLException, IOException {
+        LocalDateTime timeIn = rs.getObject("time_in", LocalDateTime.class);
+        LocalDateTime timeOut = rs.getObject("time_out", LocalDateTime.class);
+        String tasks = rs.getString("tasks_completed");
 
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("Attendance Report");
+        printer.print(rs.getString("id_badge"));
+        printer.print(rs.getString("full_name"));
+        printer.print(rs.getString("school"));
+        printer.print(rs.getObject("attendance_date", LocalDate.class));
+        printer.print(timeIn != null ? timeIn.format(TIME_FORMAT) : "");
+        printer.print(timeOut != null ? timeOut.format(TIME_FORMAT) : "");
+        printer.print(HoursConverter.toHours(rs.getInt("total_minutes")));
+        printer.print(HoursConverter.toHours(rs.getInt("regular_minutes")));
+        printer.print(HoursConverter.toHours(rs.getInt("overtime_minutes")));
+        printer.print(HoursConverter.toHours(rs.getInt("undertime_minutes")));
+        printer.print(rs.getBoolean("break_deducted") ? "Yes" : "No");
+        printer.print(tasks != null ? tasks : "");
+        printer.print(rs.getString("status"));
+        printer.println();
+    }
+
+    /**
+     * Writes the attendance workbook for the range to out. Rows come from
+     * the same cursor as the CSV and only the last EXCEL_ROW_WINDOW of them
+     * are held in memory; the rest go to a compressed temporary file that is
+     * zipped into out at the end. Column widths are estimated from the
+     * header and the first WIDTH_SAMPLE_ROWS rows rather than by auto-sizing
+     * every cell. A range longer than one sheet allows continues on further
+     * sheets. Flushes but does not close out.
+     *
+     * @return number of records written
+     */
+    public long writeExcelReport(LocalDate startDate, LocalDate endDate, OutputStream out) throws IOException {
+        return writeExcelReport(startDate, endDate, out, rows -> {});
+    }
 
-            // Create header row
-            Row headerRow = sheet.createRow(0);
-            String[] headers = {"ID Badge", "Student Name", "School", "Date", "Time In", "Time Out",
-                    "Total Hours", "Regular Hours", "Overtime Hours", "Undertime Hours",
-                    "Break Deducted", "Tasks Completed", "Status"};
+    /**
+     * As above, handing the number of rows added so far to progress after
+     * each row (the workbook is written out after the last one)
+     */
+    public long writeExcelReport(LocalDate startDate, LocalDate endDate, OutputStream out,
+                                 LongConsumer progress) throws IOException {
+        // close() also deletes the temporary files of the flushed rows
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(EXCEL_ROW_WINDOW)) {
+            workbook.setCompressTempFiles(true);
 
-            // Create header style
             CellStyle headerStyle = workbook.createCellStyle();
             Font font = workbook.createFont();
             font.setBold(true);
             headerStyle.setFont(font);
 
-            for (int i = 0; i < headers.length; i++) {
-                Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers[i]);
-                cell.setCellStyle(headerStyle);
-            }
+            int[] columnChars = Arrays.stream(REPORT_HEADERS).mapToInt(String::length).toArray();
+            Sheet[] sheet = {createReportSheet(workbook, headerStyle)};
+            long[] rows = {0};
 
-            // Fill data rows
-            int rowNum = 1;
-            for (AttendanceRecordDto record : records) {
-                Row row = sheet.createRow(rowNum++);
-
-                // Get student to access school information
-                Student student = studentRepository.findByIdBadge(record.getIdBadge()).orElse(null);
-                String school = student != null ? student.getSchool() : "";
-
-                row.createCell(0).setCellValue(record.getIdBadge());
-                row.createCell(1).setCellValue(record.getStudentName());
-                row.createCell(2).setCellValue(school);
-                row.createCell(3).setCellValue(record.getAttendanceDate().toString());
-                row.createCell(4).setCellValue(record.getTimeIn() != null ?
-                        record.getTimeIn().format(DateTimeFormatter.ofPattern("HH:mm:ss")) : "");
-                row.createCell(5).setCellValue(record.getTimeOut() != null ?
-                        record.getTimeOut().format(DateTimeFormatter.ofPattern("HH:mm:ss")) : "");
-                row.createCell(6).setCellValue(record.getTotalHours());
-                row.createCell(7).setCellValue(record.getRegularHours());
-                row.createCell(8).setCellValue(record.getOvertimeHours());
-                row.createCell(9).setCellValue(record.getUndertimeHours());
-                row.createCell(10).setCellValue(record.getBreakDeducted() ? "Yes" : "No");
-                row.createCell(11).setCellValue(record.getTasksCompleted() != null ? record.getTasksCompleted() : "");
-                row.createCell(12).setCellValue(record.getStatus());
-            }
+            queryReportRows(startDate, endDate, rs -> {
+                if (sheet[0].getLastRowNum() == LAST_EXCEL_ROW) {
+                    sheet[0] = createReportSheet(workbook, headerStyle);
+                }
+                Row row = sheet[0].createRow(sheet[0].getLastRowNum() + 1);
+                fillExcelRow(row, rs);
 
-            // Auto-size columns with better handling
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
-                // Add extra padding (10% more width)
-                int currentWidth = sheet.getColumnWidth(i);
-                sheet.setColumnWidth(i, (int) (currentWidth * 1.1));
+                if (++rows[0] <= WIDTH_SAMPLE_ROWS) {
+                    sampleColumnChars(row, columnChars);
+                }
+                progress.accept(rows[0]);
+            });
+
+            for (Sheet reportSheet : workbook) {
+                for (int i = 0; i < columnChars.length; i++) {
+                    // Roughly one character per 256 units, plus the 10% padding the auto-sized columns had
+                    int chars = Math.min(columnChars[i], MAX_COLUMN_CHARS) + 1;
+                    reportSheet.setColumnWidth(i, (int) (chars * 256 * 1.1));
+                }
             }
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            workbook.write(outputStream);
-            return outputStream.toByteArray();
+            workbook.write(out);
+            out.flush();
+            return rows[0];
         }
     }
 
+    private static Sheet createReportSheet(Workbook workbook, CellStyle headerStyle) {
+        int number = workbook.getNumberOfSheets();
+        Sheet sheet = workbook.createSheet(number == 0 ? "Attendance Report" : "Attendance Report (" + (number + 1) + ")");
+
+        Row headerRow = sheet.createRow(0);
+        for (int i = 0; i < REPORT_HEADERS.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(REPORT_HEADERS[i]);
+            cell.setCellStyle(headerStyle);
+        }
+        return sheet;
+    }
+
+    private static void fillExcelRow(Row row, ResultSet rs) throws SQLException {
+        LocalDateTime timeIn = rs.getObject("time_in", LocalDateTime.class);
+        LocalDateTime timeOut = rs.getObject("time_out", LocalDateTime.class);
+        String tasks = rs.getString("tasks_completed");
+
+        row.createCell(0).setCellValue(rs.getString("id_badge"));
+        row.createCell(1).setCellValue(rs.getString("full_name"));
+        row.createCell(2).setCellValue(rs.getString("school"));
+        row.createCell(3).setCellValue(rs.getObject("attendance_date", LocalDate.class).toString());
+        row.createCell(4).setCellValue(timeIn != null ? timeIn.format(TIME_FORMAT) : "");
+        row.createCell(5).setCellValue(timeOut != null ? timeOut.format(TIME_FORMAT) : "");
+        row.createCell(6).setCellValue(HoursConverter.toHours(rs.getInt("total_minutes")));
+        row.createCell(7).setCellValue(HoursConverter.toHours(rs.getInt("regular_minutes")));
+        row.createCell(8).setCellValue(HoursConverter.toHours(rs.getInt("overtime_minutes")));
+        row.createCell(9).setCellValue(HoursConverter.toHours(rs.getInt("undertime_minutes")));
+        row.createCell(10).setCellValue(rs.getBoolean("break_deducted") ? "Yes" : "No");
+        row.createCell(11).setCellValue(tasks != null ? tasks : "");
+        row.createCell(12).setCellValue(rs.getString("status"));
+    }
+
+    // Widest line of each cell, in characters
+    private static void sampleColumnChars(Row row, int[] columnChars) {
+        for (Cell cell : row) {
+            int chars = 0;
+            if (cell.getCellType() == CellType.NUMERIC) {
+                chars = Double.toString(cell.getNumericCellValue()).length();
+            } else {
+                for (String line : cell.getStringCellValue().split("\n")) {
+                    chars = Math.max(chars, line.length());
+                }
+            }
+            int column = cell.getColumnIndex();
+            columnChars[column] = Math.max(columnChars[column], chars);
+        }
+    }
+
+    /**
+     * Reads the report rows for the range (student name and school joined
+     * in) with a forward-only cursor, handing each to the handler as it
+     * arrives
+     */
+    private void queryReportRows(LocalDate startDate, LocalDate endDate, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(REPORT_ROWS_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setObject(1, startDate);
+            statement.setObject(2, endDate);
+            return statement;
+        }, handler);
+    }
+
     public String generateStudentCSVReport(String idBadge, LocalDate startDate, LocalDate endDate) throws IOException {
         Student student = studentRepository.findByIdBadge(idBadge)
                 .orElseThrow(() -> new RuntimeException("Student not found with ID badge: " + idBadge));
@@ -148,8 +277,8 @@ public class ReportService {
                         record.getStudentName(),
                         student.getSchool(),
                         record.getAttendanceDate(),
-                        record.getTimeIn() != null ? record.getTimeIn().format(DateTimeFormatter.ofPattern("HH:mm:ss")) : "",
-                        record.getTimeOut() != null ? record.getTimeOut().format(DateTimeFormatter.ofPattern("HH:mm:ss")) : "",
+                        record.getTimeIn() != null ? record.getTimeIn().format(TIME_FORMAT) : "",
+                        record.getTimeOut() != null ? record.getTimeOut().format(TIME_FORMAT) : "",
                         record.getTotalHours(),
                         record.getRegularHours(),
                         record.getOvertimeHours(),
@@ -1,8 +1,12 @@
 package Attendance.OjtAttendanceApplication.service;
 
 import Attendance.OjtAttendanceApplication.dto.HoursCalculation;
+import Attendance.OjtAttendanceApplication.dto.HoursConverter;
 import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
 import Attendance.OjtAttendanceApplication.entity.AttendanceStatus;
+import Attendance.OjtAttendanceApplication.entity.HoursLedgerReason;
+import Attendance.OjtAttendanceApplication.entity.OutboxEvent;
+import Attendance.OjtAttendanceApplication.entity.OutboxEventType;
 import Attendance.OjtAttendanceApplication.entity.Student;
 import Attendance.OjtAttendanceApplication.entity.StudentStatus;
 import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
@@ -16,6 +20,7 @@ import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -33,6 +38,18 @@ public class ScheduledTaskService {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private HoursCalculationEngine hoursCalculationEngine;
+
+    @Autowired
+    private HoursLedgerService hoursLedgerService;
+
     // Run every hour to check for incomplete records
     @Scheduled(fixedRate = 3600000) // 1 hour
     public void checkForIncompleteRecords() {
@@ -40,8 +57,9 @@ public class ScheduledTaskService {
             logger.info("Starting scheduled task: checkForIncompleteRecords");
 
             LocalDateTime now = LocalDateTime.now();
-            // Use the new query that finds all TIMED_IN records regardless of date
-            List<AttendanceRecord> timedInRecords = attendanceRecordRepository.findAllTimedInRecords();
+            // Open sessions come from the registry; only those records are loaded, by id, with their students
+            List<AttendanceRecord> timedInRecords = attendanceRecordRepository
+                    .findOpenRecordsWithStudent(activeSessionRegistry.openRecordIds());
 
             logger.info("Found {} records with TIMED_IN status", timedInRecords.size());
 
@@ -49,6 +67,8 @@ public class ScheduledTaskService {
             int autoTimeOuts = 0;
             int longWorkNotifications = 0;
             int missingTimeOutNotifications = 0;
+            // Notification events are inserted together after the loop
+            List<OutboxEvent> notifications = new ArrayList<>();
 
             for (AttendanceRecord record : timedInRecords) {
                 try {
@@ -74,12 +94,14 @@ public class ScheduledTaskService {
                     }
                     // Notify admin for long work sessions (after 10 hours)
                     else if (hoursWorked >= 10) {
-                        notificationService.createLongWorkSessionNotification(record.getStudent(), record);
+                        notifications.add(new OutboxEvent(OutboxEventType.LONG_WORK_SESSION,
+                                record.getStudent().getId(), record.getId(), null));
                         longWorkNotifications++;
                     }
                     // Notify admin for missing time-out (after 8 hours)
                     else if (hoursWorked >= 8) {
-                        notificationService.createMissingTimeOutNotification(record.getStudent(), record);
+                        notifications.add(new OutboxEvent(OutboxEventType.MISSING_TIME_OUT,
+                                record.getStudent().getId(), record.getId(), null));
                         missingTimeOutNotifications++;
                     }
 
@@ -89,6 +111,7 @@ public class ScheduledTaskService {
                             record.getId(), e.getMessage(), e);
                 }
             }
+            outboxService.enqueueAll(notifications);
 
             logger.info("Completed scheduled task: checkForIncompleteRecords - " +
                             "Processed: {}, Auto time-outs: {}, Long work: {}, Missing timeout: {}",
@@ -110,21 +133,24 @@ public class ScheduledTaskService {
             logger.info("Found {} students ready for completion", studentsReadyForCompletion.size());
 
             int notificationsCreated = 0;
+            List<OutboxEvent> notifications = new ArrayList<>();
 
             for (Student student : studentsReadyForCompletion) {
                 try {
                     // Create a special notification for students who have reached their required hours
-                    notificationService.createCompletionReadyNotification(student);
+                    notifications.add(new OutboxEvent(OutboxEventType.COMPLETION_READY, student.getId(), null, null));
                     notificationsCreated++;
 
                     logger.info("Completion notification created for student {} - {}/{} hours completed",
-                            student.getFullName(), student.getTotalAccumulatedHours(), student.getRequiredHours());
+                            student.getFullName(), HoursConverter.toHours(student.getTotalAccumulatedMinutes()),
+                            student.getRequiredHours());
 
                 } catch (Exception e) {
                     logger.error("Error creating completion notification for student {}: {}",
                             student.getFullName(), e.getMessage(), e);
                 }
             }
+            outboxService.enqueueAll(notifications);
 
             logger.info("Completed scheduled task: checkForStudentsReadyForCompletion - {} notifications created",
                     notificationsCreated);
@@ -142,30 +168,28 @@ public class ScheduledTaskService {
             record.setStatus(AttendanceStatus.AUTO_TIMED_OUT);
             record.setTasksCompleted("AUTO TIME-OUT: Student did not time out manually after 16 hours");
 
-            // Calculate hours using the same logic as manual time-out
-            LocalDateTime roundedTimeIn = roundToNearestHour(record.getTimeIn());
-            LocalDateTime roundedTimeOut = roundToNearestHour(autoTimeOutTime);
-            HoursCalculation calculation = calculateHours(roundedTimeIn, roundedTimeOut);
+            // Calculate hours using the same rules as manual time-out
+            HoursCalculation calculation = hoursCalculationEngine.calculate(record);
 
-            record.setTotalHours(calculation.getTotalHours());
-            record.setRegularHours(calculation.getRegularHours());
-            record.setOvertimeHours(calculation.getOvertimeHours());
-            record.setUndertimeHours(calculation.getUndertimeHours());
+            record.setTotalMinutes(calculation.getTotalMinutes());
+            record.setRegularMinutes(calculation.getRegularMinutes());
+            record.setOvertimeMinutes(calculation.getOvertimeMinutes());
+            record.setUndertimeMinutes(calculation.getUndertimeMinutes());
             record.setBreakDeducted(calculation.isBreakDeducted());
+            record.setCalculationInputs(calculation.getInputsFingerprint());
 
-            // Update student's total accumulated hours
             Student student = record.getStudent();
-            Double originalHours = student.getTotalAccumulatedHours();
-            student.setTotalAccumulatedHours(originalHours + calculation.getTotalHours());
+            long originalMinutes = student.getTotalAccumulatedMinutes();
 
             attendanceRecordRepository.save(record);
-            studentRepository.save(student);
+            hoursLedgerService.record(student, record, calculation.getTotalMinutes(), HoursLedgerReason.AUTO_TIME_OUT);
+            activeSessionRegistry.close(record);
 
-            logger.info("Auto time-out completed for student {} - added {} hours (total: {} -> {})",
-                    student.getFullName(), calculation.getTotalHours(), originalHours, student.getTotalAccumulatedHours());
+            logger.info("Auto time-out completed for student {} - added {} minutes (total: {} -> {})",
+                    student.getFullName(), calculation.getTotalMinutes(), originalMinutes, student.getTotalAccumulatedMinutes());
 
-            // Create notification for admin
-            notificationService.createAutoTimeOutNotification(student, record);
+            // Notify admin once the time-out has committed
+            outboxService.enqueue(OutboxEventType.AUTO_TIME_OUT_OCCURRED, student.getId(), record.getId());
 
         } catch (Exception e) {
             logger.error("Error performing auto time-out for record {}: {}", record.getId(), e.getMessage(), e);
@@ -173,50 +197,6 @@ public class ScheduledTaskService {
         }
     }
 
-    private HoursCalculation calculateHours(LocalDateTime timeIn, LocalDateTime timeOut) {
-        Duration duration = Duration.between(timeIn, timeOut);
-        double totalMinutes = duration.toMinutes();
-        double rawHours = totalMinutes / 60.0;
-
-        HoursCalculation calculation = new HoursCalculation();
-        calculation.setBreakDeducted(false);
-
-        // Check if break should be deducted
-        if (rawHours >= 5.0) {
-            rawHours -= 1.0; // Deduct 1 hour for lunch break
-            calculation.setBreakDeducted(true);
-        }
-
-        // Ensure minimum of 0 hours
-        calculation.setTotalHours(Math.max(0.0, Math.round(rawHours * 100.0) / 100.0));
-
-        // Calculate regular, overtime, and undertime
-        if (calculation.getTotalHours() >= 8.0) {
-            calculation.setRegularHours(8.0);
-            calculation.setOvertimeHours(calculation.getTotalHours() - 8.0);
-            calculation.setUndertimeHours(0.0);
-        } else {
-            calculation.setRegularHours(calculation.getTotalHours());
-            calculation.setOvertimeHours(0.0);
-            calculation.setUndertimeHours(Math.max(0.0, 8.0 - calculation.getTotalHours()));
-        }
-
-        return calculation;
-    }
-
-    private LocalDateTime roundToNearestHour(LocalDateTime dateTime) {
-        int minutes = dateTime.getMinute();
-
-        LocalDateTime rounded;
-        if (minutes <= 39) {
-            rounded = dateTime.withMinute(0).withSecond(0).withNano(0);
-        } else {
-            rounded = dateTime.withMinute(0).withSecond(0).withNano(0).plusHours(1);
-        }
-
-        return rounded;
-    }
-
     @Scheduled(cron = "0 0 0 * * *") // Daily at midnight
     public void autoCleanupOldNotifications() {
         try {
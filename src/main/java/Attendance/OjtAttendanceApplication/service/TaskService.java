@@ -32,6 +32,12 @@ public class TaskService {
     @Autowired
     private StudentRepository studentRepository;
 
+    @Autowired
+    private BadgeDirectory badgeDirectory;
+
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+
     private static final Logger logger = LoggerFactory.getLogger(TaskService.class);
 
     /**
@@ -39,20 +45,23 @@ public class TaskService {
      */
     public TaskEntryDto addTask(AddTaskRequest request) {
         // Find active attendance record (regardless of date)
-        Student student = studentRepository.findByIdBadge(request.getIdBadge())
-                .orElseThrow(() -> new RuntimeException("Student not found with ID badge: " + request.getIdBadge()));
+        BadgeDirectory.BadgeSnapshot student = badgeDirectory.lookup(request.getIdBadge());
+        if (student == null) {
+            throw new RuntimeException("Student not found with ID badge: " + request.getIdBadge());
+        }
 
         // Find ANY active session for this student (not just today's date)
-        AttendanceRecord activeRecord = attendanceRecordRepository
-                .findActiveSessionByStudent(student)
-                .orElseThrow(() -> new RuntimeException("No active attendance session found. Please time in first."));
+        OpenSessionEntry activeSession = activeSessionRegistry.get(student.getStudentId());
+        if (activeSession == null) {
+            throw new RuntimeException("No active attendance session found. Please time in first.");
+        }
 
         // Validate task timing - use active record's time in, not current date
-        validateTaskTiming(request.getCompletedAt(), activeRecord.getTimeIn());
+        validateTaskTiming(request.getCompletedAt(), activeSession.getTimeIn());
 
-        // Create and save task entry
+        // Create and save task entry - the record itself is only needed as a reference
         TaskEntry taskEntry = new TaskEntry(
-                activeRecord,
+                attendanceRecordRepository.getReferenceById(activeSession.getRecordId()),
                 request.getTaskDescription().trim(),
                 request.getCompletedAt(),
                 request.getAddedDuringTimeout() != null ? request.getAddedDuringTimeout() : false
@@ -85,29 +94,31 @@ public class TaskService {
      * Get consolidated tasks for time-out process
      */
     public String getConsolidatedTasksForTimeOut(AttendanceRecord record) {
-        List<TaskEntry> tasks = taskEntryRepository.findByAttendanceRecordOrderByCompletedAtAsc(record);
+        return consolidateTasks(taskEntryRepository.findByAttendanceRecordOrderByCompletedAtAsc(record));
+    }
 
+    /**
+     * Build the time-out task summary from an already loaded, ordered task list
+     * @return the summary, or null if there are no tasks
+     */
+    public String consolidateTasks(List<TaskEntry> tasks) {
         if (tasks.isEmpty()) {
             return null;
         }
 
         StringBuilder consolidated = new StringBuilder();
-        consolidated.append("=== Tasks Completed Today ===\n");
+        consolidated.append("=== Tasks Completed Today ===");
 
-        for (int i = 0; i < tasks.size(); i++) {
-            TaskEntry task = tasks.get(i);
-            consolidated.append(String.format("%d. [%s] %s",
-                    i + 1,
-                    task.getCompletedAt().toLocalTime(),
-                    task.getTaskDescription()));
+        int number = 1;
+        for (TaskEntry task : tasks) {
+            consolidated.append('\n')
+                    .append(number++).append(". [")
+                    .append(task.getCompletedAt().toLocalTime()).append("] ")
+                    .append(task.getTaskDescription());
 
             if (Boolean.TRUE.equals(task.getAddedDuringTimeout())) {
                 consolidated.append(" [Added during time-out]");
             }
-
-            if (i < tasks.size() - 1) {
-                consolidated.append("\n");
-            }
         }
 
         return consolidated.toString();
@@ -160,17 +171,7 @@ public class TaskService {
     }
 
     public boolean hasTasksForRecord(Long recordId) {
-        try {
-            AttendanceRecord record = attendanceRecordRepository.findById(recordId)
-                    .orElse(null);
-            if (record == null) return false;
-
-            List<TaskEntry> tasks = taskEntryRepository
-                    .findByAttendanceRecordOrderByCompletedAtAsc(record);
-            return !tasks.isEmpty();
-        } catch (Exception e) {
-            return false;
-        }
+        return taskEntryRepository.existsByAttendanceRecordId(recordId);
     }
 
     @Transactional
@@ -311,7 +312,7 @@ public class TaskService {
             report.setActualTimeOut(record.getTimeOut().toLocalTime());
         }
 
-        report.setTotalHours(record.getTotalHours());
+        report.setTotalHours(HoursConverter.toHours(record.getTotalMinutes()));
 
         // Get tasks for this record
         List<TaskEntry> tasks = taskEntryRepository
@@ -8,18 +8,39 @@ import dev.samstevens.totp.qr.ZxingPngQrGenerator;
 import dev.samstevens.totp.secret.DefaultSecretGenerator;
 import dev.samstevens.totp.time.SystemTimeProvider;
 import dev.samstevens.totp.time.TimeProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
-import java.util.Base64;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class TotpService {
 
     private final TimeProvider timeProvider = new SystemTimeProvider();
     private final CodeGenerator codeGenerator = new DefaultCodeGenerator();
-    private final CodeVerifier verifier = new DefaultCodeVerifier(codeGenerator, timeProvider);
     private final QrGenerator qrGenerator = new ZxingPngQrGenerator();
 
+    // Rendered enrollment QR codes, keyed by secret, kept for the length of a setup
+    private static final long QR_CACHE_TTL_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final int QR_CACHE_MAX_ENTRIES = 500;
+    private final ConcurrentHashMap<String, CachedQrCode> qrCodeCache = new ConcurrentHashMap<>();
+
+    @Autowired
+    private TotpVerifier totpVerifier;
+
+    @Autowired
+    @Qualifier("qrCodeExecutor")
+    private ThreadPoolTaskExecutor qrCodeExecutor;
+
     /**
      * Generate a new secret key for a student
      */
@@ -29,13 +50,62 @@ public class TotpService {
     }
 
     /**
-     * Generate QR code data URL for Google Authenticator
+     * Render the enrollment QR code (PNG) for Google Authenticator on the QR
+     * executor. Concurrent and repeated requests for the same secret share
+     * one render for the lifetime of the cache entry.
      * @param secret The TOTP secret
      * @param studentName The student's name for display in authenticator
      * @param idBadge The student's ID badge
-     * @return Base64 encoded QR code image as data URL
+     * @return PNG bytes of the QR code
+     */
+    public CompletableFuture<byte[]> renderQrCodePng(String secret, String studentName, String idBadge) {
+        long now = System.nanoTime();
+
+        CachedQrCode cached = qrCodeCache.compute(secret, (key, existing) -> {
+            if (existing != null && !existing.isExpired(now) && !existing.png.isCompletedExceptionally()) {
+                return existing;
+            }
+            return new CachedQrCode(submitRender(key, studentName, idBadge), now);
+        });
+
+        if (qrCodeCache.size() > QR_CACHE_MAX_ENTRIES) {
+            evictQrCodes();
+        }
+        return cached.png;
+    }
+
+    /**
+     * Drop the cached QR code for a secret (after setup completes or TOTP is reset)
      */
-    public String generateQrCodeDataUrl(String secret, String studentName, String idBadge) {
+    public void forgetQrCode(String secret) {
+        if (secret != null) {
+            qrCodeCache.remove(secret);
+        }
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void evictQrCodes() {
+        long now = System.nanoTime();
+        qrCodeCache.values().removeIf(entry -> entry.isExpired(now));
+
+        // Still too many live entries: drop arbitrary ones, they are cheap to re-render
+        Iterator<String> keys = qrCodeCache.keySet().iterator();
+        while (qrCodeCache.size() > QR_CACHE_MAX_ENTRIES && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private CompletableFuture<byte[]> submitRender(String secret, String studentName, String idBadge) {
+        try {
+            return CompletableFuture.supplyAsync(() -> generateQrCodePng(secret, studentName, idBadge), qrCodeExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(
+                    new RuntimeException("QR code generation is busy. Please try again in a moment."));
+        }
+    }
+
+    private byte[] generateQrCodePng(String secret, String studentName, String idBadge) {
         try {
             QrData data = new QrData.Builder()
                     .label(studentName + " (" + idBadge + ")")
@@ -46,9 +116,7 @@ public class TotpService {
                     .period(30)
                     .build();
 
-            byte[] imageData = qrGenerator.generate(data);
-            String base64Image = Base64.getEncoder().encodeToString(imageData);
-            return "data:image/png;base64," + base64Image;
+            return qrGenerator.generate(data);
 
         } catch (QrGenerationException e) {
             throw new RuntimeException("Failed to generate QR code: " + e.getMessage(), e);
@@ -62,19 +130,32 @@ public class TotpService {
      * @return true if valid, false otherwise
      */
     public boolean verifyCode(String secret, String code) {
-        if (secret == null || code == null) {
-            return false;
-        }
+        return totpVerifier.verify(secret, code) == TotpVerifier.Result.VALID;
+    }
 
-        // Remove any whitespace from the code
-        code = code.trim();
+    /**
+     * Verify a TOTP code for an attendance punch. A code that was already
+     * accepted for this badge (or an older one) is reported as REPLAYED.
+     * The code stays usable until acceptAttendanceCode is called for it.
+     */
+    public TotpVerifier.Verification verifyAttendanceCode(String idBadge, String secret, String code) {
+        return totpVerifier.verifyForPunch(idBadge, secret, code);
+    }
 
-        // Validate code format
-        if (!code.matches("\\d{6}")) {
-            return false;
-        }
+    /**
+     * Verify a TOTP code for a punch the kiosk recorded at punchedAt (kiosk
+     * local time), e.g. one it buffered while offline
+     */
+    public TotpVerifier.Verification verifyAttendanceCodeAt(String idBadge, String secret, String code, LocalDateTime punchedAt) {
+        long epochSeconds = punchedAt.atZone(ZoneId.systemDefault()).toEpochSecond();
+        return totpVerifier.verifyForPunchAt(idBadge, secret, code, epochSeconds);
+    }
 
-        return verifier.isValidCode(secret, code);
+    /**
+     * Mark a verified code as used by the badge once its punch succeeded
+     */
+    public void acceptAttendanceCode(String idBadge, TotpVerifier.Verification verification) {
+        totpVerifier.accept(idBadge, verification);
     }
 
     /**
@@ -89,4 +170,18 @@ public class TotpService {
             throw new RuntimeException("Failed to generate code: " + e.getMessage(), e);
         }
     }
+
+    private static final class CachedQrCode {
+        private final CompletableFuture<byte[]> png;
+        private final long createdAtNanos;
+
+        private CachedQrCode(CompletableFuture<byte[]> png, long createdAtNanos) {
+            this.png = png;
+            this.createdAtNanos = createdAtNanos;
+        }
+
+        private boolean isExpired(long nowNanos) {
+            return nowNanos - createdAtNanos > QR_CACHE_TTL_NANOS;
+        }
+    }
 }
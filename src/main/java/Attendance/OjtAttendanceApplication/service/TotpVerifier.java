@@ -0,0 +1,288 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import dev.samstevens.totp.code.CodeGenerator;
+import dev.samstevens.totp.code.DefaultCodeGenerator;
+import dev.samstevens.totp.exceptions.CodeGenerationException;
+import dev.samstevens.totp.time.SystemTimeProvider;
+import dev.samstevens.totp.time.TimeProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * TOTP code verification (SHA1, 6 digits, 30 second period, +/-1 period of
+ * clock drift - the same parameters as DefaultCodeVerifier and the QR codes
+ * we issue).
+ *
+ * The three codes valid for a secret around the current period are generated
+ * once and reused until the period changes, so repeated verifications within
+ * a period cost no HMAC work. For attendance punches, each badge also
+ * remembers the last period it was accepted for: a code from that period or
+ * an earlier one is a replay and is rejected (RFC 6238 section 5.2). A
+ * punch's period is only recorded by accept() once the punch went through,
+ * so a punch rejected by the attendance rules doesn't burn the code; callers
+ * verify and accept under the badge's PunchSerializer lock. That
+ * per-badge state lives in a fixed 10,000 slot array, so it is bounded by
+ * construction and an entry stops mattering once its period leaves the
+ * window.
+ */
+@Component
+public class TotpVerifier {
+
+    public enum Result { VALID, INVALID, REPLAYED, MALFORMED }
+
+    static final int PERIOD_SECONDS = 30;
+    static final int ALLOWED_DRIFT_PERIODS = 1;
+    private static final int CODE_DIGITS = 6;
+    private static final int MAX_MEMOIZED_SECRETS = 20_000;
+    private static final long NEVER_ACCEPTED = Long.MIN_VALUE;
+
+    private final TimeProvider timeProvider;
+    private final CodeGenerator codeGenerator = new DefaultCodeGenerator();
+
+    // secret -> codes valid around one period
+    private final ConcurrentHashMap<String, WindowCodes> windowCodes = new ConcurrentHashMap<>();
+
+    // badge slot -> last accepted period
+    private final AtomicLongArray lastAcceptedPeriod = new AtomicLongArray(BadgeDirectory.BADGE_SLOTS);
+
+    private final Map<Result, Timer> timers = new EnumMap<>(Result.class);
+
+    @Autowired
+    public TotpVerifier(MeterRegistry meterRegistry) {
+        this(new SystemTimeProvider(), meterRegistry);
+    }
+
+    TotpVerifier(TimeProvider timeProvider, MeterRegistry meterRegistry) {
+        this.timeProvider = timeProvider;
+
+        for (int i = 0; i < BadgeDirectory.BADGE_SLOTS; i++) {
+            lastAcceptedPeriod.set(i, NEVER_ACCEPTED);
+        }
+
+        for (Result result : Result.values()) {
+            timers.put(result, Timer.builder("totp.verify")
+                    .description("TOTP code verification latency")
+                    .tag("result", result.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Check a code without consuming it (TOTP setup)
+     */
+    public Result verify(String secret, String code) {
+        long start = System.nanoTime();
+        Result result = Result.MALFORMED;
+        try {
+            result = check(secret, code, currentPeriod()) != null ? Result.VALID : invalidOrMalformed(secret, code);
+            return result;
+        } finally {
+            record(result, start);
+        }
+    }
+
+    /**
+     * Check a code for an attendance punch. A code from the period last
+     * accepted for this badge (or an older one) is REPLAYED. Nothing is
+     * recorded until the VALID verification is passed to accept().
+     */
+    public Verification verifyForPunch(String idBadge, String secret, String code) {
+        return verifyForPunch(idBadge, secret, code, currentPeriod());
+    }
+
+    /**
+     * Same as verifyForPunch, for a code the kiosk captured at an earlier
+     * moment (a buffered offline punch): the code is checked against the
+     * periods around epochSeconds instead of now. Codes are accepted in
+     * period order, so buffered punches must be applied oldest first.
+     */
+    public Verification verifyForPunchAt(String idBadge, String secret, String code, long epochSeconds) {
+        return verifyForPunch(idBadge, secret, code, Math.floorDiv(epochSeconds, PERIOD_SECONDS));
+    }
+
+    /**
+     * Record the punch's code period for the badge, so the same code (or an
+     * older one) can't be used for another punch. No-op unless VALID.
+     */
+    public void accept(String idBadge, Verification verification) {
+        int slot = BadgeDirectory.slotOf(idBadge);
+        if (verification.result != Result.VALID || slot < 0) {
+            return;
+        }
+        lastAcceptedPeriod.accumulateAndGet(slot, verification.period, Math::max);
+    }
+
+    private Verification verifyForPunch(String idBadge, String secret, String code, long period) {
+        long start = System.nanoTime();
+        Result result = Result.MALFORMED;
+        try {
+            Long matched = check(secret, code, period);
+            if (matched == null) {
+                result = invalidOrMalformed(secret, code);
+                return new Verification(result, NEVER_ACCEPTED);
+            }
+            result = isReplay(idBadge, matched) ? Result.REPLAYED : Result.VALID;
+            return new Verification(result, matched);
+        } finally {
+            record(result, start);
+        }
+    }
+
+    /**
+     * Drop memoized codes for periods that can no longer be presented
+     */
+    @Scheduled(fixedRate = 60000)
+    public void evictExpiredCodes() {
+        long current = currentPeriod();
+        windowCodes.values().removeIf(entry -> entry.period < current - ALLOWED_DRIFT_PERIODS);
+    }
+
+    // ==================== INTERNALS ====================
+
+    /**
+     * @return the period the code matched, or null if it matched none
+     */
+    private Long check(String secret, String code, long period) {
+        if (secret == null || code == null) {
+            return null;
+        }
+
+        String normalized = code.trim();
+        if (!isSixDigits(normalized)) {
+            return null;
+        }
+
+        WindowCodes window;
+        try {
+            // Only the current window is memoized; past windows are built once and dropped
+            window = period == currentPeriod() ? codesFor(secret, period) : WindowCodes.build(codeGenerator, secret, period, null);
+        } catch (RuntimeException e) {
+            // Undecodable secret - same outcome as DefaultCodeVerifier
+            return null;
+        }
+        byte[] presented = normalized.getBytes(StandardCharsets.US_ASCII);
+
+        // Check every candidate so timing doesn't reveal which one matched
+        Long matched = null;
+        for (int offset = -ALLOWED_DRIFT_PERIODS; offset <= ALLOWED_DRIFT_PERIODS; offset++) {
+            if (MessageDigest.isEqual(window.code(offset), presented) && matched == null) {
+                matched = period + offset;
+            }
+        }
+        return matched;
+    }
+
+    private WindowCodes codesFor(String secret, long period) {
+        WindowCodes current = windowCodes.get(secret);
+        if (current != null && current.period == period) {
+            return current;
+        }
+
+        if (windowCodes.size() >= MAX_MEMOIZED_SECRETS) {
+            evictExpiredCodes();
+        }
+
+        return windowCodes.compute(secret, (key, previous) ->
+                previous != null && previous.period == period ? previous : WindowCodes.build(codeGenerator, key, period, previous));
+    }
+
+    private boolean isReplay(String idBadge, long period) {
+        int slot = BadgeDirectory.slotOf(idBadge);
+        return slot < 0 || period <= lastAcceptedPeriod.get(slot);
+    }
+
+    private Result invalidOrMalformed(String secret, String code) {
+        return secret == null || code == null || !isSixDigits(code.trim()) ? Result.MALFORMED : Result.INVALID;
+    }
+
+    private long currentPeriod() {
+        return Math.floorDiv(timeProvider.getTime(), PERIOD_SECONDS);
+    }
+
+    private void record(Result result, long startNanos) {
+        timers.get(result).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static boolean isSixDigits(String code) {
+        if (code.length() != CODE_DIGITS) {
+            return false;
+        }
+        for (int i = 0; i < CODE_DIGITS; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Outcome of a punch verification, with the period the code matched
+     */
+    public static final class Verification {
+        private final Result result;
+        private final long period;
+
+        Verification(Result result, long period) {
+            this.result = result;
+            this.period = period;
+        }
+
+        public Result getResult() {
+            return result;
+        }
+    }
+
+    /**
+     * Codes for period-1, period and period+1 of one secret
+     */
+    private static final class WindowCodes {
+        private final long period;
+        private final byte[][] codes;
+
+        private WindowCodes(long period, byte[][] codes) {
+            this.period = period;
+            this.codes = codes;
+        }
+
+        byte[] code(int offset) {
+            return codes[offset + ALLOWED_DRIFT_PERIODS];
+        }
+
+        static WindowCodes build(CodeGenerator generator, String secret, long period, WindowCodes previous) {
+            byte[][] codes = new byte[2 * ALLOWED_DRIFT_PERIODS + 1][];
+
+            for (int offset = -ALLOWED_DRIFT_PERIODS; offset <= ALLOWED_DRIFT_PERIODS; offset++) {
+                long wanted = period + offset;
+                long previousOffset = previous != null ? wanted - previous.period : Long.MAX_VALUE;
+
+                // Reuse codes the previous window already generated (usually two of three)
+                if (Math.abs(previousOffset) <= ALLOWED_DRIFT_PERIODS) {
+                    codes[offset + ALLOWED_DRIFT_PERIODS] = previous.code((int) previousOffset);
+                } else {
+                    codes[offset + ALLOWED_DRIFT_PERIODS] = generate(generator, secret, wanted);
+                }
+            }
+            return new WindowCodes(period, codes);
+        }
+
+        private static byte[] generate(CodeGenerator generator, String secret, long period) {
+            try {
+                return generator.generate(secret, period).getBytes(StandardCharsets.US_ASCII);
+            } catch (CodeGenerationException e) {
+                throw new RuntimeException("Failed to generate TOTP code: " + e.getMessage(), e);
+            }
+        }
+    }
+}
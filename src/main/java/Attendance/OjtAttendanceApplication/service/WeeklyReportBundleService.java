@@ -0,0 +1,245 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.StudentAttendanceTotal;
+import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.entity.TaskEntry;
+import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import Attendance.OjtAttendanceApplication.repository.TaskEntryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Every active student's weekly report for one calendar week, as a ZIP.
+ *
+ * The cohort is loaded with four queries whatever its size: the students,
+ * their first attendance dates and cumulative minutes (one aggregate), the
+ * week's records and those records' tasks. The PDFs are then rendered on
+ * the reportRenderPool with the same template as a single weekly report,
+ * and each is added to the ZIP as soon as it is done. Only a few renders
+ * are in flight or waiting to be written at a time, so a slow download
+ * holds back rendering instead of piling up finished PDFs in memory.
+ */
+@Service
+public class WeeklyReportBundleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WeeklyReportBundleService.class);
+
+    private static final String ERRORS_ENTRY = "errors.txt";
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+
+    @Autowired
+    private TaskEntryRepository taskEntryRepository;
+
+    @Autowired
+    private WeeklyReportService weeklyReportService;
+
+    @Autowired
+    @Qualifier("reportRenderPool")
+    private ForkJoinPool reportRenderPool;
+
+    /**
+     * Loads everything the week's reports need. weekDate may be any day of
+     * the week (Monday-Sunday); school and scheduledStartTime narrow the
+     * cohort when given. Students without attendance by the end of the week
+     * have no report yet and are left out.
+     */
+    public CohortWeek loadCohortWeek(LocalDate weekDate, String school, LocalTime scheduledStartTime) {
+        LocalDate weekStart = weekDate.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate weekEnd = weekStart.plusDays(6);
+        if (weekStart.isAfter(LocalDate.now())) {
+            throw new RuntimeException("Week of " + weekStart + " is not available yet");
+        }
+
+        String schoolFilter = school != null && !school.isBlank() ? school.trim() : null;
+        List<Student> students = studentRepository.findActiveForWeeklyReports(schoolFilter, scheduledStartTime);
+        if (students.isEmpty()) {
+            throw new RuntimeException("No active students match the selected filters");
+        }
+
+        List<Long> studentIds = students.stream().map(Student::getId).collect(Collectors.toList());
+        Map<Long, StudentAttendanceTotal> totals = attendanceRecordRepository
+                .findAttendanceTotalsUpTo(studentIds, weekEnd).stream()
+                .collect(Collectors.toMap(StudentAttendanceTotal::getStudentId, Function.identity()));
+
+        List<AttendanceRecord> weekRecords = attendanceRecordRepository
+                .findByStudentIdsAndDateRange(studentIds, weekStart, weekEnd);
+        Map<Long, List<AttendanceRecord>> recordsByStudent = weekRecords.stream()
+                .collect(Collectors.groupingBy(record -> record.getStudent().getId()));
+
+        Map<Long, List<TaskEntry>> tasksByRecord = weekRecords.isEmpty() ? Map.of() : taskEntryRepository
+                .findByAttendanceRecordInOrderByCompletedAtAsc(weekRecords).stream()
+                .collect(Collectors.groupingBy(task -> task.getAttendanceRecord().getId()));
+
+        List<StudentWeek> reports = new ArrayList<>();
+        for (Student student : students) {
+            StudentAttendanceTotal total = totals.get(student.getId());
+            if (total == null) {
+                continue;
+            }
+            reports.add(new StudentWeek(student,
+                    weeklyReportService.calculateCalendarWeekNumber(total.getFirstAttendanceDate(), weekStart),
+                    new ArrayList<>(recordsByStudent.getOrDefault(student.getId(), List.of())),
+                    total.getTotalMinutes()));
+        }
+
+        logger.info("📦 Weekly report bundle for {}: {} of {} matching students have attendance",
+                weekStart, reports.size(), students.size());
+        return new CohortWeek(weekStart, weekEnd, reports, tasksByRecord);
+    }
+
+    /**
+     * Renders the week's reports and writes them to the ZIP in the order
+     * they finish. A report that fails to render is listed in errors.txt at
+     * the end of the archive instead of failing the whole download.
+     */
+    public void writeBundle(CohortWeek week, OutputStream out) throws IOException {
+        CompletionService<RenderedReport> renders = new ExecutorCompletionService<>(reportRenderPool);
+        Iterator<StudentWeek> pending = week.reports.iterator();
+        int window = reportRenderPool.getParallelism() * 2;
+        int inFlight = 0;
+        List<String> errors = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // The PDFs' content streams are already compressed
+        zip.setLevel(Deflater.BEST_SPEED);
+        try {
+            for (; inFlight < window && pending.hasNext(); inFlight++) {
+                StudentWeek report = pending.next();
+                renders.submit(() -> render(week, report));
+            }
+
+            while (inFlight > 0) {
+                RenderedReport rendered = renders.take().get();
+                inFlight--;
+                if (pending.hasNext()) {
+                    StudentWeek report = pending.next();
+                    renders.submit(() -> render(week, report));
+                    inFlight++;
+                }
+
+                if (rendered.pdf == null) {
+                    errors.add(rendered.entryName + ": " + rendered.error);
+                    continue;
+                }
+                zip.putNextEntry(new ZipEntry(rendered.entryName));
+                zip.write(rendered.pdf);
+                zip.closeEntry();
+            }
+
+            if (!errors.isEmpty()) {
+                zip.putNextEntry(new ZipEntry(ERRORS_ENTRY));
+                zip.write(String.join("\n", errors).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Weekly report bundle interrupted");
+        } catch (ExecutionException e) {
+            // render catches its own failures, so this is unexpected
+            throw new IOException("Weekly report bundle failed: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        logger.info("✅ Weekly report bundle for {}: {} reports, {} failed in {} ms",
+                week.weekStart, week.reports.size() - errors.size(), errors.size(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    private RenderedReport render(CohortWeek week, StudentWeek report) {
+        Student student = report.student;
+        String entryName = String.format("weekly-report-%s-week%d.pdf", student.getIdBadge(), report.weekNumber);
+        try {
+            byte[] pdf = weeklyReportService.renderWeeklyReport(student, report.records,
+                    record -> week.tasksByRecord.getOrDefault(record.getId(), List.of()),
+                    report.cumulativeMinutes, week.weekStart, week.weekEnd, report.weekNumber);
+            return new RenderedReport(entryName, pdf, null);
+        } catch (Exception e) {
+            logger.error("❌ Weekly report for {} failed: {}", student.getIdBadge(), e.getMessage(), e);
+            return new RenderedReport(entryName, null, e.getMessage());
+        }
+    }
+
+    /**
+     * A cohort's week, loaded and ready to render
+     */
+    public static class CohortWeek {
+        private final LocalDate weekStart;
+        private final LocalDate weekEnd;
+        private final List<StudentWeek> reports;
+        private final Map<Long, List<TaskEntry>> tasksByRecord;
+
+        CohortWeek(LocalDate weekStart, LocalDate weekEnd, List<StudentWeek> reports,
+                   Map<Long, List<TaskEntry>> tasksByRecord) {
+            this.weekStart = weekStart;
+            this.weekEnd = weekEnd;
+            this.reports = reports;
+            this.tasksByRecord = tasksByRecord;
+        }
+
+        public LocalDate getWeekStart() { return weekStart; }
+        public LocalDate getWeekEnd() { return weekEnd; }
+        public int getReportCount() { return reports.size(); }
+        public String getDownloadName() { return String.format("weekly-reports-%s.zip", weekStart); }
+    }
+
+    private static class StudentWeek {
+        private final Student student;
+        private final int weekNumber;
+        private final List<AttendanceRecord> records;
+        private final long cumulativeMinutes;
+
+        StudentWeek(Student student, int weekNumber, List<AttendanceRecord> records, long cumulativeMinutes) {
+            this.student = student;
+            this.weekNumber = weekNumber;
+            this.records = records;
+            this.cumulativeMinutes = cumulativeMinutes;
+        }
+    }
+
+    private static class RenderedReport {
+        private final String entryName;
+        private final byte[] pdf;
+        private final String error;
+
+        RenderedReport(String entryName, byte[] pdf, String error) {
+            this.entryName = entryName;
+            this.pdf = pdf;
+            this.error = error;
+        }
+    }
+}
@@ -1,18 +1,27 @@
 package Attendance.OjtAttendanceApplication.service;
 
+import Attendance.OjtAttendanceApplication.dto.HoursConverter;
 import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
 import Attendance.OjtAttendanceApplication.entity.Student;
 import Attendance.OjtAttendanceApplication.entity.TaskEntry;
 import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
 import Attendance.OjtAttendanceApplication.repository.StudentRepository;
 import Attendance.OjtAttendanceApplication.repository.TaskEntryRepository;
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.io.image.ImageData;
 import com.itextpdf.io.image.ImageDataFactory;
 import com.itextpdf.io.source.ByteArrayOutputStream;
 import com.itextpdf.kernel.colors.DeviceRgb;
+import com.itextpdf.kernel.font.PdfFontFactory;
 import com.itextpdf.kernel.geom.PageSize;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
 import com.itextpdf.layout.Document;
+import com.itextpdf.layout.borders.Border;
+import com.itextpdf.layout.borders.SolidBorder;
 import com.itextpdf.layout.element.Cell;
 import com.itextpdf.layout.element.Image;
 import com.itextpdf.layout.element.Paragraph;
@@ -20,6 +29,9 @@ import com.itextpdf.layout.element.Table;
 import com.itextpdf.layout.properties.HorizontalAlignment;
 import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
@@ -33,6 +45,7 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -50,6 +63,60 @@ public class WeeklyReportService {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/yyyy");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("hh:mm a");
 
+    private static final Logger logger = LoggerFactory.getLogger(WeeklyReportService.class);
+
+    private static final String LOGO_PATH = "static/images/concentrix-logo.png";
+
+    // Layout elements keep per-document renderer state, so only these immutable parts are shared between renders.
+    // Per-element setters rather than shared Styles: every property lookup on a styled element walks its styles.
+    private static final DeviceRgb HEADER_BACKGROUND = new DeviceRgb(230, 230, 230);
+    private static final DeviceRgb TEXT_LOGO_COLOR = new DeviceRgb(0, 51, 153);
+    private static final Border WEEK_BORDER = new SolidBorder(1);
+
+    // Prepared once by prepareTemplate; a null logo means the text logo is used
+    private volatile ImageData logo;
+    private volatile FontProgram font;
+
+    /**
+     * Reads and decodes the logo and loads the font program once, instead
+     * of on every render
+     */
+    @PostConstruct
+    void prepareTemplate() {
+        ClassPathResource logoFile = new ClassPathResource(LOGO_PATH);
+        byte[] logoBytes = null;
+
+        if (!logoFile.exists()) {
+            logger.warn("⚠️ Logo file not found at {}, weekly reports use the text logo", LOGO_PATH);
+        } else {
+            try (InputStream inputStream = logoFile.getInputStream()) {
+                logoBytes = inputStream.readAllBytes();
+            } catch (IOException e) {
+                logger.warn("⚠️ Failed to read logo {}: {}, weekly reports use the text logo", LOGO_PATH, e.getMessage());
+            }
+        }
+        prepareTemplate(logoBytes);
+    }
+
+    void prepareTemplate(byte[] logoBytes) {
+        try {
+            font = FontProgramFactory.createFont(StandardFonts.HELVETICA);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load the standard PDF font", e);
+        }
+
+        logo = null;
+        if (logoBytes != null) {
+            try {
+                logo = ImageDataFactory.create(logoBytes);
+            } catch (Exception e) {
+                // e.g. a WebP saved as .png: iText reads PNG, JPEG, GIF, BMP, TIFF and JBIG2 only
+                logger.warn("⚠️ Logo {} could not be decoded ({}), weekly reports use the text logo",
+                        LOGO_PATH, e.getMessage());
+            }
+        }
+    }
+
     /**
      * FIXED: Get OJT start date based on FIRST TIME-IN (first attendance record)
      */
@@ -118,7 +185,7 @@ public class WeeklyReportService {
      * - Week 2: Monday Nov 3 - Sunday Nov 9
      * - Week 3: Monday Nov 10 - Sunday Nov 16
      */
-    private Integer calculateCalendarWeekNumber(LocalDate firstAttendanceDate, LocalDate targetDate) {
+    Integer calculateCalendarWeekNumber(LocalDate firstAttendanceDate, LocalDate targetDate) {
         // Get the Monday of the week containing first attendance
         LocalDate firstMonday = firstAttendanceDate.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
 
@@ -185,6 +252,26 @@ public class WeeklyReportService {
         List<AttendanceRecord> records = attendanceRecordRepository
                 .findByStudentAndDateRange(student, startDate, endDate);
 
+        // Calculate CUMULATIVE TOTAL up to and including this week
+        LocalDate firstAttendanceDate = getFirstAttendanceDate(student);
+        LocalDate firstMonday = firstAttendanceDate.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate cumulativeEndDate = endDate; // End of current week
+
+        long cumulativeMinutes = attendanceRecordRepository
+                .sumTotalMinutesByStudentAndDateRange(student, firstMonday, cumulativeEndDate);
+
+        return renderWeeklyReport(student, records, taskEntryRepository::findByAttendanceRecordOrderByCompletedAtAsc,
+                cumulativeMinutes, startDate, endDate, weekNumber);
+    }
+
+    /**
+     * Totals and PDF for a week whose records are already loaded. Also used by
+     * WeeklyReportBundleService, which loads a whole cohort's records, tasks
+     * and cumulative minutes up front.
+     */
+    byte[] renderWeeklyReport(Student student, List<AttendanceRecord> records,
+                              Function<AttendanceRecord, List<TaskEntry>> tasks, long cumulativeMinutes,
+                              LocalDate startDate, LocalDate endDate, Integer weekNumber) {
         // Sort records by date (earliest first)
         records.sort(Comparator.comparing(AttendanceRecord::getAttendanceDate));
 
@@ -193,21 +280,11 @@ public class WeeklyReportService {
                 .collect(Collectors.groupingBy(AttendanceRecord::getAttendanceDate));
 
         // Calculate WEEKLY TOTAL (this week only)
-        double weeklyTotal = records.stream()
-                .mapToDouble(r -> r.getTotalHours() != null ? r.getTotalHours() : 0.0)
-                .sum();
-
-        // Calculate CUMULATIVE TOTAL up to and including this week
-        LocalDate firstAttendanceDate = getFirstAttendanceDate(student);
-        LocalDate firstMonday = firstAttendanceDate.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
-        LocalDate cumulativeEndDate = endDate; // End of current week
-
-        List<AttendanceRecord> cumulativeRecords = attendanceRecordRepository
-                .findByStudentAndDateRange(student, firstMonday, cumulativeEndDate);
+        double weeklyTotal = HoursConverter.toHours(records.stream()
+                .mapToLong(AttendanceRecord::getTotalMinutes)
+                .sum());
 
-        double totalCompletedUpToThisWeek = cumulativeRecords.stream()
-                .mapToDouble(r -> r.getTotalHours() != null ? r.getTotalHours() : 0.0)
-                .sum();
+        double totalCompletedUpToThisWeek = HoursConverter.toHours(cumulativeMinutes);
 
         // Calculate HOURS REMAINING based on cumulative total
         double hoursRemaining = student.getRequiredHours() != null
@@ -215,7 +292,7 @@ public class WeeklyReportService {
                 : 0;
 
         // Generate PDF
-        return createPDF(student, recordsByDate, weeklyTotal, totalCompletedUpToThisWeek, hoursRemaining, startDate, endDate, weekNumber);
+        return createPDF(student, recordsByDate, tasks, weeklyTotal, totalCompletedUpToThisWeek, hoursRemaining, startDate, endDate, weekNumber);
     }
 
     /**
@@ -223,6 +300,7 @@ public class WeeklyReportService {
      * FIXED: Only shows days with actual attendance
      */
     private byte[] createPDF(Student student, Map<LocalDate, List<AttendanceRecord>> recordsByDate,
+                             Function<AttendanceRecord, List<TaskEntry>> tasks,
                              double weeklyTotal, double totalCompleted, double hoursRemaining,
                              LocalDate startDate, LocalDate endDate, Integer weekNumber) {
 
@@ -235,6 +313,8 @@ public class WeeklyReportService {
             // Set document properties
             pdf.setDefaultPageSize(PageSize.LETTER);
             document.setMargins(30, 30, 30, 30);
+            // The document's own default font, built from the program loaded at startup
+            document.setFont(PdfFontFactory.createFont(font, PdfEncodings.WINANSI));
 
             // Add logo
             addLogo(document);
@@ -263,7 +343,7 @@ public class WeeklyReportService {
                     .add(new Paragraph("Week No. " + weekNumber).setBold())
                     .setTextAlignment(TextAlignment.CENTER)
                     .setPadding(8)
-                    .setBorder(new com.itextpdf.layout.borders.SolidBorder(1));
+                    .setBorder(WEEK_BORDER);
             weekTable.addCell(weekCell);
             document.add(weekTable);
 
@@ -294,7 +374,7 @@ public class WeeklyReportService {
 
                 for (LocalDate date : sortedDates) {
                     List<AttendanceRecord> dayRecords = recordsByDate.get(date);
-                    addDayRecords(table, date, dayRecords);
+                    addDayRecords(table, date, dayRecords, tasks);
                 }
             }
 
@@ -352,35 +432,19 @@ public class WeeklyReportService {
      * Add logo to document
      */
     private void addLogo(Document document) {
-        try {
-            ClassPathResource imgFile = new ClassPathResource("static/images/concentrix-logo.png");
-
-            if (!imgFile.exists()) {
-                System.err.println("Logo file not found at: static/images/concentrix-logo.png");
-                addTextLogo(document);
-                return;
-            }
-
-            InputStream inputStream = imgFile.getInputStream();
-            byte[] imageBytes = inputStream.readAllBytes();
-            inputStream.close();
-
-            Image logo = new Image(ImageDataFactory.create(imageBytes));
-            logo.setWidth(200);
-            logo.setAutoScale(true);
-            logo.setHorizontalAlignment(HorizontalAlignment.CENTER);
-            logo.setMarginBottom(15);
-
-            document.add(logo);
-
-        } catch (IOException e) {
-            System.err.println("Failed to load logo image: " + e.getMessage());
-            addTextLogo(document);
-        } catch (Exception e) {
-            System.err.println("Failed to process logo image: " + e.getMessage());
-            e.printStackTrace();
+        ImageData logoData = logo;
+        if (logoData == null) {
             addTextLogo(document);
+            return;
         }
+
+        Image image = new Image(logoData);
+        image.setWidth(200);
+        image.setAutoScale(true);
+        image.setHorizontalAlignment(HorizontalAlignment.CENTER);
+        image.setMarginBottom(15);
+
+        document.add(image);
     }
 
     private void addTextLogo(Document document) {
@@ -388,20 +452,21 @@ public class WeeklyReportService {
                 .setTextAlignment(TextAlignment.CENTER)
                 .setFontSize(40)
                 .setBold()
-                .setFontColor(new DeviceRgb(0, 51, 153))
+                .setFontColor(TEXT_LOGO_COLOR)
                 .setMarginBottom(-10));
     }
 
     private void addTableHeader(Table table, String header) {
         Cell cell = new Cell()
                 .add(new Paragraph(header).setBold().setFontSize(10))
-                .setBackgroundColor(new DeviceRgb(230, 230, 230))
+                .setBackgroundColor(HEADER_BACKGROUND)
                 .setTextAlignment(TextAlignment.CENTER)
                 .setPadding(5);
         table.addHeaderCell(cell);
     }
 
-    private void addDayRecords(Table table, LocalDate date, List<AttendanceRecord> dayRecords) {
+    private void addDayRecords(Table table, LocalDate date, List<AttendanceRecord> dayRecords,
+                               Function<AttendanceRecord, List<TaskEntry>> tasks) {
         LocalDateTime firstTimeIn = dayRecords.stream()
                 .map(AttendanceRecord::getTimeIn)
                 .min(Comparator.naturalOrder())
@@ -413,14 +478,13 @@ public class WeeklyReportService {
                 .max(Comparator.naturalOrder())
                 .orElse(null);
 
-        double totalHours = dayRecords.stream()
-                .mapToDouble(r -> r.getTotalHours() != null ? r.getTotalHours() : 0.0)
-                .sum();
+        double totalHours = HoursConverter.toHours(dayRecords.stream()
+                .mapToLong(AttendanceRecord::getTotalMinutes)
+                .sum());
 
         List<TaskEntry> allTasks = new ArrayList<>();
         for (AttendanceRecord record : dayRecords) {
-            List<TaskEntry> tasks = taskEntryRepository.findByAttendanceRecordOrderByCompletedAtAsc(record);
-            allTasks.addAll(tasks);
+            allTasks.addAll(tasks.apply(record));
         }
 
         allTasks.sort(Comparator.comparing(TaskEntry::getCompletedAt));
@@ -15,6 +15,12 @@ let taskCountInterval = null;
 let totpSetupInProgress = false;
 let currentTotpStudent = null;
 
+// Offline punch buffer (flushed to /attendance/punches/batch)
+const PENDING_PUNCHES_KEY = 'pendingPunches';
+const PUNCH_FLUSH_INTERVAL_MS = 15000;
+const PUNCH_BATCH_MAX_EVENTS = 200;
+let punchFlushInProgress = false;
+
 // DOM Elements
 const elements = {
     idBadge: () => document.getElementById('idBadge'),
@@ -44,6 +50,11 @@ function initializeApp() {
     updateCurrentTime();
     setInterval(updateCurrentTime, 1000);
     updateButtonStates();
+
+    // Send punches buffered while the server was unreachable
+    flushPendingPunches();
+    setInterval(flushPendingPunches, PUNCH_FLUSH_INTERVAL_MS);
+    window.addEventListener('online', flushPendingPunches);
 }
 
 // Event Listeners Setup
@@ -283,7 +294,7 @@ function displayTotpSetupModal(setupData) {
     const qrImage = modal.querySelector('#totpQrCode');
     const secretText = modal.querySelector('#totpSecretText');
 
-    qrImage.src = setupData.qrCodeDataUrl;
+    qrImage.src = `${API_BASE_URL}/totp/qr/${setupData.idBadge}?t=${Date.now()}`;
     secretText.textContent = setupData.secret;
 
     currentTotpStudent = setupData;
@@ -842,6 +853,10 @@ async function submitWithTotp(event) {
         return;
     }
 
+    // The moment of the tap - used if the punch has to be buffered
+    const punchedAt = toLocalDateTimeString(new Date());
+    let additionalTasksSaved = true;
+
     showLoading();
     closeTotpVerifyModal();
     setActionCooldown();
@@ -888,6 +903,7 @@ async function submitWithTotp(event) {
                         }
                     } catch (error) {
                         console.error('Error submitting task:', error);
+                        additionalTasksSaved = false;
                     }
                 }
 
@@ -897,15 +913,32 @@ async function submitWithTotp(event) {
         }
 
         // SECOND: Now perform the actual time-in or time-out
-        const response = await fetch(`${API_BASE_URL}/attendance/log-with-totp`, {
-            method: 'POST',
-            headers: { 'Content-Type': 'application/json' },
-            body: JSON.stringify({
+        let response;
+        try {
+            response = await fetch(`${API_BASE_URL}/attendance/log-with-totp`, {
+                method: 'POST',
+                headers: { 'Content-Type': 'application/json' },
+                body: JSON.stringify({
+                    idBadge: idBadge,
+                    totpCode: totpCode,
+                    tasksCompleted: '' // Don't pass tasks here, they're already saved above
+                })
+            });
+        } catch (networkError) {
+            // Server unreachable - keep the punch on this kiosk and send it later
+            bufferPunch({
+                eventId: newPunchEventId(),
                 idBadge: idBadge,
                 totpCode: totpCode,
-                tasksCompleted: '' // Don't pass tasks here, they're already saved above
-            })
-        });
+                punchedAt: punchedAt,
+                // Tasks that couldn't be saved travel with the time-out instead
+                tasksCompleted: action === 'TIME_OUT' && !additionalTasksSaved ? additionalTasks : ''
+            });
+            showAlert('Server unreachable. Your ' + (action === 'TIME_IN' ? 'time in' : 'time out') +
+                ' was saved on this kiosk and will be sent automatically.', 'warning');
+            clearIdInput();
+            return;
+        }
 
         const data = await response.json();
 
@@ -929,6 +962,86 @@ async function submitWithTotp(event) {
     }
 }
 
+// ==================== OFFLINE PUNCH BUFFER ====================
+
+function getPendingPunches() {
+    try {
+        return JSON.parse(localStorage.getItem(PENDING_PUNCHES_KEY)) || [];
+    } catch (error) {
+        return [];
+    }
+}
+
+function savePendingPunches(punches) {
+    if (punches.length > 0) {
+        localStorage.setItem(PENDING_PUNCHES_KEY, JSON.stringify(punches));
+    } else {
+        localStorage.removeItem(PENDING_PUNCHES_KEY);
+    }
+}
+
+function bufferPunch(punch) {
+    const punches = getPendingPunches();
+    punches.push(punch);
+    savePendingPunches(punches);
+}
+
+function newPunchEventId() {
+    if (window.crypto && crypto.randomUUID) {
+        return crypto.randomUUID();
+    }
+    return Date.now().toString(36) + '-' + Math.random().toString(36).slice(2);
+}
+
+// Kiosk local time without zone, the format the server uses for LocalDateTime
+function toLocalDateTimeString(date) {
+    return date.getFullYear() + '-' +
+        String(date.getMonth() + 1).padStart(2, '0') + '-' +
+        String(date.getDate()).padStart(2, '0') + 'T' +
+        String(date.getHours()).padStart(2, '0') + ':' +
+        String(date.getMinutes()).padStart(2, '0') + ':' +
+        String(date.getSeconds()).padStart(2, '0');
+}
+
+// Send buffered punches in one request; every event that gets a result is final and leaves the buffer
+async function flushPendingPunches() {
+    const punches = getPendingPunches();
+    if (punches.length === 0 || punchFlushInProgress) return;
+
+    punchFlushInProgress = true;
+    try {
+        const response = await fetch(`${API_BASE_URL}/attendance/punches/batch`, {
+            method: 'POST',
+            headers: { 'Content-Type': 'application/json' },
+            body: JSON.stringify({ kioskId: window.location.host, events: punches.slice(0, PUNCH_BATCH_MAX_EVENTS) })
+        });
+
+        if (!response.ok) {
+            console.error('Punch batch rejected:', response.status);
+            return;
+        }
+
+        const data = await response.json();
+        const answered = new Set(data.results.map(result => result.eventId));
+
+        // Punches buffered while this request was in flight stay for the next flush
+        savePendingPunches(getPendingPunches().filter(punch => !answered.has(punch.eventId)));
+
+        data.results
+            .filter(result => !result.success)
+            .forEach(result => showAlert(`Saved punch for badge ${result.idBadge} was not recorded: ${result.message}`, 'error'));
+
+        if (data.applied > 0) {
+            showAlert(`${data.applied} saved punch(es) sent to the server`, 'success');
+        }
+    } catch (error) {
+        // Still offline - try again on the next interval
+        console.log('Punch buffer flush failed:', error.message);
+    } finally {
+        punchFlushInProgress = false;
+    }
+}
+
 function showTotpVerificationModal(action, tasksCompleted = '') {
     const modal = document.getElementById('totpVerifyModal') || createTotpVerifyModal();
     const actionText = action === 'TIME_IN' ? 'Time In' : 'Time Out';
@@ -0,0 +1,165 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.AttendanceRequest;
+import Attendance.OjtAttendanceApplication.dto.AttendanceResponse;
+import Attendance.OjtAttendanceApplication.dto.KioskPunchContext;
+import Attendance.OjtAttendanceApplication.entity.*;
+import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
+import Attendance.OjtAttendanceApplication.repository.HoursLedgerRepository;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import Attendance.OjtAttendanceApplication.repository.TaskEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Every repository call on the time-out path is one SQL statement (the
+ * record/student fetch join, the task list, the record UPDATE, the ledger
+ * INSERT and the total increment), so counting repository calls counts the
+ * queries a kiosk time-out costs.
+ */
+@ExtendWith(MockitoExtension.class)
+class AttendanceServiceTimeOutTest {
+
+    private static final long STUDENT_ID = 3L;
+    private static final long RECORD_ID = 7L;
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    @Mock
+    private AttendanceRecordRepository attendanceRecordRepository;
+
+    @Mock
+    private TaskEntryRepository taskEntryRepository;
+
+    @Mock
+    private HoursLedgerRepository hoursLedgerRepository;
+
+    @Mock
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    @Spy
+    private HoursLedgerService hoursLedgerService = new HoursLedgerService();
+
+    @Spy
+    private TaskService taskService = new TaskService();
+
+    @Spy
+    private HoursCalculationEngine hoursCalculationEngine = new HoursCalculationEngine();
+
+    @InjectMocks
+    private AttendanceService attendanceService;
+
+    private Student student;
+    private AttendanceRecord record;
+
+    @BeforeEach
+    void setUp() {
+        student = new Student("0042", "Juan Dela Cruz", "Test University");
+        student.setId(STUDENT_ID);
+        student.setStatus(StudentStatus.ACTIVE);
+
+        record = new AttendanceRecord(student, LocalDateTime.now().minusHours(3));
+        record.setId(RECORD_ID);
+        record.setStatus(AttendanceStatus.TIMED_IN);
+
+        when(attendanceRecordRepository.findOpenRecordWithStudent(RECORD_ID)).thenReturn(Optional.of(record));
+
+        ReflectionTestUtils.setField(hoursLedgerService, "hoursLedgerRepository", hoursLedgerRepository);
+        ReflectionTestUtils.setField(hoursLedgerService, "studentRepository", studentRepository);
+        lenient().when(studentRepository.addToTotalAccumulatedMinutes(eq(STUDENT_ID), anyLong())).thenReturn(1);
+    }
+
+    @Test
+    void timeOutWithLoggedTasksLoadsAndSavesEachEntityOnce() {
+        LocalDateTime start = record.getTimeIn();
+        when(taskEntryRepository.findByAttendanceRecordOrderByCompletedAtAsc(record)).thenReturn(List.of(
+                new TaskEntry(record, "Set up dev environment", start.plusMinutes(30)),
+                new TaskEntry(record, "Fixed login bug", start.plusMinutes(90), true)));
+
+        AttendanceResponse response = timeOut("Wrote docs");
+
+        assertEquals("TIME_OUT", response.getAction());
+        assertEquals("=== Tasks Completed Today ===\n" +
+                        "1. [" + start.plusMinutes(30).toLocalTime() + "] Set up dev environment\n" +
+                        "2. [" + start.plusMinutes(90).toLocalTime() + "] Fixed login bug [Added during time-out]\n\n" +
+                        "=== Additional Tasks (Added during time-out) ===\nWrote docs",
+                record.getTasksCompleted());
+        assertQueriesPerTimeOut();
+    }
+
+    @Test
+    void timeOutWithoutLoggedTasksUsesSubmittedTasks() {
+        when(taskEntryRepository.findByAttendanceRecordOrderByCompletedAtAsc(record)).thenReturn(List.of());
+
+        timeOut("Reviewed pull requests");
+
+        assertEquals("Reviewed pull requests", record.getTasksCompleted());
+        assertEquals(AttendanceStatus.TIMED_OUT, record.getStatus());
+        assertQueriesPerTimeOut();
+    }
+
+    @Test
+    void approvalMessageSurvivesTimeOut() {
+        record.setTasksCompleted("[ADMIN APPROVED SCHEDULE OVERRIDE] Early work hours will be counted for this session");
+        when(taskEntryRepository.findByAttendanceRecordOrderByCompletedAtAsc(record)).thenReturn(List.of());
+
+        timeOut("Reviewed pull requests");
+
+        assertEquals("Reviewed pull requests\n\n" +
+                        "[ADMIN APPROVED SCHEDULE OVERRIDE] Early work hours will be counted for this session",
+                record.getTasksCompleted());
+    }
+
+    @Test
+    void timeOutWithoutAnyTasksIsRejectedBeforeWriting() {
+        when(taskEntryRepository.findByAttendanceRecordOrderByCompletedAtAsc(record)).thenReturn(List.of());
+
+        assertThrows(RuntimeException.class, () -> timeOut("  "));
+
+        verify(attendanceRecordRepository, never()).save(any());
+        verifyNoInteractions(studentRepository, hoursLedgerRepository);
+    }
+
+    // ==================== HELPERS ====================
+
+    private AttendanceResponse timeOut(String tasksCompleted) {
+        KioskPunchContext context = new KioskPunchContext(STUDENT_ID, "0042", student.getFullName(),
+                StudentStatus.ACTIVE, null, null, 5, false, null, false, 0L, null);
+        context.setOpenSessionId(RECORD_ID);
+
+        return attendanceService.processAttendance(new AttendanceRequest("0042", tasksCompleted), context);
+    }
+
+    private void assertQueriesPerTimeOut() {
+        verify(attendanceRecordRepository).findOpenRecordWithStudent(RECORD_ID);
+        verify(taskEntryRepository).findByAttendanceRecordOrderByCompletedAtAsc(record);
+        verify(attendanceRecordRepository).save(record);
+
+        // The total moves by the record's minutes in the database, and the move is in the ledger
+        ArgumentCaptor<HoursLedgerEntry> entry = ArgumentCaptor.forClass(HoursLedgerEntry.class);
+        verify(hoursLedgerRepository).save(entry.capture());
+        assertEquals(HoursLedgerReason.TIME_OUT, entry.getValue().getReason());
+        assertEquals(RECORD_ID, entry.getValue().getAttendanceRecordId());
+        assertEquals(record.getTotalMinutes(), entry.getValue().getDeltaMinutes());
+        verify(studentRepository).addToTotalAccumulatedMinutes(STUDENT_ID, (long) record.getTotalMinutes());
+        assertEquals(record.getTotalMinutes(), student.getTotalAccumulatedMinutes());
+
+        verifyNoMoreInteractions(attendanceRecordRepository, taskEntryRepository, studentRepository,
+                hoursLedgerRepository);
+    }
+}
@@ -0,0 +1,210 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.HoursCalculation;
+import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
+import Attendance.OjtAttendanceApplication.entity.AttendanceStatus;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static Attendance.OjtAttendanceApplication.service.BatchRecalculationService.RecordColumns.NO_UPDATED_AT;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BatchRecalculationServiceTest {
+
+    private final HoursCalculationEngine engine = new HoursCalculationEngine();
+
+    @Test
+    void columnsMatchThePerRecordCalculation() {
+        Random random = new Random(7);
+        LocalTime[][] schedules = {
+                null,
+                {LocalTime.of(8, 0), LocalTime.of(17, 0)},
+                {LocalTime.of(22, 0), LocalTime.of(6, 0)}
+        };
+
+        List<Student> students = new ArrayList<>();
+        BatchRecalculationService.StudentColumns studentColumns = new BatchRecalculationService.StudentColumns();
+        for (int s = 0; s < 90; s++) {
+            Student student = new Student(String.format("%04d", s), "Student " + s, "Test University");
+            LocalTime[] schedule = schedules[s % schedules.length];
+            if (schedule != null) {
+                student.setScheduledStartTime(schedule[0]);
+                student.setScheduledEndTime(schedule[1]);
+                student.setGracePeriodMinutes(s % 2 == 0 ? 5 : 15);
+                student.setScheduleActive(true);
+            }
+            students.add(student);
+            studentColumns.add(s,
+                    schedule != null ? HoursCalculationEngine.toMinuteOfDay(schedule[0]) : HoursCalculationEngine.NO_SCHEDULE,
+                    schedule != null ? HoursCalculationEngine.toMinuteOfDay(schedule[1]) : HoursCalculationEngine.NO_SCHEDULE,
+                    student.getGracePeriodMinutes(), 0, student.getScheduleVersion());
+        }
+
+        // More than one compute slice so the parallel path is exercised
+        List<AttendanceRecord> records = new ArrayList<>();
+        BatchRecalculationService.RecordColumns recordColumns = new BatchRecalculationService.RecordColumns();
+        for (int i = 0; i < 10_000; i++) {
+            int s = i % students.size();
+            LocalDateTime timeIn = LocalDate.of(2025, 3, 3).plusDays(i % 40)
+                    .atTime(6, 0).plusMinutes(random.nextInt(960)).plusSeconds(random.nextInt(60));
+            AttendanceRecord record = new AttendanceRecord(students.get(s), timeIn);
+            record.setTimeOut(timeIn.plusMinutes(random.nextInt(900)).plusSeconds(random.nextInt(60)));
+            record.setTasksCompleted(i % 11 == 0 ? "[ADMIN APPROVED SCHEDULE OVERRIDE]" : "Worked");
+            records.add(record);
+
+            recordColumns.add(i, s,
+                    HoursCalculationEngine.toEpochSecond(record.getTimeIn()),
+                    HoursCalculationEngine.toEpochSecond(record.getTimeOut()),
+                    AttendanceStatus.TIMED_OUT,
+                    engine.isScheduleOverrideApproved(record.getTasksCompleted()),
+                    0, 0, 0, 0, false, 0, NO_UPDATED_AT);
+        }
+
+        recordColumns.compute(engine, studentColumns);
+
+        for (int i = 0; i < records.size(); i++) {
+            HoursCalculation expected = engine.calculate(records.get(i));
+            assertEquals(expected.getTotalMinutes(), recordColumns.newTotalMinutes[i], "record " + i);
+            assertEquals(expected.getRegularMinutes(), recordColumns.newRegularMinutes[i], "record " + i);
+            assertEquals(expected.getOvertimeMinutes(), recordColumns.newOvertimeMinutes[i], "record " + i);
+            assertEquals(expected.getUndertimeMinutes(), recordColumns.newUndertimeMinutes[i], "record " + i);
+            assertEquals(expected.isBreakDeducted(), recordColumns.newBreakDeducted[i], "record " + i);
+            assertEquals(expected.getInputsFingerprint(), recordColumns.newCalculationInputs[i], "record " + i);
+        }
+    }
+
+    @Test
+    void keepsCorrectionsAndOnlyReportsRealChanges() {
+        BatchRecalculationService.StudentColumns students = new BatchRecalculationService.StudentColumns();
+        students.add(10, HoursCalculationEngine.NO_SCHEDULE, HoursCalculationEngine.NO_SCHEDULE, 5, 1_000, 0);
+        students.add(20, HoursCalculationEngine.NO_SCHEDULE, HoursCalculationEngine.NO_SCHEDULE, 5, 480, 0);
+
+        long fresh = HoursCalculationEngine.inputsFingerprint(0, false);
+        long day = HoursCalculationEngine.toEpochSecond(LocalDate.of(2025, 3, 10).atTime(8, 0));
+        BatchRecalculationService.RecordColumns records = new BatchRecalculationService.RecordColumns();
+        // 08:00-17:00 is 8 hours after the break: one stale, one already right
+        records.add(1, 0, day, day + 9 * 3600, AttendanceStatus.TIMED_OUT, false, 420, 420, 0, 60, true, fresh,
+                NO_UPDATED_AT);
+        records.add(2, 1, day, day + 9 * 3600, AttendanceStatus.TIMED_OUT, false, 480, 480, 0, 0, true, fresh,
+                NO_UPDATED_AT);
+        // Admin correction keeps its 10 hours, an open session counts for nothing
+        records.add(3, 0, day, day + 3600, AttendanceStatus.ADMIN_CORRECTED, false, 600, 480, 120, 0, false, 0,
+                NO_UPDATED_AT);
+        records.add(4, 0, day, BatchRecalculationService.RecordColumns.NO_TIME_OUT, AttendanceStatus.TIMED_IN,
+                false, 0, 0, 0, 0, false, 0, NO_UPDATED_AT);
+
+        records.compute(engine, students);
+
+        assertArrayEquals(new int[]{0}, records.changedRecords());
+        assertEquals(480, records.newTotalMinutes[0]);
+        assertEquals(600, records.newTotalMinutes[2]);
+
+        // Student 10: 480 + 600 recorded against 1000 stored; student 20 is right
+        assertArrayEquals(new long[]{80, 0}, records.studentDeltas(students));
+        assertEquals(1, students.indexOf(20));
+        assertEquals(-1, students.indexOf(15));
+    }
+
+    @Test
+    void writesRecordsWhoseInputsMovedEvenIfTheirHoursDidNot() {
+        BatchRecalculationService.StudentColumns students = new BatchRecalculationService.StudentColumns();
+        students.add(10, HoursCalculationEngine.NO_SCHEDULE, HoursCalculationEngine.NO_SCHEDULE, 5, 960, 3);
+
+        long day = HoursCalculationEngine.toEpochSecond(LocalDate.of(2025, 3, 10).atTime(8, 0));
+        BatchRecalculationService.RecordColumns records = new BatchRecalculationService.RecordColumns();
+        // Right hours under schedule version 2, then under the current version 3
+        records.add(1, 0, day, day + 9 * 3600, AttendanceStatus.TIMED_OUT, false, 480, 480, 0, 0, true,
+                HoursCalculationEngine.inputsFingerprint(2, false), NO_UPDATED_AT);
+        records.add(2, 0, day, day + 9 * 3600, AttendanceStatus.TIMED_OUT, false, 480, 480, 0, 0, true,
+                HoursCalculationEngine.inputsFingerprint(3, false), NO_UPDATED_AT);
+
+        records.compute(engine, students);
+
+        assertArrayEquals(new int[]{0}, records.changedRecords());
+        assertEquals(HoursCalculationEngine.inputsFingerprint(3, false), records.newCalculationInputs[0]);
+        assertArrayEquals(new long[]{0}, records.studentDeltas(students));
+    }
+
+    @Test
+    void groupsChangedRecordsByStudent() {
+        BatchRecalculationService.RecordColumns records = new BatchRecalculationService.RecordColumns();
+        int[] studentOfRecord = {2, 0, 2, 1, 0, 2};
+        for (int i = 0; i < studentOfRecord.length; i++) {
+            records.add(i, studentOfRecord[i], 0, 0, AttendanceStatus.TIMED_OUT, false, 0, 0, 0, 0, false, 0,
+                    NO_UPDATED_AT);
+        }
+
+        int[] starts = new int[4];
+        int[] grouped = records.groupByStudent(new int[]{0, 1, 2, 4, 5}, starts);
+
+        assertArrayEquals(new int[]{0, 2, 2, 5}, starts);
+        assertArrayEquals(new int[]{1, 4, 0, 2, 5}, grouped);
+    }
+
+    @Test
+    void recordsChangedSinceTheSnapshotAreLeftOutOfTheMove() throws SQLException {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        // The second record was timed out again by an admin correction after the snapshot
+        when(jdbcTemplate.batchUpdate(startsWith("UPDATE attendance_records"), any(BatchPreparedStatementSetter.class)))
+                .thenReturn(new int[]{1, 0});
+
+        BatchRecalculationService service = new BatchRecalculationService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "transactionManager", transactionManager);
+
+        BatchRecalculationService.StudentColumns students = new BatchRecalculationService.StudentColumns();
+        students.add(10, HoursCalculationEngine.NO_SCHEDULE, HoursCalculationEngine.NO_SCHEDULE, 5, 840, 0);
+
+        // Two 08:00-17:00 days stored as 7 hours each; both are 8
+        LocalDateTime snapshotUpdatedAt = LocalDateTime.of(2025, 3, 11, 17, 0, 5, 123_456_000);
+        long fresh = HoursCalculationEngine.inputsFingerprint(0, false);
+        BatchRecalculationService.RecordColumns records = new BatchRecalculationService.RecordColumns();
+        for (int day = 0; day < 2; day++) {
+            long timeIn = HoursCalculationEngine.toEpochSecond(LocalDate.of(2025, 3, 10 + day).atTime(8, 0));
+            records.add(day + 1, 0, timeIn, timeIn + 9 * 3600, AttendanceStatus.TIMED_OUT, false, 420, 420, 0, 60,
+                    true, fresh, BatchRecalculationService.RecordColumns.toEpochMicros(snapshotUpdatedAt));
+        }
+        records.compute(engine, students);
+        long[] deltas = records.studentDeltas(students);
+        assertEquals(120, deltas[0]);
+
+        BatchRecalculationService.WriteResult result = service.write(students, records, records.changedRecords(), deltas);
+
+        // Only the record this run rewrote moves the total
+        assertEquals(1, result.skippedRecords);
+        assertEquals(1, result.movedStudents);
+        assertEquals(60, deltas[0]);
+
+        ArgumentCaptor<BatchPreparedStatementSetter> recordUpdate = ArgumentCaptor.forClass(BatchPreparedStatementSetter.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE attendance_records"), recordUpdate.capture());
+        PreparedStatement recordStatement = mock(PreparedStatement.class);
+        recordUpdate.getValue().setValues(recordStatement, 0);
+        verify(recordStatement).setObject(9, snapshotUpdatedAt);
+
+        ArgumentCaptor<BatchPreparedStatementSetter> studentUpdate = ArgumentCaptor.forClass(BatchPreparedStatementSetter.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE students"), studentUpdate.capture());
+        PreparedStatement studentStatement = mock(PreparedStatement.class);
+        studentUpdate.getValue().setValues(studentStatement, 0);
+        verify(studentStatement).setLong(1, 60L);
+        verify(studentStatement).setLong(2, 10L);
+    }
+}
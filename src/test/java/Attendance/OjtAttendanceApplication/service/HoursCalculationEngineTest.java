@@ -0,0 +1,162 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.HoursCalculation;
+import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+/**
+ * Golden outputs recorded from the per-service calculations the engine
+ * replaced (AttendanceService, RecalculationService and
+ * ScheduleOverrideService all produced these values). A change here is a
+ * change to how students' hours are counted.
+ */
+class HoursCalculationEngineTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+    private static final String AUTO_TIME_OUT = "AUTO TIME-OUT: Student did not time out manually after 16 hours";
+
+    private final HoursCalculationEngine engine = new HoursCalculationEngine();
+
+    /**
+     * name, schedule (start, end, grace or null for none), time-in, days
+     * until time-out, time-out, tasks, then total / regular / overtime /
+     * undertime hours and whether the break was deducted
+     */
+    static Stream<Arguments> goldenSessions() {
+        return Stream.of(
+                // No schedule: every minute counts
+                arguments("no schedule, full day", null, "08:00", 0, "17:00", null, 8, 8, 0, 0, true),
+                arguments("no schedule, 4h30", null, "08:00", 0, "12:30", null, 4, 4, 0, 4, false),
+                arguments("no schedule, exactly 5h", null, "08:00", 0, "13:00", null, 4, 4, 0, 4, true),
+                arguments("no schedule, 4h59m59s", null, "08:00", 0, "12:59:59", null, 5, 5, 0, 3, false),
+                arguments("no schedule, 7h54 after break", null, "08:00", 0, "16:54", null, 7, 7, 0, 1, true),
+                arguments("no schedule, 7h55 after break", null, "08:00", 0, "16:55", null, 8, 8, 0, 0, true),
+                arguments("no schedule, overtime", null, "08:00", 0, "20:30", null, 11, 8, 3, 0, true),
+                arguments("no schedule, auto time-out", null, "08:00", 1, "00:00", AUTO_TIME_OUT, 15, 8, 7, 0, true),
+
+                // Day schedule 08:00-17:00
+                arguments("early arrival", schedule("08:00", "17:00", 5), "07:00", 0, "17:00", null, 8, 8, 0, 0, true),
+                arguments("within grace", schedule("08:00", "17:00", 5), "08:04", 0, "17:00", null, 8, 8, 0, 0, true),
+                arguments("late, left at scheduled end", schedule("08:00", "17:00", 5), "08:20", 0, "17:00", null, 7, 7, 0, 0, true),
+                arguments("late, stayed past scheduled end", schedule("08:00", "17:00", 5), "08:20", 0, "17:30", null, 7, 7, 0, 0, true),
+                arguments("overtime 1h55", schedule("08:00", "17:00", 5), "08:00", 0, "18:55", null, 10, 8, 2, 0, true),
+                arguments("left 55 minutes early", schedule("08:00", "17:00", 5), "08:00", 0, "16:05", null, 7, 7, 0, 1, true),
+                arguments("short day", schedule("08:00", "17:00", 5), "08:00", 0, "11:00", null, 3, 3, 0, 6, false),
+                arguments("left before scheduled start", schedule("08:00", "17:00", 5), "06:00", 0, "07:30", null, 0, 0, 0, 9, false),
+                arguments("late by seconds", schedule("08:00", "17:00", 5), "08:05:30", 0, "17:00", null, 7, 7, 0, 0, true),
+                arguments("custom grace", schedule("09:00", "18:00", 15), "09:40", 0, "18:25", null, 7, 7, 0, 0, true),
+                arguments("no grace set", schedule("08:00", "17:00", null), "08:10", 0, "17:05", null, 7, 7, 0, 0, true),
+                arguments("day schedule, auto time-out", schedule("08:00", "17:00", 5), "08:00", 1, "00:00", AUTO_TIME_OUT, 15, 15, 0, 17, true),
+
+                // Night schedule 22:00-06:00
+                arguments("night shift overtime", schedule("22:00", "06:00", 5), "21:50", 1, "06:10", null, 7, 7, 0, 0, true),
+                arguments("night shift undertime", schedule("22:00", "06:00", 5), "22:00", 1, "05:00", null, 6, 6, 0, 1, true),
+                arguments("night schedule, same-day session", schedule("22:00", "06:00", 5), "22:00", 0, "23:30", null, 1, 1, 0, 6, false),
+                arguments("grace period wraps midnight", schedule("23:58", "07:58", 5), "23:59", 1, "08:00", null, 6, 6, 0, 0, true),
+
+                // Schedule overrides
+                arguments("approved override", schedule("08:00", "17:00", 5), "06:00", 0, "17:00",
+                        "Docs\n\n[ADMIN APPROVED SCHEDULE OVERRIDE]", 10, 8, 2, 0, true),
+                arguments("approved early hours", schedule("08:00", "17:00", 5), "06:00", 0, "17:00",
+                        "[ADMIN APPROVED: Early work hours counted by admin]", 10, 8, 2, 0, true),
+                arguments("approval note for session", schedule("08:00", "17:00", 5), "06:30", 0, "15:00",
+                        "Early work hours will be counted for this session", 7, 7, 0, 1, true),
+                arguments("pending override", schedule("08:00", "17:00", 5), "06:00", 0, "17:00",
+                        "[SCHEDULE OVERRIDE REQUESTED]", 8, 8, 0, 0, true)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("goldenSessions")
+    void matchesGoldenOutput(String name, Student student, String timeIn, int days, String timeOut, String tasks,
+                             int total, int regular, int overtime, int undertime, boolean breakDeducted) {
+        AttendanceRecord record = record(student, timeIn, days, timeOut, tasks);
+
+        HoursCalculation calculation = engine.calculate(record);
+
+        assertEquals(total * 60, calculation.getTotalMinutes());
+        assertEquals(regular * 60, calculation.getRegularMinutes());
+        assertEquals(overtime * 60, calculation.getOvertimeMinutes());
+        assertEquals(undertime * 60, calculation.getUndertimeMinutes());
+        assertEquals(breakDeducted, calculation.isBreakDeducted());
+    }
+
+    @Test
+    void primitiveCallsReuseOneResult() {
+        HoursCalculationEngine.Result result = new HoursCalculationEngine.Result();
+        long timeIn = HoursCalculationEngine.toEpochSecond(DAY.atTime(8, 20));
+        int start = HoursCalculationEngine.toMinuteOfDay(LocalTime.of(8, 0));
+        int end = HoursCalculationEngine.toMinuteOfDay(LocalTime.of(17, 0));
+
+        engine.calculate(timeIn, timeIn + 3 * 3600, start, end, 5, result);
+        assertEquals(180, result.getTotalMinutes());
+        assertEquals(360, result.getUndertimeMinutes());
+        assertFalse(result.isBreakDeducted());
+
+        engine.calculate(timeIn, timeIn + 12 * 3600, HoursCalculationEngine.NO_SCHEDULE,
+                HoursCalculationEngine.NO_SCHEDULE, 5, result);
+        assertEquals(660, result.getTotalMinutes());
+        assertEquals(180, result.getOvertimeMinutes());
+        assertEquals(0, result.getUndertimeMinutes());
+        assertTrue(result.isBreakDeducted());
+    }
+
+    @Test
+    void inactiveScheduleCountsAllHours() {
+        Student student = schedule("08:00", "17:00", 5);
+        student.setScheduleActive(false);
+
+        HoursCalculation calculation = engine.calculate(record(student, "06:00", 0, "17:00", null));
+
+        assertEquals(600, calculation.getTotalMinutes());
+        assertEquals(120, calculation.getOvertimeMinutes());
+    }
+
+    @Test
+    void fingerprintTracksScheduleVersionOverrideAndRules() {
+        Student student = schedule("08:00", "17:00", 5);
+        student.setScheduleVersion(4);
+
+        long plain = engine.calculate(record(student, "08:00", 0, "17:00", "Worked")).getInputsFingerprint();
+        long overridden = engine.calculate(record(student, "08:00", 0, "17:00",
+                "[ADMIN APPROVED SCHEDULE OVERRIDE]")).getInputsFingerprint();
+
+        assertEquals(HoursCalculationEngine.inputsFingerprint(4, false), plain);
+        assertEquals(HoursCalculationEngine.inputsFingerprint(4, true), overridden);
+        assertNotEquals(HoursCalculationEngine.inputsFingerprint(5, false), plain);
+        assertEquals(HoursCalculationEngine.RULES_VERSION, plain >>> 32);
+    }
+
+    // ==================== HELPERS ====================
+
+    private static Student schedule(String start, String end, Integer gracePeriodMinutes) {
+        Student student = new Student("0042", "Juan Dela Cruz", "Test University");
+        student.setScheduledStartTime(LocalTime.parse(start));
+        student.setScheduledEndTime(LocalTime.parse(end));
+        student.setGracePeriodMinutes(gracePeriodMinutes);
+        student.setScheduleActive(true);
+        return student;
+    }
+
+    private static AttendanceRecord record(Student student, String timeIn, int days, String timeOut, String tasks) {
+        if (student == null) {
+            student = new Student("0042", "Juan Dela Cruz", "Test University");
+        }
+        AttendanceRecord record = new AttendanceRecord(student, LocalDateTime.of(DAY, LocalTime.parse(timeIn)));
+        record.setTimeOut(LocalDateTime.of(DAY.plusDays(days), LocalTime.parse(timeOut)));
+        record.setTasksCompleted(tasks);
+        return record;
+    }
+}
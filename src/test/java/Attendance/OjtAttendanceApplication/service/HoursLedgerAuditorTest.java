@@ -0,0 +1,98 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.HoursDrift;
+import Attendance.OjtAttendanceApplication.entity.HoursLedgerReason;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HoursLedgerAuditorTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final HoursLedgerService hoursLedgerService = mock(HoursLedgerService.class);
+    private final RecalculationJobService recalculationJobService = mock(RecalculationJobService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private HoursLedgerAuditor auditor;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        // No job active: the repairs run
+        when(recalculationJobService.runUnlessJobActive(any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+
+        // Student 1 lost a time-out of 2 hours; student 2's total was set by hand
+        // (records agree, ledger doesn't); student 3 was counted twice and lost another update
+        when(jdbcTemplate.query(anyString(), ArgumentMatchers.<RowMapper<HoursDrift>>any())).thenReturn(List.of(
+                new HoursDrift(1L, "0001", "Student 0001", 600, 720, 600),
+                new HoursDrift(2L, "0002", "Student 0002", 480, 480, 420),
+                new HoursDrift(3L, "0003", "Student 0003", 1000, 900, 1000)));
+
+        auditor = new HoursLedgerAuditor(transactionManager);
+        ReflectionTestUtils.setField(auditor, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(auditor, "hoursLedgerService", hoursLedgerService);
+        ReflectionTestUtils.setField(auditor, "recalculationJobService", recalculationJobService);
+    }
+
+    @Test
+    void auditWithoutRepairOnlyReportsDrift() {
+        Map<String, Object> result = auditor.audit(false);
+
+        assertEquals(3, result.get("studentsWithDrift"));
+        assertEquals(2, result.get("recordDrifts"));
+        assertEquals(1, result.get("ledgerDrifts"));
+        assertEquals(0, result.get("repairedStudents"));
+        assertEquals(3, ((List<?>) result.get("drifts")).size());
+        assertSame(result, auditor.getLastAudit());
+        verifyNoInteractions(hoursLedgerService, recalculationJobService);
+    }
+
+    @Test
+    void repairMovesTotalsOntoTheirRecordsThroughTheLedger() {
+        Map<String, Object> result = auditor.audit(true);
+
+        verify(hoursLedgerService).record(1L, null, 120L, HoursLedgerReason.DRIFT_REPAIR);
+        verify(hoursLedgerService).record(3L, null, -100L, HoursLedgerReason.DRIFT_REPAIR);
+        verifyNoMoreInteractions(hoursLedgerService);
+        assertEquals(2, result.get("repairedStudents"));
+        assertEquals(20.0 / 60, (double) result.get("hoursRepaired"), 0.01);
+    }
+
+    @Test
+    void oneFailedRepairDoesNotStopTheOthers() {
+        doThrow(new RuntimeException("Lock wait timeout"))
+                .when(hoursLedgerService).record(eq(1L), isNull(), anyLong(), any());
+
+        Map<String, Object> result = auditor.audit(true);
+
+        verify(hoursLedgerService).record(3L, null, -100L, HoursLedgerReason.DRIFT_REPAIR);
+        assertEquals(1, result.get("repairedStudents"));
+    }
+
+    @Test
+    void repairWaitsForARunningRecalculationJob() {
+        doAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get())
+                .when(recalculationJobService).runUnlessJobActive(any(), any());
+
+        Map<String, Object> result = auditor.audit(true);
+
+        assertEquals(true, result.get("repairPostponed"));
+        assertEquals(2, result.get("recordDrifts"));
+        assertEquals(0, result.get("repairedStudents"));
+        verifyNoInteractions(hoursLedgerService);
+    }
+}
@@ -0,0 +1,166 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.entity.OutboxEvent;
+import Attendance.OjtAttendanceApplication.entity.OutboxEventStatus;
+import Attendance.OjtAttendanceApplication.entity.OutboxEventType;
+import Attendance.OjtAttendanceApplication.repository.OutboxEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OutboxDispatcherTest {
+
+    private final OutboxEventRepository repository = mock(OutboxEventRepository.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final ScheduleOverrideService scheduleOverrideService = mock(ScheduleOverrideService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final List<OutboxEvent> pending = new ArrayList<>();
+    private final List<Long> delivered = new ArrayList<>();
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        // Mirrors the query: due pending events not queued behind a backing-off event of the same student
+        when(repository.findDeliverable(any(LocalDateTime.class), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    LocalDateTime now = invocation.getArgument(0);
+                    Pageable page = invocation.getArgument(1);
+                    return pending.stream()
+                            .filter(event -> event.getStatus() == OutboxEventStatus.PENDING && event.isDue(now))
+                            .filter(event -> pending.stream().noneMatch(earlier ->
+                                    earlier.getStudentId().equals(event.getStudentId())
+                                            && earlier.getStatus() == OutboxEventStatus.PENDING
+                                            && earlier.getId() < event.getId()
+                                            && !earlier.isDue(now)))
+                            .limit(page.getPageSize())
+                            .toList();
+                });
+
+        doAnswer(invocation -> {
+            delivered.add(invocation.<OutboxEvent>getArgument(0).getId());
+            return null;
+        }).when(notificationService).handleOutboxEvent(any());
+
+        dispatcher = new OutboxDispatcher(transactionManager);
+        ReflectionTestUtils.setField(dispatcher, "outboxEventRepository", repository);
+        ReflectionTestUtils.setField(dispatcher, "notificationService", notificationService);
+        ReflectionTestUtils.setField(dispatcher, "scheduleOverrideService", scheduleOverrideService);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+    }
+
+    @Test
+    void deliversEventsInOrderAndMarksThemDone() {
+        OutboxEvent first = event(1L, 10L, OutboxEventType.MISSING_TIME_OUT);
+        OutboxEvent second = event(2L, 20L, OutboxEventType.LONG_WORK_SESSION);
+        OutboxEvent third = event(3L, 10L, OutboxEventType.AUTO_TIME_OUT_OCCURRED);
+
+        assertEquals(3, dispatcher.dispatchPending());
+
+        assertEquals(List.of(1L, 2L, 3L), delivered);
+        for (OutboxEvent event : List.of(first, second, third)) {
+            assertEquals(OutboxEventStatus.DONE, event.getStatus());
+            assertNotNull(event.getProcessedAt());
+        }
+    }
+
+    @Test
+    void failedEventHoldsBackLaterEventsOfTheSameStudentOnly() {
+        OutboxEvent failing = event(1L, 10L, OutboxEventType.MISSING_TIME_OUT);
+        OutboxEvent sameStudent = event(2L, 10L, OutboxEventType.AUTO_TIME_OUT_OCCURRED);
+        OutboxEvent otherStudent = event(3L, 20L, OutboxEventType.MISSING_TIME_OUT);
+        failOnce(failing);
+
+        assertEquals(1, dispatcher.dispatchPending());
+
+        assertEquals(List.of(3L), delivered);
+        assertEquals(OutboxEventStatus.DONE, otherStudent.getStatus());
+        assertEquals(OutboxEventStatus.PENDING, failing.getStatus());
+        assertEquals(1, failing.getAttempts());
+        assertEquals("Database unavailable", failing.getLastError());
+        assertTrue(failing.getNextAttemptAt().isAfter(LocalDateTime.now()));
+        assertEquals(OutboxEventStatus.PENDING, sameStudent.getStatus());
+
+        // Still backing off: the student stays blocked
+        assertEquals(0, dispatcher.dispatchPending());
+
+        // Once due, the retry goes first and the held-back event follows
+        failing.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        assertEquals(2, dispatcher.dispatchPending());
+        assertEquals(List.of(3L, 1L, 2L), delivered);
+    }
+
+    @Test
+    void backlogOfBackingOffEventsDoesNotHoldBackDueEvents() {
+        // More backing-off events than fit in one batch, all older than the due one
+        List<OutboxEvent> backingOff = new ArrayList<>();
+        for (long id = 1; id <= 250; id++) {
+            OutboxEvent event = event(id, 1000L + id, OutboxEventType.MISSING_TIME_OUT);
+            event.setAttempts(1);
+            event.setNextAttemptAt(LocalDateTime.now().plusMinutes(5));
+            backingOff.add(event);
+        }
+        OutboxEvent due = event(251L, 20L, OutboxEventType.LONG_WORK_SESSION);
+        // Queued behind a backing-off event of its student, so it waits
+        OutboxEvent queued = event(252L, 1001L, OutboxEventType.AUTO_TIME_OUT_OCCURRED);
+
+        assertEquals(1, dispatcher.dispatchPending());
+
+        assertEquals(List.of(251L), delivered);
+        assertEquals(OutboxEventStatus.DONE, due.getStatus());
+        assertEquals(OutboxEventStatus.PENDING, queued.getStatus());
+        assertTrue(backingOff.stream().allMatch(event -> event.getStatus() == OutboxEventStatus.PENDING));
+    }
+
+    @Test
+    void eventIsDeadLetteredAfterMaxAttempts() {
+        OutboxEvent poison = event(1L, 10L, OutboxEventType.SCHEDULE_OVERRIDE_REVIEWED);
+        OutboxEvent next = event(2L, 10L, OutboxEventType.MISSING_TIME_OUT);
+        doThrow(new RuntimeException("Attendance record not found")).when(scheduleOverrideService).handleOutboxEvent(poison);
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            poison.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+            dispatcher.dispatchPending();
+        }
+
+        assertEquals(OutboxEventStatus.FAILED, poison.getStatus());
+        assertEquals(3, poison.getAttempts());
+        verify(scheduleOverrideService, times(3)).handleOutboxEvent(poison);
+
+        // From the next run on, the dead letter no longer blocks the student
+        assertEquals(List.of(), delivered);
+        assertEquals(1, dispatcher.dispatchPending());
+        assertEquals(List.of(2L), delivered);
+        assertEquals(OutboxEventStatus.DONE, next.getStatus());
+    }
+
+    // ==================== HELPERS ====================
+
+    private OutboxEvent event(Long id, Long studentId, OutboxEventType type) {
+        OutboxEvent event = new OutboxEvent(type, studentId, 100L + id, null);
+        event.setId(id);
+        pending.add(event);
+        return event;
+    }
+
+    private void failOnce(OutboxEvent event) {
+        doThrow(new RuntimeException("Database unavailable"))
+                .doAnswer(invocation -> {
+                    delivered.add(event.getId());
+                    return null;
+                })
+                .when(notificationService).handleOutboxEvent(event);
+    }
+}
@@ -0,0 +1,237 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.*;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.entity.StudentStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PunchBatchServiceTest {
+
+    private static final String SECRET = "JBSWY3DPEHPK3PXP";
+    private static final byte[] KIOSK_KEY = "kiosk-1 shared secret".getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private AttendanceService attendanceService;
+
+    @Mock
+    private TotpService totpService;
+
+    @Mock
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    @Spy
+    private BadgeDirectory badgeDirectory = new BadgeDirectory();
+
+    @Spy
+    private PunchSerializer punchSerializer = new PunchSerializer();
+
+    @Spy
+    private KioskSignatureVerifier kioskSignatureVerifier =
+            new KioskSignatureVerifier("kiosk-1:" + Base64.getEncoder().encodeToString(KIOSK_KEY));
+
+    @InjectMocks
+    private PunchBatchService punchBatchService;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @BeforeEach
+    void setUp() {
+        badgeDirectory.put(student(3L, "0042"));
+        badgeDirectory.put(student(4L, "0043"));
+
+        when(attendanceService.resolveKioskContexts(any())).thenAnswer(invocation -> Map.of(
+                "0042", context(3L, "0042"),
+                "0043", context(4L, "0043")));
+        when(totpService.verifyAttendanceCodeAt(anyString(), eq(SECRET), anyString(), any()))
+                .thenReturn(new TotpVerifier.Verification(TotpVerifier.Result.VALID, 1L));
+        when(attendanceService.processAttendance(any(), any(), any())).thenAnswer(invocation -> {
+            KioskPunchContext context = invocation.getArgument(1);
+            AttendanceResponse response = new AttendanceResponse();
+            response.setAction(context.hasOpenSession() ? "TIME_OUT" : "TIME_IN");
+            response.setSuccess(true);
+            response.setTotalAccumulatedHours(8.0);
+            return response;
+        });
+    }
+
+    @Test
+    void appliesEventsOldestFirstWithOneStudentQuery() {
+        LocalDateTime timeIn = now.minusMinutes(40);
+        LocalDateTime timeOut = now.minusMinutes(10);
+
+        List<PunchEventResult> results = ingest(
+                new PunchEvent("b", "0042", "222222", timeOut, "Wrote docs"),
+                new PunchEvent("a", "0042", "111111", timeIn, null),
+                new PunchEvent("c", "0043", "333333", timeIn.plusMinutes(5), null));
+
+        assertEquals(List.of("b", "a", "c"), results.stream().map(PunchEventResult::getEventId).toList());
+        assertTrue(results.stream().allMatch(PunchEventResult::isSuccess));
+
+        verify(attendanceService, times(1)).resolveKioskContexts(Set.of("0042", "0043"));
+
+        InOrder order = inOrder(attendanceService);
+        order.verify(attendanceService).processAttendance(any(), any(), eq(timeIn));
+        order.verify(attendanceService).processAttendance(any(), any(), eq(timeIn.plusMinutes(5)));
+        order.verify(attendanceService).processAttendance(any(), any(), eq(timeOut));
+    }
+
+    @Test
+    void invalidEventsAreRejectedWithoutTouchingTheDatabase() {
+        List<PunchEventResult> results = ingest(
+                new PunchEvent("short-code", "0042", "123", now, null),
+                new PunchEvent("unknown-badge", "0099", "123456", now, null),
+                new PunchEvent("too-old", "0042", "123456", now.minusHours(3), null),
+                new PunchEvent("future", "0042", "123456", now.plusMinutes(10), null),
+                new PunchEvent(null, "0042", "123456", now, null));
+
+        assertTrue(results.stream().noneMatch(PunchEventResult::isSuccess));
+        assertEquals("TOTP code must be exactly 6 digits", results.get(0).getMessage());
+        assertEquals("Student not found with ID badge: 0099", results.get(1).getMessage());
+        assertTrue(results.get(2).getMessage().startsWith("Punch is older than 60 minutes"));
+        assertTrue(results.get(3).getMessage().startsWith("Punch time is in the future"));
+        assertEquals("Event id is required", results.get(4).getMessage());
+
+        verifyNoInteractions(attendanceService, totpService);
+    }
+
+    @Test
+    void replayedCodeRejectsOnlyItsOwnEvent() {
+        when(totpService.verifyAttendanceCodeAt(eq("0042"), eq(SECRET), eq("111111"), any()))
+                .thenReturn(new TotpVerifier.Verification(TotpVerifier.Result.REPLAYED, 1L));
+
+        List<PunchEventResult> results = ingest(
+                new PunchEvent("replayed", "0042", "111111", now.minusMinutes(20), null),
+                new PunchEvent("fresh", "0043", "222222", now.minusMinutes(15), null));
+
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(results.get(0).getMessage().startsWith("This TOTP code has already been used"));
+        assertTrue(results.get(1).isSuccess());
+        assertEquals("TIME_IN", results.get(1).getAttendance().getAction());
+        verify(attendanceService, times(1)).processAttendance(any(), any(), any());
+    }
+
+    @Test
+    void codeIsOnlyUsedUpByAPunchThatWentThrough() {
+        TotpVerifier.Verification rejectedCode = new TotpVerifier.Verification(TotpVerifier.Result.VALID, 1L);
+        TotpVerifier.Verification acceptedCode = new TotpVerifier.Verification(TotpVerifier.Result.VALID, 2L);
+        when(totpService.verifyAttendanceCodeAt(eq("0042"), eq(SECRET), eq("111111"), any())).thenReturn(rejectedCode);
+        when(totpService.verifyAttendanceCodeAt(eq("0043"), eq(SECRET), eq("222222"), any())).thenReturn(acceptedCode);
+        doThrow(new RuntimeException("You must wait at least 4 hours between sessions."))
+                .when(attendanceService).processAttendance(argThat(request -> "0042".equals(request.getIdBadge())), any(), any());
+
+        List<PunchEventResult> results = ingest(
+                new PunchEvent("rejected", "0042", "111111", now.minusMinutes(20), null),
+                new PunchEvent("accepted", "0043", "222222", now.minusMinutes(15), null));
+
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        verify(totpService, never()).acceptAttendanceCode("0042", rejectedCode);
+        verify(totpService).acceptAttendanceCode("0043", acceptedCode);
+    }
+
+    @Test
+    void eventsWithoutTheKioskSignatureAreRejected() {
+        PunchEvent unsigned = new PunchEvent("unsigned", "0042", "111111", now.minusMinutes(30), null);
+        PunchEvent backdated = signed(new PunchEvent("backdated", "0043", "222222", now.minusMinutes(5), null));
+        backdated.setPunchedAt(now.minusMinutes(45));
+
+        List<PunchEventResult> results = send("kiosk-1", unsigned, backdated);
+
+        assertTrue(results.stream().noneMatch(PunchEventResult::isSuccess));
+        assertTrue(results.get(0).getMessage().startsWith("Punch signature is missing or doesn't match"));
+        assertTrue(results.get(1).getMessage().startsWith("Punch signature is missing or doesn't match"));
+        verifyNoInteractions(attendanceService, totpService);
+    }
+
+    @Test
+    void kioskWithoutAKeyCanOnlyBufferRecentTimeIns() {
+        when(activeSessionRegistry.get(4L)).thenReturn(new OpenSessionEntry(40L, 4L, now.minusHours(3), now.toLocalDate()));
+
+        List<PunchEventResult> results = send("kiosk-9",
+                new PunchEvent("late-time-in", "0042", "111111", now.minusMinutes(30), null),
+                new PunchEvent("time-out", "0043", "222222", now.minusMinutes(30), null),
+                new PunchEvent("recent-time-in", "0042", "333333", now.minusMinutes(2), null));
+
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(results.get(0).getMessage().startsWith("Time-in is older than 5 minutes"));
+        assertEquals("TIME_OUT", results.get(1).getAttendance().getAction());
+        assertEquals("TIME_IN", results.get(2).getAttendance().getAction());
+
+        // The rejected time-in didn't use up its code
+        verify(totpService, never()).verifyAttendanceCodeAt(anyString(), anyString(), eq("111111"), any());
+    }
+
+    @Test
+    void unsignedBatchesCanBeRefusedOutright() {
+        ReflectionTestUtils.setField(punchBatchService, "requireSignature", true);
+
+        RuntimeException refused = assertThrows(RuntimeException.class,
+                () -> send("kiosk-9", new PunchEvent("a", "0042", "111111", now, null)));
+
+        assertEquals("Kiosk kiosk-9 has no signing key. Buffered punches can't be accepted.", refused.getMessage());
+        assertTrue(ingest(new PunchEvent("b", "0042", "111111", now, null)).get(0).isSuccess());
+    }
+
+    // ==================== HELPERS ====================
+
+    // Signed by kiosk-1, as a provisioned kiosk would
+    private List<PunchEventResult> ingest(PunchEvent... events) {
+        for (PunchEvent event : events) {
+            signed(event);
+        }
+        return send("kiosk-1", events);
+    }
+
+    private List<PunchEventResult> send(String kioskId, PunchEvent... events) {
+        PunchBatchRequest request = new PunchBatchRequest();
+        request.setKioskId(kioskId);
+        request.setEvents(List.of(events));
+        return punchBatchService.ingest(request);
+    }
+
+    private static PunchEvent signed(PunchEvent event) {
+        if (event.getEventId() != null && event.getPunchedAt() != null) {
+            byte[] signature = KioskSignatureVerifier.sign(new SecretKeySpec(KIOSK_KEY, "HmacSHA256"), event);
+            event.setSignature(Base64.getEncoder().encodeToString(signature));
+        }
+        return event;
+    }
+
+    private Student student(Long id, String idBadge) {
+        Student student = new Student(idBadge, "Student " + idBadge, "Test University");
+        student.setId(id);
+        student.setStatus(StudentStatus.ACTIVE);
+        student.setTotpSecret(SECRET);
+        student.setTotpEnabled(true);
+        return student;
+    }
+
+    private KioskPunchContext context(Long studentId, String idBadge) {
+        return new KioskPunchContext(studentId, idBadge, "Student " + idBadge, StudentStatus.ACTIVE,
+                null, null, 5, false, SECRET, true, 0L, null);
+    }
+}
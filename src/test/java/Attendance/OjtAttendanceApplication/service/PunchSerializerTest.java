@@ -0,0 +1,191 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.AttendanceResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PunchSerializerTest {
+
+    private static final int THREADS = 64;
+
+    @Test
+    void sameBadgeHammeredFromManyThreadsIsProcessedOnce() throws Exception {
+        PunchSerializer serializer = serializerWithWindow(5);
+        AtomicInteger executions = new AtomicInteger();
+        ConcurrencyProbe probe = new ConcurrencyProbe();
+
+        List<AttendanceResponse> responses = hammer(THREADS, 1, i ->
+                serializer.punch("0042", () -> {
+                    executions.incrementAndGet();
+                    return probe.run(() -> response("TIME_IN"));
+                }));
+
+        assertEquals(1, executions.get());
+        assertEquals(1, probe.maxInFlight());
+        AttendanceResponse first = responses.get(0);
+        responses.forEach(response -> assertSame(first, response));
+    }
+
+    @Test
+    void sameBadgeNeverRunsConcurrentlyOutsideTheWindow() throws Exception {
+        PunchSerializer serializer = serializerWithWindow(0);
+        ConcurrencyProbe probe = new ConcurrencyProbe();
+
+        // Check-then-act on shared state, the same shape as "is there an open session?"
+        boolean[] timedIn = {false};
+        AtomicInteger timeIns = new AtomicInteger();
+        AtomicInteger timeOuts = new AtomicInteger();
+
+        hammer(THREADS, 20, i ->
+                serializer.punch("0042", () -> probe.run(() -> {
+                    boolean open = timedIn[0];
+                    pause();
+                    timedIn[0] = !open;
+                    (open ? timeOuts : timeIns).incrementAndGet();
+                    return response(open ? "TIME_OUT" : "TIME_IN");
+                })));
+
+        assertEquals(1, probe.maxInFlight());
+        assertEquals(THREADS * 20, timeIns.get() + timeOuts.get());
+        assertEquals(timeIns.get(), timeOuts.get());
+        assertFalse(timedIn[0]);
+    }
+
+    @Test
+    void differentBadgesKeepFullParallelism() throws Exception {
+        PunchSerializer serializer = serializerWithWindow(5);
+        String[] badges = {"0001", "0002", "1234", "9999"};
+
+        // Every punch waits for all the others to be inside their lock at the same time
+        CyclicBarrier allInside = new CyclicBarrier(badges.length);
+
+        List<AttendanceResponse> responses = hammer(badges.length, 1, i ->
+                serializer.punch(badges[i], () -> {
+                    try {
+                        allInside.await(5, TimeUnit.SECONDS);
+                    } catch (Exception e) {
+                        throw new RuntimeException("Punches for different badges were serialized", e);
+                    }
+                    return response("TIME_IN");
+                }));
+
+        assertEquals(badges.length, responses.size());
+    }
+
+    @Test
+    void differentFingerprintIsNotTreatedAsDuplicate() {
+        PunchSerializer serializer = serializerWithWindow(5);
+        AtomicInteger executions = new AtomicInteger();
+
+        serializer.punch("0042", "123456", () -> {
+            executions.incrementAndGet();
+            return response("TIME_IN");
+        });
+        AttendanceResponse repeated = serializer.punch("0042", "123456", () -> {
+            executions.incrementAndGet();
+            return response("TIME_OUT");
+        });
+        AttendanceResponse different = serializer.punch("0042", "654321", () -> {
+            executions.incrementAndGet();
+            return response("TIME_OUT");
+        });
+
+        assertEquals("TIME_IN", repeated.getAction());
+        assertEquals("TIME_OUT", different.getAction());
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void failedPunchIsNotRemembered() {
+        PunchSerializer serializer = serializerWithWindow(5);
+
+        assertThrows(RuntimeException.class, () -> serializer.punch("0042", () -> {
+            throw new RuntimeException("Invalid TOTP code");
+        }));
+
+        AttendanceResponse retried = serializer.punch("0042", () -> response("TIME_IN"));
+        assertEquals("TIME_IN", retried.getAction());
+    }
+
+    // ==================== HELPERS ====================
+
+    private static PunchSerializer serializerWithWindow(long seconds) {
+        PunchSerializer serializer = new PunchSerializer();
+        ReflectionTestUtils.setField(serializer, "idempotencyWindowSeconds", seconds);
+        return serializer;
+    }
+
+    private static List<AttendanceResponse> hammer(int threads, int punchesPerThread,
+                                                   IntFunction<AttendanceResponse> punch) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<AttendanceResponse>>> futures = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<AttendanceResponse> results = new ArrayList<>();
+                    for (int p = 0; p < punchesPerThread; p++) {
+                        results.add(punch.apply(thread));
+                    }
+                    return results;
+                }));
+            }
+
+            start.countDown();
+
+            List<AttendanceResponse> responses = new ArrayList<>();
+            for (Future<List<AttendanceResponse>> future : futures) {
+                responses.addAll(future.get(30, TimeUnit.SECONDS));
+            }
+            return responses;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static AttendanceResponse response(String action) {
+        AttendanceResponse response = new AttendanceResponse();
+        response.setAction(action);
+        return response;
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class ConcurrencyProbe {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        AttendanceResponse run(Callable<AttendanceResponse> body) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                pause();
+                return body.call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        int maxInFlight() {
+            return maxInFlight.get();
+        }
+    }
+}
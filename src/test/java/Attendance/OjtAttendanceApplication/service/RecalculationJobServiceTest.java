@@ -0,0 +1,193 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.StudentRecalculationResult;
+import Attendance.OjtAttendanceApplication.entity.RecalculationJob;
+import Attendance.OjtAttendanceApplication.entity.RecalculationJobChange;
+import Attendance.OjtAttendanceApplication.entity.RecalculationJobStatus;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
+import Attendance.OjtAttendanceApplication.repository.RecalculationJobChangeRepository;
+import Attendance.OjtAttendanceApplication.repository.RecalculationJobRepository;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RecalculationJobServiceTest {
+
+    private final RecalculationJobRepository jobRepository = mock(RecalculationJobRepository.class);
+    private final RecalculationJobChangeRepository changeRepository = mock(RecalculationJobChangeRepository.class);
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final AttendanceRecordRepository attendanceRecordRepository = mock(AttendanceRecordRepository.class);
+    private final RecalculationService recalculationService = mock(RecalculationService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final List<Long> studentIds = LongStream.rangeClosed(1, 60).boxed().toList();
+    private final List<Long> recalculated = new ArrayList<>();
+    private final List<RecalculationJobChange> changes = new ArrayList<>();
+    private final RecalculationJob job = new RecalculationJob();
+    private RecalculationJobService service;
+
+    @BeforeEach
+    void setUp() {
+        job.setId(7L);
+        job.setTotalStudents(studentIds.size());
+
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(jobRepository.findById(7L)).thenReturn(Optional.of(job));
+        when(jobRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(changeRepository.save(any())).thenAnswer(invocation -> {
+            changes.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+
+        when(studentRepository.findIdsAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            return studentIds.stream().filter(id -> id > afterId).limit(pageable.getPageSize()).toList();
+        });
+        when(studentRepository.findById(anyLong())).thenAnswer(invocation -> {
+            Student student = new Student(String.format("%04d", invocation.<Long>getArgument(0)), "Student", "Test University");
+            student.setId(invocation.getArgument(0));
+            return Optional.of(student);
+        });
+
+        // Every tenth student's total moves by an hour
+        when(recalculationService.recalculateStudentHours(any())).thenAnswer(invocation -> {
+            Student student = invocation.getArgument(0);
+            recalculated.add(student.getId());
+
+            StudentRecalculationResult result = new StudentRecalculationResult();
+            result.setTotalRecords(4);
+            result.setOldTotalMinutes(480);
+            result.setNewTotalMinutes(student.getId() % 10 == 0 ? 540 : 480);
+            if (result.isTotalChanged()) {
+                result.getRecordChanges().add(Map.of("recordId", student.getId() * 100, "newHours", 9.0));
+            }
+            return result;
+        });
+
+        service = new RecalculationJobService(transactionManager);
+        ReflectionTestUtils.setField(service, "recalculationJobRepository", jobRepository);
+        ReflectionTestUtils.setField(service, "recalculationJobChangeRepository", changeRepository);
+        ReflectionTestUtils.setField(service, "studentRepository", studentRepository);
+        ReflectionTestUtils.setField(service, "attendanceRecordRepository", attendanceRecordRepository);
+        ReflectionTestUtils.setField(service, "recalculationService", recalculationService);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+    }
+
+    @Test
+    void processesEveryStudentInChunksAndStoresOnlyChanges() {
+        service.runJob(7L);
+
+        assertEquals(RecalculationJobStatus.COMPLETED, job.getStatus());
+        assertEquals(studentIds, recalculated);
+        assertEquals(60L, job.getLastStudentId());
+        assertEquals(60, job.getProcessedStudents());
+        assertEquals(240, job.getProcessedRecords());
+        assertEquals(6, job.getUpdatedStudents());
+        assertNotNull(job.getFinishedAt());
+
+        assertEquals(List.of(10L, 20L, 30L, 40L, 50L, 60L),
+                changes.stream().map(RecalculationJobChange::getStudentId).toList());
+        assertEquals(480, changes.get(0).getOldTotalMinutes());
+        assertEquals(540, changes.get(0).getNewTotalMinutes());
+        assertTrue(changes.get(0).getRecordChanges().contains("\"recordId\":1000"));
+
+        // Three chunks plus the empty page that completes the job
+        verify(studentRepository, times(4)).findIdsAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    void resumedJobContinuesAfterItsCheckpoint() {
+        job.setStatus(RecalculationJobStatus.FAILED);
+        job.setLastStudentId(50L);
+        job.setProcessedStudents(50);
+        job.setProcessedRecords(200);
+
+        service.runJob(7L);
+
+        assertEquals(LongStream.rangeClosed(51, 60).boxed().toList(), recalculated);
+        assertEquals(RecalculationJobStatus.COMPLETED, job.getStatus());
+        assertEquals(60, job.getProcessedStudents());
+        assertEquals(200, job.getRecordsAtResume());
+    }
+
+    @Test
+    void cancelledJobStopsBeforeItsNextChunk() {
+        job.setStatus(RecalculationJobStatus.RUNNING);
+        service.cancelJob(7L);
+
+        service.runJob(7L);
+
+        assertEquals(RecalculationJobStatus.CANCELLED, job.getStatus());
+        assertTrue(recalculated.isEmpty());
+    }
+
+    @Test
+    void failedChunkMarksTheJobFailed() {
+        doThrow(new RuntimeException("Deadlock found when trying to get lock"))
+                .when(recalculationService).recalculateStudentHours(argThat(student -> student.getId() == 30L));
+
+        service.runJob(7L);
+
+        assertEquals(RecalculationJobStatus.FAILED, job.getStatus());
+        assertEquals("Deadlock found when trying to get lock", job.getErrorMessage());
+    }
+
+    @Test
+    void incrementalJobOnlyVisitsStudentsWithStaleRecords() {
+        List<Long> staleIds = List.of(4L, 17L, 42L);
+        when(attendanceRecordRepository.findStudentIdsWithStaleAfter(anyLong(), anyLong(), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    long afterId = invocation.getArgument(0);
+                    return staleIds.stream().filter(id -> id > afterId).toList();
+                });
+        when(recalculationService.recalculateStaleRecords(any())).thenAnswer(invocation -> {
+            recalculated.add(invocation.<Student>getArgument(0).getId());
+            StudentRecalculationResult result = new StudentRecalculationResult();
+            result.setTotalRecords(1);
+            return result;
+        });
+        job.setIncremental(true);
+
+        service.runJob(7L);
+
+        assertEquals(RecalculationJobStatus.COMPLETED, job.getStatus());
+        assertEquals(staleIds, recalculated);
+        assertEquals(3, job.getProcessedRecords());
+        verify(recalculationService, never()).recalculateStudentHours(any());
+        verify(studentRepository, never()).findIdsAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    void batchRunsAndJobsNeverOverlap() {
+        RecalculationJob batchRun = service.beginBatchRun();
+        assertTrue(batchRun.isBatch());
+        assertEquals(RecalculationJobStatus.RUNNING, batchRun.getStatus());
+
+        batchRun.setId(8L);
+        when(jobRepository.findFirstByStatusIn(any())).thenReturn(Optional.of(batchRun));
+        RuntimeException secondBatch = assertThrows(RuntimeException.class, service::beginBatchRun);
+        assertEquals("Recalculation batch run 8 is already running", secondBatch.getMessage());
+        assertThrows(RuntimeException.class, () -> service.createJob(false));
+        assertEquals("postponed", service.runUnlessJobActive(() -> "repaired", () -> "postponed"));
+
+        when(jobRepository.findFirstByStatusIn(any())).thenReturn(Optional.empty());
+        assertEquals("repaired", service.runUnlessJobActive(() -> "repaired", () -> "postponed"));
+    }
+}
@@ -0,0 +1,147 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.RecordStatusCount;
+import Attendance.OjtAttendanceApplication.dto.StaleRecordCount;
+import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
+import Attendance.OjtAttendanceApplication.entity.AttendanceStatus;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RecalculationServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final AttendanceRecordRepository attendanceRecordRepository = mock(AttendanceRecordRepository.class);
+    private RecalculationService service;
+
+    private Student scheduled;
+    private Student unscheduled;
+
+    @BeforeEach
+    void setUp() {
+        // 08:00-17:00 schedule: 07:00-18:00 stored with all 10 hours counts 9
+        // (the early hour is dropped), 08:00-17:00 stored as 7.5 hours counts 8
+        scheduled = student(1L, "0001", 600);
+        scheduled.setScheduledStartTime(LocalTime.of(8, 0));
+        scheduled.setScheduledEndTime(LocalTime.of(17, 0));
+        scheduled.setGracePeriodMinutes(5);
+        scheduled.setScheduleActive(true);
+
+        // Stale but its hours are already right
+        unscheduled = student(2L, "0002", 480);
+
+        when(studentRepository.count()).thenReturn(5L);
+        when(attendanceRecordRepository.countStale(anyLong(), anyLong())).thenReturn(new StaleRecordCount(3L, 2L, 0L));
+        when(attendanceRecordRepository.findStudentIdsWithStaleAfter(anyLong(), anyLong(), any(Pageable.class)))
+                .thenAnswer(invocation -> invocation.<Long>getArgument(0) == 0 ? List.of(1L, 2L) : List.of());
+        when(studentRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(scheduled, unscheduled));
+        when(attendanceRecordRepository.findStaleByStudent(eq(scheduled), anyLong())).thenReturn(List.of(
+                record(10L, scheduled, 7, 18, 600),
+                record(11L, scheduled, 8, 17, 450)));
+        when(attendanceRecordRepository.findStaleByStudent(eq(unscheduled), anyLong())).thenReturn(List.of(
+                record(20L, unscheduled, 8, 17, 480)));
+
+        service = new RecalculationService();
+        ReflectionTestUtils.setField(service, "studentRepository", studentRepository);
+        ReflectionTestUtils.setField(service, "attendanceRecordRepository", attendanceRecordRepository);
+        ReflectionTestUtils.setField(service, "hoursCalculationEngine", new HoursCalculationEngine());
+    }
+
+    @Test
+    void streamedPreviewEmitsChangedRecordsThenTheirStudentThenASummary() {
+        List<Map<String, Object>> lines = new ArrayList<>();
+
+        service.streamPreview(lines::add);
+
+        assertEquals(List.of("record", "record", "student", "summary"),
+                lines.stream().map(line -> line.get("type")).toList());
+        assertEquals(10L, lines.get(0).get("recordId"));
+        assertEquals(-1.0, lines.get(0).get("difference"));
+        assertEquals("0001", lines.get(2).get("idBadge"));
+        assertEquals(0.5, lines.get(1).get("difference"));
+        assertEquals(9.5, lines.get(2).get("calculatedTotal"));
+        assertEquals(2, lines.get(2).get("recordsAffected"));
+        assertEquals(3L, lines.get(3).get("staleRecords"));
+        assertEquals(1, lines.get(3).get("studentsWithChanges"));
+        assertEquals(0.5, lines.get(3).get("totalHoursDifference"));
+        verify(attendanceRecordRepository, never()).save(any());
+    }
+
+    @Test
+    void jsonPreviewIsAssembledFromTheSameLines() {
+        Map<String, Object> preview = service.previewRecalculation();
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> students = (List<Map<String, Object>>) preview.get("preview");
+        assertEquals(1, students.size());
+        assertEquals("0001", students.get(0).get("idBadge"));
+        assertEquals(-0.5, students.get(0).get("difference"));
+        assertEquals(2, ((List<?>) students.get(0).get("recordChanges")).size());
+        assertFalse(students.get(0).containsKey("type"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> summary = (Map<String, Object>) preview.get("summary");
+        assertEquals(2L, summary.get("staleStudents"));
+        assertEquals(4L, summary.get("studentsUnchanged"));
+        assertEquals(Map.of("REGULAR_TIMEOUT", 3), preview.get("recordTypeBreakdown"));
+    }
+
+    @Test
+    void statsAreFoldedFromTheGroupedCounts() {
+        when(studentRepository.countWithActiveSchedule()).thenReturn(3L);
+        when(attendanceRecordRepository.countByStatusAndOverride()).thenReturn(List.of(
+                new RecordStatusCount(AttendanceStatus.TIMED_IN, false, 4L, 0L),
+                new RecordStatusCount(AttendanceStatus.TIMED_OUT, false, 50L, 50L),
+                new RecordStatusCount(AttendanceStatus.TIMED_OUT, true, 6L, 6L),
+                new RecordStatusCount(AttendanceStatus.AUTO_TIMED_OUT, null, 8L, 8L),
+                new RecordStatusCount(AttendanceStatus.ADMIN_CORRECTED, true, 2L, 2L)));
+
+        Map<String, Object> stats = service.getRecalculationStats();
+
+        assertEquals(5L, stats.get("totalStudents"));
+        assertEquals(2L, stats.get("studentsWithoutSchedule"));
+        assertEquals(70L, stats.get("totalRecords"));
+        assertEquals(66L, stats.get("completedRecords"));
+        assertEquals(4L, stats.get("incompleteRecords"));
+        assertEquals(8L, stats.get("autoTimeouts"));
+        assertEquals(2L, stats.get("adminCorrected"));
+        assertEquals(8L, stats.get("approvedOverrides"));
+        assertEquals(56L, stats.get("regularTimeouts"));
+        assertEquals(3L, stats.get("staleRecords"));
+        verify(attendanceRecordRepository, never()).findAll();
+        verify(studentRepository, never()).findAll();
+    }
+
+    private static Student student(long id, String idBadge, long totalMinutes) {
+        Student student = new Student(idBadge, "Student " + idBadge, "Test University");
+        student.setId(id);
+        student.setTotalAccumulatedMinutes(totalMinutes);
+        return student;
+    }
+
+    private static AttendanceRecord record(long id, Student student, int inHour, int outHour, int storedMinutes) {
+        AttendanceRecord record = new AttendanceRecord(student, DAY.atTime(inHour, 0));
+        record.setId(id);
+        record.setTimeOut(DAY.atTime(outHour, 0));
+        record.setStatus(AttendanceStatus.TIMED_OUT);
+        record.setTasksCompleted("Worked");
+        record.setTotalMinutes(storedMinutes);
+        return record;
+    }
+}
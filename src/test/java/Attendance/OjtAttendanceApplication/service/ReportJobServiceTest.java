@@ -0,0 +1,160 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.ReportJob;
+import Attendance.OjtAttendanceApplication.dto.ReportJobStatus;
+import Attendance.OjtAttendanceApplication.dto.ReportType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReportJobServiceTest {
+
+    private static final LocalDate START = LocalDate.of(2025, 3, 1);
+    private static final LocalDate END = LocalDate.of(2025, 3, 31);
+
+    private final ReportService reportService = mock(ReportService.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ThreadPoolTaskExecutor reportExecutor = mock(ThreadPoolTaskExecutor.class);
+
+    @TempDir
+    Path artifactDir;
+
+    private ReportJobService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Jobs run on the calling thread
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(reportExecutor).execute(any(Runnable.class));
+
+        dataVersion("10:2025-03-31 17:00:00:550");
+
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            LongConsumer progress = invocation.getArgument(3);
+            out.write("ID Badge,Student Name\n".getBytes(StandardCharsets.UTF_8));
+            for (long row = 1; row <= 10; row++) {
+                progress.accept(row);
+            }
+            return 10L;
+        }).when(reportService).writeCSVReport(any(), any(), any(), any());
+
+        Files.writeString(artifactDir.resolve("report-left-from-last-run.csv"), "old");
+        Files.writeString(artifactDir.resolve("notes.txt"), "not ours");
+
+        service = new ReportJobService();
+        ReflectionTestUtils.setField(service, "reportService", reportService);
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "reportExecutor", reportExecutor);
+        ReflectionTestUtils.setField(service, "artifactDirectory", artifactDir.toString());
+        ReflectionTestUtils.setField(service, "retentionMinutes", 60L);
+        service.prepareArtifactDirectory();
+    }
+
+    @Test
+    void startupRemovesOnlyOldArtifacts() {
+        assertFalse(Files.exists(artifactDir.resolve("report-left-from-last-run.csv")));
+        assertTrue(Files.exists(artifactDir.resolve("notes.txt")));
+    }
+
+    @Test
+    void identicalRequestsShareOneRenderedArtifact() throws IOException {
+        ReportJob first = service.submit(ReportType.CSV, null, START, END);
+        ReportJob second = service.submit(ReportType.CSV, null, START, END);
+
+        assertSame(first, second);
+        verify(reportService, times(1)).writeCSVReport(any(), any(), any(), any());
+
+        assertEquals(ReportJobStatus.COMPLETED, first.getStatus());
+        assertEquals(10, first.getProcessedRows());
+        assertEquals(100.0, service.getJobProgress(first.getId()).get("percentComplete"));
+        assertEquals("attendance-report-2025-03-01-2025-03-31.csv", first.getDownloadName());
+
+        Path artifact = service.getArtifact(first.getId());
+        assertEquals("ID Badge,Student Name\n", Files.readString(artifact));
+        assertEquals(Files.size(artifact), first.getFileSize());
+        try (Stream<Path> files = Files.list(artifactDir)) {
+            assertEquals(0, files.filter(file -> file.toString().endsWith(".part")).count());
+        }
+    }
+
+    @Test
+    void changedDataOrAnotherRangeRendersAgain() throws IOException {
+        ReportJob first = service.submit(ReportType.CSV, null, START, END);
+
+        dataVersion("11:2025-03-31 17:05:00:611");
+        ReportJob afterTimeOut = service.submit(ReportType.CSV, null, START, END);
+        ReportJob otherRange = service.submit(ReportType.CSV, null, START, END.minusDays(1));
+
+        assertNotEquals(first.getId(), afterTimeOut.getId());
+        assertNotEquals(first.getArtifactName(), afterTimeOut.getArtifactName());
+        assertNotEquals(afterTimeOut.getId(), otherRange.getId());
+        verify(reportService, times(3)).writeCSVReport(any(), any(), any(), any());
+    }
+
+    @Test
+    void failedJobLeavesNoFileAndIsRetriedOnTheNextRequest() throws IOException {
+        doThrow(new IOException("Disk full"))
+                .doAnswer(invocation -> 0L)
+                .when(reportService).writeCSVReport(any(), any(), any(), any());
+
+        ReportJob failed = service.submit(ReportType.CSV, null, START, END);
+
+        assertEquals(ReportJobStatus.FAILED, failed.getStatus());
+        assertEquals("Disk full", failed.getErrorMessage());
+        assertThrows(RuntimeException.class, () -> service.getArtifact(failed.getId()));
+        try (Stream<Path> files = Files.list(artifactDir)) {
+            assertEquals(0, files.filter(file -> file.getFileName().toString().startsWith("report-")).count());
+        }
+
+        ReportJob retry = service.submit(ReportType.CSV, null, START, END);
+        assertNotEquals(failed.getId(), retry.getId());
+        assertEquals(ReportJobStatus.COMPLETED, retry.getStatus());
+    }
+
+    @Test
+    void expiredJobsAreDroppedWithTheirArtifacts() throws IOException {
+        ReportJob job = service.submit(ReportType.CSV, null, START, END);
+        Path artifact = service.getArtifact(job.getId());
+
+        ReflectionTestUtils.setField(service, "retentionMinutes", 0L);
+        service.removeExpiredJobs();
+
+        assertFalse(Files.exists(artifact));
+        assertThrows(RuntimeException.class, () -> service.getJob(job.getId()));
+        assertNotSame(job, service.submit(ReportType.CSV, null, START, END));
+    }
+
+    @Test
+    void weeklyReportNeedsABadge() {
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> service.submit(ReportType.WEEKLY_PDF, " ", START, START.plusDays(6)));
+        assertEquals("idBadge is required for weekly reports", e.getMessage());
+        verifyNoInteractions(reportExecutor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dataVersion(String fingerprint) {
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class), any(), any()))
+                .thenReturn(new ReportJobService.DataVersion(10, fingerprint));
+    }
+}
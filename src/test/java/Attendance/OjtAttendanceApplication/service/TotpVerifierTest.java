@@ -0,0 +1,146 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import dev.samstevens.totp.code.DefaultCodeGenerator;
+import dev.samstevens.totp.secret.DefaultSecretGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TotpVerifierTest {
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000L);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TotpVerifier verifier = new TotpVerifier(now::get, meterRegistry);
+    private final DefaultCodeGenerator generator = new DefaultCodeGenerator();
+    private final String secret = new DefaultSecretGenerator().generate();
+
+    @Test
+    void acceptsCodesWithinOnePeriodOfDrift() throws Exception {
+        long period = now.get() / 30;
+
+        assertEquals(TotpVerifier.Result.VALID, verifier.verify(secret, generator.generate(secret, period - 1)));
+        assertEquals(TotpVerifier.Result.VALID, verifier.verify(secret, generator.generate(secret, period)));
+        assertEquals(TotpVerifier.Result.VALID, verifier.verify(secret, " " + generator.generate(secret, period + 1) + " "));
+        assertEquals(TotpVerifier.Result.INVALID, verifier.verify(secret, generator.generate(secret, period + 2)));
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        assertEquals(TotpVerifier.Result.MALFORMED, verifier.verify(secret, "12345"));
+        assertEquals(TotpVerifier.Result.MALFORMED, verifier.verify(secret, "12a456"));
+        assertEquals(TotpVerifier.Result.MALFORMED, verifier.verify(null, "123456"));
+        assertEquals(TotpVerifier.Result.MALFORMED, verifier.verify(secret, null));
+    }
+
+    @Test
+    void codeCanBeUsedForOnePunchPerBadge() throws Exception {
+        String code = generator.generate(secret, now.get() / 30);
+
+        assertEquals(TotpVerifier.Result.VALID, punch(code));
+        assertEquals(TotpVerifier.Result.REPLAYED, punch(code));
+
+        // Setup verification doesn't consume codes
+        assertEquals(TotpVerifier.Result.VALID, verifier.verify(secret, code));
+    }
+
+    @Test
+    void codeIsOnlyUsedUpOnceItsPunchIsAccepted() throws Exception {
+        String code = generator.generate(secret, now.get() / 30);
+
+        // The punch was rejected after verification, e.g. by the attendance rules
+        TotpVerifier.Verification rejected = verifier.verifyForPunch("0042", secret, code);
+        assertEquals(TotpVerifier.Result.VALID, rejected.getResult());
+
+        TotpVerifier.Verification retried = verifier.verifyForPunch("0042", secret, code);
+        assertEquals(TotpVerifier.Result.VALID, retried.getResult());
+        verifier.accept("0042", retried);
+
+        assertEquals(TotpVerifier.Result.REPLAYED, verifier.verifyForPunch("0042", secret, code).getResult());
+        // Other badges keep their own replay state
+        assertEquals(TotpVerifier.Result.VALID, verifier.verifyForPunch("0043", secret, code).getResult());
+    }
+
+    @Test
+    void acceptingAnOlderPeriodDoesNotRewindTheBadge() throws Exception {
+        long period = now.get() / 30;
+        TotpVerifier.Verification older = verifier.verifyForPunch("0042", secret, generator.generate(secret, period - 1));
+        TotpVerifier.Verification newer = verifier.verifyForPunch("0042", secret, generator.generate(secret, period));
+
+        verifier.accept("0042", newer);
+        verifier.accept("0042", older);
+
+        assertEquals(TotpVerifier.Result.REPLAYED,
+                verifier.verifyForPunch("0042", secret, generator.generate(secret, period)).getResult());
+        assertEquals(TotpVerifier.Result.VALID,
+                verifier.verifyForPunch("0042", secret, generator.generate(secret, period + 1)).getResult());
+    }
+
+    @Test
+    void olderCodeIsReplayOnceANewerOneWasAccepted() throws Exception {
+        long period = now.get() / 30;
+
+        assertEquals(TotpVerifier.Result.VALID,
+                punch(generator.generate(secret, period)));
+        assertEquals(TotpVerifier.Result.REPLAYED,
+                punch(generator.generate(secret, period - 1)));
+
+        now.addAndGet(30);
+        assertEquals(TotpVerifier.Result.VALID,
+                punch(generator.generate(secret, period + 1)));
+    }
+
+    @Test
+    void codesMemoizedForOnePeriodFollowTheClock() throws Exception {
+        long period = now.get() / 30;
+        String current = generator.generate(secret, period);
+
+        assertEquals(TotpVerifier.Result.VALID, verifier.verify(secret, current));
+
+        // Two periods later the memoized window must have moved on
+        now.addAndGet(60);
+        assertEquals(TotpVerifier.Result.INVALID, verifier.verify(secret, current));
+        assertEquals(TotpVerifier.Result.VALID, verifier.verify(secret, generator.generate(secret, period + 2)));
+    }
+
+    @Test
+    void bufferedCodeIsCheckedAgainstItsCaptureTime() throws Exception {
+        long capturedAt = now.get();
+        String first = generator.generate(secret, capturedAt / 30);
+        String second = generator.generate(secret, (capturedAt + 600) / 30);
+
+        // The kiosk flushes its buffer 20 minutes later
+        now.addAndGet(1200);
+        assertEquals(TotpVerifier.Result.INVALID, punch(first));
+        assertEquals(TotpVerifier.Result.VALID, punchAt(first, capturedAt));
+        assertEquals(TotpVerifier.Result.REPLAYED, punchAt(first, capturedAt));
+        assertEquals(TotpVerifier.Result.INVALID, punchAt(second, capturedAt));
+        assertEquals(TotpVerifier.Result.VALID, punchAt(second, capturedAt + 600));
+    }
+
+    @Test
+    void publishesLatencyPerResult() throws Exception {
+        verifier.verify(secret, generator.generate(secret, now.get() / 30));
+        verifier.verify(secret, "abc");
+
+        assertEquals(1, meterRegistry.get("totp.verify").tag("result", "valid").timer().count());
+        assertEquals(1, meterRegistry.get("totp.verify").tag("result", "malformed").timer().count());
+    }
+
+    // ==================== HELPERS ====================
+
+    // A punch that goes through: verify, then accept if valid
+    private TotpVerifier.Result punch(String code) {
+        TotpVerifier.Verification verification = verifier.verifyForPunch("0042", secret, code);
+        verifier.accept("0042", verification);
+        return verification.getResult();
+    }
+
+    private TotpVerifier.Result punchAt(String code, long epochSeconds) {
+        TotpVerifier.Verification verification = verifier.verifyForPunchAt("0042", secret, code, epochSeconds);
+        verifier.accept("0042", verification);
+        return verification.getResult();
+    }
+}
@@ -0,0 +1,161 @@
+package Attendance.OjtAttendanceApplication.service;
+
+import Attendance.OjtAttendanceApplication.dto.StudentAttendanceTotal;
+import Attendance.OjtAttendanceApplication.entity.AttendanceRecord;
+import Attendance.OjtAttendanceApplication.entity.AttendanceStatus;
+import Attendance.OjtAttendanceApplication.entity.Student;
+import Attendance.OjtAttendanceApplication.entity.TaskEntry;
+import Attendance.OjtAttendanceApplication.repository.AttendanceRecordRepository;
+import Attendance.OjtAttendanceApplication.repository.StudentRepository;
+import Attendance.OjtAttendanceApplication.repository.TaskEntryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WeeklyReportBundleServiceTest {
+
+    // Monday; Ana started two weeks before, Ben one week before
+    private static final LocalDate WEEK_START = LocalDate.of(2025, 3, 17);
+    private static final LocalDate WEEK_END = WEEK_START.plusDays(6);
+
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final AttendanceRecordRepository attendanceRecordRepository = mock(AttendanceRecordRepository.class);
+    private final TaskEntryRepository taskEntryRepository = mock(TaskEntryRepository.class);
+    private final ForkJoinPool reportRenderPool = new ForkJoinPool(2);
+
+    private final Student ana = student(1L, "0001", "Ana Reyes");
+    private final Student ben = student(2L, "0002", "Ben Cruz");
+    private final Student cara = student(3L, "0003", "Cara Lim");
+
+    private WeeklyReportBundleService service;
+
+    @BeforeEach
+    void setUp() {
+        // Ana worked Monday and Tuesday; Ben has earlier weeks but nothing this week; Cara hasn't started
+        AttendanceRecord monday = record(10L, ana, WEEK_START);
+        AttendanceRecord tuesday = record(11L, ana, WEEK_START.plusDays(1));
+
+        when(studentRepository.findActiveForWeeklyReports(any(), any())).thenReturn(List.of(ana, ben, cara));
+        when(attendanceRecordRepository.findAttendanceTotalsUpTo(List.of(1L, 2L, 3L), WEEK_END)).thenReturn(List.of(
+                new StudentAttendanceTotal(1L, WEEK_START.minusWeeks(2), 5760L),
+                new StudentAttendanceTotal(2L, WEEK_START.minusDays(4), 960L)));
+        when(attendanceRecordRepository.findByStudentIdsAndDateRange(List.of(1L, 2L, 3L), WEEK_START, WEEK_END))
+                .thenReturn(List.of(monday, tuesday));
+        when(taskEntryRepository.findByAttendanceRecordInOrderByCompletedAtAsc(any())).thenReturn(List.of(
+                new TaskEntry(monday, "Set up workstation", WEEK_START.atTime(10, 0)),
+                new TaskEntry(tuesday, "Patched print server", WEEK_START.plusDays(1).atTime(11, 0))));
+
+        WeeklyReportService weeklyReportService = new WeeklyReportService();
+        weeklyReportService.prepareTemplate(null);
+
+        service = new WeeklyReportBundleService();
+        ReflectionTestUtils.setField(service, "studentRepository", studentRepository);
+        ReflectionTestUtils.setField(service, "attendanceRecordRepository", attendanceRecordRepository);
+        ReflectionTestUtils.setField(service, "taskEntryRepository", taskEntryRepository);
+        ReflectionTestUtils.setField(service, "weeklyReportService", weeklyReportService);
+        ReflectionTestUtils.setField(service, "reportRenderPool", reportRenderPool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reportRenderPool.shutdownNow();
+    }
+
+    @Test
+    void bundleHasAReportForEveryStudentWithAttendance() throws IOException {
+        WeeklyReportBundleService.CohortWeek week = service.loadCohortWeek(WEEK_START.plusDays(3), null, null);
+
+        assertEquals(WEEK_START, week.getWeekStart());
+        assertEquals(2, week.getReportCount());
+        assertEquals("weekly-reports-2025-03-17.zip", week.getDownloadName());
+
+        Map<String, byte[]> entries = unzip(week);
+        assertEquals(List.of("weekly-report-0001-week3.pdf", "weekly-report-0002-week2.pdf"),
+                entries.keySet().stream().sorted().toList());
+        entries.values().forEach(pdf -> assertEquals("%PDF", new String(pdf, 0, 4, StandardCharsets.US_ASCII)));
+
+        // Tasks came from the one bulk query
+        verify(taskEntryRepository, times(1)).findByAttendanceRecordInOrderByCompletedAtAsc(any());
+        verify(taskEntryRepository, never()).findByAttendanceRecordOrderByCompletedAtAsc(any());
+    }
+
+    @Test
+    void filtersArePassedToTheStudentQuery() {
+        service.loadCohortWeek(WEEK_START, "  Mapua University ", LocalTime.of(8, 0));
+
+        verify(studentRepository).findActiveForWeeklyReports("Mapua University", LocalTime.of(8, 0));
+    }
+
+    @Test
+    void aReportThatFailsIsListedInsteadOfFailingTheBundle() throws IOException {
+        AttendanceRecord monday = record(10L, ana, WEEK_START);
+        when(taskEntryRepository.findByAttendanceRecordInOrderByCompletedAtAsc(any()))
+                .thenReturn(List.of(new TaskEntry(monday, null, WEEK_START.atTime(10, 0))));
+
+        Map<String, byte[]> entries = unzip(service.loadCohortWeek(WEEK_START, null, null));
+
+        assertTrue(entries.containsKey("weekly-report-0002-week2.pdf"));
+        assertFalse(entries.containsKey("weekly-report-0001-week3.pdf"));
+        assertTrue(new String(entries.get("errors.txt"), StandardCharsets.UTF_8)
+                .startsWith("weekly-report-0001-week3.pdf: "));
+    }
+
+    @Test
+    void futureWeeksAndEmptyCohortsAreRejected() {
+        RuntimeException future = assertThrows(RuntimeException.class,
+                () -> service.loadCohortWeek(LocalDate.now().plusWeeks(1), null, null));
+        assertTrue(future.getMessage().endsWith("is not available yet"));
+
+        when(studentRepository.findActiveForWeeklyReports(any(), any())).thenReturn(List.of());
+        RuntimeException empty = assertThrows(RuntimeException.class,
+                () -> service.loadCohortWeek(WEEK_START, "Nowhere College", null));
+        assertEquals("No active students match the selected filters", empty.getMessage());
+        verifyNoInteractions(attendanceRecordRepository);
+    }
+
+    private Map<String, byte[]> unzip(WeeklyReportBundleService.CohortWeek week) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeBundle(week, out);
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    private static Student student(Long id, String idBadge, String fullName) {
+        Student student = new Student(idBadge, fullName, "Mapua University", 486.0);
+        student.setId(id);
+        return student;
+    }
+
+    private static AttendanceRecord record(Long id, Student student, LocalDate day) {
+        AttendanceRecord record = new AttendanceRecord(student, day.atTime(8, 0));
+        record.setId(id);
+        record.setTimeOut(day.atTime(17, 0));
+        record.setStatus(AttendanceStatus.TIMED_OUT);
+        record.setTotalMinutes(480);
+        return record;
+    }
+}